@@ -28,6 +28,9 @@
 package org.objectweb.asm.tree.analysis;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -80,6 +83,9 @@ public class Analyzer<V extends Value> implements Opcodes {
   /** The number of instructions that remain to process in the currently analyzed method. */
   private int numInstructionsToProcess;
 
+  /** The state of the last analyzed method, used by {@link #reanalyze}. */
+  private MethodSnapshot methodSnapshot;
+
   /**
    * Constructs a new {@link Analyzer}.
    *
@@ -103,34 +109,12 @@ public class Analyzer<V extends Value> implements Opcodes {
    */
   @SuppressWarnings("unchecked")
   public Frame<V>[] analyze(final String owner, final MethodNode method) throws AnalyzerException {
+    methodSnapshot = null;
     if ((method.access & (ACC_ABSTRACT | ACC_NATIVE)) != 0) {
       frames = (Frame<V>[]) new Frame<?>[0];
       return frames;
     }
-    insnList = method.instructions;
-    insnListSize = insnList.size();
-    handlers = (List<TryCatchBlockNode>[]) new List<?>[insnListSize];
-    frames = (Frame<V>[]) new Frame<?>[insnListSize];
-    subroutines = new Subroutine[insnListSize];
-    inInstructionsToProcess = new boolean[insnListSize];
-    instructionsToProcess = new int[insnListSize];
-    numInstructionsToProcess = 0;
-
-    // For each exception handler, and each instruction within its range, record in 'handlers' the
-    // fact that execution can flow from this instruction to the exception handler.
-    for (int i = 0; i < method.tryCatchBlocks.size(); ++i) {
-      TryCatchBlockNode tryCatchBlock = method.tryCatchBlocks.get(i);
-      int startIndex = insnList.indexOf(tryCatchBlock.start);
-      int endIndex = insnList.indexOf(tryCatchBlock.end);
-      for (int j = startIndex; j < endIndex; ++j) {
-        List<TryCatchBlockNode> insnHandlers = handlers[j];
-        if (insnHandlers == null) {
-          insnHandlers = new ArrayList<>();
-          handlers[j] = insnHandlers;
-        }
-        insnHandlers.add(tryCatchBlock);
-      }
-    }
+    initAnalysis(method);
 
     // For each instruction, compute the subroutine to which it belongs.
     // Follow the main 'subroutine', and collect the jsr instructions to nested subroutines.
@@ -163,7 +147,182 @@ public class Analyzer<V extends Value> implements Opcodes {
     Frame<V> currentFrame = computeInitialFrame(owner, method);
     merge(0, currentFrame, null);
     init(owner, method);
+    executeInstructions(method, currentFrame);
+    methodSnapshot = new MethodSnapshot(owner, method, handlers);
+    return frames;
+  }
+
+  /**
+   * Analyzes again the given method, after it has been modified since its last analysis. Only the
+   * frames which can depend on the modified instructions are recomputed, the other ones are reused
+   * from the previous analysis. The result is the same as with {@link #analyze}.
+   *
+   * <p>The previous analysis is the one done by the last call to {@link #analyze} or {@link
+   * #reanalyze} on this analyzer, and its frames are those returned by {@link #getFrames}. The
+   * instructions inserted in or removed from the method since then are detected automatically, but
+   * those modified in place (e.g. with a new opcode, operand or jump target) must be given in
+   * 'changedInsns'. A full analysis is done instead if the previous analysis was not done on the
+   * same method, if the access flags, descriptor, maxLocals, maxStack or try catch blocks of the
+   * method have changed, or if the method contains JSR or RET instructions.
+   *
+   * <p>The reused frames are shared with the previous result, and must not be modified. Likewise,
+   * {@link #newControlFlowEdge} and {@link #newControlFlowExceptionEdge} are only called for the
+   * instructions which are executed again.
+   *
+   * @param owner the internal name of the class to which 'method' belongs.
+   * @param method the method to be analyzed. The maxStack and maxLocals fields must have correct
+   *     values.
+   * @param changedInsns the instructions of 'method' which have been modified in place since the
+   *     previous analysis.
+   * @return the symbolic state of the execution stack frame at each bytecode instruction of the
+   *     method. The size of the returned array is equal to the number of instructions (and labels)
+   *     of the method. A given frame is {@literal null} if and only if the corresponding
+   *     instruction cannot be reached (dead code).
+   * @throws AnalyzerException if a problem occurs during the analysis.
+   */
+  public Frame<V>[] reanalyze(
+      final String owner,
+      final MethodNode method,
+      final Collection<? extends AbstractInsnNode> changedInsns)
+      throws AnalyzerException {
+    MethodSnapshot previousMethod = methodSnapshot;
+    if (previousMethod == null || !previousMethod.canBeReanalyzed(owner, method)) {
+      return analyze(owner, method);
+    }
+    methodSnapshot = null;
+    Frame<V>[] previousFrames = frames;
+    AbstractInsnNode[] previousInsns = previousMethod.insns;
+    initAnalysis(method);
+
+    // Compute the index in 'previousInsns' of each instruction (or -1 for new instructions). The
+    // instructions whose previous successors were removed or modified are 'affected', i.e. their
+    // frame must be recomputed.
+    boolean[] affected = new boolean[insnListSize];
+    int[] previousIndices = new int[insnListSize];
+    Arrays.fill(previousIndices, -1);
+    for (int i = 0; i < previousInsns.length; ++i) {
+      int insnIndex = getIndex(previousInsns[i]);
+      if (insnIndex == -1) {
+        markPreviousSuccessors(previousMethod, i, affected);
+      } else {
+        previousIndices[insnIndex] = i;
+      }
+    }
+    for (AbstractInsnNode changedInsn : changedInsns) {
+      int insnIndex = getIndex(changedInsn);
+      if (insnIndex != -1) {
+        affected[insnIndex] = true;
+        if (previousIndices[insnIndex] != -1) {
+          markPreviousSuccessors(previousMethod, previousIndices[insnIndex], affected);
+        }
+      }
+    }
+    // New instructions, and instructions whose next instruction or exception handlers are not the
+    // same as before, are affected too (as well as the first instruction, if it changed). The
+    // previous successors of the latter are affected as well, since they might now be unreachable.
+    for (int i = 0; i < insnListSize; ++i) {
+      int previousIndex = previousIndices[i];
+      int nextPreviousIndex = i + 1 < insnListSize ? previousIndices[i + 1] : previousInsns.length;
+      if (previousIndex == -1) {
+        affected[i] = true;
+      } else if (nextPreviousIndex != previousIndex + 1
+          || !sameHandlers(handlers[i], previousMethod.handlers[previousIndex])) {
+        affected[i] = true;
+        markPreviousSuccessors(previousMethod, previousIndex, affected);
+      }
+    }
+    if (insnListSize > 0 && previousIndices[0] != 0) {
+      affected[0] = true;
+    }
+
+    // All the instructions reachable from an affected instruction are affected too.
+    int[] insnsToVisit = new int[insnListSize];
+    int numInsnsToVisit = 0;
+    for (int i = 0; i < insnListSize; ++i) {
+      if (affected[i]) {
+        insnsToVisit[numInsnsToVisit++] = i;
+      }
+    }
+    while (numInsnsToVisit > 0) {
+      for (int successor : getSuccessors(insnsToVisit[--numInsnsToVisit])) {
+        if (!affected[successor]) {
+          affected[successor] = true;
+          insnsToVisit[numInsnsToVisit++] = successor;
+        }
+      }
+    }
+
+    // Reuse the previous frames of the unaffected instructions, and execute again those which have
+    // an affected successor, in order to recompute the frames of the affected instructions.
+    for (int i = 0; i < insnListSize; ++i) {
+      if (!affected[i]) {
+        frames[i] = previousFrames[previousIndices[i]];
+      }
+    }
+    for (int i = 0; i < insnListSize; ++i) {
+      if (!affected[i] && frames[i] != null) {
+        for (int successor : getSuccessors(i)) {
+          if (affected[successor]) {
+            inInstructionsToProcess[i] = true;
+            instructionsToProcess[numInstructionsToProcess++] = i;
+            break;
+          }
+        }
+      }
+    }
+    Frame<V> currentFrame = computeInitialFrame(owner, method);
+    if (insnListSize > 0 && affected[0]) {
+      merge(0, currentFrame, null);
+    }
+    init(owner, method);
+    executeInstructions(method, currentFrame);
+    methodSnapshot = new MethodSnapshot(owner, method, handlers);
+    return frames;
+  }
+
+  /**
+   * Initializes the data structures used to analyze the given method.
+   *
+   * @param method the method to be analyzed.
+   */
+  @SuppressWarnings("unchecked")
+  private void initAnalysis(final MethodNode method) {
+    insnList = method.instructions;
+    insnListSize = insnList.size();
+    handlers = (List<TryCatchBlockNode>[]) new List<?>[insnListSize];
+    frames = (Frame<V>[]) new Frame<?>[insnListSize];
+    subroutines = new Subroutine[insnListSize];
+    inInstructionsToProcess = new boolean[insnListSize];
+    instructionsToProcess = new int[insnListSize];
+    numInstructionsToProcess = 0;
+
+    // For each exception handler, and each instruction within its range, record in 'handlers' the
+    // fact that execution can flow from this instruction to the exception handler.
+    for (int i = 0; i < method.tryCatchBlocks.size(); ++i) {
+      TryCatchBlockNode tryCatchBlock = method.tryCatchBlocks.get(i);
+      int startIndex = insnList.indexOf(tryCatchBlock.start);
+      int endIndex = insnList.indexOf(tryCatchBlock.end);
+      for (int j = startIndex; j < endIndex; ++j) {
+        List<TryCatchBlockNode> insnHandlers = handlers[j];
+        if (insnHandlers == null) {
+          insnHandlers = new ArrayList<>();
+          handlers[j] = insnHandlers;
+        }
+        insnHandlers.add(tryCatchBlock);
+      }
+    }
+  }
 
+  /**
+   * Simulates the execution of the instructions that remain to process, until a fix point is
+   * reached.
+   *
+   * @param method the method being analyzed.
+   * @param currentFrame a frame which can be used to simulate the execution of each instruction.
+   * @throws AnalyzerException if a problem occurs during the analysis.
+   */
+  private void executeInstructions(final MethodNode method, final Frame<V> currentFrame)
+      throws AnalyzerException {
     // Control flow analysis.
     while (numInstructionsToProcess > 0) {
       // Get and remove one instruction from the list of instructions to process.
@@ -296,8 +455,115 @@ public class Analyzer<V extends Value> implements Opcodes {
             insnNode, "Error at instruction " + insnIndex + ": " + e.getMessage(), e);
       }
     }
+  }
 
-    return frames;
+  /**
+   * Returns the index of the given instruction in the currently analyzed method.
+   *
+   * @param insnNode an instruction.
+   * @return the index of 'insnNode' in {@link #insnList}, or -1 if it does not belong to this list.
+   */
+  private int getIndex(final AbstractInsnNode insnNode) {
+    int insnIndex = insnList.indexOf(insnNode);
+    return insnIndex >= 0 && insnIndex < insnListSize && insnList.get(insnIndex) == insnNode
+        ? insnIndex
+        : -1;
+  }
+
+  /**
+   * Marks as affected the instructions of the currently analyzed method which were a successor of
+   * the given instruction, in the control flow graph of the previous analysis.
+   *
+   * @param previousMethod the method state of the previous analysis.
+   * @param previousInsnIndex the index of an instruction in the previous analysis.
+   * @param affected the affected instructions of the currently analyzed method.
+   */
+  private void markPreviousSuccessors(
+      final MethodSnapshot previousMethod, final int previousInsnIndex, final boolean[] affected) {
+    List<AbstractInsnNode> previousSuccessors = new ArrayList<>();
+    if (previousInsnIndex + 1 < previousMethod.insns.length) {
+      previousSuccessors.add(previousMethod.insns[previousInsnIndex + 1]);
+    }
+    LabelNode[] targets = previousMethod.targets[previousInsnIndex];
+    if (targets != null) {
+      previousSuccessors.addAll(Arrays.asList(targets));
+    }
+    List<TryCatchBlockNode> insnHandlers = previousMethod.handlers[previousInsnIndex];
+    if (insnHandlers != null) {
+      for (TryCatchBlockNode tryCatchBlock : insnHandlers) {
+        previousSuccessors.add(tryCatchBlock.handler);
+      }
+    }
+    for (AbstractInsnNode previousSuccessor : previousSuccessors) {
+      int insnIndex = getIndex(previousSuccessor);
+      if (insnIndex != -1) {
+        affected[insnIndex] = true;
+      }
+    }
+  }
+
+  /**
+   * Returns whether the given exception handler lists are equal.
+   *
+   * @param handlers the exception handlers of an instruction, or {@literal null}.
+   * @param otherHandlers the exception handlers of another instruction, or {@literal null}.
+   * @return whether 'handlers' and 'otherHandlers' contain the same try catch blocks.
+   */
+  private static boolean sameHandlers(
+      final List<TryCatchBlockNode> handlers, final List<TryCatchBlockNode> otherHandlers) {
+    return handlers == null ? otherHandlers == null : handlers.equals(otherHandlers);
+  }
+
+  /**
+   * Returns the successors of the given instruction in the control flow graph of the currently
+   * analyzed method, which must not contain JSR or RET instructions.
+   *
+   * @param insnIndex the index of an instruction of the currently analyzed method.
+   * @return the indices of the successors of this instruction (possibly with duplicates).
+   */
+  private int[] getSuccessors(final int insnIndex) {
+    AbstractInsnNode insnNode = insnList.get(insnIndex);
+    int insnOpcode = insnNode.getOpcode();
+    List<LabelNode> targets = Collections.emptyList();
+    LabelNode defaultTarget = null;
+    boolean fallThrough = true;
+    if (insnNode instanceof JumpInsnNode) {
+      defaultTarget = ((JumpInsnNode) insnNode).label;
+      fallThrough = insnOpcode != GOTO;
+    } else if (insnNode instanceof LookupSwitchInsnNode) {
+      defaultTarget = ((LookupSwitchInsnNode) insnNode).dflt;
+      targets = ((LookupSwitchInsnNode) insnNode).labels;
+      fallThrough = false;
+    } else if (insnNode instanceof TableSwitchInsnNode) {
+      defaultTarget = ((TableSwitchInsnNode) insnNode).dflt;
+      targets = ((TableSwitchInsnNode) insnNode).labels;
+      fallThrough = false;
+    } else if (insnOpcode == ATHROW || (insnOpcode >= IRETURN && insnOpcode <= RETURN)) {
+      fallThrough = false;
+    }
+    fallThrough &= insnIndex + 1 < insnListSize;
+    List<TryCatchBlockNode> insnHandlers = handlers[insnIndex];
+    int numHandlers = insnHandlers == null ? 0 : insnHandlers.size();
+    int[] successors =
+        new int
+            [(fallThrough ? 1 : 0)
+                + (defaultTarget == null ? 0 : 1)
+                + targets.size()
+                + numHandlers];
+    int numSuccessors = 0;
+    if (fallThrough) {
+      successors[numSuccessors++] = insnIndex + 1;
+    }
+    if (defaultTarget != null) {
+      successors[numSuccessors++] = insnList.indexOf(defaultTarget);
+    }
+    for (LabelNode target : targets) {
+      successors[numSuccessors++] = insnList.indexOf(target);
+    }
+    for (int i = 0; i < numHandlers; ++i) {
+      successors[numSuccessors++] = insnList.indexOf(insnHandlers.get(i).handler);
+    }
+    return successors;
   }
 
   /**
@@ -669,4 +935,137 @@ public class Analyzer<V extends Value> implements Opcodes {
       instructionsToProcess[numInstructionsToProcess++] = insnIndex;
     }
   }
+
+  /** The state of an analyzed method, at the time of its analysis. */
+  private static final class MethodSnapshot {
+
+    /** The internal name of the class to which {@link #method} belongs. */
+    final String owner;
+
+    /** The analyzed method. */
+    final MethodNode method;
+
+    /** The access flags of {@link #method}. */
+    final int access;
+
+    /** The descriptor of {@link #method}. */
+    final String descriptor;
+
+    /** The maxLocals field of {@link #method}. */
+    final int maxLocals;
+
+    /** The maxStack field of {@link #method}. */
+    final int maxStack;
+
+    /** The instructions of {@link #method}. */
+    final AbstractInsnNode[] insns;
+
+    /** The jump or switch targets of each instruction in {@link #insns}, or {@literal null}. */
+    final LabelNode[][] targets;
+
+    /** The exception handlers of each instruction in {@link #insns}. */
+    final List<TryCatchBlockNode>[] handlers;
+
+    /** The try catch blocks of {@link #method}. */
+    final TryCatchBlockNode[] tryCatchBlocks;
+
+    /** The start, end and handler labels of each try catch block in {@link #tryCatchBlocks}. */
+    final LabelNode[] tryCatchBlockLabels;
+
+    /** The type of each try catch block in {@link #tryCatchBlocks}. */
+    final String[] tryCatchBlockTypes;
+
+    /** Whether {@link #insns} contains JSR or RET instructions. */
+    final boolean hasSubroutines;
+
+    MethodSnapshot(
+        final String owner, final MethodNode method, final List<TryCatchBlockNode>[] handlers) {
+      this.owner = owner;
+      this.method = method;
+      this.access = method.access;
+      this.descriptor = method.desc;
+      this.maxLocals = method.maxLocals;
+      this.maxStack = method.maxStack;
+      this.insns = method.instructions.toArray();
+      this.targets = new LabelNode[insns.length][];
+      this.handlers = handlers;
+      boolean hasJsrOrRet = false;
+      for (int i = 0; i < insns.length; ++i) {
+        AbstractInsnNode insnNode = insns[i];
+        if (insnNode instanceof JumpInsnNode) {
+          targets[i] = new LabelNode[] {((JumpInsnNode) insnNode).label};
+        } else if (insnNode instanceof LookupSwitchInsnNode) {
+          targets[i] =
+              getSwitchTargets(
+                  ((LookupSwitchInsnNode) insnNode).dflt, ((LookupSwitchInsnNode) insnNode).labels);
+        } else if (insnNode instanceof TableSwitchInsnNode) {
+          targets[i] =
+              getSwitchTargets(
+                  ((TableSwitchInsnNode) insnNode).dflt, ((TableSwitchInsnNode) insnNode).labels);
+        }
+        hasJsrOrRet |= insnNode.getOpcode() == JSR || insnNode.getOpcode() == RET;
+      }
+      this.hasSubroutines = hasJsrOrRet;
+      int numTryCatchBlocks = method.tryCatchBlocks.size();
+      this.tryCatchBlocks = new TryCatchBlockNode[numTryCatchBlocks];
+      this.tryCatchBlockLabels = new LabelNode[3 * numTryCatchBlocks];
+      this.tryCatchBlockTypes = new String[numTryCatchBlocks];
+      for (int i = 0; i < numTryCatchBlocks; ++i) {
+        TryCatchBlockNode tryCatchBlock = method.tryCatchBlocks.get(i);
+        tryCatchBlocks[i] = tryCatchBlock;
+        tryCatchBlockLabels[3 * i] = tryCatchBlock.start;
+        tryCatchBlockLabels[3 * i + 1] = tryCatchBlock.end;
+        tryCatchBlockLabels[3 * i + 2] = tryCatchBlock.handler;
+        tryCatchBlockTypes[i] = tryCatchBlock.type;
+      }
+    }
+
+    private static LabelNode[] getSwitchTargets(
+        final LabelNode defaultTarget, final List<LabelNode> targets) {
+      LabelNode[] switchTargets = new LabelNode[targets.size() + 1];
+      switchTargets[0] = defaultTarget;
+      for (int i = 0; i < targets.size(); ++i) {
+        switchTargets[i + 1] = targets.get(i);
+      }
+      return switchTargets;
+    }
+
+    /**
+     * Returns whether the given method can be analyzed incrementally, starting from this snapshot.
+     *
+     * @param owner the internal name of the class to which 'method' belongs.
+     * @param method a method.
+     * @return whether 'method' is {@link #method}, with the same header and try catch blocks as in
+     *     this snapshot, and without JSR or RET instructions.
+     */
+    boolean canBeReanalyzed(final String owner, final MethodNode method) {
+      if (method != this.method
+          || !owner.equals(this.owner)
+          || method.access != access
+          || !method.desc.equals(descriptor)
+          || method.maxLocals != maxLocals
+          || method.maxStack != maxStack
+          || method.tryCatchBlocks.size() != tryCatchBlocks.length
+          || hasSubroutines) {
+        return false;
+      }
+      for (int i = 0; i < tryCatchBlocks.length; ++i) {
+        TryCatchBlockNode tryCatchBlock = method.tryCatchBlocks.get(i);
+        String type = tryCatchBlockTypes[i];
+        if (tryCatchBlock != tryCatchBlocks[i]
+            || tryCatchBlock.start != tryCatchBlockLabels[3 * i]
+            || tryCatchBlock.end != tryCatchBlockLabels[3 * i + 1]
+            || tryCatchBlock.handler != tryCatchBlockLabels[3 * i + 2]
+            || (type == null ? tryCatchBlock.type != null : !type.equals(tryCatchBlock.type))) {
+          return false;
+        }
+      }
+      for (AbstractInsnNode insnNode : method.instructions) {
+        if (insnNode.getOpcode() == JSR || insnNode.getOpcode() == RET) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
 }
@@ -0,0 +1,557 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree.analysis;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LookupSwitchInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TableSwitchInsnNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+
+/**
+ * A semantic bytecode analyzer which stores its frames in a flat int array, instead of using one
+ * {@link Frame} object per instruction. Each value is encoded with its index in a table of the
+ * distinct values of the analyzed method, and the frames of all the instructions of this method are
+ * stored in a single int array. These tables are cleared and reused from one method to the next. A
+ * single {@link Frame} is used to simulate the execution of each instruction with the {@link
+ * Interpreter}.
+ *
+ * <p>This analyzer is therefore well suited to interpreters using few distinct values, such as
+ * {@link BasicInterpreter}, {@link BasicVerifier} or {@link SimpleVerifier}, for which it can
+ * analyze large methods with almost no garbage. It gives the same results as an {@link Analyzer}
+ * using the same interpreter (but only one {@link Value} instance is kept for a set of equal
+ * values). The frames of the last analyzed method can be read with {@link #getLocal}, {@link
+ * #getStack} and {@link #getFrame}. <i>Methods with JSR or RET instructions, or with an unknown
+ * maxStack, are analyzed with an {@link Analyzer} instead, and the resulting frames are converted
+ * to the flat representation.</i>
+ *
+ * @param <V> type of the Value used for the analysis.
+ */
+public class FlatAnalyzer<V extends Value> implements Opcodes {
+
+  /** The stack size of the frames of unreachable instructions. */
+  private static final int UNREACHABLE = -1;
+
+  /** The interpreter to use to symbolically interpret the bytecode instructions. */
+  private final Interpreter<V> interpreter;
+
+  /** The distinct values used in the currently analyzed method, indexed by their id. */
+  private final List<V> values;
+
+  /** The ids of the values in {@link #values}. */
+  private final Map<V, Integer> valueIds;
+
+  /** The instructions of the currently analyzed method. */
+  private InsnList insnList;
+
+  /** The size of {@link #insnList}. */
+  private int insnListSize;
+
+  /** The try catch blocks of the currently analyzed method. */
+  private List<TryCatchBlockNode> tryCatchBlocks;
+
+  /**
+   * The start, end and handler instruction index of each try catch block in {@link
+   * #tryCatchBlocks}.
+   */
+  private int[] tryCatchBlockIndices;
+
+  /** The exception type caught by each try catch block in {@link #tryCatchBlocks}. */
+  private Type[] catchTypes;
+
+  /** The number of local variables of the currently analyzed method. */
+  private int numLocals;
+
+  /** The maximum stack size of the currently analyzed method. */
+  private int maxStack;
+
+  /**
+   * The number of elements used in {@link #frameData} for each frame. Each frame contains its stack
+   * size (or {@link #UNREACHABLE}), followed by the value ids of its local variables and of its
+   * operand stack.
+   */
+  private int frameSize;
+
+  /** The frames of the currently analyzed method, with {@link #frameSize} elements per frame. */
+  private int[] frameData;
+
+  /** The encoded frame resulting from the execution of the current instruction. */
+  private int[] currentFrame;
+
+  /** The frame used to simulate the execution of each instruction. */
+  private Frame<V> executionFrame;
+
+  /** The expected return type of the currently analyzed method. */
+  private V returnValue;
+
+  /** The instructions that remain to process (one boolean per instruction index). */
+  private boolean[] inInstructionsToProcess;
+
+  /** The indices of the instructions that remain to process in the currently analyzed method. */
+  private int[] instructionsToProcess;
+
+  /** The number of instructions that remain to process in the currently analyzed method. */
+  private int numInstructionsToProcess;
+
+  /**
+   * Constructs a new {@link FlatAnalyzer}.
+   *
+   * @param interpreter the interpreter to use to symbolically interpret the bytecode instructions.
+   */
+  public FlatAnalyzer(final Interpreter<V> interpreter) {
+    this.interpreter = interpreter;
+    this.values = new ArrayList<>();
+    this.valueIds = new HashMap<>();
+    this.tryCatchBlockIndices = new int[0];
+    this.frameData = new int[0];
+    this.currentFrame = new int[0];
+    this.inInstructionsToProcess = new boolean[0];
+    this.instructionsToProcess = new int[0];
+  }
+
+  // -----------------------------------------------------------------------------------------------
+  // Analysis
+  // -----------------------------------------------------------------------------------------------
+
+  /**
+   * Analyzes the given method. The resulting frames replace those of the previously analyzed
+   * method.
+   *
+   * @param owner the internal name of the class to which 'method' belongs.
+   * @param method the method to be analyzed. The maxStack and maxLocals fields must have correct
+   *     values.
+   * @throws AnalyzerException if a problem occurs during the analysis.
+   */
+  public void analyze(final String owner, final MethodNode method) throws AnalyzerException {
+    insnList = method.instructions;
+    insnListSize = 0;
+    values.clear();
+    valueIds.clear();
+    if ((method.access & (ACC_ABSTRACT | ACC_NATIVE)) != 0) {
+      return;
+    }
+    returnValue = interpreter.newReturnTypeValue(Type.getReturnType(method.desc));
+    boolean hasSubroutines = false;
+    for (AbstractInsnNode insnNode : insnList) {
+      hasSubroutines |= insnNode.getOpcode() == JSR || insnNode.getOpcode() == RET;
+    }
+    if (hasSubroutines || method.maxStack < 0) {
+      convertFrames(new Analyzer<V>(interpreter).analyze(owner, method));
+      return;
+    }
+    initFrames(insnList.size(), method.maxLocals, method.maxStack);
+    if (executionFrame == null
+        || executionFrame.getLocals() != numLocals
+        || executionFrame.getMaxStackSize() != maxStack) {
+      executionFrame = new Frame<>(numLocals, maxStack);
+    }
+    executionFrame.setReturn(returnValue);
+    if (inInstructionsToProcess.length < insnListSize) {
+      inInstructionsToProcess = new boolean[insnListSize];
+      instructionsToProcess = new int[insnListSize];
+    }
+    numInstructionsToProcess = 0;
+
+    // Compute the instruction ranges and the exception type of each try catch block.
+    tryCatchBlocks = method.tryCatchBlocks;
+    int numTryCatchBlocks = tryCatchBlocks.size();
+    if (tryCatchBlockIndices.length < 3 * numTryCatchBlocks) {
+      tryCatchBlockIndices = new int[3 * numTryCatchBlocks];
+    }
+    catchTypes = new Type[numTryCatchBlocks];
+    for (int i = 0; i < numTryCatchBlocks; ++i) {
+      TryCatchBlockNode tryCatchBlock = tryCatchBlocks.get(i);
+      tryCatchBlockIndices[3 * i] = insnList.indexOf(tryCatchBlock.start);
+      tryCatchBlockIndices[3 * i + 1] = insnList.indexOf(tryCatchBlock.end);
+      tryCatchBlockIndices[3 * i + 2] = insnList.indexOf(tryCatchBlock.handler);
+      catchTypes[i] =
+          Type.getObjectType(
+              tryCatchBlock.type == null ? "java/lang/Throwable" : tryCatchBlock.type);
+    }
+
+    // Compute the initial frame.
+    executionFrame.clearStack();
+    int currentLocal = 0;
+    boolean isInstanceMethod = (method.access & ACC_STATIC) == 0;
+    if (isInstanceMethod) {
+      Type ownerType = Type.getObjectType(owner);
+      executionFrame.setLocal(
+          currentLocal, interpreter.newParameterValue(isInstanceMethod, currentLocal, ownerType));
+      currentLocal++;
+    }
+    for (Type argumentType : Type.getArgumentTypes(method.desc)) {
+      executionFrame.setLocal(
+          currentLocal,
+          interpreter.newParameterValue(isInstanceMethod, currentLocal, argumentType));
+      currentLocal++;
+      if (argumentType.getSize() == 2) {
+        executionFrame.setLocal(currentLocal, interpreter.newEmptyValue(currentLocal));
+        currentLocal++;
+      }
+    }
+    while (currentLocal < numLocals) {
+      executionFrame.setLocal(currentLocal, interpreter.newEmptyValue(currentLocal));
+      currentLocal++;
+    }
+    encodeExecutionFrame();
+    merge(0, currentFrame, 0);
+
+    // Control flow analysis.
+    while (numInstructionsToProcess > 0) {
+      // Get and remove one instruction from the list of instructions to process.
+      int insnIndex = instructionsToProcess[--numInstructionsToProcess];
+      int frameOffset = insnIndex * frameSize;
+      inInstructionsToProcess[insnIndex] = false;
+
+      // Simulate the execution of this instruction.
+      AbstractInsnNode insnNode = null;
+      try {
+        insnNode = insnList.get(insnIndex);
+        int insnOpcode = insnNode.getOpcode();
+        int insnType = insnNode.getType();
+
+        if (insnType == AbstractInsnNode.LABEL
+            || insnType == AbstractInsnNode.LINE
+            || insnType == AbstractInsnNode.FRAME) {
+          merge(insnIndex + 1, frameData, frameOffset);
+        } else {
+          decodeExecutionFrame(frameOffset);
+          executionFrame.execute(insnNode, interpreter);
+          encodeExecutionFrame();
+
+          if (insnNode instanceof JumpInsnNode) {
+            if (insnOpcode != GOTO) {
+              merge(insnIndex + 1, currentFrame, 0);
+            }
+            merge(insnList.indexOf(((JumpInsnNode) insnNode).label), currentFrame, 0);
+          } else if (insnNode instanceof LookupSwitchInsnNode) {
+            LookupSwitchInsnNode lookupSwitchInsn = (LookupSwitchInsnNode) insnNode;
+            merge(insnList.indexOf(lookupSwitchInsn.dflt), currentFrame, 0);
+            for (int i = 0; i < lookupSwitchInsn.labels.size(); ++i) {
+              LabelNode label = lookupSwitchInsn.labels.get(i);
+              merge(insnList.indexOf(label), currentFrame, 0);
+            }
+          } else if (insnNode instanceof TableSwitchInsnNode) {
+            TableSwitchInsnNode tableSwitchInsn = (TableSwitchInsnNode) insnNode;
+            merge(insnList.indexOf(tableSwitchInsn.dflt), currentFrame, 0);
+            for (int i = 0; i < tableSwitchInsn.labels.size(); ++i) {
+              LabelNode label = tableSwitchInsn.labels.get(i);
+              merge(insnList.indexOf(label), currentFrame, 0);
+            }
+          } else if (insnOpcode != ATHROW && (insnOpcode < IRETURN || insnOpcode > RETURN)) {
+            merge(insnIndex + 1, currentFrame, 0);
+          }
+        }
+
+        for (int i = 0; i < numTryCatchBlocks; ++i) {
+          if (insnIndex >= tryCatchBlockIndices[3 * i]
+              && insnIndex < tryCatchBlockIndices[3 * i + 1]) {
+            decodeExecutionFrame(frameOffset);
+            executionFrame.clearStack();
+            executionFrame.push(
+                interpreter.newExceptionValue(
+                    tryCatchBlocks.get(i), executionFrame, catchTypes[i]));
+            encodeExecutionFrame();
+            merge(tryCatchBlockIndices[3 * i + 2], currentFrame, 0);
+          }
+        }
+      } catch (AnalyzerException e) {
+        throw new AnalyzerException(
+            e.node, "Error at instruction " + insnIndex + ": " + e.getMessage(), e);
+      } catch (RuntimeException e) {
+        // DontCheck(IllegalCatch): consistent with Analyzer.
+        throw new AnalyzerException(
+            insnNode, "Error at instruction " + insnIndex + ": " + e.getMessage(), e);
+      }
+    }
+  }
+
+  /**
+   * Initializes {@link #frameData} to store unreachable frames with the given size.
+   *
+   * @param numFrames the number of frames to store.
+   * @param numLocals the number of local variables of each frame.
+   * @param maxStack the maximum stack size of each frame.
+   */
+  private void initFrames(final int numFrames, final int numLocals, final int maxStack) {
+    this.insnListSize = numFrames;
+    this.numLocals = numLocals;
+    this.maxStack = maxStack;
+    this.frameSize = 1 + numLocals + maxStack;
+    if (frameData.length < numFrames * frameSize) {
+      frameData = new int[numFrames * frameSize];
+    }
+    if (currentFrame.length < frameSize) {
+      currentFrame = new int[frameSize];
+    }
+    for (int i = 0; i < numFrames; ++i) {
+      frameData[i * frameSize] = UNREACHABLE;
+    }
+  }
+
+  /**
+   * Stores the given frames, computed by an {@link Analyzer}, in {@link #frameData}.
+   *
+   * @param frames the frames of the currently analyzed method.
+   */
+  private void convertFrames(final Frame<V>[] frames) {
+    int frameMaxStack = 0;
+    int frameNumLocals = 0;
+    for (Frame<V> frame : frames) {
+      if (frame != null) {
+        frameMaxStack = Math.max(frameMaxStack, frame.getStackSize());
+        frameNumLocals = frame.getLocals();
+      }
+    }
+    initFrames(frames.length, frameNumLocals, frameMaxStack);
+    for (int i = 0; i < frames.length; ++i) {
+      if (frames[i] != null) {
+        encodeFrame(frames[i], frameData, i * frameSize);
+      }
+    }
+  }
+
+  /**
+   * Merges the given encoded frame into the frame of the given instruction, and adds this
+   * instruction to the list of instructions to process if its frame has changed.
+   *
+   * @param insnIndex the index of the instruction whose frame must be updated.
+   * @param frame an array containing an encoded frame.
+   * @param frameOffset the offset of the encoded frame in 'frame'.
+   * @throws AnalyzerException if the frames have incompatible stack heights.
+   */
+  private void merge(final int insnIndex, final int[] frame, final int frameOffset)
+      throws AnalyzerException {
+    if (insnIndex >= insnListSize) {
+      throw new AnalyzerException(null, "Execution can fall off the end of the code");
+    }
+    int offset = insnIndex * frameSize;
+    int stackSize = frame[frameOffset];
+    boolean changed;
+    if (frameData[offset] == UNREACHABLE) {
+      System.arraycopy(frame, frameOffset, frameData, offset, 1 + numLocals + stackSize);
+      changed = true;
+    } else {
+      if (frameData[offset] != stackSize) {
+        throw new AnalyzerException(null, "Incompatible stack heights");
+      }
+      changed = false;
+      for (int i = 1; i <= numLocals + stackSize; ++i) {
+        int valueId = frameData[offset + i];
+        int otherValueId = frame[frameOffset + i];
+        if (valueId != otherValueId) {
+          V value = values.get(valueId);
+          V mergedValue = interpreter.merge(value, values.get(otherValueId));
+          if (!mergedValue.equals(value)) {
+            frameData[offset + i] = getValueId(mergedValue);
+            changed = true;
+          }
+        }
+      }
+    }
+    if (changed && !inInstructionsToProcess[insnIndex]) {
+      inInstructionsToProcess[insnIndex] = true;
+      instructionsToProcess[numInstructionsToProcess++] = insnIndex;
+    }
+  }
+
+  /**
+   * Sets {@link #executionFrame} to the decoded value of an encoded frame of {@link #frameData}.
+   *
+   * @param frameOffset the offset of an encoded frame in {@link #frameData}.
+   */
+  private void decodeExecutionFrame(final int frameOffset) {
+    executionFrame.clearStack();
+    for (int i = 0; i < numLocals; ++i) {
+      executionFrame.setLocal(i, values.get(frameData[frameOffset + 1 + i]));
+    }
+    int stackSize = frameData[frameOffset];
+    for (int i = 0; i < stackSize; ++i) {
+      executionFrame.push(values.get(frameData[frameOffset + 1 + numLocals + i]));
+    }
+  }
+
+  /** Sets {@link #currentFrame} to the encoded value of {@link #executionFrame}. */
+  private void encodeExecutionFrame() {
+    encodeFrame(executionFrame, currentFrame, 0);
+  }
+
+  /**
+   * Encodes the given frame in the given array.
+   *
+   * @param frame a frame.
+   * @param output where the encoded frame must be stored.
+   * @param offset the offset in 'output' where the encoded frame must be stored.
+   */
+  private void encodeFrame(final Frame<V> frame, final int[] output, final int offset) {
+    int stackSize = frame.getStackSize();
+    output[offset] = stackSize;
+    for (int i = 0; i < numLocals; ++i) {
+      output[offset + 1 + i] = getValueId(frame.getLocal(i));
+    }
+    for (int i = 0; i < stackSize; ++i) {
+      output[offset + 1 + numLocals + i] = getValueId(frame.getStack(i));
+    }
+  }
+
+  /**
+   * Returns the id of the given value, after adding it to {@link #values} if necessary.
+   *
+   * @param value a value (possibly {@literal null}).
+   * @return the index of a value equal to 'value' in {@link #values}.
+   */
+  private int getValueId(final V value) {
+    Integer valueId = valueIds.get(value);
+    if (valueId == null) {
+      valueId = values.size();
+      values.add(value);
+      valueIds.put(value, valueId);
+    }
+    return valueId;
+  }
+
+  // -----------------------------------------------------------------------------------------------
+  // Accessors for the frames of the last analyzed method
+  // -----------------------------------------------------------------------------------------------
+
+  /**
+   * Returns whether an instruction of the last analyzed method can be reached.
+   *
+   * @param insnIndex the index of an instruction of the last analyzed method.
+   * @return {@literal true} if the instruction can be reached, {@literal false} for dead code.
+   * @throws IndexOutOfBoundsException if the instruction does not exist.
+   */
+  public boolean isReachable(final int insnIndex) {
+    return frameData[getFrameOffset(insnIndex)] != UNREACHABLE;
+  }
+
+  /**
+   * Returns the number of local variables in the frames of the last analyzed method.
+   *
+   * @return the number of local variables in the frames of the last analyzed method. Long and
+   *     double values are represented with two elements.
+   */
+  public int getLocals() {
+    return numLocals;
+  }
+
+  /**
+   * Returns the operand stack size of the frame of an instruction of the last analyzed method.
+   *
+   * @param insnIndex the index of an instruction of the last analyzed method.
+   * @return the number of values in the operand stack before this instruction is executed, or -1 if
+   *     this instruction cannot be reached. Long and double values are represented with a single
+   *     element.
+   * @throws IndexOutOfBoundsException if the instruction does not exist.
+   */
+  public int getStackSize(final int insnIndex) {
+    return frameData[getFrameOffset(insnIndex)];
+  }
+
+  /**
+   * Returns the value of a local variable, in the frame of an instruction of the last analyzed
+   * method.
+   *
+   * @param insnIndex the index of a reachable instruction of the last analyzed method.
+   * @param index a local variable index.
+   * @return the value of the given local variable before this instruction is executed.
+   * @throws IndexOutOfBoundsException if the instruction or the variable does not exist.
+   */
+  public V getLocal(final int insnIndex, final int index) {
+    int frameOffset = getFrameOffset(insnIndex);
+    if (frameData[frameOffset] == UNREACHABLE || index < 0 || index >= numLocals) {
+      throw new IndexOutOfBoundsException("Trying to get an inexistant local variable " + index);
+    }
+    return values.get(frameData[frameOffset + 1 + index]);
+  }
+
+  /**
+   * Returns the value of an operand stack slot, in the frame of an instruction of the last analyzed
+   * method.
+   *
+   * @param insnIndex the index of a reachable instruction of the last analyzed method.
+   * @param index the index of an operand stack slot (0 for the bottom of the stack).
+   * @return the value of the given operand stack slot before this instruction is executed.
+   * @throws IndexOutOfBoundsException if the instruction or the operand stack slot does not exist.
+   */
+  public V getStack(final int insnIndex, final int index) {
+    int frameOffset = getFrameOffset(insnIndex);
+    if (index < 0 || index >= frameData[frameOffset]) {
+      throw new IndexOutOfBoundsException("Trying to get an inexistant stack slot " + index);
+    }
+    return values.get(frameData[frameOffset + 1 + numLocals + index]);
+  }
+
+  /**
+   * Returns the frame of an instruction of the last analyzed method, as a new {@link Frame} object.
+   *
+   * @param insnIndex the index of an instruction of the last analyzed method.
+   * @return the symbolic state of the execution stack frame before this instruction is executed, or
+   *     {@literal null} if this instruction cannot be reached.
+   * @throws IndexOutOfBoundsException if the instruction does not exist.
+   */
+  public Frame<V> getFrame(final int insnIndex) {
+    int frameOffset = getFrameOffset(insnIndex);
+    if (frameData[frameOffset] == UNREACHABLE) {
+      return null;
+    }
+    Frame<V> frame = new Frame<>(numLocals, maxStack);
+    frame.setReturn(returnValue);
+    for (int i = 0; i < numLocals; ++i) {
+      frame.setLocal(i, values.get(frameData[frameOffset + 1 + i]));
+    }
+    for (int i = 0; i < frameData[frameOffset]; ++i) {
+      frame.push(values.get(frameData[frameOffset + 1 + numLocals + i]));
+    }
+    return frame;
+  }
+
+  /**
+   * Returns the offset of the frame of an instruction of the last analyzed method in {@link
+   * #frameData}.
+   *
+   * @param insnIndex the index of an instruction of the last analyzed method.
+   * @return the offset of the frame of this instruction in {@link #frameData}.
+   * @throws IndexOutOfBoundsException if the instruction does not exist.
+   */
+  private int getFrameOffset(final int insnIndex) {
+    if (insnIndex < 0 || insnIndex >= insnListSize) {
+      throw new IndexOutOfBoundsException("Trying to get an inexistant frame " + insnIndex);
+    }
+    return insnIndex * frameSize;
+  }
+}
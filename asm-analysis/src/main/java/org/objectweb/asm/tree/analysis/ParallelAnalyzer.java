@@ -0,0 +1,374 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree.analysis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import org.objectweb.asm.ClassHierarchy;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/**
+ * A driver analyzing the methods of one or more classes in parallel, with the tasks of an {@link
+ * ExecutorService}. Since {@link Analyzer} and {@link Interpreter} instances can't be shared
+ * between threads, each method is analyzed with a new {@link Analyzer}, created by an {@link
+ * AnalyzerFactory}. The analyzers can share thread safe objects, such as a {@link ClassHierarchy}
+ * (see {@link #newSimpleVerifierFactory}), so that the class hierarchy of the analyzed application
+ * is loaded only once. The results are returned in the same order as the analyzed methods, whatever
+ * the number of threads used to analyze them. At most {@link #getMaxPendingAnalyses} methods are
+ * submitted to the executor service and not yet consumed at any time, and the results can be
+ * consumed one by one, as soon as they are available, with {@link #analyze(Iterable,
+ * MethodAnalysisConsumer)}.
+ *
+ * @param <V> type of the Value used for the analysis.
+ */
+public class ParallelAnalyzer<V extends Value> {
+
+  /** The factory used to create the analyzer of each method. */
+  private final AnalyzerFactory<V> analyzerFactory;
+
+  /** The executor service used to analyze the methods. */
+  private final ExecutorService executorService;
+
+  /** The maximum number of analyses submitted to {@link #executorService} and not yet consumed. */
+  private final int maxPendingAnalyses;
+
+  /**
+   * Constructs a new {@link ParallelAnalyzer}, with at most 4 pending analyses per available
+   * processor.
+   *
+   * @param analyzerFactory the factory used to create the analyzer of each method. It is called
+   *     concurrently from the threads of executorService.
+   * @param executorService the executor service used to analyze the methods. It is not shut down by
+   *     this analyzer.
+   */
+  public ParallelAnalyzer(
+      final AnalyzerFactory<V> analyzerFactory, final ExecutorService executorService) {
+    this(analyzerFactory, executorService, 4 * Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Constructs a new {@link ParallelAnalyzer}.
+   *
+   * @param analyzerFactory the factory used to create the analyzer of each method. It is called
+   *     concurrently from the threads of executorService.
+   * @param executorService the executor service used to analyze the methods. It is not shut down by
+   *     this analyzer.
+   * @param maxPendingAnalyses the maximum number of analyses submitted to executorService and not
+   *     yet consumed. Must be strictly positive.
+   */
+  public ParallelAnalyzer(
+      final AnalyzerFactory<V> analyzerFactory,
+      final ExecutorService executorService,
+      final int maxPendingAnalyses) {
+    if (maxPendingAnalyses <= 0) {
+      throw new IllegalArgumentException("Invalid maxPendingAnalyses: " + maxPendingAnalyses);
+    }
+    this.analyzerFactory = analyzerFactory;
+    this.executorService = executorService;
+    this.maxPendingAnalyses = maxPendingAnalyses;
+  }
+
+  /**
+   * Returns the maximum number of analyses submitted to the executor service and not yet consumed.
+   *
+   * @return the maximum number of analyses submitted to the executor service and not yet consumed.
+   */
+  public int getMaxPendingAnalyses() {
+    return maxPendingAnalyses;
+  }
+
+  /**
+   * Returns a factory of analyzers using a {@link SimpleVerifier}, configured to verify the class
+   * of the analyzed method, and to use the given class hierarchy.
+   *
+   * @param classHierarchy the class hierarchy used by all the created verifiers, instead of loading
+   *     the referenced classes. It must be thread safe, like {@link
+   *     org.objectweb.asm.ClassFileHierarchy}.
+   * @return a factory of analyzers using a {@link SimpleVerifier}.
+   */
+  public static AnalyzerFactory<BasicValue> newSimpleVerifierFactory(
+      final ClassHierarchy classHierarchy) {
+    return new AnalyzerFactory<BasicValue>() {
+      @Override
+      public Analyzer<BasicValue> newAnalyzer(final ClassNode classNode) {
+        List<Type> interfaces = new ArrayList<>();
+        for (String interfaceName : classNode.interfaces) {
+          interfaces.add(Type.getObjectType(interfaceName));
+        }
+        SimpleVerifier simpleVerifier =
+            new SimpleVerifier(
+                Type.getObjectType(classNode.name),
+                classNode.superName == null ? null : Type.getObjectType(classNode.superName),
+                interfaces,
+                (classNode.access & Opcodes.ACC_INTERFACE) != 0);
+        simpleVerifier.setClassHierarchy(classHierarchy);
+        return new Analyzer<>(simpleVerifier);
+      }
+    };
+  }
+
+  /**
+   * Analyzes the methods of the given class in parallel.
+   *
+   * @param classNode the class whose methods must be analyzed.
+   * @return the analysis result of each method of the class, in the same order as in {@link
+   *     ClassNode#methods}.
+   * @throws InterruptedException if the current thread is interrupted while waiting for the
+   *     results. The pending analyses are then cancelled.
+   */
+  public List<MethodAnalysis<V>> analyze(final ClassNode classNode) throws InterruptedException {
+    return analyze(Collections.singletonList(classNode));
+  }
+
+  /**
+   * Analyzes the methods of the given classes in parallel. All the results are kept until the end
+   * of the analysis, see {@link #analyze(Iterable, MethodAnalysisConsumer)} to consume them one by
+   * one instead.
+   *
+   * @param classNodes the classes whose methods must be analyzed.
+   * @return the analysis result of each method of the given classes, class by class, in the order
+   *     of 'classNodes' and of {@link ClassNode#methods}.
+   * @throws InterruptedException if the current thread is interrupted while waiting for the
+   *     results. The pending analyses are then cancelled.
+   */
+  public List<MethodAnalysis<V>> analyze(final Iterable<ClassNode> classNodes)
+      throws InterruptedException {
+    final List<MethodAnalysis<V>> methodAnalyses = new ArrayList<>();
+    analyze(
+        classNodes,
+        new MethodAnalysisConsumer<V>() {
+          @Override
+          public void accept(final MethodAnalysis<V> methodAnalysis) {
+            methodAnalyses.add(methodAnalysis);
+          }
+        });
+    return methodAnalyses;
+  }
+
+  /**
+   * Analyzes the methods of the given classes in parallel, and passes each result to the given
+   * consumer, in the current thread, as soon as it is available. The results are consumed class by
+   * class, in the order of 'classNodes' and of {@link ClassNode#methods}. The classes are iterated
+   * lazily, and no more than {@link #getMaxPendingAnalyses} analyses are submitted and not yet
+   * consumed at any time, so that the memory used by this method does not depend on the number of
+   * analyzed methods.
+   *
+   * @param classNodes the classes whose methods must be analyzed.
+   * @param methodAnalysisConsumer the consumer of the analysis results. If it throws an exception,
+   *     the pending analyses are cancelled and this exception is thrown by this method.
+   * @throws InterruptedException if the current thread is interrupted while waiting for the
+   *     results. The pending analyses are then cancelled.
+   */
+  public void analyze(
+      final Iterable<ClassNode> classNodes, final MethodAnalysisConsumer<V> methodAnalysisConsumer)
+      throws InterruptedException {
+    LinkedList<Future<MethodAnalysis<V>>> pendingAnalyses = new LinkedList<>();
+    try {
+      for (final ClassNode classNode : classNodes) {
+        for (final MethodNode methodNode : classNode.methods) {
+          if (pendingAnalyses.size() == maxPendingAnalyses) {
+            methodAnalysisConsumer.accept(getResult(pendingAnalyses));
+          }
+          pendingAnalyses.add(
+              executorService.submit(
+                  new Callable<MethodAnalysis<V>>() {
+                    @Override
+                    public MethodAnalysis<V> call() {
+                      return analyze(classNode, methodNode);
+                    }
+                  }));
+        }
+      }
+      while (!pendingAnalyses.isEmpty()) {
+        methodAnalysisConsumer.accept(getResult(pendingAnalyses));
+      }
+    } finally {
+      cancel(pendingAnalyses);
+    }
+  }
+
+  /**
+   * Waits for the first pending analysis to complete, removes it, and returns its result.
+   *
+   * @param <V> type of the Value used for the analysis.
+   * @param pendingAnalyses some method analyses submitted to {@link #executorService}.
+   * @return the result of the first pending analysis.
+   * @throws InterruptedException if the current thread is interrupted while waiting for the result.
+   */
+  private static <V extends Value> MethodAnalysis<V> getResult(
+      final LinkedList<Future<MethodAnalysis<V>>> pendingAnalyses) throws InterruptedException {
+    MethodAnalysis<V> methodAnalysis;
+    try {
+      methodAnalysis = pendingAnalyses.getFirst().get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw (RuntimeException) cause;
+    }
+    pendingAnalyses.removeFirst();
+    return methodAnalysis;
+  }
+
+  /**
+   * Analyzes the given method, in the current thread.
+   *
+   * @param classNode the class to which 'methodNode' belongs.
+   * @param methodNode the method to be analyzed.
+   * @return the result of the analysis.
+   */
+  private MethodAnalysis<V> analyze(final ClassNode classNode, final MethodNode methodNode) {
+    Analyzer<V> analyzer = analyzerFactory.newAnalyzer(classNode);
+    try {
+      return new MethodAnalysis<V>(
+          classNode, methodNode, analyzer.analyze(classNode.name, methodNode), null);
+    } catch (AnalyzerException e) {
+      return new MethodAnalysis<V>(classNode, methodNode, null, e);
+    }
+  }
+
+  /**
+   * Cancels the given analyses.
+   *
+   * @param pendingAnalyses some method analyses submitted to {@link #executorService}.
+   */
+  private static void cancel(final List<? extends Future<?>> pendingAnalyses) {
+    for (Future<?> pendingAnalysis : pendingAnalyses) {
+      pendingAnalysis.cancel(false);
+    }
+  }
+
+  /**
+   * A consumer of method analysis results.
+   *
+   * @param <V> type of the Value used for the analysis.
+   */
+  public interface MethodAnalysisConsumer<V extends Value> {
+
+    /**
+     * Consumes the result of a method analysis.
+     *
+     * @param methodAnalysis the result of a method analysis.
+     */
+    void accept(MethodAnalysis<V> methodAnalysis);
+  }
+
+  /**
+   * A factory of {@link Analyzer}. Implementations must be thread safe.
+   *
+   * @param <V> type of the Value used for the analysis.
+   */
+  public interface AnalyzerFactory<V extends Value> {
+
+    /**
+     * Returns a new analyzer to analyze a method of the given class.
+     *
+     * @param classNode the class to which the analyzed method belongs.
+     * @return a new analyzer, with a new interpreter, which is used for a single method.
+     */
+    Analyzer<V> newAnalyzer(ClassNode classNode);
+  }
+
+  /**
+   * The result of the analysis of a method with a {@link ParallelAnalyzer}.
+   *
+   * @param <V> type of the Value used for the analysis.
+   */
+  public static final class MethodAnalysis<V extends Value> {
+
+    /** The class to which {@link #methodNode} belongs. */
+    private final ClassNode classNode;
+
+    /** The analyzed method. */
+    private final MethodNode methodNode;
+
+    /** The frames computed by the analysis, or {@literal null} if it failed. */
+    private final Frame<V>[] frames;
+
+    /** The exception thrown by the analysis, or {@literal null} if it succeeded. */
+    private final AnalyzerException exception;
+
+    MethodAnalysis(
+        final ClassNode classNode,
+        final MethodNode methodNode,
+        final Frame<V>[] frames,
+        final AnalyzerException exception) {
+      this.classNode = classNode;
+      this.methodNode = methodNode;
+      this.frames = frames;
+      this.exception = exception;
+    }
+
+    /**
+     * Returns the class to which the analyzed method belongs.
+     *
+     * @return the class to which the analyzed method belongs.
+     */
+    public ClassNode getClassNode() {
+      return classNode;
+    }
+
+    /**
+     * Returns the analyzed method.
+     *
+     * @return the analyzed method.
+     */
+    public MethodNode getMethodNode() {
+      return methodNode;
+    }
+
+    /**
+     * Returns the frames computed by the analysis.
+     *
+     * @return the frames computed by the analysis (see {@link Analyzer#analyze}), or {@literal
+     *     null} if the analysis failed.
+     */
+    public Frame<V>[] getFrames() {
+      return frames;
+    }
+
+    /**
+     * Returns the exception thrown by the analysis.
+     *
+     * @return the exception thrown by the analysis, or {@literal null} if it succeeded.
+     */
+    public AnalyzerException getException() {
+      return exception;
+    }
+  }
+}
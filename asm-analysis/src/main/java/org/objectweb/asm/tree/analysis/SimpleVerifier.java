@@ -28,6 +28,7 @@
 package org.objectweb.asm.tree.analysis;
 
 import java.util.List;
+import org.objectweb.asm.ClassHierarchy;
 import org.objectweb.asm.Type;
 
 /**
@@ -55,6 +56,12 @@ public class SimpleVerifier extends BasicVerifier {
   /** The loader to use to load the referenced classes. */
   private ClassLoader loader = getClass().getClassLoader();
 
+  /**
+   * The class hierarchy to use instead of loading the referenced classes, or {@literal null} to
+   * load them with {@link #loader}.
+   */
+  private ClassHierarchy classHierarchy;
+
   /**
    * Constructs a new {@link SimpleVerifier}. <i>Subclasses must not use this constructor</i>.
    * Instead, they must use the {@link #SimpleVerifier(int, Type, Type, List, boolean)} version.
@@ -140,6 +147,20 @@ public class SimpleVerifier extends BasicVerifier {
     this.loader = loader;
   }
 
+  /**
+   * Sets the {@link ClassHierarchy} to be used in {@link #isInterface}, {@link #getSuperClass} and
+   * {@link #isAssignableFrom}, instead of loading the referenced classes with {@link #getClass}.
+   * This avoids loading (and possibly initializing) the classes of the verified application, and
+   * allows a single cached class hierarchy (such as a {@link org.objectweb.asm.ClassFileHierarchy})
+   * to be shared between several verifiers, possibly used concurrently.
+   *
+   * @param classHierarchy the class hierarchy to use, or {@literal null} to load the referenced
+   *     classes with the class loader specified with {@link #setClassLoader}.
+   */
+  public void setClassHierarchy(final ClassHierarchy classHierarchy) {
+    this.classHierarchy = classHierarchy;
+  }
+
   @Override
   public BasicValue newValue(final Type type) {
     if (type == null) {
@@ -212,12 +233,14 @@ public class SimpleVerifier extends BasicVerifier {
         } else if (type.getSort() == Type.OBJECT || type.getSort() == Type.ARRAY) {
           if (isAssignableFrom(expectedType, type)) {
             return true;
-          } else if (getClass(expectedType).isInterface()) {
+          } else if (classHierarchy == null
+              ? getClass(expectedType).isInterface()
+              : isInterface(expectedType)) {
             // The merge of class or interface types can only yield class types (because it is not
             // possible in general to find an unambiguous common super interface, due to multiple
             // inheritance). Because of this limitation, we need to relax the subtyping check here
             // if 'value' is an interface.
-            return Object.class.isAssignableFrom(getClass(type));
+            return classHierarchy != null || Object.class.isAssignableFrom(getClass(type));
           } else {
             return false;
           }
@@ -290,8 +313,9 @@ public class SimpleVerifier extends BasicVerifier {
 
   /**
    * Returns whether the given type corresponds to the type of an interface. The default
-   * implementation of this method loads the class and uses the reflection API to return its result
-   * (unless the given type corresponds to the class being verified).
+   * implementation of this method uses the class hierarchy specified with {@link
+   * #setClassHierarchy} or, if there is none, loads the class and uses the reflection API to return
+   * its result (unless the given type corresponds to the class being verified).
    *
    * @param type a type.
    * @return whether 'type' corresponds to an interface.
@@ -300,13 +324,17 @@ public class SimpleVerifier extends BasicVerifier {
     if (currentClass != null && currentClass.equals(type)) {
       return isInterface;
     }
+    if (classHierarchy != null) {
+      return type.getSort() == Type.OBJECT && classHierarchy.isInterface(type.getInternalName());
+    }
     return getClass(type).isInterface();
   }
 
   /**
    * Returns the type corresponding to the super class of the given type. The default implementation
-   * of this method loads the class and uses the reflection API to return its result (unless the
-   * given type corresponds to the class being verified).
+   * of this method uses the class hierarchy specified with {@link #setClassHierarchy} or, if there
+   * is none, loads the class and uses the reflection API to return its result (unless the given
+   * type corresponds to the class being verified).
    *
    * @param type a type.
    * @return the type corresponding to the super class of 'type'.
@@ -315,6 +343,18 @@ public class SimpleVerifier extends BasicVerifier {
     if (currentClass != null && currentClass.equals(type)) {
       return currentSuperClass;
     }
+    if (classHierarchy != null) {
+      if (type.getSort() == Type.ARRAY) {
+        return Type.getObjectType("java/lang/Object");
+      }
+      // Same as Class.getSuperclass(), which returns null for interfaces.
+      String internalName = type.getInternalName();
+      if (classHierarchy.isInterface(internalName)) {
+        return null;
+      }
+      String superClass = classHierarchy.getSuperClass(internalName);
+      return superClass == null ? null : Type.getObjectType(superClass);
+    }
     Class<?> superClass = getClass(type).getSuperclass();
     return superClass == null ? null : Type.getType(superClass);
   }
@@ -322,9 +362,10 @@ public class SimpleVerifier extends BasicVerifier {
   /**
    * Returns whether the class corresponding to the first argument is either the same as, or is a
    * superclass or superinterface of the class corresponding to the second argument. The default
-   * implementation of this method loads the classes and uses the reflection API to return its
-   * result (unless the result can be computed from the class being verified, and the types of its
-   * super classes and implemented interfaces).
+   * implementation of this method uses the class hierarchy specified with {@link
+   * #setClassHierarchy} or, if there is none, loads the classes and uses the reflection API to
+   * return its result (unless the result can be computed from the class being verified, and the
+   * types of its super classes and implemented interfaces).
    *
    * @param type1 a type.
    * @param type2 another type.
@@ -358,9 +399,46 @@ public class SimpleVerifier extends BasicVerifier {
       }
       return false;
     }
+    if (classHierarchy != null) {
+      return isAssignableFromInHierarchy(type1, type2);
+    }
     return getClass(type1).isAssignableFrom(getClass(type2));
   }
 
+  /**
+   * Returns whether the class corresponding to the first argument is either the same as, or is a
+   * superclass or superinterface of the class corresponding to the second argument, using {@link
+   * #classHierarchy}. Array types are handled as specified in {@link Class#isAssignableFrom}.
+   *
+   * @param type1 a type.
+   * @param type2 another type, different from type1.
+   * @return whether the class corresponding to 'type1' is either the same as, or is a superclass or
+   *     superinterface of the class corresponding to 'type2'.
+   */
+  private boolean isAssignableFromInHierarchy(final Type type1, final Type type2) {
+    if (type1.getSort() == Type.ARRAY) {
+      if (type2.getSort() != Type.ARRAY) {
+        return false;
+      }
+      Type elementType1 = Type.getType(type1.getDescriptor().substring(1));
+      Type elementType2 = Type.getType(type2.getDescriptor().substring(1));
+      return isReference(elementType1)
+          && isReference(elementType2)
+          && isAssignableFrom(elementType1, elementType2);
+    }
+    if (type2.getSort() == Type.ARRAY) {
+      String internalName = type1.getInternalName();
+      return internalName.equals("java/lang/Object")
+          || internalName.equals("java/lang/Cloneable")
+          || internalName.equals("java/io/Serializable");
+    }
+    return classHierarchy.isAssignableFrom(type1.getInternalName(), type2.getInternalName());
+  }
+
+  private static boolean isReference(final Type type) {
+    return type.getSort() == Type.OBJECT || type.getSort() == Type.ARRAY;
+  }
+
   /**
    * Loads the class corresponding to the given type. The class is loaded with the class loader
    * specified with {@link #setClassLoader}, or with the class loader of this class if no class
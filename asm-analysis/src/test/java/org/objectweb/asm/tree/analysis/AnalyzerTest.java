@@ -29,9 +29,14 @@ package org.objectweb.asm.tree.analysis;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.Collections;
 import java.util.List;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
@@ -41,6 +46,9 @@ import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.test.AsmTest;
 import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
 import org.objectweb.asm.tree.MethodNode;
 
 /**
@@ -1130,10 +1138,122 @@ public class AnalyzerTest extends AsmTest {
     assertDoesNotThrow(() -> MethodNodeBuilder.buildClassWithMethod(methodNode).newInstance());
   }
 
+  @Test
+  public void testReanalyze_changedJumpTarget() throws AnalyzerException {
+    MethodNode methodNode =
+        new MethodNodeBuilder()
+            .iconst_0()
+            .istore(1)
+            .iconst_0()
+            .ifne(label1)
+            .aconst_null()
+            .astore(1)
+            .label(label1)
+            .nop()
+            .label(label2)
+            .vreturn()
+            .build();
+    Analyzer<MockValue> analyzer = newAnalyzer();
+    analyzer.analyze(CLASS_NAME, methodNode);
+    JumpInsnNode jumpInsnNode = (JumpInsnNode) methodNode.instructions.get(3);
+    jumpInsnNode.label = (LabelNode) label2.info;
+
+    Frame<MockValue>[] frames =
+        analyzer.reanalyze(CLASS_NAME, methodNode, Collections.singletonList(jumpInsnNode));
+
+    assertEquals(toString(newAnalyzer().analyze(CLASS_NAME, methodNode)), toString(frames));
+    assertEquals(MockValue.REFERENCE, frames[6].getLocal(1));
+    assertEquals(MockValue.TOP, frames[8].getLocal(1));
+  }
+
+  @Test
+  public void testReanalyze_insertedAndRemovedInsns() throws AnalyzerException {
+    MethodNode methodNode =
+        new MethodNodeBuilder()
+            .label(label0)
+            .aconst_null()
+            .astore(1)
+            .iconst_0()
+            .ifne(label1)
+            .go(label2)
+            .label(label1)
+            .iconst_0()
+            .istore(1)
+            .label(label2)
+            .vreturn()
+            .label(label3)
+            .pop()
+            .vreturn()
+            .trycatch(label0, label3, label3)
+            .build();
+    Analyzer<MockValue> analyzer = newAnalyzer();
+    Frame<MockValue>[] previousFrames = analyzer.analyze(CLASS_NAME, methodNode);
+    methodNode.instructions.remove(methodNode.instructions.get(5));
+    methodNode.instructions.insert((LabelNode) label2.info, new InsnNode(Opcodes.NOP));
+
+    Frame<MockValue>[] frames = analyzer.reanalyze(CLASS_NAME, methodNode, Collections.emptyList());
+
+    assertEquals(toString(newAnalyzer().analyze(CLASS_NAME, methodNode)), toString(frames));
+    assertSame(previousFrames[3], frames[3]);
+    assertEquals(MockValue.INT, frames[8].getLocal(1));
+    assertSame(analyzer.getFrames(), frames);
+  }
+
+  @Test
+  public void testReanalyze_insertedReturn() throws AnalyzerException {
+    MethodNode methodNode = new MethodNodeBuilder().iconst_0().pop().vreturn().build();
+    Analyzer<MockValue> analyzer = newAnalyzer();
+    analyzer.analyze(CLASS_NAME, methodNode);
+    methodNode.instructions.insert(
+        methodNode.instructions.getFirst(), new InsnNode(Opcodes.RETURN));
+
+    Frame<MockValue>[] frames = analyzer.reanalyze(CLASS_NAME, methodNode, Collections.emptyList());
+
+    assertEquals(toString(newAnalyzer().analyze(CLASS_NAME, methodNode)), toString(frames));
+    assertNull(frames[2]);
+    assertNull(frames[3]);
+  }
+
+  @Test
+  public void testReanalyze_fullAnalysis() throws AnalyzerException {
+    MethodNode methodNode =
+        new MethodNodeBuilder()
+            .label(label0)
+            .iconst_0()
+            .istore(1)
+            .label(label1)
+            .vreturn()
+            .label(label2)
+            .pop()
+            .vreturn()
+            .build();
+    MethodNode otherMethodNode = new MethodNodeBuilder().vreturn().build();
+    Analyzer<MockValue> analyzer = newAnalyzer();
+    Frame<MockValue>[] previousFrames = analyzer.analyze(CLASS_NAME, methodNode);
+
+    Frame<MockValue>[] otherFrames =
+        analyzer.reanalyze(CLASS_NAME, otherMethodNode, Collections.emptyList());
+    methodNode.visitTryCatchBlock(label0, label1, label2, null);
+    Frame<MockValue>[] frames = analyzer.reanalyze(CLASS_NAME, methodNode, Collections.emptyList());
+
+    assertEquals(1, otherFrames.length);
+    assertEquals(toString(newAnalyzer().analyze(CLASS_NAME, methodNode)), toString(frames));
+    assertNotSame(previousFrames[0], frames[0]);
+    assertNotNull(frames[6]);
+  }
+
   private static Analyzer<MockValue> newAnalyzer() {
     return new Analyzer<>(new MockInterpreter());
   }
 
+  private static String toString(final Frame<?>[] frames) {
+    StringBuilder stringBuilder = new StringBuilder();
+    for (Frame<?> frame : frames) {
+      stringBuilder.append(frame).append('\n');
+    }
+    return stringBuilder.toString();
+  }
+
   private static MethodMaxs computeMaxStackAndLocalsFromFrames(final Frame<?>[] frames) {
     int maxStack = 0;
     int maxLocals = 0;
@@ -37,6 +37,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.function.Executable;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.objectweb.asm.ClassFileHierarchy;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.Opcodes;
@@ -164,6 +165,61 @@ public class AnalyzerWithSimpleVerifierTest extends AsmTest {
     }
   }
 
+  /**
+   * Tests that the precompiled classes are analyzed in the same way with a SimpleVerifier using a
+   * ClassHierarchy as with the default SimpleVerifier, which loads classes.
+   *
+   * @throws AnalyzerException if the test class can't be analyzed.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testAnalyze_simpleVerifierWithClassHierarchy(
+      final PrecompiledClass classParameter, final Api apiParameter) throws AnalyzerException {
+    ClassNode classNode = new ClassNode();
+    new ClassReader(classParameter.getBytes()).accept(classNode, 0);
+    assumeFalse(classNode.methods.isEmpty());
+    Type currentClass = Type.getObjectType(classNode.name);
+    Type currentSuperClass = Type.getObjectType(classNode.superName);
+    boolean isInterface = (classNode.access & Opcodes.ACC_INTERFACE) != 0;
+    SimpleVerifier simpleVerifier =
+        new SimpleVerifier(currentClass, currentSuperClass, isInterface);
+    SimpleVerifier simpleVerifierWithHierarchy =
+        new SimpleVerifier(currentClass, currentSuperClass, isInterface);
+    simpleVerifierWithHierarchy.setClassHierarchy(new ClassFileHierarchy(null));
+
+    for (MethodNode methodNode : classNode.methods) {
+      Frame<BasicValue>[] frames =
+          new Analyzer<>(simpleVerifier).analyze(classNode.name, methodNode);
+      Frame<BasicValue>[] framesWithHierarchy =
+          new Analyzer<>(simpleVerifierWithHierarchy).analyze(classNode.name, methodNode);
+
+      assertEquals(toString(frames), toString(framesWithHierarchy));
+    }
+  }
+
+  @Test
+  public void testAnalyze_classNotFoundInClassHierarchy() {
+    Label loopLabel = new Label();
+    MethodNode methodNode =
+        new MethodNodeBuilder()
+            .aload(0)
+            .astore(1)
+            .label(loopLabel)
+            .aconst_null()
+            .typeInsn(Opcodes.CHECKCAST, "D")
+            .astore(1)
+            .go(loopLabel)
+            .build();
+    SimpleVerifier simpleVerifier =
+        new SimpleVerifier(Type.getType("LC;"), Type.getType("Ljava/lang/Number;"), false);
+    simpleVerifier.setClassHierarchy(new ClassFileHierarchy(null));
+
+    Executable analyze = () -> new Analyzer<>(simpleVerifier).analyze(CLASS_NAME, methodNode);
+
+    String message = assertThrows(AnalyzerException.class, analyze).getMessage();
+    assertTrue(message.contains("Type D not present"));
+  }
+
   /**
    * Checks that the merge of an ArrayList and an SQLException can be returned as an Iterable. The
    * merged type is recomputed by SimpleVerifier as Object (because of limitations of the merging
@@ -195,6 +251,14 @@ public class AnalyzerWithSimpleVerifierTest extends AsmTest {
     assertDoesNotThrow(() -> MethodNodeBuilder.buildClassWithMethod(methodNode).newInstance());
   }
 
+  private static String toString(final Frame<BasicValue>[] frames) {
+    StringBuilder stringBuilder = new StringBuilder();
+    for (Frame<BasicValue> frame : frames) {
+      stringBuilder.append(frame).append('\n');
+    }
+    return stringBuilder.toString();
+  }
+
   private static Analyzer<BasicValue> newAnalyzer() {
     return new Analyzer<>(
         new SimpleVerifier(Type.getType("LC;"), Type.getType("Ljava/lang/Number;"), false));
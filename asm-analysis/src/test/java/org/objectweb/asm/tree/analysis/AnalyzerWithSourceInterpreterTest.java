@@ -28,15 +28,21 @@
 package org.objectweb.asm.tree.analysis;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.util.Collections;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.test.AsmTest;
+import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.LineNumberNode;
 import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.VarInsnNode;
 
 /**
  * Unit tests for {@link Analyzer}, when used with a {@link SourceInterpreter}.
@@ -68,4 +74,52 @@ public class AnalyzerWithSourceInterpreterTest extends AsmTest {
       assertDoesNotThrow(() -> analyzer.analyze(classNode.name, methodNode));
     }
   }
+
+  /**
+   * Tests that the precompiled classes can be incrementally analyzed with a SourceInterpreter,
+   * after some of their instructions have been replaced or removed, with the same result as with a
+   * full analysis.
+   *
+   * @throws AnalyzerException if the test class can't be analyzed.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testReanalyze_sourceInterpreter(
+      final PrecompiledClass classParameter, final Api apiParameter) throws AnalyzerException {
+    ClassNode classNode = new ClassNode();
+    new ClassReader(classParameter.getBytes()).accept(classNode, 0);
+    Analyzer<SourceValue> analyzer = new Analyzer<>(new SourceInterpreter());
+
+    for (MethodNode methodNode : classNode.methods) {
+      analyzer.analyze(classNode.name, methodNode);
+      int insnIndex = 0;
+      for (AbstractInsnNode insnNode : methodNode.instructions.toArray()) {
+        if (insnNode instanceof LineNumberNode) {
+          methodNode.instructions.remove(insnNode);
+        } else if ((insnNode instanceof InsnNode || insnNode instanceof VarInsnNode)
+            && insnIndex++ % 3 == 0) {
+          methodNode.instructions.set(insnNode, insnNode.clone(Collections.emptyMap()));
+        }
+      }
+      Frame<SourceValue>[] frames =
+          analyzer.reanalyze(classNode.name, methodNode, Collections.emptyList());
+
+      Frame<SourceValue>[] expectedFrames =
+          new Analyzer<>(new SourceInterpreter()).analyze(classNode.name, methodNode);
+      assertEquals(expectedFrames.length, frames.length);
+      for (int i = 0; i < frames.length; ++i) {
+        assertEquals(expectedFrames[i] == null, frames[i] == null);
+        if (frames[i] != null) {
+          assertEquals(expectedFrames[i].getLocals(), frames[i].getLocals());
+          for (int j = 0; j < frames[i].getLocals(); ++j) {
+            assertEquals(expectedFrames[i].getLocal(j), frames[i].getLocal(j));
+          }
+          assertEquals(expectedFrames[i].getStackSize(), frames[i].getStackSize());
+          for (int j = 0; j < frames[i].getStackSize(); ++j) {
+            assertEquals(expectedFrames[i].getStack(j), frames[i].getStack(j));
+          }
+        }
+      }
+    }
+  }
 }
@@ -0,0 +1,205 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.test.AsmTest;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/** Unit tests for {@link FlatAnalyzer}. */
+public class FlatAnalyzerTest extends AsmTest {
+
+  private static final String CLASS_NAME = "C";
+
+  @Test
+  public void testAnalyze_abstractMethod() throws AnalyzerException {
+    MethodNode methodNode = new MethodNode(Opcodes.ACC_ABSTRACT, "m", "()V", null, null);
+    FlatAnalyzer<BasicValue> flatAnalyzer = new FlatAnalyzer<>(new BasicInterpreter());
+
+    flatAnalyzer.analyze(CLASS_NAME, methodNode);
+
+    assertThrows(IndexOutOfBoundsException.class, () -> flatAnalyzer.isReachable(0));
+  }
+
+  @Test
+  public void testAnalyze_invalidFalloffEndOfMethod() {
+    MethodNode methodNode = new MethodNodeBuilder().iconst_0().pop().build();
+
+    Executable analyze =
+        () -> new FlatAnalyzer<>(new BasicInterpreter()).analyze(CLASS_NAME, methodNode);
+
+    String message = assertThrows(AnalyzerException.class, analyze).getMessage();
+    assertTrue(message.contains("Execution can fall off the end of the code"));
+  }
+
+  @Test
+  public void testAnalyze_inconsistentStackHeights() {
+    Label ifLabel = new Label();
+    MethodNode methodNode =
+        new MethodNodeBuilder()
+            .iconst_0()
+            .ifne(ifLabel)
+            .iconst_0()
+            .label(ifLabel)
+            .vreturn()
+            .build();
+
+    Executable analyze =
+        () -> new FlatAnalyzer<>(new BasicInterpreter()).analyze(CLASS_NAME, methodNode);
+
+    String message = assertThrows(AnalyzerException.class, analyze).getMessage();
+    assertTrue(message.contains("Incompatible stack heights"));
+  }
+
+  @Test
+  public void testAnalyze_invalidPop() {
+    MethodNode methodNode = new MethodNodeBuilder().pop().vreturn().build();
+
+    Executable analyze =
+        () -> new FlatAnalyzer<>(new BasicInterpreter()).analyze(CLASS_NAME, methodNode);
+
+    String message = assertThrows(AnalyzerException.class, analyze).getMessage();
+    assertTrue(message.contains("Error at instruction 0: Cannot pop operand off an empty stack."));
+  }
+
+  @Test
+  public void testAnalyze_subroutine() throws AnalyzerException {
+    Label subroutine = new Label();
+    MethodNode methodNode =
+        new MethodNodeBuilder(1, 2)
+            .jsr(subroutine)
+            .vreturn()
+            .label(subroutine)
+            .astore(1)
+            .ret(1)
+            .aconst_null()
+            .build();
+    FlatAnalyzer<BasicValue> flatAnalyzer = new FlatAnalyzer<>(new BasicVerifier());
+
+    flatAnalyzer.analyze(CLASS_NAME, methodNode);
+
+    assertEquals(2, flatAnalyzer.getLocals());
+    assertEquals(1, flatAnalyzer.getStackSize(3));
+    assertEquals(BasicValue.RETURNADDRESS_VALUE, flatAnalyzer.getStack(3, 0));
+    assertEquals(BasicValue.RETURNADDRESS_VALUE, flatAnalyzer.getLocal(4, 1));
+    assertFalse(flatAnalyzer.isReachable(5));
+    assertEquals(-1, flatAnalyzer.getStackSize(5));
+    assertNull(flatAnalyzer.getFrame(5));
+    assertThrows(IndexOutOfBoundsException.class, () -> flatAnalyzer.getLocal(4, 2));
+    assertThrows(IndexOutOfBoundsException.class, () -> flatAnalyzer.getLocal(5, 0));
+    assertThrows(IndexOutOfBoundsException.class, () -> flatAnalyzer.getStack(3, 1));
+    assertThrows(IndexOutOfBoundsException.class, () -> flatAnalyzer.getStack(3, -1));
+    assertThrows(IndexOutOfBoundsException.class, () -> flatAnalyzer.getFrame(6));
+  }
+
+  /**
+   * Tests that the precompiled classes are analyzed with the same result as with an {@link
+   * Analyzer}, with a BasicVerifier.
+   *
+   * @throws AnalyzerException if the test class can't be analyzed.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testAnalyze_basicVerifier(
+      final PrecompiledClass classParameter, final Api apiParameter) throws AnalyzerException {
+    ClassNode classNode = new ClassNode();
+    new ClassReader(classParameter.getBytes()).accept(classNode, 0);
+    FlatAnalyzer<BasicValue> flatAnalyzer = new FlatAnalyzer<>(new BasicVerifier());
+
+    for (MethodNode methodNode : classNode.methods) {
+      Frame<BasicValue>[] frames =
+          new Analyzer<>(new BasicVerifier()).analyze(classNode.name, methodNode);
+      flatAnalyzer.analyze(classNode.name, methodNode);
+
+      for (int i = 0; i < frames.length; ++i) {
+        Frame<BasicValue> frame = flatAnalyzer.getFrame(i);
+        assertEquals(frames[i] == null, frame == null);
+        assertEquals(frames[i] == null, !flatAnalyzer.isReachable(i));
+        if (frame != null) {
+          assertEquals(frames[i].toString(), frame.toString());
+          assertEquals(frames[i].getStackSize(), flatAnalyzer.getStackSize(i));
+          for (int j = 0; j < frames[i].getLocals(); ++j) {
+            assertEquals(frames[i].getLocal(j), flatAnalyzer.getLocal(i, j));
+          }
+          for (int j = 0; j < frames[i].getStackSize(); ++j) {
+            assertEquals(frames[i].getStack(j), flatAnalyzer.getStack(i, j));
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Tests that the precompiled classes are analyzed with the same result as with an {@link
+   * Analyzer}, with a SourceInterpreter, even if the method node's max stack size is not set.
+   *
+   * @throws AnalyzerException if the test class can't be analyzed.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testAnalyze_sourceInterpreter(
+      final PrecompiledClass classParameter, final Api apiParameter) throws AnalyzerException {
+    ClassNode classNode = new ClassNode();
+    new ClassReader(classParameter.getBytes()).accept(classNode, 0);
+    FlatAnalyzer<SourceValue> flatAnalyzer = new FlatAnalyzer<>(new SourceInterpreter());
+
+    for (MethodNode methodNode : classNode.methods) {
+      if (methodNode.name.startsWith("m")) {
+        methodNode.maxStack = -1;
+      }
+      Frame<SourceValue>[] frames =
+          new Analyzer<>(new SourceInterpreter()).analyze(classNode.name, methodNode);
+      flatAnalyzer.analyze(classNode.name, methodNode);
+
+      for (int i = 0; i < frames.length; ++i) {
+        assertEquals(frames[i] == null, !flatAnalyzer.isReachable(i));
+        if (frames[i] != null) {
+          for (int j = 0; j < frames[i].getLocals(); ++j) {
+            assertEquals(frames[i].getLocal(j), flatAnalyzer.getLocal(i, j));
+          }
+          for (int j = 0; j < frames[i].getStackSize(); ++j) {
+            assertEquals(frames[i].getStack(j), flatAnalyzer.getStack(i, j));
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,291 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.objectweb.asm.ClassFileHierarchy;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.test.AsmTest;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.analysis.ParallelAnalyzer.AnalyzerFactory;
+import org.objectweb.asm.tree.analysis.ParallelAnalyzer.MethodAnalysis;
+
+/** Unit tests for {@link ParallelAnalyzer}. */
+public class ParallelAnalyzerTest extends AsmTest {
+
+  private ExecutorService executorService;
+
+  @BeforeEach
+  public void setUp() {
+    executorService = Executors.newFixedThreadPool(4);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    executorService.shutdownNow();
+  }
+
+  /**
+   * Tests that the precompiled classes are analyzed in parallel with the same result as with a
+   * sequential analysis.
+   *
+   * @throws Exception if the test fails.
+   */
+  @Test
+  public void testAnalyze_precompiledClasses() throws Exception {
+    List<ClassNode> classNodes = new ArrayList<>();
+    for (PrecompiledClass precompiledClass : PrecompiledClass.values()) {
+      ClassNode classNode = new ClassNode();
+      new ClassReader(precompiledClass.getBytes()).accept(classNode, 0);
+      classNodes.add(classNode);
+    }
+    ParallelAnalyzer<BasicValue> parallelAnalyzer =
+        new ParallelAnalyzer<>(
+            new AnalyzerFactory<BasicValue>() {
+              @Override
+              public Analyzer<BasicValue> newAnalyzer(final ClassNode classNode) {
+                return new Analyzer<>(new BasicVerifier());
+              }
+            },
+            executorService);
+
+    List<MethodAnalysis<BasicValue>> methodAnalyses = parallelAnalyzer.analyze(classNodes);
+
+    int methodIndex = 0;
+    for (ClassNode classNode : classNodes) {
+      for (MethodNode methodNode : classNode.methods) {
+        MethodAnalysis<BasicValue> methodAnalysis = methodAnalyses.get(methodIndex++);
+        assertSame(classNode, methodAnalysis.getClassNode());
+        assertSame(methodNode, methodAnalysis.getMethodNode());
+        assertNull(methodAnalysis.getException());
+        assertEquals(
+            toString(new Analyzer<>(new BasicVerifier()).analyze(classNode.name, methodNode)),
+            toString(methodAnalysis.getFrames()));
+      }
+    }
+    assertEquals(methodIndex, methodAnalyses.size());
+  }
+
+  @Test
+  public void testConstructor_invalidMaxPendingAnalyses() {
+    AnalyzerFactory<BasicValue> analyzerFactory = ParallelAnalyzer.newSimpleVerifierFactory(null);
+
+    Executable constructor = () -> new ParallelAnalyzer<>(analyzerFactory, executorService, 0);
+
+    assertThrows(IllegalArgumentException.class, constructor);
+  }
+
+  @Test
+  public void testAnalyze_consumer() throws InterruptedException {
+    List<ClassNode> classNodes = new ArrayList<>();
+    for (int i = 0; i < 10; ++i) {
+      ClassNode classNode = new ClassNode();
+      classNode.name = "C" + i;
+      for (int j = 0; j < 5; ++j) {
+        classNode.methods.add(new MethodNodeBuilder().iconst_0().pop().vreturn().build());
+      }
+      classNodes.add(classNode);
+    }
+    AtomicInteger numStartedAnalyses = new AtomicInteger();
+    ParallelAnalyzer<BasicValue> parallelAnalyzer =
+        new ParallelAnalyzer<>(
+            new AnalyzerFactory<BasicValue>() {
+              @Override
+              public Analyzer<BasicValue> newAnalyzer(final ClassNode classNode) {
+                numStartedAnalyses.incrementAndGet();
+                return new Analyzer<>(new BasicVerifier());
+              }
+            },
+            executorService,
+            3);
+    List<MethodAnalysis<BasicValue>> methodAnalyses = new ArrayList<>();
+    List<Integer> numPendingAnalyses = new ArrayList<>();
+
+    parallelAnalyzer.analyze(
+        classNodes,
+        methodAnalysis -> {
+          numPendingAnalyses.add(numStartedAnalyses.get() - methodAnalyses.size());
+          methodAnalyses.add(methodAnalysis);
+        });
+
+    assertEquals(3, parallelAnalyzer.getMaxPendingAnalyses());
+    assertEquals(50, methodAnalyses.size());
+    for (int i = 0; i < 50; ++i) {
+      assertSame(classNodes.get(i / 5), methodAnalyses.get(i).getClassNode());
+      assertSame(classNodes.get(i / 5).methods.get(i % 5), methodAnalyses.get(i).getMethodNode());
+      assertTrue(numPendingAnalyses.get(i) <= 3);
+    }
+  }
+
+  @Test
+  public void testAnalyze_consumerException() {
+    ClassNode classNode = new ClassNode();
+    classNode.name = "C";
+    for (int i = 0; i < 10; ++i) {
+      classNode.methods.add(new MethodNodeBuilder().vreturn().build());
+    }
+    AtomicInteger numStartedAnalyses = new AtomicInteger();
+    ParallelAnalyzer<BasicValue> parallelAnalyzer =
+        new ParallelAnalyzer<>(
+            new AnalyzerFactory<BasicValue>() {
+              @Override
+              public Analyzer<BasicValue> newAnalyzer(final ClassNode classNode) {
+                numStartedAnalyses.incrementAndGet();
+                return new Analyzer<>(new BasicVerifier());
+              }
+            },
+            executorService,
+            2);
+
+    Executable analyze =
+        () ->
+            parallelAnalyzer.analyze(
+                Arrays.asList(classNode),
+                methodAnalysis -> {
+                  throw new IllegalStateException("consumer error");
+                });
+
+    assertEquals("consumer error", assertThrows(IllegalStateException.class, analyze).getMessage());
+    assertTrue(numStartedAnalyses.get() <= 2);
+  }
+
+  @Test
+  public void testAnalyze_simpleVerifier() throws InterruptedException {
+    ClassNode classNode = new ClassNode();
+    classNode.name = "C";
+    classNode.superName = "java/lang/Object";
+    classNode.interfaces = Arrays.asList("java/lang/Runnable");
+    MethodNode validMethod = new MethodNodeBuilder().aload(0).astore(1).vreturn().build();
+    MethodNode invalidMethod = new MethodNodeBuilder().pop().vreturn().build();
+    classNode.methods.add(validMethod);
+    classNode.methods.add(invalidMethod);
+    ParallelAnalyzer<BasicValue> parallelAnalyzer =
+        new ParallelAnalyzer<>(
+            ParallelAnalyzer.newSimpleVerifierFactory(new ClassFileHierarchy(null)),
+            executorService);
+
+    List<MethodAnalysis<BasicValue>> methodAnalyses = parallelAnalyzer.analyze(classNode);
+
+    assertEquals(2, methodAnalyses.size());
+    assertNull(methodAnalyses.get(0).getException());
+    assertEquals("LC;", methodAnalyses.get(0).getFrames()[2].getLocal(1).toString());
+    assertNull(methodAnalyses.get(1).getFrames());
+    assertTrue(
+        methodAnalyses
+            .get(1)
+            .getException()
+            .getMessage()
+            .contains("Cannot pop operand off an empty stack."));
+  }
+
+  @Test
+  public void testAnalyze_factoryException() {
+    ClassNode classNode = new ClassNode();
+    classNode.methods.add(new MethodNodeBuilder().vreturn().build());
+    ParallelAnalyzer<BasicValue> parallelAnalyzer =
+        new ParallelAnalyzer<>(
+            new AnalyzerFactory<BasicValue>() {
+              @Override
+              public Analyzer<BasicValue> newAnalyzer(final ClassNode classNode) {
+                throw new IllegalStateException("no analyzer");
+              }
+            },
+            executorService);
+
+    Executable analyze = () -> parallelAnalyzer.analyze(classNode);
+
+    assertEquals("no analyzer", assertThrows(IllegalStateException.class, analyze).getMessage());
+  }
+
+  @Test
+  public void testAnalyze_factoryError() {
+    ClassNode classNode = new ClassNode();
+    classNode.methods.add(new MethodNodeBuilder().vreturn().build());
+    ParallelAnalyzer<BasicValue> parallelAnalyzer =
+        new ParallelAnalyzer<>(
+            new AnalyzerFactory<BasicValue>() {
+              @Override
+              public Analyzer<BasicValue> newAnalyzer(final ClassNode classNode) {
+                throw new AssertionError("no analyzer");
+              }
+            },
+            executorService);
+
+    Executable analyze = () -> parallelAnalyzer.analyze(classNode);
+
+    assertEquals("no analyzer", assertThrows(AssertionError.class, analyze).getMessage());
+  }
+
+  @Test
+  public void testAnalyze_interrupted() throws InterruptedException {
+    ExecutorService singleThreadExecutor = Executors.newSingleThreadExecutor();
+    CountDownLatch countDownLatch = new CountDownLatch(1);
+    singleThreadExecutor.submit(
+        () -> {
+          countDownLatch.await();
+          return null;
+        });
+    ClassNode classNode = new ClassNode();
+    classNode.methods.add(new MethodNodeBuilder().vreturn().build());
+    ParallelAnalyzer<BasicValue> parallelAnalyzer =
+        new ParallelAnalyzer<>(
+            ParallelAnalyzer.newSimpleVerifierFactory(null), singleThreadExecutor);
+
+    Thread.currentThread().interrupt();
+    Executable analyze = () -> parallelAnalyzer.analyze(classNode);
+
+    assertThrows(InterruptedException.class, analyze);
+    countDownLatch.countDown();
+    singleThreadExecutor.shutdown();
+  }
+
+  private static String toString(final Frame<?>[] frames) {
+    StringBuilder stringBuilder = new StringBuilder();
+    for (Frame<?> frame : frames) {
+      stringBuilder.append(frame).append('\n');
+    }
+    return stringBuilder.toString();
+  }
+}
@@ -37,6 +37,7 @@ import java.util.Arrays;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
+import org.objectweb.asm.ClassFileHierarchy;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 
@@ -75,6 +76,62 @@ public class SimpleVerifierTest {
     assertEquals(expectedValue, merge2);
   }
 
+  @ParameterizedTest
+  @CsvSource({
+    "java/lang/String, java/lang/Number, java/lang/Object",
+    "java/lang/Integer, java/lang/Number, java/lang/Number",
+    "java/lang/Float, java/lang/Integer, java/lang/Number",
+    "java/lang/Long, java/util/List, java/lang/Object",
+    "java/util/Map, java/util/List, java/lang/Object",
+    "[Ljava/lang/Integer;, [Ljava/lang/Number;, [Ljava/lang/Number;",
+    "[Ljava/lang/Integer;, [Ljava/lang/Float;, [Ljava/lang/Number;",
+    "[Ljava/lang/Integer;, [[Ljava/lang/Float;, java/lang/Object",
+    "[Ljava/lang/Integer;, java/io/Serializable, java/io/Serializable",
+    "[I, [Ljava/lang/Float;, java/lang/Object",
+    "[I, [F, java/lang/Object"
+  })
+  public void testMerge_classHierarchy(
+      final String internalName1, final String internalName2, final String expectedInternalName) {
+    BasicValue value1 = new BasicValue(Type.getObjectType(internalName1));
+    BasicValue value2 = new BasicValue(Type.getObjectType(internalName2));
+    SimpleVerifier verifier =
+        new SimpleVerifier(/* latest */ Opcodes.ASM10_EXPERIMENTAL, null, null, null, false) {
+          @Override
+          protected Class<?> getClass(final Type type) {
+            throw new AssertionError("Classes must not be loaded");
+          }
+        };
+    verifier.setClassHierarchy(new ClassFileHierarchy(null));
+
+    BasicValue merge1 = verifier.merge(value1, value2);
+    BasicValue merge2 = verifier.merge(value2, value1);
+
+    BasicValue expectedValue = new BasicValue(Type.getObjectType(expectedInternalName));
+    assertEquals(expectedValue, merge1);
+    assertEquals(expectedValue, merge2);
+  }
+
+  @Test
+  public void testIsSubTypeOf_classHierarchy() {
+    SimpleVerifier verifier =
+        new SimpleVerifier(/* latest */ Opcodes.ASM10_EXPERIMENTAL, null, null, null, false) {
+          @Override
+          protected Class<?> getClass(final Type type) {
+            throw new AssertionError("Classes must not be loaded");
+          }
+        };
+    verifier.setClassHierarchy(new ClassFileHierarchy(null));
+    BasicValue listValue = new BasicValue(Type.getObjectType("java/util/List"));
+    BasicValue arrayListValue = new BasicValue(Type.getObjectType("java/util/ArrayList"));
+    BasicValue integerValue = new BasicValue(Type.getObjectType("java/lang/Integer"));
+    BasicValue numberValue = new BasicValue(Type.getObjectType("java/lang/Number"));
+
+    assertTrue(verifier.isSubTypeOf(arrayListValue, listValue));
+    assertTrue(verifier.isSubTypeOf(integerValue, listValue));
+    assertTrue(verifier.isSubTypeOf(integerValue, numberValue));
+    assertFalse(verifier.isSubTypeOf(arrayListValue, numberValue));
+  }
+
   @Test
   public void testIsAssignableFrom_subclassWithInterfaces() {
     Type baseType = Type.getObjectType("C");
@@ -0,0 +1,314 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.commons;
+
+/**
+ * A {@link Remapper} which memoizes the type, descriptor and signature mappings of another {@link
+ * Remapper}. This avoids parsing and rebuilding the same descriptors and signatures again and
+ * again, which is useful when many classes referencing the same types are remapped (e.g. when
+ * shading a jar). All the other mappings are forwarded to the delegate remapper, without caching.
+ *
+ * <p>The delegate remapper must be stateless, i.e. it must always return the same value for the
+ * same arguments. If it is thread safe, then this remapper is thread safe too (without using any
+ * lock), and can be shared between several threads. The memo tables have a fixed capacity, and the
+ * values evicted to make room for new ones are simply computed again when needed.
+ */
+public class CachingRemapper extends Remapper {
+
+  /** The default number of values that can be stored in each memo table. */
+  public static final int DEFAULT_CAPACITY = 4096;
+
+  /** The maximum number of values that can be stored in each memo table. */
+  private static final int MAX_CAPACITY = 1 << 30;
+
+  /** The remapper whose mappings are memoized. */
+  private final Remapper remapper;
+
+  /** The memoized results of {@link Remapper#mapType(String)}. */
+  private final Cache types;
+
+  /** The memoized results of {@link Remapper#mapDesc}. */
+  private final Cache descriptors;
+
+  /** The memoized results of {@link Remapper#mapMethodDesc}. */
+  private final Cache methodDescriptors;
+
+  /** The memoized results of {@link Remapper#mapSignature} for type signatures. */
+  private final Cache typeSignatures;
+
+  /** The memoized results of {@link Remapper#mapSignature} for other signatures. */
+  private final Cache signatures;
+
+  /**
+   * Constructs a new {@link CachingRemapper} with the {@link #DEFAULT_CAPACITY}.
+   *
+   * @param remapper the remapper whose mappings must be memoized.
+   */
+  public CachingRemapper(final Remapper remapper) {
+    this(remapper, DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Constructs a new {@link CachingRemapper}.
+   *
+   * @param remapper the remapper whose mappings must be memoized.
+   * @param capacity the maximum number of values that can be stored in each memo table. It is
+   *     rounded up to the next power of 2.
+   * @throws IllegalArgumentException if the capacity is less than 2 or greater than 2^30.
+   */
+  public CachingRemapper(final Remapper remapper, final int capacity) {
+    if (capacity < 2 || capacity > MAX_CAPACITY) {
+      throw new IllegalArgumentException("Invalid capacity: " + capacity);
+    }
+    int tableSize = Integer.highestOneBit(capacity);
+    if (tableSize < capacity) {
+      tableSize <<= 1;
+    }
+    this.remapper = remapper;
+    this.types = new Cache(tableSize);
+    this.descriptors = new Cache(tableSize);
+    this.methodDescriptors = new Cache(tableSize);
+    this.typeSignatures = new Cache(tableSize);
+    this.signatures = new Cache(tableSize);
+  }
+
+  /**
+   * Returns the remapper whose mappings are memoized.
+   *
+   * @return the remapper whose mappings are memoized.
+   */
+  public Remapper getRemapper() {
+    return remapper;
+  }
+
+  /**
+   * Returns the maximum number of values that can be stored in each memo table.
+   *
+   * @return the maximum number of values that can be stored in each memo table.
+   */
+  public int getCapacity() {
+    return types.entries.length;
+  }
+
+  /** Removes all the values stored in the memo tables of this remapper. */
+  public void clear() {
+    types.clear();
+    descriptors.clear();
+    methodDescriptors.clear();
+    typeSignatures.clear();
+    signatures.clear();
+  }
+
+  @Override
+  public String mapDesc(final String descriptor) {
+    String value = descriptors.get(descriptor);
+    if (value == null) {
+      value = remapper.mapDesc(descriptor);
+      descriptors.put(descriptor, value);
+    }
+    return value;
+  }
+
+  @Override
+  public String mapType(final String internalName) {
+    if (internalName == null) {
+      return null;
+    }
+    String value = types.get(internalName);
+    if (value == null) {
+      value = remapper.mapType(internalName);
+      types.put(internalName, value);
+    }
+    return value;
+  }
+
+  @Override
+  public String mapMethodDesc(final String methodDescriptor) {
+    String value = methodDescriptors.get(methodDescriptor);
+    if (value == null) {
+      value = remapper.mapMethodDesc(methodDescriptor);
+      methodDescriptors.put(methodDescriptor, value);
+    }
+    return value;
+  }
+
+  @Override
+  public Object mapValue(final Object value) {
+    return remapper.mapValue(value);
+  }
+
+  @Override
+  public String mapSignature(final String signature, final boolean typeSignature) {
+    if (signature == null) {
+      return null;
+    }
+    Cache cache = typeSignature ? typeSignatures : signatures;
+    String value = cache.get(signature);
+    if (value == null) {
+      value = remapper.mapSignature(signature, typeSignature);
+      cache.put(signature, value);
+    }
+    return value;
+  }
+
+  @Override
+  public String mapAnnotationAttributeName(final String descriptor, final String name) {
+    return remapper.mapAnnotationAttributeName(descriptor, name);
+  }
+
+  @Override
+  public String mapInnerClassName(
+      final String name, final String ownerName, final String innerName) {
+    return remapper.mapInnerClassName(name, ownerName, innerName);
+  }
+
+  @Override
+  public String mapMethodName(final String owner, final String name, final String descriptor) {
+    return remapper.mapMethodName(owner, name, descriptor);
+  }
+
+  @Override
+  public String mapInvokeDynamicMethodName(final String name, final String descriptor) {
+    return remapper.mapInvokeDynamicMethodName(name, descriptor);
+  }
+
+  @Override
+  public String mapRecordComponentName(
+      final String owner, final String name, final String descriptor) {
+    return remapper.mapRecordComponentName(owner, name, descriptor);
+  }
+
+  @Override
+  public String mapFieldName(final String owner, final String name, final String descriptor) {
+    return remapper.mapFieldName(owner, name, descriptor);
+  }
+
+  @Override
+  public String mapPackageName(final String name) {
+    return remapper.mapPackageName(name);
+  }
+
+  @Override
+  public String mapModuleName(final String name) {
+    return remapper.mapModuleName(name);
+  }
+
+  @Override
+  public String map(final String internalName) {
+    return remapper.map(internalName);
+  }
+
+  /** A String to String memo table, with the same design as org.objectweb.asm.CacheTable. */
+  private static final class Cache {
+
+    /**
+     * The cached entries, indexed by hash code modulo the length of this array (a power of 2), or
+     * by this index xor 1. Entries are immutable, and can therefore be published without
+     * synchronization.
+     */
+    final Entry[] entries;
+
+    Cache(final int size) {
+      entries = new Entry[size];
+    }
+
+    /**
+     * Returns the value associated with the given key.
+     *
+     * @param key a key.
+     * @return the value associated with the given key, or {@literal null} if it is not in this
+     *     table.
+     */
+    String get(final String key) {
+      Entry[] table = entries;
+      int index = hash(key) & (table.length - 1);
+      Entry entry = table[index];
+      if (entry != null && entry.key.equals(key)) {
+        return entry.value;
+      }
+      entry = table[index ^ 1];
+      if (entry != null && entry.key.equals(key)) {
+        return entry.value;
+      }
+      return null;
+    }
+
+    /**
+     * Associates the given value with the given key. The least recently inserted value of the two
+     * slots where this key can be stored is evicted, if needed.
+     *
+     * @param key a key.
+     * @param value the value to associate with this key.
+     */
+    void put(final String key, final String value) {
+      if (value == null) {
+        return;
+      }
+      Entry[] table = entries;
+      int index = hash(key) & (table.length - 1);
+      Entry firstEntry = table[index];
+      if (firstEntry != null) {
+        table[index ^ 1] = firstEntry;
+      }
+      table[index] = new Entry(key, value);
+    }
+
+    void clear() {
+      for (int i = 0; i < entries.length; ++i) {
+        entries[i] = null;
+      }
+    }
+
+    /**
+     * Returns the hash code of the given key, with its high bits spread to its low bits (only the
+     * low bits are used to index the table).
+     *
+     * @param key a key.
+     * @return the hash code of the given key.
+     */
+    private static int hash(final String key) {
+      int hashCode = key.hashCode();
+      return hashCode ^ (hashCode >>> 16);
+    }
+  }
+
+  /** An immutable entry of a {@link Cache}. */
+  private static final class Entry {
+
+    /** The key of this entry. */
+    final String key;
+
+    /** The value associated with {@link #key}. */
+    final String value;
+
+    Entry(final String key, final String value) {
+      this.key = key;
+      this.value = value;
+    }
+  }
+}
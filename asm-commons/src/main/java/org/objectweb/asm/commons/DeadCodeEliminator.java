@@ -0,0 +1,448 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.commons;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FrameNode;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LocalVariableNode;
+import org.objectweb.asm.tree.LookupSwitchInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TableSwitchInsnNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+
+/**
+ * A {@link MethodVisitor} adapter to remove the dead code of a method. This adapter buffers the
+ * method code, and then:
+ *
+ * <ul>
+ *   <li>redirects the jumps to a GOTO instruction to the final target of the GOTO chain,
+ *   <li>removes the instructions which are unreachable from the method entry point (taking the
+ *       exception handlers into account), as well as their line numbers and stack map frames,
+ *   <li>removes the jumps to the next instruction (conditional jumps are replaced with POP or POP2
+ *       instructions, to keep the operand stack unchanged),
+ *   <li>removes the exception handlers and the local variables whose range no longer contains any
+ *       instruction.
+ * </ul>
+ *
+ * <p>These steps are repeated until nothing changes. Unlike {@link
+ * org.objectweb.asm.ClassWriter#COMPUTE_FRAMES}, which replaces unreachable code with NOP ...
+ * ATHROW instructions, this really removes it. Methods containing JSR or RET instructions, or
+ * compressed stack map frames, are left unchanged (the frames must either be expanded, with {@link
+ * org.objectweb.asm.ClassReader#EXPAND_FRAMES}, or computed by the ClassWriter).
+ */
+public class DeadCodeEliminator extends MethodNode {
+
+  /**
+   * Constructs a new {@link DeadCodeEliminator}. <i>Subclasses must not use this constructor</i>.
+   * Instead, they must use the {@link #DeadCodeEliminator(int, MethodVisitor, int, String, String,
+   * String, String[])} version.
+   *
+   * @param methodVisitor the method visitor to which this visitor must delegate method calls. May
+   *     be {@literal null}.
+   * @param access the method's access flags (see {@link Opcodes}). This parameter also indicates if
+   *     the method is synthetic and/or deprecated.
+   * @param name the method's name.
+   * @param descriptor the method's descriptor (see {@link org.objectweb.asm.Type}).
+   * @param signature the method's signature. May be {@literal null}.
+   * @param exceptions the internal names of the method's exception classes (see {@link
+   *     org.objectweb.asm.Type#getInternalName()}). May be {@literal null}.
+   * @throws IllegalStateException if a subclass calls this constructor.
+   */
+  public DeadCodeEliminator(
+      final MethodVisitor methodVisitor,
+      final int access,
+      final String name,
+      final String descriptor,
+      final String signature,
+      final String[] exceptions) {
+    this(
+        /* latest api = */ Opcodes.ASM9,
+        methodVisitor,
+        access,
+        name,
+        descriptor,
+        signature,
+        exceptions);
+    if (getClass() != DeadCodeEliminator.class) {
+      throw new IllegalStateException();
+    }
+  }
+
+  /**
+   * Constructs a new {@link DeadCodeEliminator}.
+   *
+   * @param api the ASM API version implemented by this visitor. Must be one of {@link
+   *     Opcodes#ASM4}, {@link Opcodes#ASM5}, {@link Opcodes#ASM6}, {@link Opcodes#ASM7}, {@link
+   *     Opcodes#ASM8} or {@link Opcodes#ASM9}.
+   * @param methodVisitor the method visitor to which this visitor must delegate method calls. May
+   *     be {@literal null}.
+   * @param access the method's access flags (see {@link Opcodes}). This parameter also indicates if
+   *     the method is synthetic and/or deprecated.
+   * @param name the method's name.
+   * @param descriptor the method's descriptor (see {@link org.objectweb.asm.Type}).
+   * @param signature the method's signature. May be {@literal null}.
+   * @param exceptions the internal names of the method's exception classes (see {@link
+   *     org.objectweb.asm.Type#getInternalName()}). May be {@literal null}.
+   */
+  protected DeadCodeEliminator(
+      final int api,
+      final MethodVisitor methodVisitor,
+      final int access,
+      final String name,
+      final String descriptor,
+      final String signature,
+      final String[] exceptions) {
+    super(api, access, name, descriptor, signature, exceptions);
+    this.mv = methodVisitor;
+  }
+
+  @Override
+  public void visitEnd() {
+    if (canRemoveDeadCode()) {
+      boolean changed;
+      do {
+        changed = redirectJumpsToGotos();
+        changed |= removeUnreachableInsns();
+        changed |= removeJumpsToNextInsn();
+      } while (changed);
+      removeEmptyTryCatchBlocks();
+      removeEmptyLocalVariables();
+      removeDuplicateFrames();
+    }
+    if (mv != null) {
+      accept(mv);
+    }
+  }
+
+  /**
+   * Returns whether the dead code of this method can be removed.
+   *
+   * @return whether this method has code, without JSR and RET instructions and without compressed
+   *     frames.
+   */
+  private boolean canRemoveDeadCode() {
+    if (instructions.size() == 0) {
+      return false;
+    }
+    for (AbstractInsnNode insn = instructions.getFirst(); insn != null; insn = insn.getNext()) {
+      int opcode = insn.getOpcode();
+      if (opcode == Opcodes.JSR
+          || opcode == Opcodes.RET
+          || (insn instanceof FrameNode && ((FrameNode) insn).type != Opcodes.F_NEW)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Redirects the jumps to a GOTO instruction to the target of this GOTO, recursively.
+   *
+   * @return whether at least one jump has been redirected.
+   */
+  private boolean redirectJumpsToGotos() {
+    boolean changed = false;
+    for (AbstractInsnNode insn = instructions.getFirst(); insn != null; insn = insn.getNext()) {
+      if (insn instanceof JumpInsnNode) {
+        JumpInsnNode jumpInsn = (JumpInsnNode) insn;
+        LabelNode target = getFinalTarget(jumpInsn.label);
+        if (target != jumpInsn.label) {
+          jumpInsn.label = target;
+          changed = true;
+        }
+      } else if (insn instanceof TableSwitchInsnNode) {
+        TableSwitchInsnNode tableSwitchInsn = (TableSwitchInsnNode) insn;
+        LabelNode target = getFinalTarget(tableSwitchInsn.dflt);
+        if (target != tableSwitchInsn.dflt) {
+          tableSwitchInsn.dflt = target;
+          changed = true;
+        }
+        changed |= redirectLabels(tableSwitchInsn.labels);
+      } else if (insn instanceof LookupSwitchInsnNode) {
+        LookupSwitchInsnNode lookupSwitchInsn = (LookupSwitchInsnNode) insn;
+        LabelNode target = getFinalTarget(lookupSwitchInsn.dflt);
+        if (target != lookupSwitchInsn.dflt) {
+          lookupSwitchInsn.dflt = target;
+          changed = true;
+        }
+        changed |= redirectLabels(lookupSwitchInsn.labels);
+      }
+    }
+    return changed;
+  }
+
+  private boolean redirectLabels(final List<LabelNode> labels) {
+    boolean changed = false;
+    for (int i = 0; i < labels.size(); ++i) {
+      LabelNode target = getFinalTarget(labels.get(i));
+      if (target != labels.get(i)) {
+        labels.set(i, target);
+        changed = true;
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * Returns the final target of a jump to the given label, i.e. the last label of the GOTO chain
+   * starting at this label.
+   *
+   * @param label a jump target.
+   * @return the final target of a jump to this label, or label itself if the chain contains a cycle
+   *     (in which case the jump must not be changed).
+   */
+  private static LabelNode getFinalTarget(final LabelNode label) {
+    LabelNode target = label;
+    Set<LabelNode> visitedTargets = null;
+    while (true) {
+      AbstractInsnNode insn = getNextRealInsn(target);
+      if (insn == null || insn.getOpcode() != Opcodes.GOTO) {
+        return target;
+      }
+      LabelNode nextTarget = ((JumpInsnNode) insn).label;
+      if (visitedTargets == null) {
+        visitedTargets = new HashSet<LabelNode>();
+        visitedTargets.add(label);
+      }
+      if (!visitedTargets.add(nextTarget)) {
+        return label;
+      }
+      target = nextTarget;
+    }
+  }
+
+  /**
+   * Removes the instructions which are unreachable from the method entry point, except labels.
+   *
+   * @return whether at least one instruction has been removed.
+   */
+  private boolean removeUnreachableInsns() {
+    AbstractInsnNode[] insns = instructions.toArray();
+    boolean[] reachable = new boolean[insns.length];
+    // The instructions to visit. Each instruction is added at most once, as indicated by 'queued'.
+    int[] worklist = new int[insns.length];
+    boolean[] queued = new boolean[insns.length];
+    int worklistSize = push(worklist, queued, 0, 0);
+    while (worklistSize > 0) {
+      while (worklistSize > 0) {
+        int insnIndex = worklist[--worklistSize];
+        while (insnIndex < insns.length && !reachable[insnIndex]) {
+          reachable[insnIndex] = true;
+          AbstractInsnNode insn = insns[insnIndex];
+          if (insn instanceof JumpInsnNode) {
+            worklistSize =
+                push(worklist, queued, worklistSize, indexOf(((JumpInsnNode) insn).label));
+            if (insn.getOpcode() == Opcodes.GOTO) {
+              break;
+            }
+          } else if (insn instanceof TableSwitchInsnNode) {
+            TableSwitchInsnNode tableSwitchInsn = (TableSwitchInsnNode) insn;
+            worklistSize = push(worklist, queued, worklistSize, indexOf(tableSwitchInsn.dflt));
+            for (LabelNode label : tableSwitchInsn.labels) {
+              worklistSize = push(worklist, queued, worklistSize, indexOf(label));
+            }
+            break;
+          } else if (insn instanceof LookupSwitchInsnNode) {
+            LookupSwitchInsnNode lookupSwitchInsn = (LookupSwitchInsnNode) insn;
+            worklistSize = push(worklist, queued, worklistSize, indexOf(lookupSwitchInsn.dflt));
+            for (LabelNode label : lookupSwitchInsn.labels) {
+              worklistSize = push(worklist, queued, worklistSize, indexOf(label));
+            }
+            break;
+          } else if (isExit(insn.getOpcode())) {
+            break;
+          }
+          insnIndex++;
+        }
+      }
+      // Add the handlers of the try catch blocks containing at least one reachable instruction.
+      for (TryCatchBlockNode tryCatchBlock : tryCatchBlocks) {
+        int handlerIndex = indexOf(tryCatchBlock.handler);
+        if (!reachable[handlerIndex] && !queued[handlerIndex]) {
+          int endIndex = indexOf(tryCatchBlock.end);
+          for (int i = indexOf(tryCatchBlock.start); i < endIndex; ++i) {
+            if (reachable[i] && insns[i].getOpcode() != -1) {
+              worklistSize = push(worklist, queued, worklistSize, handlerIndex);
+              break;
+            }
+          }
+        }
+      }
+    }
+    // Remove the unreachable instructions, as well as the line numbers and frames which are not
+    // followed by a reachable instruction (labels are kept, since they can be used elsewhere).
+    boolean changed = false;
+    boolean nextInsnReachable = false;
+    for (int i = insns.length - 1; i >= 0; --i) {
+      AbstractInsnNode insn = insns[i];
+      if (insn.getOpcode() != -1) {
+        nextInsnReachable = reachable[i];
+      }
+      if (!nextInsnReachable && !(insn instanceof LabelNode)) {
+        instructions.remove(insn);
+        changed = true;
+      }
+    }
+    return changed;
+  }
+
+  private int indexOf(final LabelNode label) {
+    return instructions.indexOf(label);
+  }
+
+  private static int push(
+      final int[] worklist, final boolean[] queued, final int worklistSize, final int insnIndex) {
+    if (queued[insnIndex]) {
+      return worklistSize;
+    }
+    queued[insnIndex] = true;
+    worklist[worklistSize] = insnIndex;
+    return worklistSize + 1;
+  }
+
+  /**
+   * Removes the jumps to the next instruction. Conditional jumps are replaced with POP or POP2.
+   *
+   * @return whether at least one jump has been removed.
+   */
+  private boolean removeJumpsToNextInsn() {
+    boolean changed = false;
+    AbstractInsnNode insn = instructions.getFirst();
+    while (insn != null) {
+      AbstractInsnNode nextInsn = insn.getNext();
+      if (insn instanceof JumpInsnNode && isJumpToNextInsn((JumpInsnNode) insn)) {
+        int opcode = insn.getOpcode();
+        if (opcode == Opcodes.GOTO) {
+          instructions.remove(insn);
+        } else if (opcode >= Opcodes.IF_ICMPEQ && opcode <= Opcodes.IF_ACMPNE) {
+          instructions.set(insn, new InsnNode(Opcodes.POP2));
+        } else {
+          instructions.set(insn, new InsnNode(Opcodes.POP));
+        }
+        changed = true;
+      }
+      insn = nextInsn;
+    }
+    return changed;
+  }
+
+  private static boolean isJumpToNextInsn(final JumpInsnNode jumpInsn) {
+    AbstractInsnNode insn = jumpInsn.getNext();
+    while (insn != null && insn.getOpcode() == -1) {
+      if (insn == jumpInsn.label) {
+        return true;
+      }
+      insn = insn.getNext();
+    }
+    return false;
+  }
+
+  /** Removes the try catch blocks whose range does not contain any instruction. */
+  private void removeEmptyTryCatchBlocks() {
+    Iterator<TryCatchBlockNode> iterator = tryCatchBlocks.iterator();
+    while (iterator.hasNext()) {
+      TryCatchBlockNode tryCatchBlock = iterator.next();
+      if (isEmptyRange(tryCatchBlock.start, tryCatchBlock.end)) {
+        iterator.remove();
+      }
+    }
+    // Update the 'target' of each try catch block annotation.
+    for (int i = 0; i < tryCatchBlocks.size(); ++i) {
+      tryCatchBlocks.get(i).updateIndex(i);
+    }
+  }
+
+  /** Removes the local variables whose range does not contain any instruction. */
+  private void removeEmptyLocalVariables() {
+    if (localVariables == null) {
+      return;
+    }
+    Iterator<LocalVariableNode> iterator = localVariables.iterator();
+    while (iterator.hasNext()) {
+      LocalVariableNode localVariable = iterator.next();
+      if (isEmptyRange(localVariable.start, localVariable.end)) {
+        iterator.remove();
+      }
+    }
+  }
+
+  /**
+   * Removes the frames which are followed by another frame, without any instruction in between
+   * (this can happen when a jump to the next instruction is removed). The last frame is kept, since
+   * it is valid for all the execution paths reaching the next instruction.
+   */
+  private void removeDuplicateFrames() {
+    AbstractInsnNode insn = instructions.getFirst();
+    while (insn != null) {
+      AbstractInsnNode nextInsn = insn.getNext();
+      if (insn instanceof FrameNode) {
+        AbstractInsnNode followingInsn = nextInsn;
+        while (followingInsn != null && followingInsn.getOpcode() == -1) {
+          if (followingInsn instanceof FrameNode) {
+            instructions.remove(insn);
+            break;
+          }
+          followingInsn = followingInsn.getNext();
+        }
+      }
+      insn = nextInsn;
+    }
+  }
+
+  private static boolean isEmptyRange(final LabelNode start, final LabelNode end) {
+    AbstractInsnNode insn = start;
+    while (insn != null && insn != end) {
+      if (insn.getOpcode() != -1) {
+        return false;
+      }
+      insn = insn.getNext();
+    }
+    return true;
+  }
+
+  private static AbstractInsnNode getNextRealInsn(final AbstractInsnNode insn) {
+    AbstractInsnNode nextInsn = insn;
+    while (nextInsn != null && nextInsn.getOpcode() == -1) {
+      nextInsn = nextInsn.getNext();
+    }
+    return nextInsn;
+  }
+
+  private static boolean isExit(final int opcode) {
+    return (opcode >= Opcodes.IRETURN && opcode <= Opcodes.RETURN) || opcode == Opcodes.ATHROW;
+  }
+}
@@ -0,0 +1,337 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.commons;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+
+/**
+ * A {@link JarTransformer} moving the classes of some packages to other packages (a.k.a. shading).
+ * All the references to the relocated classes are updated in a single pass, in parallel, with a
+ * {@link ClassRemapper} using a shared {@link CachingRemapper}. This includes:
+ *
+ * <ul>
+ *   <li>the class, field and method references, descriptors and signatures of all the classes,
+ *   <li>the packages of the module-info classes (see {@link ModuleRemapper}),
+ *   <li>the String constants which are equal to the internal or fully qualified name of a class or
+ *       resource in a relocated package (e.g. for {@code Class.forName} or {@code getResource}),
+ *   <li>the names of the class and resource entries of relocated packages, including those in
+ *       multi-release directories (i.e. in {@code META-INF/versions/<n>/}),
+ *   <li>the name and content of the service provider configuration files (i.e. the files in {@code
+ *       META-INF/services/}).
+ * </ul>
+ *
+ * <p>The other {@code META-INF/} entries are copied unchanged. Module names are not changed.
+ */
+public class JarRelocator extends JarTransformer {
+
+  /** The directory containing the service provider configuration files. */
+  private static final String SERVICES_DIRECTORY = "META-INF/services/";
+
+  /** The directory containing the multi-release versioned directories. */
+  private static final String VERSIONS_DIRECTORY = "META-INF/versions/";
+
+  /** The prefix of the META-INF entries. */
+  private static final String META_INF_DIRECTORY = "META-INF/";
+
+  /** The charset of the service provider configuration files. */
+  private static final String UTF_8 = "UTF-8";
+
+  /** The remapper used to relocate the class and package names. */
+  private final CachingRemapper remapper;
+
+  /**
+   * Constructs a new {@link JarRelocator}.
+   *
+   * @param relocations the package relocation rules, mapping the internal name of a package (e.g.
+   *     "com/google/common") to its new internal name (e.g. "shaded/com/google/common"). A rule
+   *     applies to the given package and to all its sub packages. If several rules apply to a
+   *     class, the most specific one is used.
+   * @param executorService the executor service used to transform the classes. It is not shut down
+   *     by this transformer.
+   */
+  public JarRelocator(
+      final Map<String, String> relocations, final ExecutorService executorService) {
+    this(new CachingRemapper(new PackageRemapper(relocations)), executorService);
+  }
+
+  private JarRelocator(final CachingRemapper remapper, final ExecutorService executorService) {
+    super(new RemapperFactory(remapper), 0, 0, executorService);
+    this.remapper = remapper;
+  }
+
+  /**
+   * Returns the remapper used to relocate the class and package names. It can be used to relocate
+   * the other references to the relocated classes, for instance in configuration files.
+   *
+   * @return the remapper used to relocate the class and package names.
+   */
+  public Remapper getRemapper() {
+    return remapper;
+  }
+
+  /**
+   * Returns a new {@link ClassWriter} to write a relocated class. This implementation returns a
+   * class writer with an empty constant pool, so that the old class names do not remain in the
+   * relocated classes.
+   *
+   * @param classReader the parsed original class.
+   * @param flags the options used to write the transformed classes.
+   * @return a new {@link ClassWriter} to write the relocated class.
+   */
+  @Override
+  protected ClassWriter newClassWriter(final ClassReader classReader, final int flags) {
+    return new ClassWriter(flags);
+  }
+
+  @Override
+  protected String transformEntryName(final String name) {
+    if (name.startsWith(SERVICES_DIRECTORY)) {
+      String serviceName = name.substring(SERVICES_DIRECTORY.length());
+      return SERVICES_DIRECTORY + remapper.mapPackageName(serviceName);
+    }
+    if (name.startsWith(VERSIONS_DIRECTORY)) {
+      int versionEnd = name.indexOf('/', VERSIONS_DIRECTORY.length());
+      if (versionEnd != -1) {
+        return name.substring(0, versionEnd + 1)
+            + relocateEntryName(name.substring(versionEnd + 1));
+      }
+      return name;
+    }
+    if (name.startsWith(META_INF_DIRECTORY)) {
+      return name;
+    }
+    return relocateEntryName(name);
+  }
+
+  @Override
+  protected byte[] transformResource(final String name, final byte[] content) throws IOException {
+    if (!name.startsWith(SERVICES_DIRECTORY)
+        || name.indexOf('/', SERVICES_DIRECTORY.length()) != -1) {
+      return content;
+    }
+    String services = new String(content, UTF_8);
+    StringBuilder stringBuilder = new StringBuilder(services.length());
+    int lineStart = 0;
+    while (lineStart < services.length()) {
+      int lineEnd = services.indexOf('\n', lineStart);
+      lineEnd = lineEnd == -1 ? services.length() : lineEnd + 1;
+      String line = services.substring(lineStart, lineEnd);
+      int commentStart = line.indexOf('#');
+      String providerName = (commentStart == -1 ? line : line.substring(0, commentStart)).trim();
+      if (providerName.length() > 0) {
+        int providerStart = line.indexOf(providerName);
+        stringBuilder
+            .append(line, 0, providerStart)
+            .append(remapper.mapPackageName(providerName))
+            .append(line, providerStart + providerName.length(), line.length());
+      } else {
+        stringBuilder.append(line);
+      }
+      lineStart = lineEnd;
+    }
+    return stringBuilder.toString().getBytes(UTF_8);
+  }
+
+  /**
+   * Returns the relocated name of a class, resource or directory entry.
+   *
+   * @param name the name of an entry, relative to the root of the classpath.
+   * @return the relocated name of this entry.
+   */
+  private String relocateEntryName(final String name) {
+    int lastSlashIndex = name.lastIndexOf('/');
+    if (lastSlashIndex == -1) {
+      return name;
+    }
+    return remapper.mapType(name.substring(0, lastSlashIndex)) + name.substring(lastSlashIndex);
+  }
+
+  /** A {@link JarTransformer.ClassVisitorFactory} returning {@link ClassRemapper}s. */
+  private static final class RemapperFactory implements ClassVisitorFactory {
+
+    /** The remapper used by the created class remappers. */
+    private final Remapper remapper;
+
+    RemapperFactory(final Remapper remapper) {
+      this.remapper = remapper;
+    }
+
+    @Override
+    public ClassVisitor newClassVisitor(final ClassVisitor classVisitor) {
+      return new ClassRemapper(classVisitor, remapper);
+    }
+  }
+
+  /**
+   * A {@link Remapper} moving the classes of some packages to other packages. This remapper is
+   * immutable, and therefore thread safe.
+   */
+  private static final class PackageRemapper extends Remapper {
+
+    /** The internal names of the relocated packages, from the most to the least specific. */
+    private final String[] packages;
+
+    /** The new internal names of the relocated packages, in the same order as {@link #packages}. */
+    private final String[] newPackages;
+
+    PackageRemapper(final Map<String, String> relocations) {
+      List<Map.Entry<String, String>> rules =
+          new ArrayList<Map.Entry<String, String>>(relocations.entrySet());
+      Collections.sort(
+          rules,
+          new Comparator<Map.Entry<String, String>>() {
+            @Override
+            public int compare(
+                final Map.Entry<String, String> rule1, final Map.Entry<String, String> rule2) {
+              return rule2.getKey().length() - rule1.getKey().length();
+            }
+          });
+      packages = new String[rules.size()];
+      newPackages = new String[rules.size()];
+      for (int i = 0; i < packages.length; ++i) {
+        packages[i] = rules.get(i).getKey().replace('.', '/');
+        newPackages[i] = rules.get(i).getValue().replace('.', '/');
+      }
+    }
+
+    @Override
+    public String map(final String internalName) {
+      return relocate(internalName, '/');
+    }
+
+    @Override
+    public String mapPackageName(final String name) {
+      // Package names are internal names in module-info classes, but can also be fully qualified.
+      return relocate(name, name.indexOf('.') == -1 ? '/' : '.');
+    }
+
+    @Override
+    public Object mapValue(final Object value) {
+      if (value instanceof String) {
+        // Only relocate the strings which are a whole class or resource name, and not, for
+        // instance, a message starting with the name of a relocated package.
+        String string = (String) value;
+        String relocatedString = isName(string, '/') ? relocate(string, '/') : string;
+        if (relocatedString == string && isName(string, '.')) {
+          relocatedString = relocate(string, '.');
+        }
+        return relocatedString;
+      }
+      return super.mapValue(value);
+    }
+
+    /**
+     * Returns whether the given string is the internal or fully qualified name of a class, package
+     * or resource. Such a name is made of Java identifiers separated with the given separator,
+     * except for the last element of an internal name, which can also contain '.' and '-'
+     * characters (e.g. "com/foo/messages.properties").
+     *
+     * @param string a string.
+     * @param separator the separator used in string, i.e. '/' for internal names and '.' for fully
+     *     qualified names.
+     * @return whether string is the internal or fully qualified name of a class, package or
+     *     resource.
+     */
+    private static boolean isName(final String string, final char separator) {
+      int lastElementStart = string.lastIndexOf(separator) + 1;
+      int elementStart = 0;
+      for (int i = 0; i < string.length(); ++i) {
+        char c = string.charAt(i);
+        boolean isValid;
+        if (c == separator) {
+          isValid = i > elementStart;
+          elementStart = i + 1;
+        } else if (separator == '/' && i >= lastElementStart) {
+          isValid = Character.isJavaIdentifierPart(c) || c == '.' || c == '-';
+        } else if (i == elementStart) {
+          isValid = Character.isJavaIdentifierStart(c);
+        } else {
+          isValid = Character.isJavaIdentifierPart(c);
+        }
+        if (!isValid) {
+          return false;
+        }
+      }
+      return elementStart < string.length();
+    }
+
+    /**
+     * Returns the relocated name of a class, package or resource.
+     *
+     * @param name the internal or fully qualified name of a class, package or resource.
+     * @param separator the separator used in name, i.e. '/' for internal names and '.' for fully
+     *     qualified names.
+     * @return the relocated name, or the given name itself if it is not in a relocated package.
+     */
+    private String relocate(final String name, final char separator) {
+      for (int i = 0; i < packages.length; ++i) {
+        String packageName = packages[i];
+        int packageLength = packageName.length();
+        if (name.length() >= packageLength
+            && (name.length() == packageLength || name.charAt(packageLength) == separator)
+            && matches(name, packageName, separator)) {
+          String newPackageName = newPackages[i];
+          if (separator != '/') {
+            newPackageName = newPackageName.replace('/', separator);
+          }
+          return newPackageName + name.substring(packageLength);
+        }
+      }
+      return name;
+    }
+
+    /**
+     * Returns whether the given name starts with the given package name.
+     *
+     * @param name the internal or fully qualified name of a class, package or resource.
+     * @param packageName the internal name of a package.
+     * @param separator the separator used in name.
+     * @return whether name starts with packageName, modulo the separator used in name.
+     */
+    private static boolean matches(
+        final String name, final String packageName, final char separator) {
+      for (int i = 0; i < packageName.length(); ++i) {
+        char packageChar = packageName.charAt(i);
+        char nameChar = name.charAt(i);
+        if (nameChar != packageChar && (packageChar != '/' || nameChar != separator)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,719 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.commons;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+
+/**
+ * A transformer applying a {@link ClassVisitor} chain to all the classes of a jar file or of a
+ * directory, in parallel. The classes are read sequentially from the input, transformed
+ * concurrently by the tasks of an {@link ExecutorService}, and written to the output in the same
+ * order as in the input (for jar files), or in lexicographic order (for directories). The other
+ * entries are copied unchanged, unless {@link #transformEntryName} or {@link #transformResource}
+ * are overridden. The output is therefore deterministic, whatever the number of threads used to
+ * transform the classes.
+ */
+public class JarTransformer {
+
+  /** The suffix of the class file names. */
+  private static final String CLASS_FILE_SUFFIX = ".class";
+
+  /**
+   * The maximum number of entries which can be read from the input before being written to the
+   * output. This bounds the memory used by the transformation, and must be larger than the number
+   * of threads of the executor service to keep all of them busy.
+   */
+  private static final int MAX_PENDING_ENTRIES = 1024;
+
+  /** The size of the temporary byte array used to read entries chunk by chunk. */
+  private static final int INPUT_STREAM_DATA_CHUNK_SIZE = 4096;
+
+  /** The factory used to create the class visitor chain of each transformed class. */
+  private final ClassVisitorFactory classVisitorFactory;
+
+  /**
+   * The options used to parse the transformed classes. One or more of {@link
+   * ClassReader#SKIP_CODE}, {@link ClassReader#SKIP_DEBUG}, {@link ClassReader#SKIP_FRAMES} or
+   * {@link ClassReader#EXPAND_FRAMES}.
+   */
+  private final int parsingOptions;
+
+  /**
+   * The options used to write the transformed classes. Zero or more of {@link
+   * ClassWriter#COMPUTE_MAXS} and {@link ClassWriter#COMPUTE_FRAMES}.
+   */
+  private final int writerFlags;
+
+  /** The executor service used to transform the classes. */
+  private final ExecutorService executorService;
+
+  /** The cache of the transformed classes, or {@literal null}. */
+  private TransformationCache transformationCache;
+
+  /**
+   * Constructs a new {@link JarTransformer}.
+   *
+   * @param classVisitorFactory the factory used to create the class visitor chain of each
+   *     transformed class. It is called concurrently from the threads of executorService.
+   * @param parsingOptions the options used to parse the transformed classes. One or more of {@link
+   *     ClassReader#SKIP_CODE}, {@link ClassReader#SKIP_DEBUG}, {@link ClassReader#SKIP_FRAMES} or
+   *     {@link ClassReader#EXPAND_FRAMES}.
+   * @param writerFlags the options used to write the transformed classes. Zero or more of {@link
+   *     ClassWriter#COMPUTE_MAXS} and {@link ClassWriter#COMPUTE_FRAMES}.
+   * @param executorService the executor service used to transform the classes. It is not shut down
+   *     by this transformer.
+   */
+  public JarTransformer(
+      final ClassVisitorFactory classVisitorFactory,
+      final int parsingOptions,
+      final int writerFlags,
+      final ExecutorService executorService) {
+    this.classVisitorFactory = classVisitorFactory;
+    this.parsingOptions = parsingOptions;
+    this.writerFlags = writerFlags;
+    this.executorService = executorService;
+  }
+
+  // -----------------------------------------------------------------------------------------------
+  // Public methods
+  // -----------------------------------------------------------------------------------------------
+
+  /**
+   * Sets the cache of the transformed classes. A class found in this cache is not transformed
+   * again, and the transformed classes are added to it. The fingerprint of the cache must identify
+   * the class visitor chain of this transformer, as well as its parsing options and writer flags.
+   * The cache is not closed by this transformer.
+   *
+   * @param transformationCache the cache of the transformed classes, or {@literal null} to
+   *     transform all the classes (the default).
+   */
+  public void setTransformationCache(final TransformationCache transformationCache) {
+    this.transformationCache = transformationCache;
+  }
+
+  /**
+   * Transforms the classes of the given jar file, and writes the result to the given output stream,
+   * in the jar file format. The output entries are written in the same order as in the input jar
+   * file.
+   *
+   * @param jarFile the jar file to transform.
+   * @param outputStream where the transformed jar file must be written. This stream is not closed
+   *     by this method.
+   * @return the statistics of this transformation.
+   * @throws IOException if the input jar can't be read, if the output can't be written, or if two
+   *     input files have the same output name (see {@link #transformEntryName}).
+   */
+  public Statistics transform(final ZipFile jarFile, final OutputStream outputStream)
+      throws IOException {
+    ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream);
+    Transformation transformation = new Transformation(zipOutputStream, null);
+    boolean completed = false;
+    try {
+      Enumeration<? extends ZipEntry> entries = jarFile.entries();
+      while (entries.hasMoreElements()) {
+        ZipEntry zipEntry = entries.nextElement();
+        if (zipEntry.isDirectory()) {
+          transformation.addEntry(zipEntry.getName(), null, zipEntry.getTime());
+        } else {
+          try (InputStream inputStream = jarFile.getInputStream(zipEntry)) {
+            transformation.addEntry(
+                zipEntry.getName(),
+                readEntry(inputStream, (int) zipEntry.getSize()),
+                zipEntry.getTime());
+          }
+        }
+      }
+      transformation.flush(0);
+      completed = true;
+    } finally {
+      if (!completed) {
+        transformation.cancel();
+      }
+    }
+    zipOutputStream.finish();
+    return transformation.getStatistics();
+  }
+
+  /**
+   * Transforms the classes of the given directory (recursively), and writes the result in the given
+   * output directory. The files are processed in lexicographic order of their relative path.
+   *
+   * @param inputDirectory the directory containing the classes to transform.
+   * @param outputDirectory where the transformed classes must be written. May be the same as the
+   *     input directory, in which case the classes are transformed in place.
+   * @return the statistics of this transformation.
+   * @throws IOException if the input files can't be read, if the output files can't be written, or
+   *     if two input files have the same output name (see {@link #transformEntryName}).
+   */
+  public Statistics transform(final File inputDirectory, final File outputDirectory)
+      throws IOException {
+    Transformation transformation = new Transformation(null, outputDirectory);
+    boolean completed = false;
+    try {
+      transformDirectory(inputDirectory, "", transformation);
+      transformation.flush(0);
+      completed = true;
+    } finally {
+      if (!completed) {
+        transformation.cancel();
+      }
+    }
+    return transformation.getStatistics();
+  }
+
+  // -----------------------------------------------------------------------------------------------
+  // Overridable methods
+  // -----------------------------------------------------------------------------------------------
+
+  /**
+   * Returns a new {@link ClassWriter} to write a transformed class. The default implementation
+   * returns a class writer using the constant pool of the original class, which allows the
+   * unchanged methods to be copied as is. This method is called concurrently from the threads of
+   * the executor service.
+   *
+   * @param classReader the parsed original class.
+   * @param flags the options used to write the transformed classes.
+   * @return a new {@link ClassWriter} to write the transformed class.
+   */
+  protected ClassWriter newClassWriter(final ClassReader classReader, final int flags) {
+    return new ClassWriter(classReader, flags);
+  }
+
+  /**
+   * Transforms the given class. This method is called concurrently from the threads of the executor
+   * service.
+   *
+   * @param classFile the content of the class to transform.
+   * @return the content of the transformed class.
+   */
+  protected byte[] transformClass(final byte[] classFile) {
+    ClassReader classReader = new ClassReader(classFile);
+    ClassWriter classWriter = newClassWriter(classReader, writerFlags);
+    classReader.accept(classVisitorFactory.newClassVisitor(classWriter), parsingOptions);
+    return classWriter.toByteArray();
+  }
+
+  /**
+   * Returns the name of the output entry corresponding to the given input entry. The default
+   * implementation returns the given name, unchanged. Two input files must not have the same output
+   * name, but several input directories can. This method is called from the thread which calls the
+   * transform methods, in input order.
+   *
+   * @param name the name of an input entry (class, resource or directory), relative to the input
+   *     root. Directory names end with a '/'.
+   * @return the name of the corresponding output entry.
+   */
+  protected String transformEntryName(final String name) {
+    return name;
+  }
+
+  /**
+   * Transforms the given resource, i.e. an input entry which is neither a class nor a directory.
+   * The default implementation returns the given content, unchanged. This method is called from the
+   * thread which calls the transform methods, in input order.
+   *
+   * @param name the name of the resource, relative to the input root.
+   * @param content the content of the resource.
+   * @return the content of the transformed resource.
+   * @throws IOException if the resource can't be transformed.
+   */
+  protected byte[] transformResource(final String name, final byte[] content) throws IOException {
+    return content;
+  }
+
+  // -----------------------------------------------------------------------------------------------
+  // Utility methods
+  // -----------------------------------------------------------------------------------------------
+
+  /**
+   * Adds the files of the given directory, and of its sub directories, to the given transformation.
+   * Empty sub directories are added as directory entries, so that they are reproduced in the
+   * output.
+   *
+   * @param directory a directory.
+   * @param relativePath the path of this directory relative to the input directory, followed by a
+   *     '/' (or the empty string for the input directory itself).
+   * @param transformation the transformation to which the files must be added.
+   * @throws IOException if the directory or its files can't be read.
+   */
+  private void transformDirectory(
+      final File directory, final String relativePath, final Transformation transformation)
+      throws IOException {
+    String[] fileNames = directory.list();
+    if (fileNames == null) {
+      throw new IOException("Unable to read files of " + directory);
+    }
+    if (fileNames.length == 0 && relativePath.length() > 0) {
+      transformation.addEntry(relativePath, null, directory.lastModified());
+      return;
+    }
+    Arrays.sort(fileNames);
+    for (String fileName : fileNames) {
+      File file = new File(directory, fileName);
+      if (file.isDirectory()) {
+        transformDirectory(file, relativePath + fileName + '/', transformation);
+      } else {
+        try (InputStream inputStream = new FileInputStream(file)) {
+          transformation.addEntry(
+              relativePath + fileName,
+              readEntry(inputStream, (int) file.length()),
+              file.lastModified());
+        }
+      }
+    }
+  }
+
+  /**
+   * Reads the given input stream and returns its content as a byte array.
+   *
+   * @param inputStream an input stream.
+   * @param size the expected size of the content of the stream, or -1 if it is unknown.
+   * @return the content of the given input stream.
+   * @throws IOException if a problem occurs during reading.
+   */
+  private static byte[] readEntry(final InputStream inputStream, final int size)
+      throws IOException {
+    ByteArrayOutputStream outputStream =
+        new ByteArrayOutputStream(size > 0 ? size : INPUT_STREAM_DATA_CHUNK_SIZE);
+    byte[] data = new byte[INPUT_STREAM_DATA_CHUNK_SIZE];
+    int bytesRead;
+    while ((bytesRead = inputStream.read(data, 0, data.length)) != -1) {
+      outputStream.write(data, 0, bytesRead);
+    }
+    return outputStream.toByteArray();
+  }
+
+  /** A factory of {@link ClassVisitor} chains. Implementations must be thread safe. */
+  public interface ClassVisitorFactory {
+
+    /**
+     * Returns a new class visitor chain to transform a class.
+     *
+     * @param classVisitor the class visitor to which the new visitor chain must delegate (this is
+     *     usually a {@link ClassWriter}).
+     * @return a new class visitor chain, delegating to the given class visitor.
+     */
+    ClassVisitor newClassVisitor(ClassVisitor classVisitor);
+  }
+
+  /** The statistics of a transformation made with a {@link JarTransformer}. */
+  public static final class Statistics {
+
+    /** The total number of entries of the input. */
+    private final int entryCount;
+
+    /** The number of transformed classes. */
+    private final int classCount;
+
+    /** The number of transformed classes which have been found in the transformation cache. */
+    private final int cachedClassCount;
+
+    /** The wall clock duration of the transformation, in nanoseconds. */
+    private final long elapsedTime;
+
+    /** The sum of the transformation durations of each class, in nanoseconds. */
+    private final long totalClassTime;
+
+    /** The maximum transformation duration of a single class, in nanoseconds. */
+    private final long maxClassTime;
+
+    Statistics(
+        final int entryCount,
+        final int classCount,
+        final int cachedClassCount,
+        final long elapsedTime,
+        final long totalClassTime,
+        final long maxClassTime) {
+      this.entryCount = entryCount;
+      this.classCount = classCount;
+      this.cachedClassCount = cachedClassCount;
+      this.elapsedTime = elapsedTime;
+      this.totalClassTime = totalClassTime;
+      this.maxClassTime = maxClassTime;
+    }
+
+    /**
+     * Returns the total number of entries of the input, including the classes.
+     *
+     * @return the total number of entries of the input.
+     */
+    public int getEntryCount() {
+      return entryCount;
+    }
+
+    /**
+     * Returns the number of transformed classes.
+     *
+     * @return the number of transformed classes.
+     */
+    public int getClassCount() {
+      return classCount;
+    }
+
+    /**
+     * Returns the number of transformed classes which have been found in the transformation cache
+     * (see {@link JarTransformer#setTransformationCache}).
+     *
+     * @return the number of transformed classes which have been found in the transformation cache.
+     */
+    public int getCachedClassCount() {
+      return cachedClassCount;
+    }
+
+    /**
+     * Returns the wall clock duration of the transformation, including I/O, in nanoseconds.
+     *
+     * @return the wall clock duration of the transformation, in nanoseconds.
+     */
+    public long getElapsedTime() {
+      return elapsedTime;
+    }
+
+    /**
+     * Returns the average transformation duration of a class, in nanoseconds.
+     *
+     * @return the average transformation duration of a class, in nanoseconds.
+     */
+    public long getAverageClassTime() {
+      return classCount == 0 ? 0 : totalClassTime / classCount;
+    }
+
+    /**
+     * Returns the maximum transformation duration of a single class, in nanoseconds.
+     *
+     * @return the maximum transformation duration of a single class, in nanoseconds.
+     */
+    public long getMaxClassTime() {
+      return maxClassTime;
+    }
+
+    /**
+     * Returns the number of transformed classes per second of wall clock time.
+     *
+     * @return the number of transformed classes per second of wall clock time.
+     */
+    public double getThroughput() {
+      return elapsedTime == 0 ? 0 : classCount * 1e9 / elapsedTime;
+    }
+
+    @Override
+    public String toString() {
+      return classCount
+          + " classes ("
+          + entryCount
+          + " entries) in "
+          + elapsedTime / 1000000
+          + " ms, "
+          + (long) getThroughput()
+          + " classes/s, average "
+          + getAverageClassTime() / 1000
+          + " us/class, max "
+          + maxClassTime / 1000
+          + " us/class";
+    }
+  }
+
+  /** The result of the transformation of a single class. */
+  private static final class TransformedClass {
+
+    /** The content of the transformed class. */
+    final byte[] content;
+
+    /** The duration of the transformation, in nanoseconds. */
+    final long time;
+
+    /** Whether the transformed class has been found in the transformation cache. */
+    final boolean cached;
+
+    TransformedClass(final byte[] content, final long time, final boolean cached) {
+      this.content = content;
+      this.time = time;
+      this.cached = cached;
+    }
+  }
+
+  /** An entry which has been read from the input, but not yet written to the output. */
+  private static final class PendingEntry {
+
+    /** The name of this entry in the output, relative to the output root. */
+    final String name;
+
+    /** The content of this entry, or {@literal null} for directories and classes. */
+    final byte[] content;
+
+    /** The result of the transformation of this entry, or {@literal null} if it is not a class. */
+    final Future<TransformedClass> transformedClass;
+
+    /** The last modification time of this entry. */
+    final long time;
+
+    PendingEntry(
+        final String name,
+        final byte[] content,
+        final Future<TransformedClass> transformedClass,
+        final long time) {
+      this.name = name;
+      this.content = content;
+      this.transformedClass = transformedClass;
+      this.time = time;
+    }
+  }
+
+  /** The state of an ongoing transformation. */
+  private final class Transformation {
+
+    /** Where the output entries must be written, or {@literal null} to write them in files. */
+    private final ZipOutputStream zipOutputStream;
+
+    /** Where the output files must be written, or {@literal null} to write them in a jar. */
+    private final File outputDirectory;
+
+    /** The entries read from the input, but not yet written to the output, in input order. */
+    private final LinkedList<PendingEntry> pendingEntries;
+
+    /** The input entry names, indexed by the corresponding output entry names. */
+    private final Map<String, String> inputNames;
+
+    /** The start time of this transformation, in nanoseconds. */
+    private final long startTime;
+
+    /** The number of entries read so far. */
+    private int entryCount;
+
+    /** The number of classes read so far. */
+    private int classCount;
+
+    /** The number of classes written so far which have been found in the transformation cache. */
+    private int cachedClassCount;
+
+    /** The sum of the transformation durations of the classes written so far. */
+    private long totalClassTime;
+
+    /** The maximum transformation duration of the classes written so far. */
+    private long maxClassTime;
+
+    Transformation(final ZipOutputStream zipOutputStream, final File outputDirectory) {
+      this.zipOutputStream = zipOutputStream;
+      this.outputDirectory = outputDirectory;
+      this.pendingEntries = new LinkedList<PendingEntry>();
+      this.inputNames = new HashMap<String, String>();
+      this.startTime = System.nanoTime();
+    }
+
+    /**
+     * Adds an input entry to this transformation. If it is a class, its transformation is submitted
+     * to the executor service. Directories whose output name has already been added are skipped.
+     *
+     * @param name the name of the entry, relative to the input root.
+     * @param content the content of the entry, or {@literal null} for a directory.
+     * @param time the last modification time of the entry.
+     * @throws IOException if a previous entry can't be written, or if this entry is a file whose
+     *     output name is the same as the output name of a previous entry.
+     */
+    void addEntry(final String name, final byte[] content, final long time) throws IOException {
+      entryCount++;
+      String outputName = transformEntryName(name);
+      String previousName = inputNames.put(outputName, name);
+      if (previousName != null) {
+        if (content == null) {
+          return;
+        }
+        throw new IOException(
+            "Duplicate output entry "
+                + outputName
+                + ", for input entries "
+                + previousName
+                + " and "
+                + name);
+      }
+      if (content != null && name.endsWith(CLASS_FILE_SUFFIX)) {
+        classCount++;
+        Future<TransformedClass> transformedClass =
+            executorService.submit(
+                new Callable<TransformedClass>() {
+                  @Override
+                  public TransformedClass call() throws IOException {
+                    long classStartTime = System.nanoTime();
+                    TransformationCache cache = transformationCache;
+                    byte[] transformedContent = cache == null ? null : cache.get(content);
+                    boolean cached = transformedContent != null;
+                    if (!cached) {
+                      transformedContent = transformClass(content);
+                      if (cache != null) {
+                        cache.put(content, transformedContent);
+                      }
+                    }
+                    return new TransformedClass(
+                        transformedContent, System.nanoTime() - classStartTime, cached);
+                  }
+                });
+        pendingEntries.add(new PendingEntry(outputName, null, transformedClass, time));
+      } else if (content != null) {
+        pendingEntries.add(
+            new PendingEntry(outputName, transformResource(name, content), null, time));
+      } else {
+        pendingEntries.add(new PendingEntry(outputName, null, null, time));
+      }
+      flush(MAX_PENDING_ENTRIES);
+    }
+
+    /**
+     * Writes the pending entries to the output, in input order, until at most the given number of
+     * pending entries remain.
+     *
+     * @param maxPendingEntries the maximum number of entries which can remain pending.
+     * @throws IOException if an entry can't be written, or if the transformation of a class has
+     *     been interrupted.
+     */
+    void flush(final int maxPendingEntries) throws IOException {
+      while (pendingEntries.size() > maxPendingEntries) {
+        PendingEntry pendingEntry = pendingEntries.removeFirst();
+        byte[] content = pendingEntry.content;
+        if (pendingEntry.transformedClass != null) {
+          TransformedClass transformedClass = getTransformedClass(pendingEntry);
+          content = transformedClass.content;
+          totalClassTime += transformedClass.time;
+          if (transformedClass.cached) {
+            cachedClassCount++;
+          }
+          maxClassTime = Math.max(maxClassTime, transformedClass.time);
+        }
+        if (zipOutputStream != null) {
+          ZipEntry zipEntry = new ZipEntry(pendingEntry.name);
+          zipEntry.setTime(pendingEntry.time);
+          zipOutputStream.putNextEntry(zipEntry);
+          if (content != null) {
+            zipOutputStream.write(content);
+          }
+          zipOutputStream.closeEntry();
+        } else {
+          writeFile(new File(outputDirectory, pendingEntry.name), content);
+        }
+      }
+    }
+
+    /**
+     * Waits for the transformation of the given class to complete, and returns its result.
+     *
+     * @param pendingEntry a pending class entry.
+     * @return the result of the transformation of the given class.
+     * @throws IOException if the transformation has been interrupted.
+     */
+    private TransformedClass getTransformedClass(final PendingEntry pendingEntry)
+        throws IOException {
+      try {
+        return pendingEntry.transformedClass.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while transforming " + pendingEntry.name);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        }
+        throw new IllegalArgumentException("Unable to transform " + pendingEntry.name, cause);
+      }
+    }
+
+    /**
+     * Cancels the transformation of the pending classes. This must be called when the
+     * transformation fails, whatever the cause (input, output or transformation error), so that the
+     * executor service does not keep transforming classes which will never be written.
+     */
+    void cancel() {
+      for (PendingEntry pendingEntry : pendingEntries) {
+        if (pendingEntry.transformedClass != null) {
+          pendingEntry.transformedClass.cancel(false);
+        }
+      }
+      pendingEntries.clear();
+    }
+
+    /**
+     * Writes the given content in the given file, creating its parent directories if necessary, or
+     * creates the given directory.
+     *
+     * @param file a file.
+     * @param content the content of the file, or {@literal null} to create a directory.
+     * @throws IOException if the file can't be written.
+     */
+    private void writeFile(final File file, final byte[] content) throws IOException {
+      if (content == null) {
+        if (!file.isDirectory() && !file.mkdirs()) {
+          throw new IOException("Cannot create directory " + file);
+        }
+        return;
+      }
+      File parentFile = file.getParentFile();
+      if (!parentFile.exists() && !parentFile.mkdirs()) {
+        throw new IOException("Cannot create directory " + parentFile);
+      }
+      try (OutputStream outputStream = new FileOutputStream(file)) {
+        outputStream.write(content);
+      }
+    }
+
+    Statistics getStatistics() {
+      return new Statistics(
+          entryCount,
+          classCount,
+          cachedClassCount,
+          System.nanoTime() - startTime,
+          totalClassTime,
+          maxClassTime);
+    }
+  }
+}
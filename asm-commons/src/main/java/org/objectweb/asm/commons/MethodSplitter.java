@@ -0,0 +1,1050 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.commons;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.objectweb.asm.ClassHierarchy;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodTooLargeException;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.FrameNode;
+import org.objectweb.asm.tree.IincInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LineNumberNode;
+import org.objectweb.asm.tree.LocalVariableNode;
+import org.objectweb.asm.tree.LookupSwitchInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TableSwitchInsnNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+import org.objectweb.asm.tree.VarInsnNode;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.BasicValue;
+import org.objectweb.asm.tree.analysis.Frame;
+import org.objectweb.asm.tree.analysis.SimpleVerifier;
+
+/**
+ * A {@link ClassVisitor} that splits the methods whose code is too large into several methods, in
+ * order to avoid a {@link MethodTooLargeException} in the {@link org.objectweb.asm.ClassWriter}.
+ * Each oversized method is buffered, and some regions of its code are moved to new private static
+ * synthetic helper methods, replaced with a call to these methods. A region can be moved if:
+ *
+ * <ul>
+ *   <li>the operand stack is empty at its start and at its end,
+ *   <li>it is only entered from its first instruction, and only exits by falling through its end,
+ *       by jumping to its end, or by throwing an exception,
+ *   <li>it does not contain any RETURN, JSR, RET, MONITORENTER or MONITOREXIT instruction,
+ *   <li>it does not assign a final static field of the visited class, if the split method is the
+ *       static initializer (only the static initializer can assign these fields),
+ *   <li>each exception handler either is entirely in it (range and handler), or does not overlap
+ *       it,
+ *   <li>at most one of the local variables it writes is used after it (this variable is returned by
+ *       the helper method).
+ * </ul>
+ *
+ * <p>The local variables which are read in the region, or returned by the helper method, and which
+ * are live at its start are passed as arguments to the helper method. Their types are computed
+ * with an {@link Analyzer} using a {@link SimpleVerifier}, which may need to load the referenced
+ * classes (see {@link #getClassLoader()}), or can use a {@link ClassHierarchy}.
+ *
+ * <p><b>Important:</b> the stack map frames of the split methods and of the helper methods are
+ * removed. They must therefore be recomputed with {@link
+ * org.objectweb.asm.ClassWriter#COMPUTE_FRAMES} (for classes of version 50 or more). Constructors,
+ * and methods whose code cannot be analyzed, are never split. A method which cannot be split enough
+ * is left as is, or partially split, and may still be too large.
+ */
+public class MethodSplitter extends ClassVisitor {
+
+  /** The maximum size in bytes of the code of a method, in the class file format. */
+  public static final int MAX_CODE_SIZE = 65535;
+
+  /** The string inserted between the split method name and the index of its helper methods. */
+  private static final String HELPER_METHOD_SUFFIX = "$split$";
+
+  /** The maximum number of argument slots of a static method. */
+  private static final int MAX_ARGUMENT_SLOTS = 255;
+
+  /** The maximum size in bytes of the code of the visited methods, after splitting. */
+  private final int maxCodeSize;
+
+  /**
+   * The class hierarchy used to compute the types of the local variables, or {@literal null} to
+   * load the classes with {@link #getClassLoader()}.
+   */
+  private final ClassHierarchy classHierarchy;
+
+  /** The version of the visited class. */
+  private int version;
+
+  /** The access flags of the visited class. */
+  private int access;
+
+  /** The internal name of the visited class. */
+  private String className;
+
+  /** The internal name of the super class of the visited class. */
+  private String superName;
+
+  /** The internal names of the interfaces of the visited class. */
+  private String[] interfaces;
+
+  /** The number of helper methods created so far in the visited class. */
+  private int helperMethodCount;
+
+  /**
+   * The name and descriptor of the final static fields of the visited class, separated with a
+   * space. The fields must be visited before the static initializer, as done by ClassReader.
+   */
+  private final Set<String> finalStaticFields = new HashSet<String>();
+
+  /**
+   * Constructs a new {@link MethodSplitter}, splitting the methods larger than {@link
+   * #MAX_CODE_SIZE}.
+   *
+   * @param classVisitor the class visitor to which this visitor must delegate method calls. May be
+   *     {@literal null}.
+   */
+  public MethodSplitter(final ClassVisitor classVisitor) {
+    this(classVisitor, MAX_CODE_SIZE, null);
+  }
+
+  /**
+   * Constructs a new {@link MethodSplitter}.
+   *
+   * @param classVisitor the class visitor to which this visitor must delegate method calls. May be
+   *     {@literal null}.
+   * @param maxCodeSize the maximum size in bytes of the code of the visited methods. The larger
+   *     methods are split.
+   * @param classHierarchy the class hierarchy used to compute the types of the local variables, or
+   *     {@literal null} to load the classes with {@link #getClassLoader()}.
+   */
+  public MethodSplitter(
+      final ClassVisitor classVisitor, final int maxCodeSize, final ClassHierarchy classHierarchy) {
+    this(/* latest api = */ Opcodes.ASM9, classVisitor, maxCodeSize, classHierarchy);
+  }
+
+  /**
+   * Constructs a new {@link MethodSplitter}.
+   *
+   * @param api the ASM API version implemented by this visitor. Must be one of {@link
+   *     Opcodes#ASM4}, {@link Opcodes#ASM5}, {@link Opcodes#ASM6}, {@link Opcodes#ASM7}, {@link
+   *     Opcodes#ASM8} or {@link Opcodes#ASM9}.
+   * @param classVisitor the class visitor to which this visitor must delegate method calls. May be
+   *     {@literal null}.
+   * @param maxCodeSize the maximum size in bytes of the code of the visited methods. The larger
+   *     methods are split.
+   * @param classHierarchy the class hierarchy used to compute the types of the local variables, or
+   *     {@literal null} to load the classes with {@link #getClassLoader()}.
+   */
+  protected MethodSplitter(
+      final int api,
+      final ClassVisitor classVisitor,
+      final int maxCodeSize,
+      final ClassHierarchy classHierarchy) {
+    super(api, classVisitor);
+    if (maxCodeSize < 1 || maxCodeSize > MAX_CODE_SIZE) {
+      throw new IllegalArgumentException("Invalid maximum code size: " + maxCodeSize);
+    }
+    this.maxCodeSize = maxCodeSize;
+    this.classHierarchy = classHierarchy;
+  }
+
+  @Override
+  public void visit(
+      final int version,
+      final int access,
+      final String name,
+      final String signature,
+      final String superName,
+      final String[] interfaces) {
+    this.version = version;
+    this.access = access;
+    this.className = name;
+    this.superName = superName;
+    this.interfaces = interfaces;
+    this.helperMethodCount = 0;
+    this.finalStaticFields.clear();
+    super.visit(version, access, name, signature, superName, interfaces);
+  }
+
+  @Override
+  public FieldVisitor visitField(
+      final int access,
+      final String name,
+      final String descriptor,
+      final String signature,
+      final Object value) {
+    if ((access & (Opcodes.ACC_STATIC | Opcodes.ACC_FINAL))
+        == (Opcodes.ACC_STATIC | Opcodes.ACC_FINAL)) {
+      finalStaticFields.add(name + ' ' + descriptor);
+    }
+    return super.visitField(access, name, descriptor, signature, value);
+  }
+
+  @Override
+  public MethodVisitor visitMethod(
+      final int access,
+      final String name,
+      final String descriptor,
+      final String signature,
+      final String[] exceptions) {
+    if (cv == null
+        || (access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) != 0
+        || "<init>".equals(name)
+        || ((this.access & Opcodes.ACC_INTERFACE) != 0 && (version & 0xFFFF) < Opcodes.V1_8)) {
+      return super.visitMethod(access, name, descriptor, signature, exceptions);
+    }
+    return new MethodNode(api, access, name, descriptor, signature, exceptions) {
+      @Override
+      public void visitEnd() {
+        List<MethodNode> helperMethods = split(this);
+        accept(cv);
+        for (MethodNode helperMethod : helperMethods) {
+          helperMethod.accept(cv);
+        }
+      }
+    };
+  }
+
+  /**
+   * Returns the {@link ClassLoader} used to load the classes needed to compute the types of the
+   * local variables, if no {@link ClassHierarchy} has been specified. This is the class loader of
+   * this {@link MethodSplitter}'s runtime type, by default.
+   *
+   * @return the {@link ClassLoader} used to load the classes needed to compute the types of the
+   *     local variables.
+   */
+  protected ClassLoader getClassLoader() {
+    return getClass().getClassLoader();
+  }
+
+  // -----------------------------------------------------------------------------------------------
+  // Splitting algorithm
+  // -----------------------------------------------------------------------------------------------
+
+  /**
+   * Splits the given method, if its code is too large.
+   *
+   * @param method a method of the visited class. Its code is modified in place.
+   * @return the helper methods created to split method (empty if method is not split).
+   */
+  private List<MethodNode> split(final MethodNode method) {
+    List<MethodNode> helperMethods = new ArrayList<MethodNode>();
+    AbstractInsnNode[] insns = method.instructions.toArray();
+    int[] insnSizes = new int[insns.length];
+    int codeSize = computeInsnSizes(insns, insnSizes);
+    if (codeSize <= maxCodeSize) {
+      return helperMethods;
+    }
+    for (AbstractInsnNode insn : insns) {
+      if (insn.getOpcode() == Opcodes.JSR || insn.getOpcode() == Opcodes.RET) {
+        return helperMethods;
+      }
+    }
+    int maxStack = method.maxStack;
+    int maxLocals = method.maxLocals;
+    Frame<BasicValue>[] frames;
+    try {
+      frames = new Analyzer<BasicValue>(newVerifier()).analyzeAndComputeMaxs(className, method);
+    } catch (AnalyzerException e) {
+      method.maxStack = maxStack;
+      method.maxLocals = maxLocals;
+      return helperMethods;
+    }
+
+    RegionFinder regionFinder =
+        new RegionFinder(
+            method,
+            insns,
+            insnSizes,
+            frames,
+            "<clinit>".equals(method.name) ? className : null,
+            finalStaticFields);
+    List<int[]> regions = new ArrayList<int[]>();
+    // The helper methods contain the region code, plus at most a wide xLOAD and a xRETURN.
+    int maxRegionSize = maxCodeSize - 5;
+    int regionStart = 0;
+    while (codeSize > maxCodeSize && regionStart < insns.length) {
+      int[] region = regionFinder.findRegion(regionStart, maxRegionSize);
+      if (region == null) {
+        regionStart++;
+      } else {
+        regions.add(region);
+        codeSize -= region[2];
+        regionStart = region[1];
+      }
+    }
+    if (regions.isEmpty()) {
+      return helperMethods;
+    }
+    for (int[] region : regions) {
+      helperMethods.add(extractRegion(method, insns, frames, regionFinder, region[0], region[1]));
+    }
+    Iterator<AbstractInsnNode> iterator = method.instructions.iterator();
+    while (iterator.hasNext()) {
+      if (iterator.next() instanceof FrameNode) {
+        iterator.remove();
+      }
+    }
+    return helperMethods;
+  }
+
+  /**
+   * Creates a new verifier to compute the types of the local variables of the visited methods.
+   *
+   * @return a new verifier to compute the types of the local variables of the visited methods.
+   */
+  private SimpleVerifier newVerifier() {
+    List<Type> interfaceTypes = new ArrayList<Type>();
+    if (interfaces != null) {
+      for (String interfaceName : interfaces) {
+        interfaceTypes.add(Type.getObjectType(interfaceName));
+      }
+    }
+    SimpleVerifier verifier =
+        new SimpleVerifier(
+            Type.getObjectType(className),
+            superName == null ? null : Type.getObjectType(superName),
+            interfaceTypes,
+            (access & Opcodes.ACC_INTERFACE) != 0);
+    if (classHierarchy != null) {
+      verifier.setClassHierarchy(classHierarchy);
+    } else {
+      verifier.setClassLoader(getClassLoader());
+    }
+    return verifier;
+  }
+
+  /**
+   * Moves a region of the code of a method to a new helper method, and replaces it with a call to
+   * this helper method.
+   *
+   * @param method the method to split.
+   * @param insns the instructions of method, before any split.
+   * @param frames the frames of method, before any split.
+   * @param regionFinder the {@link RegionFinder} used to find the region.
+   * @param start the index in insns of the first instruction of the region.
+   * @param end the index in insns of the first instruction after the region.
+   * @return the new helper method.
+   */
+  private MethodNode extractRegion(
+      final MethodNode method,
+      final AbstractInsnNode[] insns,
+      final Frame<BasicValue>[] frames,
+      final RegionFinder regionFinder,
+      final int start,
+      final int end) {
+    // Compute the arguments and the return value of the helper method.
+    BitSet arguments = regionFinder.getArguments(start, end);
+    int returnedLocal = regionFinder.getReturnedLocal(start, end);
+    Type[] argumentTypes = new Type[arguments.cardinality()];
+    int[] newLocals = new int[Math.max(method.maxLocals, 1)];
+    int[] localSizes = new int[newLocals.length];
+    int argumentIndex = 0;
+    int argumentSlots = 0;
+    for (int local = arguments.nextSetBit(0); local >= 0; local = arguments.nextSetBit(local + 1)) {
+      argumentTypes[argumentIndex++] = frames[start].getLocal(local).getType();
+      localSizes[local] = frames[start].getLocal(local).getSize();
+      argumentSlots += localSizes[local];
+    }
+    for (int i = start; i < end; ++i) {
+      int local = getLocal(insns[i]);
+      if (local >= 0) {
+        int opcode = insns[i].getOpcode();
+        boolean isLongOrDouble =
+            opcode == Opcodes.LLOAD
+                || opcode == Opcodes.DLOAD
+                || opcode == Opcodes.LSTORE
+                || opcode == Opcodes.DSTORE;
+        localSizes[local] = Math.max(localSizes[local], isLongOrDouble ? 2 : 1);
+      }
+    }
+    int newLocal = 0;
+    for (int local = arguments.nextSetBit(0); local >= 0; local = arguments.nextSetBit(local + 1)) {
+      newLocals[local] = newLocal;
+      newLocal += localSizes[local];
+    }
+    for (int local = 0; local < localSizes.length; ++local) {
+      if (localSizes[local] > 0 && !arguments.get(local)) {
+        newLocals[local] = newLocal;
+        newLocal += localSizes[local];
+      }
+    }
+    Type returnType =
+        returnedLocal >= 0 ? frames[end].getLocal(returnedLocal).getType() : Type.VOID_TYPE;
+    String helperName =
+        method.name.replace("<", "").replace(">", "") + HELPER_METHOD_SUFFIX + helperMethodCount++;
+    String helperDescriptor = Type.getMethodDescriptor(returnType, argumentTypes);
+    MethodNode helperMethod =
+        new MethodNode(
+            api,
+            Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_SYNTHETIC,
+            helperName,
+            helperDescriptor,
+            null,
+            null);
+
+    // Clone the labels of the region, including those just before its first instruction.
+    int firstLabel = start;
+    while (firstLabel > 0 && !isRealInsn(insns[firstLabel - 1])) {
+      firstLabel--;
+    }
+    Map<LabelNode, LabelNode> clonedLabels = new HashMap<LabelNode, LabelNode>();
+    for (int i = firstLabel; i < end; ++i) {
+      if (insns[i] instanceof LabelNode) {
+        clonedLabels.put((LabelNode) insns[i], new LabelNode());
+      }
+    }
+
+    // Copy the region's code to the helper method, and replace it with a call to this method.
+    InsnList helperInsns = helperMethod.instructions;
+    for (int i = firstLabel; i < end; ++i) {
+      AbstractInsnNode insn = insns[i];
+      if (insn instanceof LabelNode) {
+        helperInsns.add(clonedLabels.get(insn));
+      } else if (insn instanceof LineNumberNode) {
+        LabelNode lineStart = clonedLabels.get(((LineNumberNode) insn).start);
+        if (lineStart != null) {
+          helperInsns.add(new LineNumberNode(((LineNumberNode) insn).line, lineStart));
+        }
+      } else if (!(insn instanceof FrameNode)) {
+        AbstractInsnNode clonedInsn = insn.clone(clonedLabels);
+        if (clonedInsn instanceof VarInsnNode) {
+          ((VarInsnNode) clonedInsn).var = newLocals[((VarInsnNode) clonedInsn).var];
+        } else if (clonedInsn instanceof IincInsnNode) {
+          ((IincInsnNode) clonedInsn).var = newLocals[((IincInsnNode) clonedInsn).var];
+        }
+        helperInsns.add(clonedInsn);
+      }
+    }
+    InsnList callInsns = new InsnList();
+    argumentIndex = 0;
+    for (int local = arguments.nextSetBit(0); local >= 0; local = arguments.nextSetBit(local + 1)) {
+      callInsns.add(
+          new VarInsnNode(argumentTypes[argumentIndex++].getOpcode(Opcodes.ILOAD), local));
+    }
+    callInsns.add(
+        new MethodInsnNode(
+            Opcodes.INVOKESTATIC,
+            className,
+            helperName,
+            helperDescriptor,
+            (access & Opcodes.ACC_INTERFACE) != 0));
+    if (returnedLocal >= 0) {
+      helperInsns.add(
+          new VarInsnNode(returnType.getOpcode(Opcodes.ILOAD), newLocals[returnedLocal]));
+      callInsns.add(new VarInsnNode(returnType.getOpcode(Opcodes.ISTORE), returnedLocal));
+    }
+    helperInsns.add(new InsnNode(returnType.getOpcode(Opcodes.IRETURN)));
+    method.instructions.insertBefore(insns[start], callInsns);
+    for (int i = start; i < end; ++i) {
+      if (!(insns[i] instanceof LabelNode)) {
+        method.instructions.remove(insns[i]);
+      }
+    }
+
+    // Move the exception handlers and local variables which are inside the region.
+    Iterator<TryCatchBlockNode> tryCatchBlocks = method.tryCatchBlocks.iterator();
+    while (tryCatchBlocks.hasNext()) {
+      TryCatchBlockNode tryCatchBlock = tryCatchBlocks.next();
+      if (clonedLabels.containsKey(tryCatchBlock.start)
+          && clonedLabels.containsKey(tryCatchBlock.end)
+          && clonedLabels.containsKey(tryCatchBlock.handler)) {
+        helperMethod.tryCatchBlocks.add(
+            new TryCatchBlockNode(
+                clonedLabels.get(tryCatchBlock.start),
+                clonedLabels.get(tryCatchBlock.end),
+                clonedLabels.get(tryCatchBlock.handler),
+                tryCatchBlock.type));
+        tryCatchBlocks.remove();
+      }
+    }
+    if (method.localVariables != null) {
+      Iterator<LocalVariableNode> localVariables = method.localVariables.iterator();
+      while (localVariables.hasNext()) {
+        LocalVariableNode localVariable = localVariables.next();
+        if (clonedLabels.containsKey(localVariable.start)
+            && clonedLabels.containsKey(localVariable.end)
+            && localVariable.index < localSizes.length
+            && localSizes[localVariable.index] > 0) {
+          helperMethod.localVariables.add(
+              new LocalVariableNode(
+                  localVariable.name,
+                  localVariable.desc,
+                  localVariable.signature,
+                  clonedLabels.get(localVariable.start),
+                  clonedLabels.get(localVariable.end),
+                  newLocals[localVariable.index]));
+          localVariables.remove();
+        }
+      }
+    }
+    helperMethod.maxStack = Math.max(method.maxStack, returnType.getSize());
+    helperMethod.maxLocals = newLocal;
+    method.maxStack = Math.max(method.maxStack, Math.max(argumentSlots, returnType.getSize()));
+    return helperMethod;
+  }
+
+  /**
+   * Computes the maximum size in bytes of each instruction.
+   *
+   * @param insns some instructions.
+   * @param insnSizes where the maximum size of each instruction must be stored.
+   * @return the sum of the maximum instruction sizes.
+   */
+  private static int computeInsnSizes(final AbstractInsnNode[] insns, final int[] insnSizes) {
+    CodeSizeEvaluator codeSizeEvaluator = new CodeSizeEvaluator(null);
+    for (int i = 0; i < insns.length; ++i) {
+      int previousSize = codeSizeEvaluator.getMaxSize();
+      insns[i].accept(codeSizeEvaluator);
+      insnSizes[i] = codeSizeEvaluator.getMaxSize() - previousSize;
+    }
+    return codeSizeEvaluator.getMaxSize();
+  }
+
+  /**
+   * Returns whether the given node is a real instruction.
+   *
+   * @param insn an instruction list node.
+   * @return whether insn is a real instruction (as opposed to a label, frame or line number).
+   */
+  private static boolean isRealInsn(final AbstractInsnNode insn) {
+    return insn.getOpcode() >= 0;
+  }
+
+  /**
+   * Returns the local variable accessed by the given instruction.
+   *
+   * @param insn an instruction list node.
+   * @return the local variable loaded, stored or incremented by insn, or -1.
+   */
+  private static int getLocal(final AbstractInsnNode insn) {
+    if (insn instanceof VarInsnNode) {
+      return ((VarInsnNode) insn).var;
+    } else if (insn instanceof IincInsnNode) {
+      return ((IincInsnNode) insn).var;
+    }
+    return -1;
+  }
+
+  /**
+   * Finds the regions of a method which can be moved to helper methods. All the indices used in
+   * this class are instruction indices in the instruction list of the method, before any split.
+   */
+  private static final class RegionFinder {
+
+    /** The instructions of the method. */
+    private final AbstractInsnNode[] insns;
+
+    /** The maximum size in bytes of each instruction in {@link #insns}. */
+    private final int[] insnSizes;
+
+    /** The frames of the method, computed with a {@link SimpleVerifier}. */
+    private final Frame<BasicValue>[] frames;
+
+    /** The index of the next real instruction at or after each index (or insns.length). */
+    private final int[] nextRealInsn;
+
+    /** The jump targets of each real instruction, as indices of real instructions. */
+    private final int[][] jumpTargets;
+
+    /** The minimum index of the instructions jumping to each instruction, or insns.length. */
+    private final int[] minJumpSource;
+
+    /** The maximum index of the instructions jumping to each instruction, or -1. */
+    private final int[] maxJumpSource;
+
+    /**
+     * For each index i, the minimum handler index of the try catch blocks starting at i, and the
+     * minimum start index of the try catch blocks whose handler is at i (or insns.length).
+     */
+    private final int[] minTryCatchIndex;
+
+    /**
+     * For each index i, the minimum end of the regions containing the try catch blocks starting at
+     * i or whose handler is at i (or -1).
+     */
+    private final int[] minTryCatchRegionEnd;
+
+    /** Whether each instruction is strictly inside the range of a try catch block. */
+    private final boolean[] insideTryCatchBlock;
+
+    /** The local variables which are live before each instruction. */
+    private final BitSet[] liveLocals;
+
+    /**
+     * The internal name of the class whose final static fields can't be assigned in a region, or
+     * {@literal null}.
+     */
+    private final String finalStaticFieldsOwner;
+
+    /** The name and descriptor of the final static fields of {@link #finalStaticFieldsOwner}. */
+    private final Set<String> finalStaticFields;
+
+    RegionFinder(
+        final MethodNode method,
+        final AbstractInsnNode[] insns,
+        final int[] insnSizes,
+        final Frame<BasicValue>[] frames,
+        final String finalStaticFieldsOwner,
+        final Set<String> finalStaticFields) {
+      this.insns = insns;
+      this.insnSizes = insnSizes;
+      this.frames = frames;
+      this.finalStaticFieldsOwner = finalStaticFieldsOwner;
+      this.finalStaticFields = finalStaticFields;
+      int numInsns = insns.length;
+      nextRealInsn = new int[numInsns + 1];
+      nextRealInsn[numInsns] = numInsns;
+      for (int i = numInsns - 1; i >= 0; --i) {
+        nextRealInsn[i] = isRealInsn(insns[i]) ? i : nextRealInsn[i + 1];
+      }
+      jumpTargets = new int[numInsns][];
+      minJumpSource = new int[numInsns + 1];
+      maxJumpSource = new int[numInsns + 1];
+      for (int i = 0; i <= numInsns; ++i) {
+        minJumpSource[i] = numInsns;
+        maxJumpSource[i] = -1;
+      }
+      for (int i = 0; i < numInsns; ++i) {
+        List<LabelNode> labels = getJumpLabels(insns[i]);
+        if (labels != null) {
+          int[] targets = new int[labels.size()];
+          for (int j = 0; j < targets.length; ++j) {
+            int target = getIndex(method, labels.get(j));
+            targets[j] = target;
+            minJumpSource[target] = Math.min(minJumpSource[target], i);
+            maxJumpSource[target] = Math.max(maxJumpSource[target], i);
+          }
+          jumpTargets[i] = targets;
+        }
+      }
+      minTryCatchIndex = new int[numInsns + 1];
+      minTryCatchRegionEnd = new int[numInsns + 1];
+      for (int i = 0; i <= numInsns; ++i) {
+        minTryCatchIndex[i] = numInsns;
+        minTryCatchRegionEnd[i] = -1;
+      }
+      int[] insideTryCatchBlockCount = new int[numInsns + 1];
+      int[][] handlers = new int[numInsns][];
+      for (TryCatchBlockNode tryCatchBlock : method.tryCatchBlocks) {
+        int start = getIndex(method, tryCatchBlock.start);
+        int end = getIndex(method, tryCatchBlock.end);
+        int handler = getIndex(method, tryCatchBlock.handler);
+        if (start >= end) {
+          continue;
+        }
+        int regionEnd = Math.max(end, handler + 1);
+        minTryCatchIndex[start] = Math.min(minTryCatchIndex[start], handler);
+        minTryCatchRegionEnd[start] = Math.max(minTryCatchRegionEnd[start], regionEnd);
+        minTryCatchIndex[handler] = Math.min(minTryCatchIndex[handler], start);
+        minTryCatchRegionEnd[handler] = Math.max(minTryCatchRegionEnd[handler], regionEnd);
+        insideTryCatchBlockCount[start + 1]++;
+        insideTryCatchBlockCount[end]--;
+        for (int i = start; i < end; ++i) {
+          handlers[i] = append(handlers[i], handler);
+        }
+      }
+      insideTryCatchBlock = new boolean[numInsns];
+      int count = 0;
+      for (int i = 0; i < numInsns; ++i) {
+        count += insideTryCatchBlockCount[i];
+        insideTryCatchBlock[i] = count > 0;
+      }
+      liveLocals = computeLiveLocals(handlers);
+    }
+
+    /**
+     * Finds the largest region starting at the given index, or at the next real instruction.
+     *
+     * @param index an instruction index.
+     * @param maxRegionSize the maximum size in bytes of the region.
+     * @return the start index, end index (exclusive) and saved size in bytes (i.e. its size minus
+     *     the size of the helper method call) of the largest region which can be moved to a helper
+     *     method, starting at the next real instruction at or after index, or {@literal null} if
+     *     there is no such region.
+     */
+    int[] findRegion(final int index, final int maxRegionSize) {
+      int start = nextRealInsn[index];
+      if (!isRegionBoundary(start) || insideTryCatchBlock[start]) {
+        return null;
+      }
+      Frame<BasicValue> startFrame = frames[start];
+      BitSet startLiveLocals = liveLocals[start];
+      BitSet readLocals = new BitSet();
+      BitSet writtenLocals = new BitSet();
+      // The targets of the jump instructions of the region, and whether its last instruction can
+      // fall through to the next one. The end of a region must be reachable from the region, since
+      // the helper method call always falls through to it.
+      BitSet regionJumpTargets = new BitSet();
+      boolean fallsThrough = false;
+      int argumentSlots = 0;
+      int minEnd = 0;
+      int maxSource = -1;
+      int regionSize = 0;
+      int[] bestRegion = null;
+      for (int i = start; i < insns.length; ++i) {
+        if (i > start
+            && i >= minEnd
+            && maxSource < i
+            && (fallsThrough || regionJumpTargets.get(i))
+            && isRegionBoundary(i)) {
+          int returnedLocal = getReturnedLocal(writtenLocals, i);
+          if (returnedLocal != -2
+              && argumentSlots + getReturnedLocalArgumentSlots(returnedLocal, start, readLocals)
+                  <= MAX_ARGUMENT_SLOTS) {
+            int savedSize =
+                regionSize
+                    - getMaxCallSize(readLocals, startLiveLocals, writtenLocals, returnedLocal);
+            if (savedSize > 0) {
+              bestRegion = new int[] {start, i, savedSize};
+            }
+          }
+        }
+        AbstractInsnNode insn = insns[i];
+        if (!isRealInsn(insn)) {
+          continue;
+        }
+        regionSize += insnSizes[i];
+        int opcode = insn.getOpcode();
+        if (regionSize > maxRegionSize
+            || (opcode >= Opcodes.IRETURN && opcode <= Opcodes.RETURN)
+            || opcode == Opcodes.MONITORENTER
+            || opcode == Opcodes.MONITOREXIT
+            || (opcode == Opcodes.PUTSTATIC && isFinalStaticField((FieldInsnNode) insn))) {
+          break;
+        }
+        if (jumpTargets[i] != null) {
+          for (int target : jumpTargets[i]) {
+            if (target <= start) {
+              return bestRegion;
+            }
+            minEnd = Math.max(minEnd, target);
+            regionJumpTargets.set(target);
+          }
+        }
+        fallsThrough = !isUnconditionalJump(opcode);
+        if (i > start && minJumpSource[i] < start) {
+          break;
+        }
+        maxSource = Math.max(maxSource, maxJumpSource[i]);
+        if (minTryCatchIndex[i] < start) {
+          break;
+        }
+        minEnd = Math.max(minEnd, minTryCatchRegionEnd[i]);
+        int local = getLocal(insn);
+        if (local >= 0) {
+          if (opcode == Opcodes.IINC || (opcode >= Opcodes.ILOAD && opcode <= Opcodes.ALOAD)) {
+            if (startLiveLocals.get(local) && !readLocals.get(local)) {
+              Type type = startFrame.getLocal(local).getType();
+              if (!isValidType(type)) {
+                break;
+              }
+              argumentSlots += type.getSize();
+              if (argumentSlots > MAX_ARGUMENT_SLOTS) {
+                break;
+              }
+            }
+            readLocals.set(local);
+          }
+          if (opcode == Opcodes.IINC || opcode >= Opcodes.ISTORE) {
+            writtenLocals.set(local);
+          }
+        }
+      }
+      return bestRegion;
+    }
+
+    /**
+     * Returns the local variables which must be passed to the helper method of a region.
+     *
+     * @param start the start index of a region returned by {@link #findRegion}.
+     * @param end the end index of this region.
+     * @return the local variables read in the region, or returned by its helper method, and live
+     *     at its start.
+     */
+    BitSet getArguments(final int start, final int end) {
+      BitSet arguments = new BitSet();
+      for (int i = start; i < end; ++i) {
+        int opcode = insns[i].getOpcode();
+        if (opcode == Opcodes.IINC || (opcode >= Opcodes.ILOAD && opcode <= Opcodes.ALOAD)) {
+          arguments.set(getLocal(insns[i]));
+        }
+      }
+      // The returned local variable may not be written on all the paths of the region, in which
+      // case its value before the region must be returned.
+      int returnedLocal = getReturnedLocal(start, end);
+      if (returnedLocal >= 0) {
+        arguments.set(returnedLocal);
+      }
+      arguments.and(liveLocals[start]);
+      return arguments;
+    }
+
+    /**
+     * Returns the local variable which must be returned by the helper method of a region.
+     *
+     * @param start the start index of a region returned by {@link #findRegion}.
+     * @param end the end index of this region.
+     * @return the local variable written in the region and live at its end, or -1.
+     */
+    int getReturnedLocal(final int start, final int end) {
+      BitSet writtenLocals = new BitSet();
+      for (int i = start; i < end; ++i) {
+        int opcode = insns[i].getOpcode();
+        if (opcode == Opcodes.IINC || (opcode >= Opcodes.ISTORE && opcode <= Opcodes.ASTORE)) {
+          writtenLocals.set(getLocal(insns[i]));
+        }
+      }
+      return getReturnedLocal(writtenLocals, end);
+    }
+
+    /**
+     * Returns the local variable which must be returned by the helper method of a region.
+     *
+     * @param writtenLocals the local variables written in the region.
+     * @param end the end index of the region.
+     * @return the local variable written in the region and live at its end, -1 if there is none, or
+     *     -2 if there are several ones or if its type is not valid.
+     */
+    private int getReturnedLocal(final BitSet writtenLocals, final int end) {
+      BitSet returnedLocals = (BitSet) writtenLocals.clone();
+      returnedLocals.and(liveLocals[end]);
+      int returnedLocal = returnedLocals.nextSetBit(0);
+      if (returnedLocal < 0) {
+        return -1;
+      }
+      if (returnedLocals.nextSetBit(returnedLocal + 1) >= 0
+          || !isValidType(frames[end].getLocal(returnedLocal).getType())) {
+        return -2;
+      }
+      return returnedLocal;
+    }
+
+    /**
+     * Returns the number of argument slots needed to pass the returned local variable of a region
+     * to its helper method, in addition to the local variables read in this region.
+     *
+     * @param returnedLocal the local variable returned by the helper method of the region, or -1.
+     * @param start the start index of the region.
+     * @param readLocals the local variables read in the region.
+     * @return the number of additional argument slots needed to pass returnedLocal, or a value
+     *     larger than {@link MethodSplitter#MAX_ARGUMENT_SLOTS} if it can't be passed as an
+     *     argument.
+     */
+    private int getReturnedLocalArgumentSlots(
+        final int returnedLocal, final int start, final BitSet readLocals) {
+      if (returnedLocal < 0
+          || !liveLocals[start].get(returnedLocal)
+          || readLocals.get(returnedLocal)) {
+        return 0;
+      }
+      Type type = frames[start].getLocal(returnedLocal).getType();
+      return isValidType(type) ? type.getSize() : MAX_ARGUMENT_SLOTS + 1;
+    }
+
+    /**
+     * Returns the maximum size in bytes of the code needed to call the helper method of a region.
+     *
+     * @param readLocals the local variables read in the region.
+     * @param startLiveLocals the local variables live at the start of the region.
+     * @param writtenLocals the local variables written in the region.
+     * @param returnedLocal the local variable returned by the helper method of the region, or -1.
+     * @return the maximum size in bytes of the code needed to call the helper method of a region.
+     */
+    private static int getMaxCallSize(
+        final BitSet readLocals,
+        final BitSet startLiveLocals,
+        final BitSet writtenLocals,
+        final int returnedLocal) {
+      BitSet arguments = (BitSet) readLocals.clone();
+      if (returnedLocal >= 0) {
+        arguments.set(returnedLocal);
+      }
+      arguments.and(startLiveLocals);
+      // A wide xLOAD for each argument, an INVOKESTATIC and a wide xSTORE for the returned value.
+      return 4 * arguments.cardinality() + 3 + (writtenLocals.isEmpty() ? 0 : 4);
+    }
+
+    /**
+     * Returns whether a region can start or end at the given index.
+     *
+     * @param index an instruction index.
+     * @return whether index is the index of a reachable real instruction, with an empty stack.
+     */
+    private boolean isRegionBoundary(final int index) {
+      return index < insns.length
+          && isRealInsn(insns[index])
+          && frames[index] != null
+          && frames[index].getStackSize() == 0;
+    }
+
+    /**
+     * Returns whether the given field instruction references a final static field which can't be
+     * assigned in a region.
+     *
+     * @param fieldInsn a field instruction.
+     * @return whether fieldInsn references a final static field of {@link
+     *     #finalStaticFieldsOwner}.
+     */
+    private boolean isFinalStaticField(final FieldInsnNode fieldInsn) {
+      return fieldInsn.owner.equals(finalStaticFieldsOwner)
+          && finalStaticFields.contains(fieldInsn.name + ' ' + fieldInsn.desc);
+    }
+
+    /**
+     * Returns whether the given local variable type can be used in a helper method descriptor.
+     *
+     * @param type the type of a local variable, computed by a {@link SimpleVerifier}.
+     * @return whether type can be used in a helper method descriptor.
+     */
+    private static boolean isValidType(final Type type) {
+      if (type == null) {
+        return false;
+      }
+      if (type.getSort() == Type.OBJECT) {
+        // The type of the null constant, in SimpleVerifier.
+        return !type.getInternalName().equals("null");
+      }
+      return type.getSort() != Type.VOID && type.getSort() != Type.METHOD;
+    }
+
+    /**
+     * Computes the local variables which are live before each instruction, with a backward data
+     * flow analysis.
+     *
+     * @param handlers the indices of the exception handlers of each instruction, or {@literal
+     *     null}.
+     * @return the local variables which are live before each instruction, and at the end.
+     */
+    private BitSet[] computeLiveLocals(final int[][] handlers) {
+      int numInsns = insns.length;
+      BitSet[] live = new BitSet[numInsns + 1];
+      for (int i = 0; i <= numInsns; ++i) {
+        live[i] = new BitSet();
+      }
+      boolean changed = true;
+      while (changed) {
+        changed = false;
+        for (int i = numInsns - 1; i >= 0; --i) {
+          AbstractInsnNode insn = insns[i];
+          int opcode = insn.getOpcode();
+          BitSet liveIn = new BitSet();
+          if (!isRealInsn(insn)) {
+            liveIn.or(live[i + 1]);
+          } else {
+            if (!isUnconditionalJump(opcode)) {
+              liveIn.or(live[i + 1]);
+            }
+            if (jumpTargets[i] != null) {
+              for (int target : jumpTargets[i]) {
+                liveIn.or(live[target]);
+              }
+            }
+            int local = getLocal(insn);
+            if (opcode >= Opcodes.ISTORE && opcode <= Opcodes.ASTORE) {
+              liveIn.clear(local);
+            } else if (local >= 0) {
+              liveIn.set(local);
+            }
+            if (handlers[i] != null) {
+              for (int handler : handlers[i]) {
+                liveIn.or(live[handler]);
+              }
+            }
+          }
+          if (!liveIn.equals(live[i])) {
+            live[i] = liveIn;
+            changed = true;
+          }
+        }
+      }
+      return live;
+    }
+
+    /**
+     * Returns the index of the real instruction designated by the given label.
+     *
+     * @param method the method containing the label.
+     * @param label a label of method.
+     * @return the index of the first real instruction after label, or the number of instructions.
+     */
+    private int getIndex(final MethodNode method, final LabelNode label) {
+      return nextRealInsn[method.instructions.indexOf(label)];
+    }
+
+    private static boolean isUnconditionalJump(final int opcode) {
+      return opcode == Opcodes.GOTO
+          || opcode == Opcodes.TABLESWITCH
+          || opcode == Opcodes.LOOKUPSWITCH
+          || (opcode >= Opcodes.IRETURN && opcode <= Opcodes.RETURN)
+          || opcode == Opcodes.ATHROW;
+    }
+
+    private static List<LabelNode> getJumpLabels(final AbstractInsnNode insn) {
+      List<LabelNode> labels = null;
+      if (insn instanceof JumpInsnNode) {
+        labels = new ArrayList<LabelNode>(1);
+        labels.add(((JumpInsnNode) insn).label);
+      } else if (insn instanceof TableSwitchInsnNode) {
+        labels = new ArrayList<LabelNode>(((TableSwitchInsnNode) insn).labels);
+        labels.add(((TableSwitchInsnNode) insn).dflt);
+      } else if (insn instanceof LookupSwitchInsnNode) {
+        labels = new ArrayList<LabelNode>(((LookupSwitchInsnNode) insn).labels);
+        labels.add(((LookupSwitchInsnNode) insn).dflt);
+      }
+      return labels;
+    }
+
+    private static int[] append(final int[] array, final int value) {
+      if (array == null) {
+        return new int[] {value};
+      }
+      int[] newArray = new int[array.length + 1];
+      System.arraycopy(array, 0, newArray, 0, array.length);
+      newArray[array.length] = value;
+      return newArray;
+    }
+  }
+}
@@ -0,0 +1,632 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.commons;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.TypePath;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.IincInsnNode;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.IntInsnNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+/**
+ * A {@link MethodVisitor} that removes useless instruction sequences, such as {@code ILOAD x;
+ * ISTORE x}, {@code DUP; POP}, {@code ICONST_0; IADD} or {@code CHECKCAST T; CHECKCAST T}. The
+ * instructions without operand, and the var, int, type, ldc and iinc instructions, are buffered in
+ * a small window, and a set of {@link PeepholeRule} is applied to this window each time a new
+ * instruction is added to it. All the other instructions, as well as labels, frames and line
+ * numbers, flush the window. Hence the rules never match instruction sequences which can be entered
+ * in the middle, and the stack map frames remain valid. Instructions with a type annotation are never
+ * removed.
+ *
+ * @see PeepholeOptimizer#DEFAULT_RULES
+ */
+public class PeepholeOptimizer extends MethodVisitor {
+
+  /** A rule removing the {@code xLOAD x; xSTORE x} sequences. */
+  public static final PeepholeRule LOAD_STORE = new StandardRule(StandardRule.LOAD_STORE);
+
+  /**
+   * A rule removing the values pushed on the operand stack and immediately popped, such as in
+   * {@code ALOAD x; POP}, {@code DUP; POP} or {@code LCONST_0; POP2}.
+   */
+  public static final PeepholeRule PUSH_POP = new StandardRule(StandardRule.PUSH_POP);
+
+  /**
+   * A rule removing the arithmetic operations with a neutral constant operand, such as in {@code
+   * ICONST_0; IADD}, {@code ICONST_1; IMUL} or {@code LCONST_0; LOR}.
+   */
+  public static final PeepholeRule ARITHMETIC_IDENTITY =
+      new StandardRule(StandardRule.ARITHMETIC_IDENTITY);
+
+  /**
+   * A rule removing the CHECKCAST instructions applied to a value which has just been checked for
+   * the same type, or which is the null constant.
+   */
+  public static final PeepholeRule REDUNDANT_CHECKCAST =
+      new StandardRule(StandardRule.REDUNDANT_CHECKCAST);
+
+  /** A rule removing the {@code IINC x 0} instructions and the {@code SWAP; SWAP} sequences. */
+  public static final PeepholeRule NO_OPERATION = new StandardRule(StandardRule.NO_OPERATION);
+
+  /** The rules used by default, i.e. all the rules defined in this class. */
+  public static final List<PeepholeRule> DEFAULT_RULES =
+      Collections.unmodifiableList(
+          Arrays.asList(
+              LOAD_STORE, PUSH_POP, ARITHMETIC_IDENTITY, REDUNDANT_CHECKCAST, NO_OPERATION));
+
+  /** The maximum number of instructions buffered in {@link #window}. */
+  private static final int MAX_WINDOW_SIZE = 4;
+
+  /** The rules applied to {@link #window}. */
+  private final PeepholeRule[] rules;
+
+  /** The instructions which have not been sent to the next method visitor yet. */
+  private final List<AbstractInsnNode> window;
+
+  /**
+   * The last visited instruction, if it has not been added to {@link #window} yet, or {@literal
+   * null}. It is added to the window (and the rules are applied) when the next element is visited,
+   * unless this element is a type annotation of this instruction.
+   */
+  private AbstractInsnNode lastInsn;
+
+  /** The size of the instructions added to {@link #window}. */
+  private final CodeSizeEvaluator inputSize;
+
+  /** The size of the instructions removed from {@link #window} and sent to the next visitor. */
+  private final CodeSizeEvaluator outputSize;
+
+  /**
+   * Constructs a new {@link PeepholeOptimizer} using the {@link #DEFAULT_RULES}. <i>Subclasses must
+   * not use this constructor</i>. Instead, they must use the {@link #PeepholeOptimizer(int,
+   * MethodVisitor, List)} version.
+   *
+   * @param methodVisitor the method visitor to which this visitor must delegate method calls. May
+   *     be {@literal null}.
+   * @throws IllegalStateException if a subclass calls this constructor.
+   */
+  public PeepholeOptimizer(final MethodVisitor methodVisitor) {
+    this(methodVisitor, DEFAULT_RULES);
+    if (getClass() != PeepholeOptimizer.class) {
+      throw new IllegalStateException();
+    }
+  }
+
+  /**
+   * Constructs a new {@link PeepholeOptimizer}. <i>Subclasses must not use this constructor</i>.
+   * Instead, they must use the {@link #PeepholeOptimizer(int, MethodVisitor, List)} version.
+   *
+   * @param methodVisitor the method visitor to which this visitor must delegate method calls. May
+   *     be {@literal null}.
+   * @param rules the rules to apply, in order of priority.
+   * @throws IllegalStateException if a subclass calls this constructor.
+   */
+  public PeepholeOptimizer(final MethodVisitor methodVisitor, final List<PeepholeRule> rules) {
+    this(/* latest api = */ Opcodes.ASM9, methodVisitor, rules);
+    if (getClass() != PeepholeOptimizer.class) {
+      throw new IllegalStateException();
+    }
+  }
+
+  /**
+   * Constructs a new {@link PeepholeOptimizer}.
+   *
+   * @param api the ASM API version implemented by this visitor. Must be one of {@link
+   *     Opcodes#ASM4}, {@link Opcodes#ASM5}, {@link Opcodes#ASM6}, {@link Opcodes#ASM7}, {@link
+   *     Opcodes#ASM8} or {@link Opcodes#ASM9}.
+   * @param methodVisitor the method visitor to which this visitor must delegate method calls. May
+   *     be {@literal null}.
+   * @param rules the rules to apply, in order of priority.
+   */
+  protected PeepholeOptimizer(
+      final int api, final MethodVisitor methodVisitor, final List<PeepholeRule> rules) {
+    super(api, methodVisitor);
+    this.rules = rules.toArray(new PeepholeRule[0]);
+    this.window = new ArrayList<AbstractInsnNode>(MAX_WINDOW_SIZE + 1);
+    this.inputSize = new CodeSizeEvaluator(null);
+    this.outputSize = new CodeSizeEvaluator(null);
+  }
+
+  /**
+   * Returns the minimum number of bytes saved by this optimizer, so far. This is the difference
+   * between the {@link CodeSizeEvaluator#getMinSize()} of the visited code and of the optimized
+   * code.
+   *
+   * @return the minimum number of bytes saved by this optimizer.
+   */
+  public int getMinSizeSaving() {
+    return inputSize.getMinSize() - outputSize.getMinSize();
+  }
+
+  /**
+   * Returns the maximum number of bytes saved by this optimizer, so far. This is the difference
+   * between the {@link CodeSizeEvaluator#getMaxSize()} of the visited code and of the optimized
+   * code.
+   *
+   * @return the maximum number of bytes saved by this optimizer.
+   */
+  public int getMaxSizeSaving() {
+    return inputSize.getMaxSize() - outputSize.getMaxSize();
+  }
+
+  // -----------------------------------------------------------------------------------------------
+  // Buffered instructions
+  // -----------------------------------------------------------------------------------------------
+
+  @Override
+  public void visitInsn(final int opcode) {
+    addInsn(new InsnNode(opcode));
+  }
+
+  @Override
+  public void visitIntInsn(final int opcode, final int operand) {
+    addInsn(new IntInsnNode(opcode, operand));
+  }
+
+  @Override
+  public void visitVarInsn(final int opcode, final int var) {
+    addInsn(new VarInsnNode(opcode, var));
+  }
+
+  @Override
+  public void visitTypeInsn(final int opcode, final String type) {
+    addInsn(new TypeInsnNode(opcode, type));
+  }
+
+  @Override
+  public void visitLdcInsn(final Object value) {
+    addInsn(new LdcInsnNode(value));
+  }
+
+  @Override
+  public void visitIincInsn(final int var, final int increment) {
+    addInsn(new IincInsnNode(var, increment));
+  }
+
+  // -----------------------------------------------------------------------------------------------
+  // Other instructions and elements, which flush the buffered instructions
+  // -----------------------------------------------------------------------------------------------
+
+  @Override
+  public void visitFrame(
+      final int type,
+      final int numLocal,
+      final Object[] local,
+      final int numStack,
+      final Object[] stack) {
+    flush();
+    super.visitFrame(type, numLocal, local, numStack, stack);
+  }
+
+  @Override
+  public void visitFieldInsn(
+      final int opcode, final String owner, final String name, final String descriptor) {
+    flush();
+    super.visitFieldInsn(opcode, owner, name, descriptor);
+  }
+
+  @Override
+  public void visitMethodInsn(
+      final int opcodeAndSource,
+      final String owner,
+      final String name,
+      final String descriptor,
+      final boolean isInterface) {
+    flush();
+    super.visitMethodInsn(opcodeAndSource, owner, name, descriptor, isInterface);
+  }
+
+  @Override
+  public void visitInvokeDynamicInsn(
+      final String name,
+      final String descriptor,
+      final Handle bootstrapMethodHandle,
+      final Object... bootstrapMethodArguments) {
+    flush();
+    super.visitInvokeDynamicInsn(name, descriptor, bootstrapMethodHandle, bootstrapMethodArguments);
+  }
+
+  @Override
+  public void visitJumpInsn(final int opcode, final Label label) {
+    flush();
+    super.visitJumpInsn(opcode, label);
+  }
+
+  @Override
+  public void visitLabel(final Label label) {
+    flush();
+    super.visitLabel(label);
+  }
+
+  @Override
+  public void visitTableSwitchInsn(
+      final int min, final int max, final Label dflt, final Label... labels) {
+    flush();
+    super.visitTableSwitchInsn(min, max, dflt, labels);
+  }
+
+  @Override
+  public void visitLookupSwitchInsn(final Label dflt, final int[] keys, final Label[] labels) {
+    flush();
+    super.visitLookupSwitchInsn(dflt, keys, labels);
+  }
+
+  @Override
+  public void visitMultiANewArrayInsn(final String descriptor, final int numDimensions) {
+    flush();
+    super.visitMultiANewArrayInsn(descriptor, numDimensions);
+  }
+
+  @Override
+  public AnnotationVisitor visitInsnAnnotation(
+      final int typeRef, final TypePath typePath, final String descriptor, final boolean visible) {
+    // The annotated instruction is lastInsn (or has already been sent to the next visitor, if it
+    // has several annotations). It must not be removed by the rules, so it bypasses the window.
+    AbstractInsnNode annotatedInsn = lastInsn;
+    lastInsn = null;
+    flush();
+    if (annotatedInsn != null) {
+      emitInsn(annotatedInsn);
+    }
+    return super.visitInsnAnnotation(typeRef, typePath, descriptor, visible);
+  }
+
+  @Override
+  public void visitTryCatchBlock(
+      final Label start, final Label end, final Label handler, final String type) {
+    flush();
+    super.visitTryCatchBlock(start, end, handler, type);
+  }
+
+  @Override
+  public void visitLineNumber(final int line, final Label start) {
+    flush();
+    super.visitLineNumber(line, start);
+  }
+
+  @Override
+  public void visitMaxs(final int maxStack, final int maxLocals) {
+    flush();
+    super.visitMaxs(maxStack, maxLocals);
+  }
+
+  @Override
+  public void visitEnd() {
+    flush();
+    super.visitEnd();
+  }
+
+  // -----------------------------------------------------------------------------------------------
+  // Utility methods
+  // -----------------------------------------------------------------------------------------------
+
+  /**
+   * Adds the previous {@link #lastInsn} to {@link #window}, if any, and replaces it with the given
+   * instruction.
+   *
+   * @param insn a newly visited instruction.
+   */
+  private void addInsn(final AbstractInsnNode insn) {
+    addLastInsnToWindow();
+    insn.accept(inputSize);
+    lastInsn = insn;
+  }
+
+  /**
+   * Adds {@link #lastInsn} to {@link #window}, if any, applies the rules until none of them
+   * matches, and sends the oldest instructions to the next method visitor if the window is full.
+   */
+  private void addLastInsnToWindow() {
+    if (lastInsn == null) {
+      return;
+    }
+    window.add(lastInsn);
+    lastInsn = null;
+    int ruleIndex = 0;
+    while (ruleIndex < rules.length) {
+      if (!window.isEmpty() && rules[ruleIndex].apply(window)) {
+        ruleIndex = 0;
+      } else {
+        ruleIndex++;
+      }
+    }
+    while (window.size() > MAX_WINDOW_SIZE) {
+      emitInsn(window.remove(0));
+    }
+  }
+
+  /** Sends all the instructions of {@link #window}, and {@link #lastInsn}, to the next visitor. */
+  private void flush() {
+    addLastInsnToWindow();
+    for (int i = 0; i < window.size(); ++i) {
+      emitInsn(window.get(i));
+    }
+    window.clear();
+  }
+
+  /**
+   * Sends an instruction to the next method visitor.
+   *
+   * @param insn an instruction removed from {@link #window}.
+   */
+  private void emitInsn(final AbstractInsnNode insn) {
+    insn.accept(outputSize);
+    if (mv != null) {
+      insn.accept(mv);
+    }
+  }
+
+  /** The rules defined in {@link PeepholeOptimizer}. */
+  private static final class StandardRule implements PeepholeRule {
+
+    static final int LOAD_STORE = 0;
+    static final int PUSH_POP = 1;
+    static final int ARITHMETIC_IDENTITY = 2;
+    static final int REDUNDANT_CHECKCAST = 3;
+    static final int NO_OPERATION = 4;
+
+    /** The kind of this rule. One of the constants defined above. */
+    private final int kind;
+
+    StandardRule(final int kind) {
+      this.kind = kind;
+    }
+
+    @Override
+    public boolean apply(final List<AbstractInsnNode> window) {
+      int size = window.size();
+      AbstractInsnNode last = window.get(size - 1);
+      AbstractInsnNode previous = size > 1 ? window.get(size - 2) : null;
+      if (previous == null) {
+        return kind == NO_OPERATION && applyNoOperation(window, last, null);
+      }
+      switch (kind) {
+        case LOAD_STORE:
+          return applyLoadStore(window, last, previous);
+        case PUSH_POP:
+          return applyPushPop(window, last, previous);
+        case ARITHMETIC_IDENTITY:
+          return applyArithmeticIdentity(window, last, previous);
+        case REDUNDANT_CHECKCAST:
+          return applyRedundantCheckcast(window, last, previous);
+        case NO_OPERATION:
+          return applyNoOperation(window, last, previous);
+        default:
+          throw new AssertionError();
+      }
+    }
+
+    private static boolean applyLoadStore(
+        final List<AbstractInsnNode> window,
+        final AbstractInsnNode last,
+        final AbstractInsnNode previous) {
+      int opcode = last.getOpcode();
+      if (opcode >= Opcodes.ISTORE
+          && opcode <= Opcodes.ASTORE
+          && previous.getOpcode() == opcode - (Opcodes.ISTORE - Opcodes.ILOAD)
+          && ((VarInsnNode) previous).var == ((VarInsnNode) last).var) {
+        removeLast(window, 2);
+        return true;
+      }
+      return false;
+    }
+
+    private static boolean applyPushPop(
+        final List<AbstractInsnNode> window,
+        final AbstractInsnNode last,
+        final AbstractInsnNode previous) {
+      int opcode = last.getOpcode();
+      if (opcode == Opcodes.POP) {
+        if (previous.getOpcode() == Opcodes.DUP || getPushedSize(previous) == 1) {
+          removeLast(window, 2);
+          return true;
+        }
+      } else if (opcode == Opcodes.POP2) {
+        if (previous.getOpcode() == Opcodes.DUP2 || getPushedSize(previous) == 2) {
+          removeLast(window, 2);
+          return true;
+        }
+        if (getPushedSize(previous) == 1
+            && window.size() > 2
+            && getPushedSize(window.get(window.size() - 3)) == 1) {
+          removeLast(window, 3);
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private static boolean applyArithmeticIdentity(
+        final List<AbstractInsnNode> window,
+        final AbstractInsnNode last,
+        final AbstractInsnNode previous) {
+      Object constant = getConstant(previous);
+      if (constant == null) {
+        return false;
+      }
+      Object neutralElement;
+      switch (last.getOpcode()) {
+        case Opcodes.IADD:
+        case Opcodes.ISUB:
+        case Opcodes.IOR:
+        case Opcodes.IXOR:
+        case Opcodes.ISHL:
+        case Opcodes.ISHR:
+        case Opcodes.IUSHR:
+        case Opcodes.LSHL:
+        case Opcodes.LSHR:
+        case Opcodes.LUSHR:
+          neutralElement = 0;
+          break;
+        case Opcodes.IMUL:
+        case Opcodes.IDIV:
+          neutralElement = 1;
+          break;
+        case Opcodes.LADD:
+        case Opcodes.LSUB:
+        case Opcodes.LOR:
+        case Opcodes.LXOR:
+          neutralElement = 0L;
+          break;
+        case Opcodes.LMUL:
+        case Opcodes.LDIV:
+          neutralElement = 1L;
+          break;
+        default:
+          return false;
+      }
+      if (neutralElement.equals(constant)) {
+        removeLast(window, 2);
+        return true;
+      }
+      return false;
+    }
+
+    private static boolean applyRedundantCheckcast(
+        final List<AbstractInsnNode> window,
+        final AbstractInsnNode last,
+        final AbstractInsnNode previous) {
+      if (last.getOpcode() == Opcodes.CHECKCAST
+          && (previous.getOpcode() == Opcodes.ACONST_NULL
+              || (previous.getOpcode() == Opcodes.CHECKCAST
+                  && ((TypeInsnNode) previous).desc.equals(((TypeInsnNode) last).desc)))) {
+        removeLast(window, 1);
+        return true;
+      }
+      return false;
+    }
+
+    private static boolean applyNoOperation(
+        final List<AbstractInsnNode> window,
+        final AbstractInsnNode last,
+        final AbstractInsnNode previous) {
+      if (last.getOpcode() == Opcodes.IINC && ((IincInsnNode) last).incr == 0) {
+        removeLast(window, 1);
+        return true;
+      }
+      if (last.getOpcode() == Opcodes.SWAP
+          && previous != null
+          && previous.getOpcode() == Opcodes.SWAP) {
+        removeLast(window, 2);
+        return true;
+      }
+      return false;
+    }
+
+    /**
+     * Returns the number of stack slots pushed by the given instruction, if it has no other effect.
+     *
+     * @param insn an instruction.
+     * @return the number of stack slots pushed by insn if it only pushes a value without any side
+     *     effect (and without any possible exception), or 0 otherwise.
+     */
+    private static int getPushedSize(final AbstractInsnNode insn) {
+      int opcode = insn.getOpcode();
+      switch (opcode) {
+        case Opcodes.ACONST_NULL:
+        case Opcodes.ICONST_M1:
+        case Opcodes.ICONST_0:
+        case Opcodes.ICONST_1:
+        case Opcodes.ICONST_2:
+        case Opcodes.ICONST_3:
+        case Opcodes.ICONST_4:
+        case Opcodes.ICONST_5:
+        case Opcodes.FCONST_0:
+        case Opcodes.FCONST_1:
+        case Opcodes.FCONST_2:
+        case Opcodes.BIPUSH:
+        case Opcodes.SIPUSH:
+        case Opcodes.ILOAD:
+        case Opcodes.FLOAD:
+        case Opcodes.ALOAD:
+          return 1;
+        case Opcodes.LCONST_0:
+        case Opcodes.LCONST_1:
+        case Opcodes.DCONST_0:
+        case Opcodes.DCONST_1:
+        case Opcodes.LLOAD:
+        case Opcodes.DLOAD:
+          return 2;
+        case Opcodes.LDC:
+          Object value = ((LdcInsnNode) insn).cst;
+          if (value instanceof Integer || value instanceof Float || value instanceof String) {
+            return 1;
+          } else if (value instanceof Long || value instanceof Double) {
+            return 2;
+          } else {
+            // Class, method type, method handle and dynamic constants can fail to resolve.
+            return 0;
+          }
+        default:
+          return 0;
+      }
+    }
+
+    /**
+     * Returns the int or long constant pushed by the given instruction.
+     *
+     * @param insn an instruction.
+     * @return the {@link Integer} or {@link Long} constant pushed by insn, or {@literal null} if it
+     *     does not push an int or long constant.
+     */
+    private static Object getConstant(final AbstractInsnNode insn) {
+      int opcode = insn.getOpcode();
+      if (opcode >= Opcodes.ICONST_M1 && opcode <= Opcodes.ICONST_5) {
+        return opcode - Opcodes.ICONST_0;
+      } else if (opcode == Opcodes.LCONST_0 || opcode == Opcodes.LCONST_1) {
+        return (long) (opcode - Opcodes.LCONST_0);
+      } else if (opcode == Opcodes.BIPUSH || opcode == Opcodes.SIPUSH) {
+        return ((IntInsnNode) insn).operand;
+      } else if (opcode == Opcodes.LDC) {
+        Object value = ((LdcInsnNode) insn).cst;
+        if (value instanceof Integer || value instanceof Long) {
+          return value;
+        }
+      }
+      return null;
+    }
+
+    private static void removeLast(final List<AbstractInsnNode> window, final int count) {
+      for (int i = 0; i < count; ++i) {
+        window.remove(window.size() - 1);
+      }
+    }
+  }
+}
@@ -0,0 +1,572 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.commons;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A persistent cache of transformed classes, stored in a local directory. Each transformed class is
+ * keyed by a hash of the original class content and of a transformer fingerprint, so that a class
+ * which has already been transformed with the same transformer, in this or a previous run, does not
+ * need to be parsed and written again. The cache has a bounded size, and evicts the least recently
+ * used classes when it is full. Its typical use is:
+ *
+ * <pre>
+ * byte[] transformedClass = cache.get(classFile);
+ * if (transformedClass == null) {
+ *   transformedClass = transform(classFile);
+ *   cache.put(classFile, transformedClass);
+ * }
+ * </pre>
+ *
+ * <p>The fingerprint must identify everything which can change the result of the transformation:
+ * the class visitor chain, its configuration, and the {@link org.objectweb.asm.ClassReader} and
+ * {@link org.objectweb.asm.ClassWriter} options. Several transformers with different fingerprints
+ * can share the same directory, but not at the same time: a directory must only be used by one
+ * cache instance at a time.
+ *
+ * <p>The transformed classes are appended to a data file, and the index of this file is kept in
+ * memory. The data file is compacted when it becomes larger than twice the maximum cache size, so
+ * that its size remains bounded. The index is saved in an index file after each compaction, and
+ * when the cache is closed (after compacting the data file if necessary). The classes added since
+ * the last compaction or {@link #close} are lost if the cache is not closed. This class is thread
+ * safe.
+ */
+public class TransformationCache implements Closeable {
+
+  /** The name of the file containing the index of the cached classes. */
+  static final String INDEX_FILE_NAME = "index";
+
+  /** The name of the file containing the content of the cached classes. */
+  static final String DATA_FILE_NAME = "data";
+
+  /** The first int of the index file. */
+  private static final int INDEX_FILE_MAGIC = 0x41534D43;
+
+  /** The version of the index and data files format. */
+  private static final int FORMAT_VERSION = 1;
+
+  /**
+   * The size of the header of the data file. This header contains the generation number of the data
+   * file, which is also stored in the index file, to detect out of sync files.
+   */
+  private static final int DATA_FILE_HEADER_SIZE = 8;
+
+  /** The digest algorithm used to compute the keys of the cached classes. */
+  private static final String DIGEST_ALGORITHM = "SHA-1";
+
+  /** The directory containing the index and data files. */
+  private final File directory;
+
+  /** The digest of the transformer fingerprint, which is part of the key of each class. */
+  private final byte[] fingerprintDigest;
+
+  /** The maximum total size of the cached classes, in bytes. */
+  private final long maxSize;
+
+  /**
+   * The cached classes, indexed by key, in access order (from the least recently used to the most
+   * recently used).
+   */
+  private final LinkedHashMap<Key, Entry> entries;
+
+  /**
+   * The lock protecting the access to the data file. Cached classes are read and written with the
+   * read lock, which allows concurrent accesses, while the data file is compacted or closed with
+   * the write lock. This lock must be acquired before the monitor of this object, which protects
+   * all the other fields.
+   */
+  private final ReadWriteLock dataFileLock;
+
+  /** The data file, opened in read-write mode. */
+  private RandomAccessFile dataFile;
+
+  /** The channel of {@link #dataFile}, used to read and write cached classes concurrently. */
+  private FileChannel dataChannel;
+
+  /** The generation number of the data file. Changes each time the data file is compacted. */
+  private long generation;
+
+  /** The length of the data file, i.e. the offset where the next cached class must be written. */
+  private long dataFileLength;
+
+  /** The total size of the cached classes, in bytes. */
+  private long size;
+
+  /** The number of {@link #get} calls which returned a cached class. */
+  private int hitCount;
+
+  /** The number of {@link #get} calls which did not find a cached class. */
+  private int missCount;
+
+  /** Whether this cache has been closed. */
+  private boolean closed;
+
+  /**
+   * Constructs a new {@link TransformationCache}, containing the classes cached in the given
+   * directory by the previous instances, if any.
+   *
+   * @param directory the directory where the cached classes are stored. It is created if it does
+   *     not exist.
+   * @param transformerFingerprint a string which identifies the transformation applied to the
+   *     cached classes, and all its options.
+   * @param maxSize the maximum total size of the cached classes, in bytes.
+   * @throws IOException if the directory can't be created, or if the cache files can't be read.
+   */
+  public TransformationCache(
+      final File directory, final String transformerFingerprint, final long maxSize)
+      throws IOException {
+    if (maxSize < 0) {
+      throw new IllegalArgumentException("Invalid maximum size: " + maxSize);
+    }
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Cannot create directory " + directory);
+    }
+    this.directory = directory;
+    this.fingerprintDigest = newMessageDigest().digest(transformerFingerprint.getBytes("UTF-8"));
+    this.maxSize = maxSize;
+    this.entries = new LinkedHashMap<Key, Entry>(256, 0.75f, /* accessOrder = */ true);
+    this.dataFileLock = new ReentrantReadWriteLock();
+    this.dataFile = new RandomAccessFile(new File(directory, DATA_FILE_NAME), "rw");
+    this.dataChannel = dataFile.getChannel();
+    try {
+      if (!readIndex()) {
+        entries.clear();
+        size = 0;
+        generation = System.nanoTime();
+        dataFile.setLength(0);
+        dataFile.writeLong(generation);
+      }
+      dataFileLength = dataFile.length();
+    } catch (IOException e) {
+      dataFile.close();
+      throw e;
+    }
+    evict();
+  }
+
+  // -----------------------------------------------------------------------------------------------
+  // Public methods
+  // -----------------------------------------------------------------------------------------------
+
+  /**
+   * Returns the cached transformed class corresponding to the given original class.
+   *
+   * @param classFile the content of an original class.
+   * @return the cached transformed class corresponding to the given original class, or {@literal
+   *     null} if it is not in this cache.
+   * @throws IOException if the cached class can't be read.
+   */
+  public byte[] get(final byte[] classFile) throws IOException {
+    Key key = new Key(computeKey(classFile));
+    dataFileLock.readLock().lock();
+    try {
+      Entry entry;
+      synchronized (this) {
+        checkNotClosed();
+        entry = entries.get(key);
+        if (entry == null) {
+          missCount++;
+          return null;
+        }
+        hitCount++;
+      }
+      // Cached classes are only moved or overwritten when the data file is compacted, which can't
+      // happen while the read lock is held. They can thus be read without holding the monitor.
+      ByteBuffer content = ByteBuffer.allocate(entry.length);
+      long position = entry.offset;
+      while (content.hasRemaining()) {
+        int bytesRead = dataChannel.read(content, position);
+        if (bytesRead < 0) {
+          throw new EOFException("Truncated cache data file in " + directory);
+        }
+        position += bytesRead;
+      }
+      return content.array();
+    } finally {
+      dataFileLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Adds a transformed class to this cache.
+   *
+   * @param classFile the content of the original class.
+   * @param transformedClassFile the content of the transformed class.
+   * @throws IOException if the transformed class can't be written.
+   */
+  public void put(final byte[] classFile, final byte[] transformedClassFile) throws IOException {
+    Key key = new Key(computeKey(classFile));
+    int length = transformedClassFile.length;
+    boolean compactionNeeded;
+    dataFileLock.readLock().lock();
+    try {
+      long offset;
+      synchronized (this) {
+        checkNotClosed();
+        if (length > maxSize) {
+          return;
+        }
+        offset = dataFileLength;
+        dataFileLength += length;
+      }
+      ByteBuffer content = ByteBuffer.wrap(transformedClassFile);
+      long position = offset;
+      while (content.hasRemaining()) {
+        position += dataChannel.write(content, position);
+      }
+      synchronized (this) {
+        Entry previousEntry = entries.put(key, new Entry(offset, length));
+        if (previousEntry != null) {
+          size -= previousEntry.length;
+        }
+        size += length;
+        evict();
+        compactionNeeded = isCompactionNeeded();
+      }
+    } finally {
+      dataFileLock.readLock().unlock();
+    }
+    if (compactionNeeded) {
+      dataFileLock.writeLock().lock();
+      try {
+        synchronized (this) {
+          if (!closed && isCompactionNeeded()) {
+            compact();
+            writeIndex();
+          }
+        }
+      } finally {
+        dataFileLock.writeLock().unlock();
+      }
+    }
+  }
+
+  /**
+   * Returns the number of classes in this cache.
+   *
+   * @return the number of classes in this cache.
+   */
+  public synchronized int getEntryCount() {
+    return entries.size();
+  }
+
+  /**
+   * Returns the total size of the classes in this cache.
+   *
+   * @return the total size of the classes in this cache, in bytes.
+   */
+  public synchronized long getSize() {
+    return size;
+  }
+
+  /**
+   * Returns the number of {@link #get} calls which returned a cached class.
+   *
+   * @return the number of {@link #get} calls which returned a cached class.
+   */
+  public synchronized int getHitCount() {
+    return hitCount;
+  }
+
+  /**
+   * Returns the number of {@link #get} calls which did not find a cached class.
+   *
+   * @return the number of {@link #get} calls which did not find a cached class.
+   */
+  public synchronized int getMissCount() {
+    return missCount;
+  }
+
+  /**
+   * Saves the index of this cache, compacts its data file if more than half of it contains evicted
+   * classes, and releases the associated resources. This cache can no longer be used after this
+   * call.
+   *
+   * @throws IOException if the cache files can't be written.
+   */
+  @Override
+  public void close() throws IOException {
+    dataFileLock.writeLock().lock();
+    try {
+      synchronized (this) {
+        if (closed) {
+          return;
+        }
+        closed = true;
+        try {
+          if (dataFileLength - DATA_FILE_HEADER_SIZE > 2 * size) {
+            compact();
+          }
+          writeIndex();
+        } finally {
+          dataFile.close();
+        }
+      }
+    } finally {
+      dataFileLock.writeLock().unlock();
+    }
+  }
+
+  // -----------------------------------------------------------------------------------------------
+  // Utility methods
+  // -----------------------------------------------------------------------------------------------
+
+  /**
+   * Returns the key of the given original class.
+   *
+   * @param classFile the content of an original class.
+   * @return the digest of the transformer fingerprint and of the given content.
+   */
+  private byte[] computeKey(final byte[] classFile) {
+    MessageDigest messageDigest = newMessageDigest();
+    messageDigest.update(fingerprintDigest);
+    messageDigest.update(classFile);
+    return messageDigest.digest();
+  }
+
+  /**
+   * Evicts the least recently used classes until the total size of the cached classes is at most
+   * {@link #maxSize}.
+   */
+  private void evict() {
+    Iterator<Entry> iterator = entries.values().iterator();
+    while (size > maxSize) {
+      size -= iterator.next().length;
+      iterator.remove();
+    }
+  }
+
+  /**
+   * Returns whether the data file must be compacted before this cache is closed.
+   *
+   * @return whether the classes in the data file, including the evicted ones, take more than twice
+   *     {@link #maxSize} (and thus whether the evicted ones take more than {@link #maxSize}).
+   */
+  private boolean isCompactionNeeded() {
+    return dataFileLength - DATA_FILE_HEADER_SIZE > 2 * maxSize;
+  }
+
+  /** Throws an exception if this cache has been closed. */
+  private void checkNotClosed() {
+    if (closed) {
+      throw new IllegalStateException("Closed cache");
+    }
+  }
+
+  /**
+   * Reads the index file and checks that it is consistent with the data file.
+   *
+   * @return whether the index file has been read successfully. If not, the cache must be considered
+   *     empty.
+   * @throws IOException if the index file can't be read.
+   */
+  private boolean readIndex() throws IOException {
+    DataInputStream indexInput;
+    try {
+      indexInput =
+          new DataInputStream(
+              new BufferedInputStream(new FileInputStream(new File(directory, INDEX_FILE_NAME))));
+    } catch (FileNotFoundException e) {
+      return false;
+    }
+    try {
+      long dataLength = dataFile.length();
+      if (indexInput.readInt() != INDEX_FILE_MAGIC
+          || indexInput.readInt() != FORMAT_VERSION
+          || dataLength < DATA_FILE_HEADER_SIZE) {
+        return false;
+      }
+      generation = indexInput.readLong();
+      dataFile.seek(0);
+      if (dataFile.readLong() != generation) {
+        return false;
+      }
+      int entryCount = indexInput.readInt();
+      for (int i = 0; i < entryCount; ++i) {
+        byte[] key = new byte[fingerprintDigest.length];
+        indexInput.readFully(key);
+        long offset = indexInput.readLong();
+        int length = indexInput.readInt();
+        if (offset < DATA_FILE_HEADER_SIZE || length < 0 || offset + length > dataLength) {
+          return false;
+        }
+        entries.put(new Key(key), new Entry(offset, length));
+        size += length;
+      }
+      return true;
+    } catch (EOFException e) {
+      return false;
+    } finally {
+      indexInput.close();
+    }
+  }
+
+  /**
+   * Writes the index file, via a temporary file, so that an interrupted write does not corrupt the
+   * existing index file.
+   *
+   * @throws IOException if the index file can't be written.
+   */
+  private void writeIndex() throws IOException {
+    File indexFile = new File(directory, INDEX_FILE_NAME);
+    File tmpIndexFile = new File(directory, INDEX_FILE_NAME + ".tmp");
+    DataOutputStream indexOutput =
+        new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpIndexFile)));
+    try {
+      indexOutput.writeInt(INDEX_FILE_MAGIC);
+      indexOutput.writeInt(FORMAT_VERSION);
+      indexOutput.writeLong(generation);
+      indexOutput.writeInt(entries.size());
+      for (Map.Entry<Key, Entry> entry : entries.entrySet()) {
+        indexOutput.write(entry.getKey().digest);
+        indexOutput.writeLong(entry.getValue().offset);
+        indexOutput.writeInt(entry.getValue().length);
+      }
+    } finally {
+      indexOutput.close();
+    }
+    if (indexFile.exists() && !indexFile.delete() || !tmpIndexFile.renameTo(indexFile)) {
+      throw new IOException("Cannot write " + indexFile);
+    }
+  }
+
+  /**
+   * Rewrites the data file so that it only contains the currently cached classes, with a new
+   * generation number, and opens it again. This invalidates the index file until {@link
+   * #writeIndex} is called. Must be called with the write lock of {@link #dataFileLock}.
+   *
+   * @throws IOException if the data file can't be rewritten.
+   */
+  private void compact() throws IOException {
+    generation = System.nanoTime();
+    File compactedFile = new File(directory, DATA_FILE_NAME + ".tmp");
+    DataOutputStream dataOutput =
+        new DataOutputStream(new BufferedOutputStream(new FileOutputStream(compactedFile)));
+    try {
+      dataOutput.writeLong(generation);
+      long offset = DATA_FILE_HEADER_SIZE;
+      byte[] buffer = new byte[0];
+      for (Entry entry : entries.values()) {
+        if (buffer.length < entry.length) {
+          buffer = new byte[entry.length];
+        }
+        dataFile.seek(entry.offset);
+        dataFile.readFully(buffer, 0, entry.length);
+        dataOutput.write(buffer, 0, entry.length);
+        entry.offset = offset;
+        offset += entry.length;
+      }
+    } finally {
+      dataOutput.close();
+    }
+    dataFile.close();
+    File file = new File(directory, DATA_FILE_NAME);
+    if (!file.delete() || !compactedFile.renameTo(file)) {
+      throw new IOException("Cannot write " + file);
+    }
+    dataFile = new RandomAccessFile(file, "rw");
+    dataChannel = dataFile.getChannel();
+    dataFileLength = dataFile.length();
+  }
+
+  /**
+   * Returns a new {@link MessageDigest} for {@link #DIGEST_ALGORITHM}.
+   *
+   * @return a new {@link MessageDigest} for {@link #DIGEST_ALGORITHM}.
+   */
+  private static MessageDigest newMessageDigest() {
+    try {
+      return MessageDigest.getInstance(DIGEST_ALGORITHM);
+    } catch (NoSuchAlgorithmException e) {
+      // Every Java platform implementation must support SHA-1.
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /** The key of a cached class. */
+  private static final class Key {
+
+    /** The digest of the transformer fingerprint and of the original class. */
+    final byte[] digest;
+
+    /** The hash code of {@link #digest}. */
+    private final int hashCode;
+
+    Key(final byte[] digest) {
+      this.digest = digest;
+      this.hashCode = Arrays.hashCode(digest);
+    }
+
+    @Override
+    public boolean equals(final Object object) {
+      return object instanceof Key && Arrays.equals(digest, ((Key) object).digest);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  /** The location of a cached class in the data file. */
+  private static final class Entry {
+
+    /** The offset of the cached class in the data file. */
+    long offset;
+
+    /** The length of the cached class, in bytes. */
+    final int length;
+
+    Entry(final long offset, final int length) {
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+}
@@ -0,0 +1,311 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.commons;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.test.AsmTest;
+
+/** Unit tests for {@link CachingRemapper}. */
+public class CachingRemapperTest extends AsmTest {
+
+  @Test
+  public void testConstructor_invalidCapacity() {
+    Remapper remapper = new SimpleRemapper("A", "B");
+
+    Executable constructor = () -> new CachingRemapper(remapper, 1);
+
+    Exception exception = assertThrows(IllegalArgumentException.class, constructor);
+    assertEquals("Invalid capacity: 1", exception.getMessage());
+    assertThrows(
+        IllegalArgumentException.class, () -> new CachingRemapper(remapper, (1 << 30) + 1));
+  }
+
+  @Test
+  public void testGetCapacity() {
+    Remapper remapper = new SimpleRemapper("A", "B");
+
+    assertEquals(CachingRemapper.DEFAULT_CAPACITY, new CachingRemapper(remapper).getCapacity());
+    assertEquals(16, new CachingRemapper(remapper, 16).getCapacity());
+    assertEquals(32, new CachingRemapper(remapper, 17).getCapacity());
+  }
+
+  @Test
+  public void testGetRemapper() {
+    Remapper remapper = new SimpleRemapper("A", "B");
+
+    assertSame(remapper, new CachingRemapper(remapper).getRemapper());
+  }
+
+  @Test
+  public void testMapType_memoized() {
+    CountingRemapper countingRemapper = new CountingRemapper();
+    CachingRemapper cachingRemapper = new CachingRemapper(countingRemapper);
+
+    String mappedType1 = cachingRemapper.mapType("pkg/A");
+    int count = countingRemapper.count.get();
+    String mappedType2 = cachingRemapper.mapType("pkg/A");
+
+    assertEquals("shaded/pkg/A", mappedType1);
+    assertSame(mappedType1, mappedType2);
+    assertEquals(count, countingRemapper.count.get());
+    assertNull(cachingRemapper.mapType(null));
+    assertArrayEquals(
+        new String[] {"shaded/pkg/A", "java/lang/Object"},
+        cachingRemapper.mapTypes(new String[] {"pkg/A", "java/lang/Object"}));
+  }
+
+  @Test
+  public void testMapDesc_memoized() {
+    CountingRemapper countingRemapper = new CountingRemapper();
+    CachingRemapper cachingRemapper = new CachingRemapper(countingRemapper);
+
+    String mappedDescriptor1 = cachingRemapper.mapDesc("[Lpkg/A;");
+    int count = countingRemapper.count.get();
+    String mappedDescriptor2 = cachingRemapper.mapDesc("[Lpkg/A;");
+
+    assertEquals("[Lshaded/pkg/A;", mappedDescriptor1);
+    assertSame(mappedDescriptor1, mappedDescriptor2);
+    assertEquals(count, countingRemapper.count.get());
+  }
+
+  @Test
+  public void testMapMethodDesc_memoized() {
+    CountingRemapper countingRemapper = new CountingRemapper();
+    CachingRemapper cachingRemapper = new CachingRemapper(countingRemapper);
+
+    String mappedDescriptor1 = cachingRemapper.mapMethodDesc("(ILpkg/A;)Lpkg/B;");
+    int count = countingRemapper.count.get();
+    String mappedDescriptor2 = cachingRemapper.mapMethodDesc("(ILpkg/A;)Lpkg/B;");
+
+    assertEquals("(ILshaded/pkg/A;)Lshaded/pkg/B;", mappedDescriptor1);
+    assertSame(mappedDescriptor1, mappedDescriptor2);
+    assertEquals(count, countingRemapper.count.get());
+  }
+
+  @Test
+  public void testMapSignature_memoized() {
+    CountingRemapper countingRemapper = new CountingRemapper();
+    CachingRemapper cachingRemapper = new CachingRemapper(countingRemapper);
+
+    String mappedSignature1 = cachingRemapper.mapSignature("Lpkg/A<Lpkg/B;>;", true);
+    int count = countingRemapper.count.get();
+    String mappedSignature2 = cachingRemapper.mapSignature("Lpkg/A<Lpkg/B;>;", true);
+    String mappedSignature3 = cachingRemapper.mapSignature("Lpkg/A<Lpkg/B;>;", false);
+
+    assertEquals("Lshaded/pkg/A<Lshaded/pkg/B;>;", mappedSignature1);
+    assertSame(mappedSignature1, mappedSignature2);
+    assertEquals("Lshaded/pkg/A<Lshaded/pkg/B;>;", mappedSignature3);
+    assertEquals(count + 2, countingRemapper.count.get());
+    assertNull(cachingRemapper.mapSignature(null, false));
+  }
+
+  @Test
+  public void testClear() {
+    CountingRemapper countingRemapper = new CountingRemapper();
+    CachingRemapper cachingRemapper = new CachingRemapper(countingRemapper);
+    cachingRemapper.mapType("pkg/A");
+    int count = countingRemapper.count.get();
+
+    cachingRemapper.clear();
+    cachingRemapper.mapType("pkg/A");
+
+    assertEquals(count + 1, countingRemapper.count.get());
+  }
+
+  @Test
+  public void testMapType_evictedValues() {
+    CachingRemapper cachingRemapper = new CachingRemapper(new CountingRemapper(), 2);
+
+    for (int i = 0; i < 100; ++i) {
+      assertEquals("shaded/pkg/C" + i, cachingRemapper.mapType("pkg/C" + i));
+      assertEquals("shaded/pkg/C" + (i / 2), cachingRemapper.mapType("pkg/C" + (i / 2)));
+    }
+  }
+
+  @Test
+  public void testDelegatedMethods() {
+    Map<String, String> mapping = new HashMap<>();
+    mapping.put("Owner.method()V", "newMethod");
+    mapping.put(".indy()V", "newIndy");
+    mapping.put("Owner.field", "newField");
+    mapping.put("LAnnotation;.value", "newValue");
+    mapping.put("Outer$Inner", "NewOuter$NewInner");
+    mapping.put("Owner", "NewOwner");
+    Remapper remapper =
+        new SimpleRemapper(mapping) {
+          @Override
+          public String mapRecordComponentName(
+              final String owner, final String name, final String descriptor) {
+            return mapFieldName(owner, name, descriptor);
+          }
+
+          @Override
+          public String mapPackageName(final String name) {
+            return "new" + name;
+          }
+
+          @Override
+          public String mapModuleName(final String name) {
+            return "new" + name;
+          }
+        };
+    CachingRemapper cachingRemapper = new CachingRemapper(remapper);
+
+    assertEquals("newMethod", cachingRemapper.mapMethodName("Owner", "method", "()V"));
+    assertEquals("newIndy", cachingRemapper.mapInvokeDynamicMethodName("indy", "()V"));
+    assertEquals("newField", cachingRemapper.mapFieldName("Owner", "field", "I"));
+    assertEquals("newField", cachingRemapper.mapRecordComponentName("Owner", "field", "I"));
+    assertEquals("newValue", cachingRemapper.mapAnnotationAttributeName("LAnnotation;", "value"));
+    assertEquals("newpkg", cachingRemapper.mapPackageName("pkg"));
+    assertEquals("newmodule", cachingRemapper.mapModuleName("module"));
+    assertEquals("NewInner", cachingRemapper.mapInnerClassName("Outer$Inner", "Outer", "Inner"));
+    assertEquals("NewOwner", cachingRemapper.map("Owner"));
+    assertEquals(Type.getType("LNewOwner;"), cachingRemapper.mapValue(Type.getType("LOwner;")));
+  }
+
+  /**
+   * Tests that classes remapped with a CachingRemapper are the same as those remapped with the
+   * delegate remapper.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testAllMethods_precompiledClass(
+      final PrecompiledClass classParameter, final Api apiParameter) {
+    ClassReader classReader = new ClassReader(classParameter.getBytes());
+    String internalName = classParameter.getInternalName();
+
+    byte[] expectedClassFile =
+        remap(classReader, new ClassRemapperTest.UpperCaseRemapper(internalName));
+    CachingRemapper cachingRemapper =
+        new CachingRemapper(new ClassRemapperTest.UpperCaseRemapper(internalName), 16);
+    byte[] classFile1 = remap(classReader, cachingRemapper);
+    byte[] classFile2 = remap(classReader, cachingRemapper);
+
+    assertArrayEquals(expectedClassFile, classFile1);
+    assertArrayEquals(expectedClassFile, classFile2);
+  }
+
+  @Test
+  public void testAllMethods_concurrentRemappings() throws Exception {
+    CachingRemapper cachingRemapper = new CachingRemapper(new CountingRemapper(), 64);
+    List<PrecompiledClass> classes = new ArrayList<>();
+    List<byte[]> expectedClassFiles = new ArrayList<>();
+    for (PrecompiledClass precompiledClass : PrecompiledClass.values()) {
+      if (!precompiledClass.isMoreRecentThan(Api.ASM9)) {
+        classes.add(precompiledClass);
+        expectedClassFiles.add(
+            remap(new ClassReader(precompiledClass.getBytes()), new CountingRemapper()));
+      }
+    }
+
+    ExecutorService executorService = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Boolean>> futures = new ArrayList<>();
+      for (int i = 0; i < 8; ++i) {
+        futures.add(
+            executorService.submit(
+                new RemapAllClasses(cachingRemapper, classes, expectedClassFiles)));
+      }
+      for (Future<Boolean> future : futures) {
+        assertEquals(Boolean.TRUE, future.get());
+      }
+    } finally {
+      executorService.shutdown();
+    }
+  }
+
+  private static byte[] remap(final ClassReader classReader, final Remapper remapper) {
+    ClassWriter classWriter = new ClassWriter(0);
+    classReader.accept(new ClassRemapper(classWriter, remapper), 0);
+    return classWriter.toByteArray();
+  }
+
+  /** A remapper which moves all the non JDK classes to a "shaded" package. */
+  private static class CountingRemapper extends Remapper {
+
+    final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public String map(final String internalName) {
+      count.incrementAndGet();
+      if (internalName.startsWith("java/") || internalName.equals("module-info")) {
+        return internalName;
+      }
+      return "shaded/" + internalName;
+    }
+  }
+
+  private static class RemapAllClasses implements Callable<Boolean> {
+
+    private final CachingRemapper cachingRemapper;
+    private final List<PrecompiledClass> classes;
+    private final List<byte[]> expectedClassFiles;
+
+    RemapAllClasses(
+        final CachingRemapper cachingRemapper,
+        final List<PrecompiledClass> classes,
+        final List<byte[]> expectedClassFiles) {
+      this.cachingRemapper = cachingRemapper;
+      this.classes = classes;
+      this.expectedClassFiles = expectedClassFiles;
+    }
+
+    @Override
+    public Boolean call() {
+      for (int i = 0; i < classes.size(); ++i) {
+        byte[] classFile = remap(new ClassReader(classes.get(i).getBytes()), cachingRemapper);
+        if (!Arrays.equals(expectedClassFiles.get(i), classFile)) {
+          return Boolean.FALSE;
+        }
+      }
+      return Boolean.TRUE;
+    }
+  }
+}
@@ -0,0 +1,239 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.commons;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.test.AsmTest;
+import org.objectweb.asm.test.ClassFile;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/** Unit tests for {@link DeadCodeEliminator}. */
+public class DeadCodeEliminatorTest extends AsmTest {
+
+  @Test
+  public void testConstructor() {
+    assertDoesNotThrow(
+        () -> new DeadCodeEliminator(null, Opcodes.ACC_PUBLIC, "name", "()V", null, null));
+    assertThrows(
+        IllegalStateException.class,
+        () -> new DeadCodeEliminator(null, Opcodes.ACC_PUBLIC, "name", "()V", null, null) {});
+  }
+
+  @Test
+  public void testVisitEnd() {
+    MethodNode methodNode = new MethodNode(Opcodes.ACC_STATIC, "m", "(I)I", null, null);
+
+    visitDeadCodeMethod(newDeadCodeEliminator(methodNode), null);
+
+    assertEquals(
+        Arrays.asList(Opcodes.ILOAD, Opcodes.POP, Opcodes.ICONST_1, Opcodes.IRETURN),
+        getOpcodes(methodNode));
+    assertEquals(0, methodNode.tryCatchBlocks.size());
+    assertEquals(1, methodNode.localVariables.size());
+    assertEquals("x", methodNode.localVariables.get(0).name);
+  }
+
+  @Test
+  public void testVisitEnd_switchTargets() {
+    MethodNode methodNode = new MethodNode(Opcodes.ACC_STATIC, "m", "(I)I", null, null);
+    MethodVisitor methodVisitor = newDeadCodeEliminator(methodNode);
+    Label label0 = new Label();
+    Label label1 = new Label();
+    Label label2 = new Label();
+    methodVisitor.visitCode();
+    methodVisitor.visitVarInsn(Opcodes.ILOAD, 0);
+    methodVisitor.visitTableSwitchInsn(0, 1, label0, label1, label2);
+    methodVisitor.visitLabel(label1);
+    methodVisitor.visitJumpInsn(Opcodes.GOTO, label0);
+    methodVisitor.visitLabel(label2);
+    methodVisitor.visitJumpInsn(Opcodes.GOTO, label2);
+    methodVisitor.visitLabel(label0);
+    methodVisitor.visitInsn(Opcodes.ICONST_0);
+    methodVisitor.visitInsn(Opcodes.IRETURN);
+    methodVisitor.visitMaxs(1, 1);
+    methodVisitor.visitEnd();
+
+    assertEquals(
+        Arrays.asList(
+            Opcodes.ILOAD, Opcodes.TABLESWITCH, Opcodes.GOTO, Opcodes.ICONST_0, Opcodes.IRETURN),
+        getOpcodes(methodNode));
+  }
+
+  @Test
+  public void testVisitEnd_compressedFrames() {
+    MethodNode methodNode = new MethodNode(Opcodes.ACC_STATIC, "m", "(I)I", null, null);
+    MethodVisitor methodVisitor = newDeadCodeEliminator(methodNode);
+    Label label = new Label();
+    methodVisitor.visitCode();
+    methodVisitor.visitJumpInsn(Opcodes.GOTO, label);
+    methodVisitor.visitInsn(Opcodes.NOP);
+    methodVisitor.visitLabel(label);
+    methodVisitor.visitFrame(Opcodes.F_SAME, 0, null, 0, null);
+    methodVisitor.visitInsn(Opcodes.RETURN);
+    methodVisitor.visitMaxs(0, 1);
+    methodVisitor.visitEnd();
+
+    assertEquals(Arrays.asList(Opcodes.GOTO, Opcodes.NOP, Opcodes.RETURN), getOpcodes(methodNode));
+  }
+
+  @Test
+  public void testVisitEnd_computeFrames() {
+    ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+    classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "C", null, "java/lang/Object", null);
+    MethodVisitor constructor =
+        classWriter.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+    constructor.visitCode();
+    constructor.visitVarInsn(Opcodes.ALOAD, 0);
+    constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+    constructor.visitInsn(Opcodes.RETURN);
+    constructor.visitMaxs(0, 0);
+    constructor.visitEnd();
+    visitDeadCodeMethod(
+        newDeadCodeEliminator(classWriter.visitMethod(Opcodes.ACC_STATIC, "m", "(I)I", null, null)),
+        classWriter);
+    classWriter.visitEnd();
+    byte[] classFile = classWriter.toByteArray();
+
+    ClassNode classNode = new ClassNode();
+    new ClassReader(classFile).accept(classNode, 0);
+
+    assertEquals(
+        Arrays.asList(Opcodes.ILOAD, Opcodes.POP, Opcodes.ICONST_1, Opcodes.IRETURN),
+        getOpcodes(classNode.methods.get(1)));
+    assertDoesNotThrow(() -> new ClassFile(classFile).newInstance());
+  }
+
+  /** Tests that classes transformed with a DeadCodeEliminator can be loaded and instantiated. */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testAllMethods_precompiledClass(
+      final PrecompiledClass classParameter, final Api apiParameter) {
+    ClassReader classReader = new ClassReader(classParameter.getBytes());
+    ClassWriter classWriter = new ClassWriter(0);
+    ClassVisitor classVisitor =
+        new ClassVisitor(apiParameter.value(), classWriter) {
+          @Override
+          public MethodVisitor visitMethod(
+              final int access,
+              final String name,
+              final String descriptor,
+              final String signature,
+              final String[] exceptions) {
+            return new DeadCodeEliminator(
+                super.visitMethod(access, name, descriptor, signature, exceptions),
+                access,
+                name,
+                descriptor,
+                signature,
+                exceptions);
+          }
+        };
+
+    classReader.accept(classVisitor, ClassReader.EXPAND_FRAMES);
+
+    if (classParameter.isNotCompatibleWithCurrentJdk()) {
+      assertThrows(
+          UnsupportedClassVersionError.class,
+          () -> new ClassFile(classWriter.toByteArray()).newInstance());
+    } else {
+      assertDoesNotThrow(() -> new ClassFile(classWriter.toByteArray()).newInstance());
+    }
+  }
+
+  private static DeadCodeEliminator newDeadCodeEliminator(final MethodVisitor methodVisitor) {
+    return new DeadCodeEliminator(methodVisitor, Opcodes.ACC_STATIC, "m", "(I)I", null, null);
+  }
+
+  /**
+   * Visits a method with a jump to a GOTO chain, unreachable code, an exception handler whose range
+   * is unreachable, and a local variable whose range is unreachable.
+   */
+  private static void visitDeadCodeMethod(
+      final MethodVisitor methodVisitor, final ClassVisitor classVisitor) {
+    Label start = new Label();
+    Label label1 = new Label();
+    Label label2 = new Label();
+    Label label3 = new Label();
+    Label deadStart = new Label();
+    Label deadEnd = new Label();
+    Label handler = new Label();
+    Label end = new Label();
+    methodVisitor.visitCode();
+    methodVisitor.visitTryCatchBlock(deadStart, deadEnd, handler, "java/lang/Exception");
+    methodVisitor.visitLabel(start);
+    methodVisitor.visitVarInsn(Opcodes.ILOAD, 0);
+    methodVisitor.visitJumpInsn(Opcodes.IFEQ, label1);
+    methodVisitor.visitJumpInsn(Opcodes.GOTO, label2);
+    methodVisitor.visitLabel(label1);
+    methodVisitor.visitJumpInsn(Opcodes.GOTO, label3);
+    methodVisitor.visitLabel(label2);
+    methodVisitor.visitJumpInsn(Opcodes.GOTO, label3);
+    methodVisitor.visitLabel(deadStart);
+    methodVisitor.visitLineNumber(10, deadStart);
+    methodVisitor.visitInsn(Opcodes.ICONST_0);
+    methodVisitor.visitInsn(Opcodes.IRETURN);
+    methodVisitor.visitLabel(deadEnd);
+    methodVisitor.visitLabel(label3);
+    methodVisitor.visitInsn(Opcodes.ICONST_1);
+    methodVisitor.visitInsn(Opcodes.IRETURN);
+    methodVisitor.visitLabel(handler);
+    methodVisitor.visitInsn(Opcodes.ATHROW);
+    methodVisitor.visitLabel(end);
+    methodVisitor.visitLocalVariable("x", "I", null, start, end, 0);
+    methodVisitor.visitLocalVariable("y", "I", null, deadStart, deadEnd, 1);
+    methodVisitor.visitMaxs(classVisitor == null ? 1 : 0, classVisitor == null ? 2 : 0);
+    methodVisitor.visitEnd();
+  }
+
+  private static List<Integer> getOpcodes(final MethodNode methodNode) {
+    List<Integer> opcodes = new ArrayList<>();
+    for (AbstractInsnNode insn : methodNode.instructions) {
+      if (insn.getOpcode() != -1) {
+        opcodes.add(insn.getOpcode());
+      }
+    }
+    return opcodes;
+  }
+}
@@ -0,0 +1,268 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.commons;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.test.AsmTest.PrecompiledClass;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.ModuleExportNode;
+
+/** Unit tests for {@link JarRelocator}. */
+public class JarRelocatorTest {
+
+  private static final byte[] RESOURCE = {1, 2, 3};
+
+  private static final Pattern NON_RELOCATED_REFERENCE = Pattern.compile("(?<!shaded/)jdk3/");
+
+  @TempDir Path tempDir;
+
+  private ExecutorService executorService;
+
+  @BeforeEach
+  public void setUp() {
+    executorService = Executors.newFixedThreadPool(4);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    executorService.shutdownNow();
+  }
+
+  @Test
+  public void testGetRemapper() {
+    Map<String, String> relocations = new HashMap<>();
+    relocations.put("com/foo", "shaded/foo");
+    relocations.put("com/foo/bar", "shaded/bar");
+    relocations.put("org.baz", "shaded.baz");
+    Remapper remapper = new JarRelocator(relocations, executorService).getRemapper();
+
+    assertEquals("shaded/foo/A", remapper.mapType("com/foo/A"));
+    assertEquals("shaded/foo/sub/A", remapper.mapType("com/foo/sub/A"));
+    assertEquals("shaded/bar/A", remapper.mapType("com/foo/bar/A"));
+    assertEquals("shaded/baz/A", remapper.mapType("org/baz/A"));
+    assertEquals("com/foobar/A", remapper.mapType("com/foobar/A"));
+    assertEquals("com/A", remapper.mapType("com/A"));
+    assertEquals("[Lshaded/foo/A;", remapper.mapDesc("[Lcom/foo/A;"));
+    assertEquals("shaded/foo", remapper.mapPackageName("com/foo"));
+    assertEquals("shaded.foo", remapper.mapPackageName("com.foo"));
+    assertEquals("shaded.bar.A", remapper.mapValue("com.foo.bar.A"));
+    assertEquals("shaded/foo/a.txt", remapper.mapValue("com/foo/a.txt"));
+    assertEquals("com.foobar", remapper.mapValue("com.foobar"));
+    assertEquals("hello", remapper.mapValue("hello"));
+    assertEquals("com/foo/A is missing", remapper.mapValue("com/foo/A is missing"));
+    assertEquals("com.foo.A: %s", remapper.mapValue("com.foo.A: %s"));
+    assertEquals("com/foo/1/A", remapper.mapValue("com/foo/1/A"));
+    assertEquals("com/foo/", remapper.mapValue("com/foo/"));
+    assertEquals(Type.getType("Lshaded/foo/A;"), remapper.mapValue(Type.getType("Lcom/foo/A;")));
+    assertEquals("pkg", remapper.mapModuleName("pkg"));
+  }
+
+  @Test
+  public void testTransform_jarFile() throws IOException {
+    Map<String, byte[]> inputEntries = new LinkedHashMap<>();
+    inputEntries.put("META-INF/", null);
+    inputEntries.put("META-INF/MANIFEST.MF", RESOURCE);
+    inputEntries.put(
+        "META-INF/services/jdk3.AllInstructions",
+        "# Comment\n  jdk3.AllStructures # Provider\r\njava.lang.Object\n"
+            .getBytes(StandardCharsets.UTF_8));
+    inputEntries.put("jdk3/", null);
+    inputEntries.put("jdk3/resource.txt", RESOURCE);
+    inputEntries.put(
+        "jdk3/AllInstructions.class", PrecompiledClass.JDK3_ALL_INSTRUCTIONS.getBytes());
+    inputEntries.put("jdk3/AllStructures.class", PrecompiledClass.JDK3_ALL_STRUCTURES.getBytes());
+    inputEntries.put("jdk8/AllStructures.class", PrecompiledClass.JDK8_ALL_STRUCTURES.getBytes());
+    inputEntries.put(
+        "META-INF/versions/9/jdk3/AllStructures.class",
+        PrecompiledClass.JDK3_ALL_STRUCTURES.getBytes());
+    File inputJar = tempDir.resolve("input.jar").toFile();
+    writeJar(inputJar, inputEntries);
+    JarRelocator jarRelocator =
+        new JarRelocator(Collections.singletonMap("jdk3", "shaded/jdk3"), executorService);
+
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    JarTransformer.Statistics statistics;
+    try (ZipFile zipFile = new ZipFile(inputJar)) {
+      statistics = jarRelocator.transform(zipFile, outputStream);
+    }
+    Map<String, byte[]> outputEntries = readJar(outputStream.toByteArray());
+
+    assertEquals(
+        Arrays.asList(
+            "META-INF/",
+            "META-INF/MANIFEST.MF",
+            "META-INF/services/shaded.jdk3.AllInstructions",
+            "shaded/jdk3/",
+            "shaded/jdk3/resource.txt",
+            "shaded/jdk3/AllInstructions.class",
+            "shaded/jdk3/AllStructures.class",
+            "jdk8/AllStructures.class",
+            "META-INF/versions/9/shaded/jdk3/AllStructures.class"),
+        new ArrayList<>(outputEntries.keySet()));
+    assertEquals(9, statistics.getEntryCount());
+    assertEquals(4, statistics.getClassCount());
+    assertArrayEquals(RESOURCE, outputEntries.get("META-INF/MANIFEST.MF"));
+    assertArrayEquals(RESOURCE, outputEntries.get("shaded/jdk3/resource.txt"));
+    assertEquals(
+        "# Comment\n  shaded.jdk3.AllStructures # Provider\r\njava.lang.Object\n",
+        new String(
+            outputEntries.get("META-INF/services/shaded.jdk3.AllInstructions"),
+            StandardCharsets.UTF_8));
+    for (Map.Entry<String, byte[]> outputEntry : outputEntries.entrySet()) {
+      String name = outputEntry.getKey();
+      if (name.endsWith(".class")) {
+        ClassReader classReader = new ClassReader(outputEntry.getValue());
+        assertTrue(name.endsWith(classReader.getClassName() + ".class"));
+        String content = new String(outputEntry.getValue(), StandardCharsets.ISO_8859_1);
+        assertFalse(NON_RELOCATED_REFERENCE.matcher(content).find(), name);
+      }
+    }
+  }
+
+  @Test
+  public void testTransform_moduleInfo() throws IOException {
+    Map<String, byte[]> inputEntries = new LinkedHashMap<>();
+    inputEntries.put("module-info.class", PrecompiledClass.JDK9_MODULE.getBytes());
+    File inputJar = tempDir.resolve("input.jar").toFile();
+    writeJar(inputJar, inputEntries);
+    JarRelocator jarRelocator =
+        new JarRelocator(Collections.singletonMap("pkg", "shaded/pkg"), executorService);
+
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    try (ZipFile zipFile = new ZipFile(inputJar)) {
+      jarRelocator.transform(zipFile, outputStream);
+    }
+    Map<String, byte[]> outputEntries = readJar(outputStream.toByteArray());
+
+    ClassNode classNode = new ClassNode();
+    new ClassReader(outputEntries.get("module-info.class")).accept(classNode, 0);
+    assertEquals("pkg", classNode.module.name);
+    List<String> exportedPackages = new ArrayList<>();
+    for (ModuleExportNode moduleExportNode : classNode.module.exports) {
+      exportedPackages.add(moduleExportNode.packaze);
+    }
+    assertEquals(Arrays.asList("shaded/pkg", "shaded/pkg/internal"), exportedPackages);
+    assertEquals("shaded/pkg/internal", classNode.module.opens.get(0).packaze);
+    assertEquals(Arrays.asList("shaded/pkg/A", "java/lang/Integer"), classNode.module.uses);
+    assertEquals("shaded/pkg/A", classNode.module.provides.get(0).service);
+    assertEquals(
+        Arrays.asList("shaded/pkg/internal/AImpl"), classNode.module.provides.get(0).providers);
+  }
+
+  @Test
+  public void testTransform_duplicateOutputEntry() throws IOException {
+    Map<String, byte[]> inputEntries = new LinkedHashMap<>();
+    inputEntries.put("jdk3/", null);
+    inputEntries.put("jdk3/resource.txt", RESOURCE);
+    inputEntries.put("shaded/jdk3/", null);
+    inputEntries.put("shaded/jdk3/resource.txt", RESOURCE);
+    File inputJar = tempDir.resolve("input.jar").toFile();
+    writeJar(inputJar, inputEntries);
+    JarRelocator jarRelocator =
+        new JarRelocator(Collections.singletonMap("jdk3", "shaded/jdk3"), executorService);
+
+    try (ZipFile zipFile = new ZipFile(inputJar)) {
+      Executable transform = () -> jarRelocator.transform(zipFile, new ByteArrayOutputStream());
+
+      Exception exception = assertThrows(IOException.class, transform);
+      assertEquals(
+          "Duplicate output entry shaded/jdk3/resource.txt, for input entries "
+              + "jdk3/resource.txt and shaded/jdk3/resource.txt",
+          exception.getMessage());
+    }
+  }
+
+  private static void writeJar(final File jarFile, final Map<String, byte[]> entries)
+      throws IOException {
+    try (ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(jarFile))) {
+      for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+        zipOutputStream.putNextEntry(new ZipEntry(entry.getKey()));
+        if (entry.getValue() != null) {
+          zipOutputStream.write(entry.getValue());
+        }
+      }
+    }
+  }
+
+  private Map<String, byte[]> readJar(final byte[] content) throws IOException {
+    File jarFile = tempDir.resolve("output.jar").toFile();
+    Files.write(jarFile.toPath(), content);
+    Map<String, byte[]> entries = new LinkedHashMap<>();
+    try (ZipFile zipFile = new ZipFile(jarFile)) {
+      for (ZipEntry zipEntry : Collections.list(zipFile.entries())) {
+        try (InputStream inputStream = zipFile.getInputStream(zipEntry)) {
+          entries.put(zipEntry.getName(), readAll(inputStream));
+        }
+      }
+    }
+    return entries;
+  }
+
+  private static byte[] readAll(final InputStream inputStream) throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    byte[] data = new byte[1024];
+    int bytesRead;
+    while ((bytesRead = inputStream.read(data)) != -1) {
+      outputStream.write(data, 0, bytesRead);
+    }
+    return outputStream.toByteArray();
+  }
+}
@@ -0,0 +1,415 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.commons;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.test.AsmTest.PrecompiledClass;
+
+/** Unit tests for {@link JarTransformer}. */
+public class JarTransformerTest {
+
+  private static final byte[] RESOURCE = {1, 2, 3};
+
+  @TempDir Path tempDir;
+
+  private ExecutorService executorService;
+
+  @BeforeEach
+  public void setUp() {
+    executorService = Executors.newFixedThreadPool(4);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    executorService.shutdownNow();
+  }
+
+  @Test
+  public void testTransform_jarFile() throws IOException {
+    File inputJar = tempDir.resolve("input.jar").toFile();
+    List<String> inputEntryNames = writeJar(inputJar);
+    JarTransformer jarTransformer =
+        new JarTransformer(classVisitor -> newClassRemapper(classVisitor), 0, 0, executorService);
+
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    JarTransformer.Statistics statistics;
+    try (ZipFile zipFile = new ZipFile(inputJar)) {
+      statistics = jarTransformer.transform(zipFile, outputStream);
+    }
+
+    File outputJar = tempDir.resolve("output.jar").toFile();
+    Files.write(outputJar.toPath(), outputStream.toByteArray());
+    List<String> outputEntryNames = new ArrayList<>();
+    try (ZipFile zipFile = new ZipFile(outputJar)) {
+      Enumeration<? extends ZipEntry> entries = zipFile.entries();
+      while (entries.hasMoreElements()) {
+        ZipEntry zipEntry = entries.nextElement();
+        outputEntryNames.add(zipEntry.getName());
+        if (zipEntry.getName().endsWith(".class")) {
+          try (InputStream inputStream = zipFile.getInputStream(zipEntry)) {
+            assertArrayEquals(transform(getBytes(zipEntry.getName())), readAll(inputStream));
+          }
+        } else if (!zipEntry.isDirectory()) {
+          try (InputStream inputStream = zipFile.getInputStream(zipEntry)) {
+            assertArrayEquals(RESOURCE, readAll(inputStream));
+          }
+        }
+      }
+    }
+    assertEquals(inputEntryNames, outputEntryNames);
+    assertEquals(inputEntryNames.size(), statistics.getEntryCount());
+    assertEquals(inputEntryNames.size() - 2, statistics.getClassCount());
+    assertTrue(statistics.getElapsedTime() > 0);
+    assertTrue(statistics.getAverageClassTime() > 0);
+    assertTrue(statistics.getMaxClassTime() >= statistics.getAverageClassTime());
+    assertTrue(statistics.getThroughput() > 0);
+    assertTrue(statistics.toString().contains(statistics.getClassCount() + " classes"));
+  }
+
+  @Test
+  public void testTransform_directory() throws IOException {
+    File inputDirectory = tempDir.resolve("input").toFile();
+    File outputDirectory = tempDir.resolve("output").toFile();
+    writeFile(new File(inputDirectory, "b/C.class"), PrecompiledClass.JDK3_ALL_INSTRUCTIONS);
+    writeFile(new File(inputDirectory, "a/C.class"), PrecompiledClass.JDK3_ALL_STRUCTURES);
+    writeFile(new File(inputDirectory, "a/resource.txt"), RESOURCE);
+    JarTransformer jarTransformer =
+        new JarTransformer(classVisitor -> newClassRemapper(classVisitor), 0, 0, executorService);
+
+    JarTransformer.Statistics statistics =
+        jarTransformer.transform(inputDirectory, outputDirectory);
+
+    assertEquals(3, statistics.getEntryCount());
+    assertEquals(2, statistics.getClassCount());
+    assertArrayEquals(
+        transform(PrecompiledClass.JDK3_ALL_STRUCTURES.getBytes()),
+        Files.readAllBytes(new File(outputDirectory, "a/C.class").toPath()));
+    assertArrayEquals(
+        transform(PrecompiledClass.JDK3_ALL_INSTRUCTIONS.getBytes()),
+        Files.readAllBytes(new File(outputDirectory, "b/C.class").toPath()));
+    assertArrayEquals(
+        RESOURCE, Files.readAllBytes(new File(outputDirectory, "a/resource.txt").toPath()));
+  }
+
+  @Test
+  public void testTransform_emptySubDirectory() throws IOException {
+    File inputDirectory = tempDir.resolve("input").toFile();
+    File outputDirectory = tempDir.resolve("output").toFile();
+    writeFile(new File(inputDirectory, "a/resource.txt"), RESOURCE);
+    new File(inputDirectory, "b/c").mkdirs();
+    JarTransformer jarTransformer =
+        new JarTransformer(classVisitor -> classVisitor, 0, 0, executorService);
+
+    JarTransformer.Statistics statistics =
+        jarTransformer.transform(inputDirectory, outputDirectory);
+
+    assertEquals(2, statistics.getEntryCount());
+    assertTrue(new File(outputDirectory, "b/c").isDirectory());
+    assertArrayEquals(
+        RESOURCE, Files.readAllBytes(new File(outputDirectory, "a/resource.txt").toPath()));
+  }
+
+  @Test
+  public void testTransform_emptyDirectory() throws IOException {
+    File inputDirectory = tempDir.toFile();
+    JarTransformer jarTransformer =
+        new JarTransformer(classVisitor -> classVisitor, 0, 0, executorService);
+
+    JarTransformer.Statistics statistics = jarTransformer.transform(inputDirectory, inputDirectory);
+
+    assertEquals(0, statistics.getEntryCount());
+    assertEquals(0, statistics.getAverageClassTime());
+  }
+
+  @Test
+  public void testTransform_invalidDirectory() {
+    File inputDirectory = tempDir.resolve("unknown").toFile();
+    JarTransformer jarTransformer =
+        new JarTransformer(classVisitor -> classVisitor, 0, 0, executorService);
+
+    Executable transform = () -> jarTransformer.transform(inputDirectory, inputDirectory);
+
+    assertThrows(IOException.class, transform);
+  }
+
+  @Test
+  public void testTransform_transformationError() throws IOException {
+    File inputJar = tempDir.resolve("input.jar").toFile();
+    writeJar(inputJar);
+    JarTransformer jarTransformer =
+        new JarTransformer(
+            classVisitor -> {
+              throw new UnsupportedOperationException();
+            },
+            0,
+            0,
+            executorService);
+
+    try (ZipFile zipFile = new ZipFile(inputJar)) {
+      Executable transform = () -> jarTransformer.transform(zipFile, new ByteArrayOutputStream());
+
+      assertThrows(UnsupportedOperationException.class, transform);
+    }
+  }
+
+  @Test
+  public void testTransform_writeError() throws IOException, InterruptedException {
+    File inputJar = tempDir.resolve("input.jar").toFile();
+    int classCount = writeJar(inputJar).size() - 2;
+    CountDownLatch latch = new CountDownLatch(1);
+    AtomicInteger transformedClassCount = new AtomicInteger();
+    JarTransformer jarTransformer =
+        new JarTransformer(
+            classVisitor -> {
+              transformedClassCount.incrementAndGet();
+              try {
+                latch.await(10, TimeUnit.SECONDS);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+              return classVisitor;
+            },
+            0,
+            0,
+            executorService);
+    OutputStream outputStream =
+        new OutputStream() {
+          @Override
+          public void write(final int b) throws IOException {
+            throw new IOException("Broken output");
+          }
+        };
+
+    try (ZipFile zipFile = new ZipFile(inputJar)) {
+      Executable transform = () -> jarTransformer.transform(zipFile, outputStream);
+
+      Exception exception = assertThrows(IOException.class, transform);
+      assertEquals("Broken output", exception.getMessage());
+    }
+    latch.countDown();
+    executorService.shutdown();
+    assertTrue(executorService.awaitTermination(10, TimeUnit.SECONDS));
+    assertTrue(transformedClassCount.get() < classCount);
+  }
+
+  @Test
+  public void testTransform_resourceError() throws IOException, InterruptedException {
+    File inputJar = tempDir.resolve("input.jar").toFile();
+    List<String> inputEntryNames = writeJar(inputJar);
+    int classCount = inputEntryNames.size() - 2;
+    CountDownLatch latch = new CountDownLatch(1);
+    AtomicInteger transformedClassCount = new AtomicInteger();
+    JarTransformer jarTransformer =
+        new JarTransformer(
+            classVisitor -> {
+              transformedClassCount.incrementAndGet();
+              try {
+                latch.await(10, TimeUnit.SECONDS);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+              return classVisitor;
+            },
+            0,
+            0,
+            executorService) {
+          @Override
+          protected byte[] transformResource(final String name, final byte[] content)
+              throws IOException {
+            throw new IOException("Invalid resource");
+          }
+        };
+    File inputDirectory = tempDir.resolve("input").toFile();
+    for (String entryName : inputEntryNames) {
+      if (entryName.endsWith(".class")) {
+        writeFile(new File(inputDirectory, entryName), getBytes(entryName));
+      }
+    }
+    writeFile(new File(inputDirectory, "zzz/resource.txt"), RESOURCE);
+
+    Executable transform =
+        () -> jarTransformer.transform(inputDirectory, tempDir.resolve("output").toFile());
+
+    Exception exception = assertThrows(IOException.class, transform);
+    assertEquals("Invalid resource", exception.getMessage());
+    latch.countDown();
+    executorService.shutdown();
+    assertTrue(executorService.awaitTermination(10, TimeUnit.SECONDS));
+    assertTrue(transformedClassCount.get() < classCount);
+  }
+
+  @Test
+  public void testTransform_transformationCache() throws IOException {
+    File inputDirectory = tempDir.resolve("input").toFile();
+    File outputDirectory = tempDir.resolve("output").toFile();
+    writeFile(new File(inputDirectory, "a/C.class"), PrecompiledClass.JDK3_ALL_STRUCTURES);
+    writeFile(new File(inputDirectory, "b/C.class"), PrecompiledClass.JDK3_ALL_INSTRUCTIONS);
+    File cacheDirectory = tempDir.resolve("cache").toFile();
+    JarTransformer jarTransformer =
+        new JarTransformer(classVisitor -> newClassRemapper(classVisitor), 0, 0, executorService);
+
+    JarTransformer.Statistics statistics1;
+    try (TransformationCache cache = new TransformationCache(cacheDirectory, "remap", 1 << 20)) {
+      jarTransformer.setTransformationCache(cache);
+      statistics1 = jarTransformer.transform(inputDirectory, outputDirectory);
+    }
+    JarTransformer.Statistics statistics2;
+    try (TransformationCache cache = new TransformationCache(cacheDirectory, "remap", 1 << 20)) {
+      jarTransformer.setTransformationCache(cache);
+      statistics2 = jarTransformer.transform(inputDirectory, outputDirectory);
+    }
+
+    assertEquals(0, statistics1.getCachedClassCount());
+    assertEquals(2, statistics2.getCachedClassCount());
+    assertArrayEquals(
+        transform(PrecompiledClass.JDK3_ALL_STRUCTURES.getBytes()),
+        Files.readAllBytes(new File(outputDirectory, "a/C.class").toPath()));
+    assertArrayEquals(
+        transform(PrecompiledClass.JDK3_ALL_INSTRUCTIONS.getBytes()),
+        Files.readAllBytes(new File(outputDirectory, "b/C.class").toPath()));
+  }
+
+  @Test
+  public void testTransform_transformationCacheError() throws IOException {
+    File inputDirectory = tempDir.resolve("input").toFile();
+    writeFile(new File(inputDirectory, "a/C.class"), PrecompiledClass.JDK3_ALL_STRUCTURES);
+    JarTransformer jarTransformer =
+        new JarTransformer(classVisitor -> classVisitor, 0, 0, executorService);
+    TransformationCache cache =
+        new TransformationCache(tempDir.resolve("cache").toFile(), "identity", 1 << 20) {
+          @Override
+          public byte[] get(final byte[] classFile) throws IOException {
+            throw new IOException("Broken cache");
+          }
+        };
+    jarTransformer.setTransformationCache(cache);
+
+    Executable transform = () -> jarTransformer.transform(inputDirectory, inputDirectory);
+
+    Exception exception = assertThrows(IOException.class, transform);
+    assertEquals("Broken cache", exception.getMessage());
+    cache.close();
+  }
+
+  private static ClassVisitor newClassRemapper(final ClassVisitor classVisitor) {
+    return new ClassRemapper(
+        classVisitor,
+        new SimpleRemapper(Collections.singletonMap("java/lang/Object", "renamed/Object")));
+  }
+
+  private static byte[] transform(final byte[] classFile) {
+    ClassReader classReader = new ClassReader(classFile);
+    ClassWriter classWriter = new ClassWriter(classReader, 0);
+    classReader.accept(newClassRemapper(classWriter), 0);
+    return classWriter.toByteArray();
+  }
+
+  private static byte[] getBytes(final String entryName) {
+    for (PrecompiledClass precompiledClass : PrecompiledClass.values()) {
+      if (entryName.equals(precompiledClass.getInternalName() + ".class")) {
+        return precompiledClass.getBytes();
+      }
+    }
+    throw new IllegalArgumentException(entryName);
+  }
+
+  private static List<String> writeJar(final File jarFile) throws IOException {
+    List<String> entryNames = new ArrayList<>();
+    try (ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(jarFile))) {
+      zipOutputStream.putNextEntry(new ZipEntry("META-INF/"));
+      entryNames.add("META-INF/");
+      zipOutputStream.putNextEntry(new ZipEntry("META-INF/resource.txt"));
+      zipOutputStream.write(RESOURCE);
+      entryNames.add("META-INF/resource.txt");
+      for (PrecompiledClass precompiledClass : PrecompiledClass.values()) {
+        if (precompiledClass.getInternalName().equals("module-info")) {
+          continue;
+        }
+        String entryName = precompiledClass.getInternalName() + ".class";
+        zipOutputStream.putNextEntry(new ZipEntry(entryName));
+        zipOutputStream.write(precompiledClass.getBytes());
+        entryNames.add(entryName);
+      }
+    }
+    return entryNames;
+  }
+
+  private static void writeFile(final File file, final PrecompiledClass precompiledClass)
+      throws IOException {
+    writeFile(file, precompiledClass.getBytes());
+  }
+
+  private static void writeFile(final File file, final byte[] content) throws IOException {
+    file.getParentFile().mkdirs();
+    try (OutputStream outputStream = new FileOutputStream(file)) {
+      outputStream.write(content);
+    }
+  }
+
+  private static byte[] readAll(final InputStream inputStream) throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    byte[] data = new byte[1024];
+    int bytesRead;
+    while ((bytesRead = inputStream.read(data)) != -1) {
+      outputStream.write(data, 0, bytesRead);
+    }
+    return outputStream.toByteArray();
+  }
+}
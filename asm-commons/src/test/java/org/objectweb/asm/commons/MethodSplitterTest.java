@@ -0,0 +1,407 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.commons;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Method;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodTooLargeException;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.test.AsmTest;
+import org.objectweb.asm.test.ClassFile;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/** Unit tests for {@link MethodSplitter}. */
+public class MethodSplitterTest extends AsmTest {
+
+  @Test
+  public void testConstructor() {
+    assertDoesNotThrow(() -> new MethodSplitter(null));
+    assertDoesNotThrow(() -> new MethodSplitter(null, 1, null));
+    assertThrows(IllegalArgumentException.class, () -> new MethodSplitter(null, 0, null));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new MethodSplitter(null, MethodSplitter.MAX_CODE_SIZE + 1, null));
+  }
+
+  @Test
+  public void testVisitMethod_smallMethod() {
+    ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+    generateClass(new MethodSplitter(classWriter), 10);
+    ClassWriter expectedClassWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+    generateClass(expectedClassWriter, 10);
+
+    assertEquals(
+        new ClassFile(expectedClassWriter.toByteArray()), new ClassFile(classWriter.toByteArray()));
+  }
+
+  @Test
+  public void testVisitMethod_largeMethod() throws Exception {
+    ClassWriter expectedClassWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+    generateClass(expectedClassWriter, 100);
+    ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+    generateClass(new MethodSplitter(classWriter, 1000, null), 100);
+    byte[] classFile = classWriter.toByteArray();
+
+    ClassNode classNode = new ClassNode();
+    new ClassReader(classFile).accept(classNode, 0);
+    assertTrue(classNode.methods.size() > 3);
+    for (MethodNode methodNode : classNode.methods) {
+      CodeSizeEvaluator codeSizeEvaluator = new CodeSizeEvaluator(null);
+      methodNode.accept(codeSizeEvaluator);
+      assertTrue(codeSizeEvaluator.getMaxSize() <= 1000);
+      if (!methodNode.name.equals("compute") && !methodNode.name.equals("<init>")) {
+        assertTrue(methodNode.name.startsWith("compute$split$"));
+        assertEquals(
+            Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_SYNTHETIC, methodNode.access);
+      }
+    }
+    for (int i = -5; i < 5; ++i) {
+      assertEquals(
+          invokeCompute(expectedClassWriter.toByteArray(), i), invokeCompute(classFile, i));
+    }
+  }
+
+  @Test
+  public void testVisitMethod_tooLargeMethod() throws Exception {
+    ClassWriter expectedClassWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+    generateClass(expectedClassWriter, 4000);
+    ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+    generateClass(new MethodSplitter(classWriter), 4000);
+
+    assertThrows(MethodTooLargeException.class, () -> expectedClassWriter.toByteArray());
+    assertEquals(42 * 3 + 4000, invokeCompute(classWriter.toByteArray(), 42));
+  }
+
+  @Test
+  public void testVisitMethod_returnedLocalNotWrittenOnAllPaths() throws Exception {
+    ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+    ClassVisitor classVisitor = new MethodSplitter(classWriter, 40, null);
+    classVisitor.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "C", null, "java/lang/Object", null);
+    generateConstructor(classVisitor);
+    // int x = b; ...; if (a != 0) { x = 7; } ...; return x;
+    MethodVisitor methodVisitor =
+        classVisitor.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "m", "(II)I", null, null);
+    methodVisitor.visitCode();
+    methodVisitor.visitVarInsn(Opcodes.ILOAD, 1);
+    methodVisitor.visitVarInsn(Opcodes.ISTORE, 2);
+    generateAdditions(methodVisitor, 8);
+    Label label = new Label();
+    methodVisitor.visitVarInsn(Opcodes.ILOAD, 0);
+    methodVisitor.visitJumpInsn(Opcodes.IFEQ, label);
+    methodVisitor.visitIntInsn(Opcodes.BIPUSH, 7);
+    methodVisitor.visitVarInsn(Opcodes.ISTORE, 2);
+    methodVisitor.visitLabel(label);
+    generateAdditions(methodVisitor, 8);
+    methodVisitor.visitVarInsn(Opcodes.ILOAD, 2);
+    methodVisitor.visitInsn(Opcodes.IRETURN);
+    methodVisitor.visitMaxs(0, 0);
+    methodVisitor.visitEnd();
+    classVisitor.visitEnd();
+
+    Class<?> clazz = new ClassFile(classWriter.toByteArray()).newInstance().getClass();
+    Method method = clazz.getMethod("m", int.class, int.class);
+    assertTrue(clazz.getDeclaredMethods().length > 2);
+    assertEquals(5, method.invoke(null, 0, 5));
+    assertEquals(7, method.invoke(null, 1, 5));
+  }
+
+  @Test
+  public void testVisitMethod_staticInitializerAssigningFinalFields() throws Exception {
+    ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+    ClassVisitor classVisitor = new MethodSplitter(classWriter, 64, null);
+    classVisitor.visit(Opcodes.V9, Opcodes.ACC_PUBLIC, "C", null, "java/lang/Object", null);
+    classVisitor.visitField(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "sum", "I", null, null);
+    for (int i = 0; i < 8; ++i) {
+      classVisitor.visitField(
+          Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL, "F" + i, "I", null, null);
+    }
+    generateConstructor(classVisitor);
+    // for each i: sum += i; sum += i; sum += i; sum += i; Fi = i;
+    MethodVisitor methodVisitor =
+        classVisitor.visitMethod(Opcodes.ACC_STATIC, "<clinit>", "()V", null, null);
+    methodVisitor.visitCode();
+    for (int i = 0; i < 8; ++i) {
+      for (int j = 0; j < 4; ++j) {
+        methodVisitor.visitFieldInsn(Opcodes.GETSTATIC, "C", "sum", "I");
+        methodVisitor.visitIntInsn(Opcodes.BIPUSH, i);
+        methodVisitor.visitInsn(Opcodes.IADD);
+        methodVisitor.visitFieldInsn(Opcodes.PUTSTATIC, "C", "sum", "I");
+      }
+      methodVisitor.visitIntInsn(Opcodes.BIPUSH, i);
+      methodVisitor.visitFieldInsn(Opcodes.PUTSTATIC, "C", "F" + i, "I");
+    }
+    methodVisitor.visitInsn(Opcodes.RETURN);
+    methodVisitor.visitMaxs(0, 0);
+    methodVisitor.visitEnd();
+    classVisitor.visitEnd();
+
+    Class<?> clazz = new ClassFile(classWriter.toByteArray()).newInstance().getClass();
+    assertTrue(clazz.getDeclaredMethods().length > 1);
+    assertEquals(112, clazz.getField("sum").getInt(null));
+    for (int i = 0; i < 8; ++i) {
+      assertEquals(i, clazz.getField("F" + i).getInt(null));
+    }
+  }
+
+  @Test
+  public void testVisitMethod_regionEndingWithAthrow() throws Exception {
+    ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+    ClassVisitor classVisitor = new MethodSplitter(classWriter, 40, null);
+    classVisitor.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "C", null, "java/lang/Object", null);
+    generateConstructor(classVisitor);
+    // if (a != 0) { x = b; } else { ...; throw new IllegalStateException(); } return x;
+    MethodVisitor methodVisitor =
+        classVisitor.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "m", "(II)I", null, null);
+    methodVisitor.visitCode();
+    Label elseLabel = new Label();
+    Label endLabel = new Label();
+    methodVisitor.visitVarInsn(Opcodes.ILOAD, 0);
+    methodVisitor.visitJumpInsn(Opcodes.IFEQ, elseLabel);
+    methodVisitor.visitVarInsn(Opcodes.ILOAD, 1);
+    methodVisitor.visitVarInsn(Opcodes.ISTORE, 2);
+    methodVisitor.visitJumpInsn(Opcodes.GOTO, endLabel);
+    methodVisitor.visitLabel(elseLabel);
+    generateAdditions(methodVisitor, 16);
+    methodVisitor.visitTypeInsn(Opcodes.NEW, "java/lang/IllegalStateException");
+    methodVisitor.visitInsn(Opcodes.DUP);
+    methodVisitor.visitMethodInsn(
+        Opcodes.INVOKESPECIAL, "java/lang/IllegalStateException", "<init>", "()V", false);
+    methodVisitor.visitInsn(Opcodes.ATHROW);
+    methodVisitor.visitLabel(endLabel);
+    methodVisitor.visitVarInsn(Opcodes.ILOAD, 2);
+    methodVisitor.visitInsn(Opcodes.IRETURN);
+    methodVisitor.visitMaxs(0, 0);
+    methodVisitor.visitEnd();
+    classVisitor.visitEnd();
+
+    Class<?> clazz = new ClassFile(classWriter.toByteArray()).newInstance().getClass();
+    Method method = clazz.getMethod("m", int.class, int.class);
+    assertEquals(5, method.invoke(null, 1, 5));
+  }
+
+  /**
+   * Tests that classes transformed with a MethodSplitter, with a small maximum code size, can be
+   * loaded and instantiated.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testAllMethods_precompiledClass(
+      final PrecompiledClass classParameter, final Api apiParameter) {
+    ClassReader classReader = new ClassReader(classParameter.getBytes());
+    // JSR and RET instructions can't be used with COMPUTE_FRAMES (methods using them are not
+    // split).
+    ClassWriter classWriter =
+        new ClassWriter(
+            classReader.readUnsignedShort(6) < Opcodes.V1_6 ? 0 : ClassWriter.COMPUTE_FRAMES);
+
+    classReader.accept(new MethodSplitter(classWriter, 64, null), 0);
+
+    if (classParameter.isNotCompatibleWithCurrentJdk()) {
+      assertThrows(
+          UnsupportedClassVersionError.class,
+          () -> new ClassFile(classWriter.toByteArray()).newInstance());
+    } else {
+      assertDoesNotThrow(() -> new ClassFile(classWriter.toByteArray()).newInstance());
+    }
+  }
+
+  private static int invokeCompute(final byte[] classFile, final int argument) throws Exception {
+    Object instance = new ClassFile(classFile).newInstance();
+    Method method = instance.getClass().getMethod("compute", int.class);
+    return (Integer) method.invoke(instance, argument);
+  }
+
+  /** Generates a default constructor. */
+  private static void generateConstructor(final ClassVisitor classVisitor) {
+    MethodVisitor methodVisitor =
+        classVisitor.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+    methodVisitor.visitCode();
+    methodVisitor.visitVarInsn(Opcodes.ALOAD, 0);
+    methodVisitor.visitMethodInsn(
+        Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+    methodVisitor.visitInsn(Opcodes.RETURN);
+    methodVisitor.visitMaxs(0, 0);
+    methodVisitor.visitEnd();
+  }
+
+  /**
+   * Generates the given number of "a + b;" statements, where a and b are the first two arguments of
+   * a static method.
+   */
+  private static void generateAdditions(final MethodVisitor methodVisitor, final int count) {
+    for (int i = 0; i < count; ++i) {
+      methodVisitor.visitVarInsn(Opcodes.ILOAD, 0);
+      methodVisitor.visitVarInsn(Opcodes.ILOAD, 1);
+      methodVisitor.visitInsn(Opcodes.IADD);
+      methodVisitor.visitInsn(Opcodes.POP);
+    }
+  }
+
+  /**
+   * Generates a class "C" with a "compute(I)I" instance method, containing the given number of
+   * blocks of code. The result of this method is 3 * argument + numBlocks, for argument values less
+   * than 100.
+   */
+  private static void generateClass(final ClassVisitor classVisitor, final int numBlocks) {
+    classVisitor.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "C", null, "java/lang/Object", null);
+    MethodVisitor methodVisitor =
+        classVisitor.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+    methodVisitor.visitCode();
+    methodVisitor.visitVarInsn(Opcodes.ALOAD, 0);
+    methodVisitor.visitMethodInsn(
+        Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+    methodVisitor.visitInsn(Opcodes.RETURN);
+    methodVisitor.visitMaxs(0, 0);
+    methodVisitor.visitEnd();
+
+    methodVisitor = classVisitor.visitMethod(Opcodes.ACC_PUBLIC, "compute", "(I)I", null, null);
+    methodVisitor.visitCode();
+    // int result = 3 * argument; StringBuilder builder = new StringBuilder();
+    methodVisitor.visitInsn(Opcodes.ICONST_3);
+    methodVisitor.visitVarInsn(Opcodes.ILOAD, 1);
+    methodVisitor.visitInsn(Opcodes.IMUL);
+    methodVisitor.visitVarInsn(Opcodes.ISTORE, 2);
+    methodVisitor.visitTypeInsn(Opcodes.NEW, "java/lang/StringBuilder");
+    methodVisitor.visitInsn(Opcodes.DUP);
+    methodVisitor.visitMethodInsn(
+        Opcodes.INVOKESPECIAL, "java/lang/StringBuilder", "<init>", "()V", false);
+    methodVisitor.visitVarInsn(Opcodes.ASTORE, 3);
+    for (int i = 0; i < numBlocks; ++i) {
+      switch (i % 4) {
+        case 0:
+          // long value = argument + i; if (value > 1000) { result = 0; } else { result += 1; }
+          Label elseLabel = new Label();
+          Label endLabel = new Label();
+          methodVisitor.visitVarInsn(Opcodes.ILOAD, 1);
+          methodVisitor.visitLdcInsn(i);
+          methodVisitor.visitInsn(Opcodes.IADD);
+          methodVisitor.visitInsn(Opcodes.I2L);
+          methodVisitor.visitVarInsn(Opcodes.LSTORE, 4);
+          methodVisitor.visitVarInsn(Opcodes.LLOAD, 4);
+          methodVisitor.visitLdcInsn(1000L + i * 1000L);
+          methodVisitor.visitInsn(Opcodes.LCMP);
+          methodVisitor.visitJumpInsn(Opcodes.IFLE, elseLabel);
+          methodVisitor.visitInsn(Opcodes.ICONST_0);
+          methodVisitor.visitVarInsn(Opcodes.ISTORE, 2);
+          methodVisitor.visitJumpInsn(Opcodes.GOTO, endLabel);
+          methodVisitor.visitLabel(elseLabel);
+          methodVisitor.visitIincInsn(2, 1);
+          methodVisitor.visitLabel(endLabel);
+          break;
+        case 1:
+          // builder.append(this.toString().length());
+          methodVisitor.visitVarInsn(Opcodes.ALOAD, 3);
+          methodVisitor.visitVarInsn(Opcodes.ALOAD, 0);
+          methodVisitor.visitMethodInsn(
+              Opcodes.INVOKEVIRTUAL, "java/lang/Object", "toString", "()Ljava/lang/String;", false);
+          methodVisitor.visitMethodInsn(
+              Opcodes.INVOKEVIRTUAL, "java/lang/String", "length", "()I", false);
+          methodVisitor.visitMethodInsn(
+              Opcodes.INVOKEVIRTUAL,
+              "java/lang/StringBuilder",
+              "append",
+              "(I)Ljava/lang/StringBuilder;",
+              false);
+          methodVisitor.visitInsn(Opcodes.POP);
+          methodVisitor.visitIincInsn(2, 1);
+          break;
+        case 2:
+          // try { Integer.parseInt("i"); } catch (NumberFormatException e) { result = -1; }
+          // result++;
+          Label startLabel = new Label();
+          Label tryEndLabel = new Label();
+          Label handlerLabel = new Label();
+          Label nextLabel = new Label();
+          methodVisitor.visitTryCatchBlock(
+              startLabel, tryEndLabel, handlerLabel, "java/lang/NumberFormatException");
+          methodVisitor.visitLabel(startLabel);
+          methodVisitor.visitLdcInsn(Integer.toString(i));
+          methodVisitor.visitMethodInsn(
+              Opcodes.INVOKESTATIC,
+              "java/lang/Integer",
+              "parseInt",
+              "(Ljava/lang/String;)I",
+              false);
+          methodVisitor.visitInsn(Opcodes.POP);
+          methodVisitor.visitLabel(tryEndLabel);
+          methodVisitor.visitJumpInsn(Opcodes.GOTO, nextLabel);
+          methodVisitor.visitLabel(handlerLabel);
+          methodVisitor.visitVarInsn(Opcodes.ASTORE, 6);
+          methodVisitor.visitInsn(Opcodes.ICONST_M1);
+          methodVisitor.visitVarInsn(Opcodes.ISTORE, 2);
+          methodVisitor.visitLabel(nextLabel);
+          methodVisitor.visitIincInsn(2, 1);
+          break;
+        case 3:
+          // for (int j = 0; j < 3; ++j) { builder.append(j); } result++;
+          Label loopLabel = new Label();
+          Label loopEndLabel = new Label();
+          methodVisitor.visitInsn(Opcodes.ICONST_0);
+          methodVisitor.visitVarInsn(Opcodes.ISTORE, 7);
+          methodVisitor.visitLabel(loopLabel);
+          methodVisitor.visitVarInsn(Opcodes.ILOAD, 7);
+          methodVisitor.visitInsn(Opcodes.ICONST_3);
+          methodVisitor.visitJumpInsn(Opcodes.IF_ICMPGE, loopEndLabel);
+          methodVisitor.visitVarInsn(Opcodes.ALOAD, 3);
+          methodVisitor.visitVarInsn(Opcodes.ILOAD, 7);
+          methodVisitor.visitMethodInsn(
+              Opcodes.INVOKEVIRTUAL,
+              "java/lang/StringBuilder",
+              "append",
+              "(I)Ljava/lang/StringBuilder;",
+              false);
+          methodVisitor.visitInsn(Opcodes.POP);
+          methodVisitor.visitIincInsn(7, 1);
+          methodVisitor.visitJumpInsn(Opcodes.GOTO, loopLabel);
+          methodVisitor.visitLabel(loopEndLabel);
+          methodVisitor.visitIincInsn(2, 1);
+          break;
+        default:
+          throw new AssertionError();
+      }
+    }
+    methodVisitor.visitVarInsn(Opcodes.ILOAD, 2);
+    methodVisitor.visitInsn(Opcodes.IRETURN);
+    methodVisitor.visitMaxs(0, 0);
+    methodVisitor.visitEnd();
+    classVisitor.visitEnd();
+  }
+}
@@ -0,0 +1,315 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.commons;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.TypeReference;
+import org.objectweb.asm.test.AsmTest;
+import org.objectweb.asm.test.ClassFile;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+
+/** Unit tests for {@link PeepholeOptimizer}. */
+public class PeepholeOptimizerTest extends AsmTest {
+
+  @Test
+  public void testConstructor() {
+    assertDoesNotThrow(() -> new PeepholeOptimizer(null));
+    assertDoesNotThrow(() -> new PeepholeOptimizer(null, Collections.emptyList()));
+    assertThrows(IllegalStateException.class, () -> new PeepholeOptimizer(null) {});
+    assertThrows(
+        IllegalStateException.class,
+        () -> new PeepholeOptimizer(null, PeepholeOptimizer.DEFAULT_RULES) {});
+  }
+
+  @Test
+  public void testLoadStore() {
+    MethodNode methodNode = new MethodNode();
+    PeepholeOptimizer peepholeOptimizer = new PeepholeOptimizer(methodNode);
+
+    peepholeOptimizer.visitVarInsn(Opcodes.ILOAD, 1);
+    peepholeOptimizer.visitVarInsn(Opcodes.ISTORE, 1);
+    peepholeOptimizer.visitVarInsn(Opcodes.DLOAD, 2);
+    peepholeOptimizer.visitVarInsn(Opcodes.DSTORE, 4);
+    peepholeOptimizer.visitVarInsn(Opcodes.ALOAD, 300);
+    peepholeOptimizer.visitVarInsn(Opcodes.ASTORE, 300);
+    peepholeOptimizer.visitInsn(Opcodes.RETURN);
+    peepholeOptimizer.visitEnd();
+
+    assertEquals(
+        Arrays.asList(Opcodes.DLOAD, Opcodes.DSTORE, Opcodes.RETURN), getOpcodes(methodNode));
+    assertEquals(10, peepholeOptimizer.getMinSizeSaving());
+    assertEquals(10, peepholeOptimizer.getMaxSizeSaving());
+  }
+
+  @Test
+  public void testPushPop() {
+    MethodNode methodNode = new MethodNode();
+    PeepholeOptimizer peepholeOptimizer = new PeepholeOptimizer(methodNode);
+
+    peepholeOptimizer.visitInsn(Opcodes.DUP);
+    peepholeOptimizer.visitInsn(Opcodes.POP);
+    peepholeOptimizer.visitVarInsn(Opcodes.ALOAD, 0);
+    peepholeOptimizer.visitInsn(Opcodes.POP);
+    peepholeOptimizer.visitInsn(Opcodes.LCONST_1);
+    peepholeOptimizer.visitInsn(Opcodes.POP2);
+    peepholeOptimizer.visitIntInsn(Opcodes.BIPUSH, 10);
+    peepholeOptimizer.visitLdcInsn("string");
+    peepholeOptimizer.visitInsn(Opcodes.POP2);
+    peepholeOptimizer.visitLdcInsn(Type.getObjectType("C"));
+    peepholeOptimizer.visitInsn(Opcodes.POP);
+    peepholeOptimizer.visitInsn(Opcodes.ACONST_NULL);
+    peepholeOptimizer.visitInsn(Opcodes.ACONST_NULL);
+    peepholeOptimizer.visitInsn(Opcodes.POP2);
+    peepholeOptimizer.visitEnd();
+
+    assertEquals(Arrays.asList(Opcodes.LDC, Opcodes.POP), getOpcodes(methodNode));
+  }
+
+  @Test
+  public void testPushPop_nested() {
+    MethodNode methodNode = new MethodNode();
+    PeepholeOptimizer peepholeOptimizer = new PeepholeOptimizer(methodNode);
+
+    peepholeOptimizer.visitVarInsn(Opcodes.ILOAD, 1);
+    peepholeOptimizer.visitVarInsn(Opcodes.ILOAD, 2);
+    peepholeOptimizer.visitInsn(Opcodes.DUP);
+    peepholeOptimizer.visitInsn(Opcodes.POP);
+    peepholeOptimizer.visitInsn(Opcodes.POP);
+    peepholeOptimizer.visitInsn(Opcodes.POP);
+    peepholeOptimizer.visitEnd();
+
+    assertEquals(Collections.emptyList(), getOpcodes(methodNode));
+  }
+
+  @Test
+  public void testArithmeticIdentity() {
+    MethodNode methodNode = new MethodNode();
+    PeepholeOptimizer peepholeOptimizer = new PeepholeOptimizer(methodNode);
+
+    peepholeOptimizer.visitInsn(Opcodes.ICONST_0);
+    peepholeOptimizer.visitInsn(Opcodes.IADD);
+    peepholeOptimizer.visitInsn(Opcodes.ICONST_1);
+    peepholeOptimizer.visitInsn(Opcodes.IMUL);
+    peepholeOptimizer.visitIntInsn(Opcodes.BIPUSH, 0);
+    peepholeOptimizer.visitInsn(Opcodes.ISHL);
+    peepholeOptimizer.visitInsn(Opcodes.LCONST_0);
+    peepholeOptimizer.visitInsn(Opcodes.LXOR);
+    peepholeOptimizer.visitLdcInsn(1L);
+    peepholeOptimizer.visitInsn(Opcodes.LDIV);
+    peepholeOptimizer.visitInsn(Opcodes.ICONST_1);
+    peepholeOptimizer.visitInsn(Opcodes.IADD);
+    peepholeOptimizer.visitInsn(Opcodes.FCONST_0);
+    peepholeOptimizer.visitInsn(Opcodes.FADD);
+    peepholeOptimizer.visitEnd();
+
+    assertEquals(
+        Arrays.asList(Opcodes.ICONST_1, Opcodes.IADD, Opcodes.FCONST_0, Opcodes.FADD),
+        getOpcodes(methodNode));
+  }
+
+  @Test
+  public void testRedundantCheckcast() {
+    MethodNode methodNode = new MethodNode();
+    PeepholeOptimizer peepholeOptimizer = new PeepholeOptimizer(methodNode);
+
+    peepholeOptimizer.visitTypeInsn(Opcodes.CHECKCAST, "A");
+    peepholeOptimizer.visitTypeInsn(Opcodes.CHECKCAST, "A");
+    peepholeOptimizer.visitTypeInsn(Opcodes.CHECKCAST, "B");
+    peepholeOptimizer.visitInsn(Opcodes.ACONST_NULL);
+    peepholeOptimizer.visitTypeInsn(Opcodes.CHECKCAST, "C");
+    peepholeOptimizer.visitEnd();
+
+    assertEquals(
+        Arrays.asList(Opcodes.CHECKCAST, Opcodes.CHECKCAST, Opcodes.ACONST_NULL),
+        getOpcodes(methodNode));
+  }
+
+  @Test
+  public void testRedundantCheckcast_typeAnnotation() {
+    MethodNode methodNode = new MethodNode();
+    PeepholeOptimizer peepholeOptimizer = new PeepholeOptimizer(methodNode);
+    int typeRef = TypeReference.newTypeArgumentReference(TypeReference.CAST, 0).getValue();
+
+    peepholeOptimizer.visitInsn(Opcodes.ACONST_NULL);
+    peepholeOptimizer.visitTypeInsn(Opcodes.CHECKCAST, "A");
+    peepholeOptimizer.visitInsnAnnotation(typeRef, null, "LAnno;", true);
+    peepholeOptimizer.visitInsn(Opcodes.ACONST_NULL);
+    peepholeOptimizer.visitTypeInsn(Opcodes.CHECKCAST, "B");
+    peepholeOptimizer.visitEnd();
+
+    assertEquals(
+        Arrays.asList(Opcodes.ACONST_NULL, Opcodes.CHECKCAST, Opcodes.ACONST_NULL),
+        getOpcodes(methodNode));
+    TypeInsnNode checkcast = (TypeInsnNode) methodNode.instructions.get(1);
+    assertEquals("A", checkcast.desc);
+    assertEquals(1, checkcast.visibleTypeAnnotations.size());
+    assertNull(methodNode.instructions.get(0).visibleTypeAnnotations);
+  }
+
+  @Test
+  public void testNoOperation() {
+    MethodNode methodNode = new MethodNode();
+    PeepholeOptimizer peepholeOptimizer = new PeepholeOptimizer(methodNode);
+
+    peepholeOptimizer.visitIincInsn(1, 0);
+    peepholeOptimizer.visitInsn(Opcodes.SWAP);
+    peepholeOptimizer.visitInsn(Opcodes.SWAP);
+    peepholeOptimizer.visitIincInsn(1, 1);
+    peepholeOptimizer.visitEnd();
+
+    assertEquals(Arrays.asList(Opcodes.IINC), getOpcodes(methodNode));
+  }
+
+  @Test
+  public void testLabelsAndFrames() {
+    MethodNode methodNode = new MethodNode();
+    PeepholeOptimizer peepholeOptimizer = new PeepholeOptimizer(methodNode);
+    Label label = new Label();
+
+    peepholeOptimizer.visitVarInsn(Opcodes.ILOAD, 1);
+    peepholeOptimizer.visitLabel(label);
+    peepholeOptimizer.visitFrame(Opcodes.F_SAME1, 0, null, 1, new Object[] {Opcodes.INTEGER});
+    peepholeOptimizer.visitVarInsn(Opcodes.ISTORE, 1);
+    peepholeOptimizer.visitInsn(Opcodes.DUP);
+    peepholeOptimizer.visitLineNumber(1, label);
+    peepholeOptimizer.visitInsn(Opcodes.POP);
+    peepholeOptimizer.visitEnd();
+
+    assertEquals(
+        Arrays.asList(Opcodes.ILOAD, -1, -1, Opcodes.ISTORE, Opcodes.DUP, -1, Opcodes.POP),
+        getAllOpcodes(methodNode));
+    assertEquals(0, peepholeOptimizer.getMinSizeSaving());
+  }
+
+  @Test
+  public void testCustomRules() {
+    MethodNode methodNode = new MethodNode();
+    PeepholeRule nopRemover =
+        window -> {
+          if (window.get(window.size() - 1).getOpcode() == Opcodes.NOP) {
+            window.remove(window.size() - 1);
+            return true;
+          }
+          return false;
+        };
+    PeepholeRule inegInegRemover =
+        window -> {
+          int size = window.size();
+          if (size >= 2
+              && window.get(size - 1).getOpcode() == Opcodes.INEG
+              && window.get(size - 2).getOpcode() == Opcodes.INEG) {
+            window.subList(size - 2, size).clear();
+            window.add(new InsnNode(Opcodes.NOP));
+            return true;
+          }
+          return false;
+        };
+    PeepholeOptimizer peepholeOptimizer =
+        new PeepholeOptimizer(methodNode, Arrays.asList(nopRemover, inegInegRemover));
+
+    peepholeOptimizer.visitInsn(Opcodes.INEG);
+    peepholeOptimizer.visitInsn(Opcodes.INEG);
+    peepholeOptimizer.visitInsn(Opcodes.DUP);
+    peepholeOptimizer.visitInsn(Opcodes.POP);
+    peepholeOptimizer.visitEnd();
+
+    assertEquals(Arrays.asList(Opcodes.DUP, Opcodes.POP), getOpcodes(methodNode));
+    assertEquals(2, peepholeOptimizer.getMinSizeSaving());
+  }
+
+  /** Tests that classes transformed with a PeepholeOptimizer can be loaded and instantiated. */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testAllMethods_precompiledClass(
+      final PrecompiledClass classParameter, final Api apiParameter) {
+    ClassReader classReader = new ClassReader(classParameter.getBytes());
+    ClassWriter classWriter = new ClassWriter(0);
+    ClassVisitor classVisitor =
+        new ClassVisitor(apiParameter.value(), classWriter) {
+          @Override
+          public MethodVisitor visitMethod(
+              final int access,
+              final String name,
+              final String descriptor,
+              final String signature,
+              final String[] exceptions) {
+            return new PeepholeOptimizer(
+                super.visitMethod(access, name, descriptor, signature, exceptions));
+          }
+        };
+
+    classReader.accept(classVisitor, 0);
+
+    if (classParameter.isNotCompatibleWithCurrentJdk()) {
+      assertThrows(
+          UnsupportedClassVersionError.class,
+          () -> new ClassFile(classWriter.toByteArray()).newInstance());
+    } else {
+      assertDoesNotThrow(() -> new ClassFile(classWriter.toByteArray()).newInstance());
+    }
+  }
+
+  private static List<Integer> getOpcodes(final MethodNode methodNode) {
+    List<Integer> opcodes = new ArrayList<>();
+    for (int opcode : getAllOpcodes(methodNode)) {
+      if (opcode != -1) {
+        opcodes.add(opcode);
+      }
+    }
+    return opcodes;
+  }
+
+  private static List<Integer> getAllOpcodes(final MethodNode methodNode) {
+    List<Integer> opcodes = new ArrayList<>();
+    for (AbstractInsnNode insn : methodNode.instructions) {
+      opcodes.add(insn.getOpcode());
+    }
+    return opcodes;
+  }
+}
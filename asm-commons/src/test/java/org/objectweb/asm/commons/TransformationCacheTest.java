@@ -0,0 +1,386 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.commons;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Unit tests for {@link TransformationCache}. */
+public class TransformationCacheTest {
+
+  @TempDir Path tempDir;
+
+  @Test
+  public void testConstructor_invalidMaxSize() {
+    Executable constructor = () -> new TransformationCache(tempDir.toFile(), "", -1);
+
+    Exception exception = assertThrows(IllegalArgumentException.class, constructor);
+    assertEquals("Invalid maximum size: -1", exception.getMessage());
+  }
+
+  @Test
+  public void testConstructor_invalidDirectory() throws IOException {
+    File file = tempDir.resolve("file").toFile();
+    file.createNewFile();
+
+    Executable constructor = () -> new TransformationCache(file, "", 100);
+
+    assertThrows(IOException.class, constructor);
+  }
+
+  @Test
+  public void testGetAndPut() throws IOException {
+    try (TransformationCache cache = newCache("fingerprint", 100)) {
+      byte[] classFile = {1, 2, 3};
+      byte[] transformedClassFile = {4, 5, 6, 7};
+
+      byte[] missingValue = cache.get(classFile);
+      cache.put(classFile, transformedClassFile);
+      byte[] cachedValue = cache.get(classFile.clone());
+
+      assertNull(missingValue);
+      assertArrayEquals(transformedClassFile, cachedValue);
+      assertEquals(1, cache.getEntryCount());
+      assertEquals(4, cache.getSize());
+      assertEquals(1, cache.getHitCount());
+      assertEquals(1, cache.getMissCount());
+    }
+  }
+
+  @Test
+  public void testPut_replace() throws IOException {
+    try (TransformationCache cache = newCache("fingerprint", 100)) {
+      cache.put(new byte[] {1}, new byte[] {2, 3});
+      cache.put(new byte[] {1}, new byte[] {4});
+
+      assertArrayEquals(new byte[] {4}, cache.get(new byte[] {1}));
+      assertEquals(1, cache.getSize());
+    }
+  }
+
+  @Test
+  public void testPut_tooLarge() throws IOException {
+    try (TransformationCache cache = newCache("fingerprint", 2)) {
+      cache.put(new byte[] {1}, new byte[] {1, 2, 3});
+
+      assertNull(cache.get(new byte[] {1}));
+      assertEquals(0, cache.getEntryCount());
+    }
+  }
+
+  @Test
+  public void testPut_evictsLeastRecentlyUsed() throws IOException {
+    try (TransformationCache cache = newCache("fingerprint", 8)) {
+      cache.put(new byte[] {1}, new byte[] {1, 1, 1});
+      cache.put(new byte[] {2}, new byte[] {2, 2, 2});
+      cache.get(new byte[] {1});
+
+      cache.put(new byte[] {3}, new byte[] {3, 3, 3});
+
+      assertArrayEquals(new byte[] {1, 1, 1}, cache.get(new byte[] {1}));
+      assertNull(cache.get(new byte[] {2}));
+      assertArrayEquals(new byte[] {3, 3, 3}, cache.get(new byte[] {3}));
+      assertEquals(6, cache.getSize());
+    }
+  }
+
+  @Test
+  public void testGet_otherFingerprint() throws IOException {
+    try (TransformationCache cache = newCache("fingerprint1", 100)) {
+      cache.put(new byte[] {1}, new byte[] {2});
+    }
+
+    try (TransformationCache cache = newCache("fingerprint2", 100)) {
+      assertNull(cache.get(new byte[] {1}));
+    }
+    try (TransformationCache cache = newCache("fingerprint1", 100)) {
+      assertArrayEquals(new byte[] {2}, cache.get(new byte[] {1}));
+    }
+  }
+
+  @Test
+  public void testClose_persistsEntries() throws IOException {
+    try (TransformationCache cache = newCache("fingerprint", 100)) {
+      for (int i = 0; i < 10; ++i) {
+        cache.put(new byte[] {(byte) i}, new byte[] {(byte) i, (byte) i});
+      }
+    }
+
+    try (TransformationCache cache = newCache("fingerprint", 100)) {
+      assertEquals(10, cache.getEntryCount());
+      assertEquals(20, cache.getSize());
+      for (int i = 0; i < 10; ++i) {
+        assertArrayEquals(new byte[] {(byte) i, (byte) i}, cache.get(new byte[] {(byte) i}));
+      }
+    }
+  }
+
+  @Test
+  public void testClose_compactsDataFile() throws IOException {
+    try (TransformationCache cache = newCache("fingerprint", 10)) {
+      for (int i = 0; i < 10; ++i) {
+        cache.put(new byte[] {(byte) i}, new byte[] {(byte) i, (byte) i, (byte) i, (byte) i});
+      }
+      assertEquals(2, cache.getEntryCount());
+    }
+
+    assertEquals(8 + 8, getDataFile().length());
+    try (TransformationCache cache = newCache("fingerprint", 10)) {
+      assertEquals(2, cache.getEntryCount());
+      assertArrayEquals(new byte[] {8, 8, 8, 8}, cache.get(new byte[] {8}));
+      assertArrayEquals(new byte[] {9, 9, 9, 9}, cache.get(new byte[] {9}));
+    }
+  }
+
+  @Test
+  public void testPut_compactsDataFile() throws IOException {
+    try (TransformationCache cache = newCache("fingerprint", 10)) {
+      for (int i = 0; i < 100; ++i) {
+        cache.put(new byte[] {(byte) i}, new byte[] {(byte) i, (byte) i, (byte) i, (byte) i});
+        assertTrue(getDataFile().length() <= 8 + 2 * 10);
+      }
+
+      assertEquals(2, cache.getEntryCount());
+      assertArrayEquals(new byte[] {98, 98, 98, 98}, cache.get(new byte[] {98}));
+      assertArrayEquals(new byte[] {99, 99, 99, 99}, cache.get(new byte[] {99}));
+    }
+    try (TransformationCache cache = newCache("fingerprint", 10)) {
+      assertEquals(2, cache.getEntryCount());
+      assertArrayEquals(new byte[] {99, 99, 99, 99}, cache.get(new byte[] {99}));
+    }
+  }
+
+  @Test
+  public void testPut_compactionWritesIndex() throws IOException {
+    try (TransformationCache cache = newCache("fingerprint", 10)) {
+      for (int i = 0; i < 7; ++i) {
+        cache.put(new byte[] {(byte) i}, new byte[] {(byte) i, (byte) i, (byte) i, (byte) i});
+      }
+
+      // Simulates a process which dies before closing the first cache.
+      try (TransformationCache otherCache = newCache("fingerprint", 10)) {
+        assertEquals(2, otherCache.getEntryCount());
+        assertArrayEquals(new byte[] {5, 5, 5, 5}, otherCache.get(new byte[] {5}));
+      }
+    }
+  }
+
+  @Test
+  public void testConstructor_smallerMaxSize() throws IOException {
+    try (TransformationCache cache = newCache("fingerprint", 100)) {
+      cache.put(new byte[] {1}, new byte[] {1, 1});
+      cache.put(new byte[] {2}, new byte[] {2, 2});
+    }
+
+    try (TransformationCache cache = newCache("fingerprint", 3)) {
+      assertEquals(1, cache.getEntryCount());
+      assertArrayEquals(new byte[] {2, 2}, cache.get(new byte[] {2}));
+    }
+  }
+
+  @Test
+  public void testConstructor_outOfSyncDataFile() throws IOException {
+    try (TransformationCache cache = newCache("fingerprint", 100)) {
+      cache.put(new byte[] {1}, new byte[] {1, 1});
+    }
+    try (RandomAccessFile dataFile = new RandomAccessFile(getDataFile(), "rw")) {
+      dataFile.writeLong(0);
+    }
+
+    try (TransformationCache cache = newCache("fingerprint", 100)) {
+      assertEquals(0, cache.getEntryCount());
+      assertNull(cache.get(new byte[] {1}));
+    }
+  }
+
+  @Test
+  public void testConstructor_truncatedDataFile() throws IOException {
+    try (TransformationCache cache = newCache("fingerprint", 100)) {
+      cache.put(new byte[] {1}, new byte[] {1, 1});
+    }
+    try (RandomAccessFile dataFile = new RandomAccessFile(getDataFile(), "rw")) {
+      dataFile.setLength(9);
+    }
+
+    try (TransformationCache cache = newCache("fingerprint", 100)) {
+      assertEquals(0, cache.getEntryCount());
+    }
+  }
+
+  @Test
+  public void testConstructor_truncatedIndexFile() throws IOException {
+    try (TransformationCache cache = newCache("fingerprint", 100)) {
+      cache.put(new byte[] {1}, new byte[] {1, 1});
+    }
+    File indexFile = tempDir.resolve(TransformationCache.INDEX_FILE_NAME).toFile();
+    try (RandomAccessFile dataFile = new RandomAccessFile(indexFile, "rw")) {
+      dataFile.setLength(indexFile.length() - 1);
+    }
+
+    try (TransformationCache cache = newCache("fingerprint", 100)) {
+      assertEquals(0, cache.getEntryCount());
+      assertEquals(0, cache.getSize());
+    }
+  }
+
+  @Test
+  public void testConstructor_invalidIndexFile() throws IOException {
+    try (TransformationCache cache = newCache("fingerprint", 100)) {
+      cache.put(new byte[] {1}, new byte[] {1, 1});
+    }
+    File indexFile = tempDir.resolve(TransformationCache.INDEX_FILE_NAME).toFile();
+    try (RandomAccessFile dataFile = new RandomAccessFile(indexFile, "rw")) {
+      dataFile.writeInt(0);
+    }
+
+    try (TransformationCache cache = newCache("fingerprint", 100)) {
+      assertEquals(0, cache.getEntryCount());
+    }
+  }
+
+  @Test
+  public void testClose_twice() throws IOException {
+    TransformationCache cache = newCache("fingerprint", 100);
+    cache.close();
+
+    cache.close();
+
+    Executable get = () -> cache.get(new byte[] {1});
+    Exception exception = assertThrows(IllegalStateException.class, get);
+    assertEquals("Closed cache", exception.getMessage());
+  }
+
+  @Test
+  public void testGetAndPut_concurrent() throws Exception {
+    ExecutorService executorService = Executors.newFixedThreadPool(4);
+    try (TransformationCache cache = newCache("fingerprint", 1000)) {
+      List<Future<Boolean>> futures = new ArrayList<>();
+      for (int i = 0; i < 8; ++i) {
+        futures.add(executorService.submit(newTask(cache)));
+      }
+      for (Future<Boolean> future : futures) {
+        assertTrue(future.get());
+      }
+    } finally {
+      executorService.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testGetAndPut_concurrentWithCompaction() throws Exception {
+    ExecutorService executorService = Executors.newFixedThreadPool(4);
+    try (TransformationCache cache = newCache("fingerprint", 30)) {
+      List<Future<Boolean>> futures = new ArrayList<>();
+      for (int i = 0; i < 8; ++i) {
+        futures.add(executorService.submit(newTask(cache)));
+      }
+      for (Future<Boolean> future : futures) {
+        assertTrue(future.get());
+      }
+      assertTrue(getDataFile().length() <= 8 + 2 * 30 + 8 * 3);
+    } finally {
+      executorService.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testGetAndClose_concurrent() throws Exception {
+    ExecutorService executorService = Executors.newFixedThreadPool(4);
+    try {
+      TransformationCache cache = newCache("fingerprint", 1000);
+      List<Future<Boolean>> futures = new ArrayList<>();
+      for (int i = 0; i < 4; ++i) {
+        futures.add(
+            executorService.submit(
+                () -> {
+                  try {
+                    for (int j = 0; j < 1000; ++j) {
+                      cache.put(new byte[] {(byte) j}, new byte[] {(byte) j});
+                      byte[] cachedValue = cache.get(new byte[] {(byte) j});
+                      if (cachedValue != null && cachedValue[0] != (byte) j) {
+                        return false;
+                      }
+                    }
+                  } catch (IllegalStateException e) {
+                    // Expected when the cache is closed.
+                  }
+                  return true;
+                }));
+      }
+      cache.close();
+      for (Future<Boolean> future : futures) {
+        assertTrue(future.get());
+      }
+    } finally {
+      executorService.shutdownNow();
+    }
+  }
+
+  private static Callable<Boolean> newTask(final TransformationCache cache) {
+    return () -> {
+      for (int i = 0; i < 100; ++i) {
+        byte[] classFile = {(byte) i};
+        byte[] transformedClassFile = {(byte) i, (byte) (i + 1), (byte) (i + 2)};
+        byte[] cachedValue = cache.get(classFile);
+        if (cachedValue == null) {
+          cache.put(classFile, transformedClassFile);
+        } else if (!Arrays.equals(transformedClassFile, cachedValue)) {
+          return false;
+        }
+      }
+      return true;
+    };
+  }
+
+  private TransformationCache newCache(final String fingerprint, final long maxSize)
+      throws IOException {
+    return new TransformationCache(tempDir.toFile(), fingerprint, maxSize);
+  }
+
+  private File getDataFile() {
+    return tempDir.resolve(TransformationCache.DATA_FILE_NAME).toFile();
+  }
+}
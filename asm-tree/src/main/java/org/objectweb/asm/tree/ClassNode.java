@@ -28,9 +28,12 @@
 package org.objectweb.asm.tree;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import org.objectweb.asm.AnnotationVisitor;
 import org.objectweb.asm.Attribute;
+import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.FieldVisitor;
 import org.objectweb.asm.MethodVisitor;
@@ -293,6 +296,138 @@ public class ClassNode extends ClassVisitor {
     // Nothing to do.
   }
 
+  // -----------------------------------------------------------------------------------------------
+  // Lazy read method
+  // -----------------------------------------------------------------------------------------------
+
+  /**
+   * Makes the given class reader visit this class node, without decoding the method bodies. The
+   * code of each method read by this method is only decoded when the {@link
+   * MethodNode#instructions} of this method are used for the first time. The other code related
+   * fields of the {@link MethodNode} (try catch blocks, local variables, max stack, max locals,
+   * local variable annotations and code attributes) are also filled at this time, and are empty
+   * before.
+   *
+   * <p>Methods which are unchanged when this class node is visited with {@link #accept} are visited
+   * directly from the original class bytes (a method is unchanged if its instructions have never
+   * been used, if its other code related fields have not been modified, and if its header fields,
+   * parameters, annotations and attributes are equal to the original ones). If the class visitor is
+   * a {@link org.objectweb.asm.ClassWriter} constructed with the given class reader, these methods
+   * are copied as is, without decoding their code. This makes transformations which only change a
+   * few methods per class much faster.
+   *
+   * <p>Only the methods whose visitor returned by {@link #visitMethod} is a {@link MethodNode}
+   * instance (and not an instance of a subclass) are read lazily. Indeed, their {@link
+   * MethodNode#visitEnd} method is called before their code is decoded. The code of the other
+   * methods is decoded as usual, before their {@link MethodVisitor#visitEnd} method is called (so
+   * that, for instance, a {@link MethodNode} subclass processing the method code in visitEnd
+   * works as expected).
+   *
+   * @param classReader the class reader containing the class to read. It must not be modified while
+   *     this class node is used.
+   * @param attributePrototypes prototypes of the attributes that must be parsed during the visit of
+   *     the class. See {@link ClassReader#accept(ClassVisitor, Attribute[], int)}.
+   * @param parsingOptions the options to use to parse this class. See {@link
+   *     ClassReader#accept(ClassVisitor, Attribute[], int)}.
+   */
+  public void readLazily(
+      final ClassReader classReader,
+      final Attribute[] attributePrototypes,
+      final int parsingOptions) {
+    if ((parsingOptions & ClassReader.SKIP_CODE) != 0) {
+      classReader.accept(this, attributePrototypes, parsingOptions);
+      return;
+    }
+    final List<MethodNode> lazyMethods = new ArrayList<>();
+    final List<Integer> lazyMethodIndices = new ArrayList<>();
+    // The visitors of the methods which are not read lazily. Their visitEnd method is delayed until
+    // their code, if any, is visited in a second pass (using a method index to visitor map).
+    final List<MethodVisitor> eagerMethods = new ArrayList<>();
+    final Map<Integer, MethodVisitor> eagerMethodsWithCode = new HashMap<>();
+    classReader.accept(
+        new ClassVisitor(/* latest api = */ Opcodes.ASM9, this) {
+          private int methodIndex;
+
+          @Override
+          public MethodVisitor visitMethod(
+              final int access,
+              final String name,
+              final String descriptor,
+              final String signature,
+              final String[] exceptions) {
+            MethodVisitor methodVisitor =
+                super.visitMethod(access, name, descriptor, signature, exceptions);
+            boolean hasCode = (access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) == 0;
+            if (hasCode && methodVisitor != null && methodVisitor.getClass() == MethodNode.class) {
+              lazyMethods.add((MethodNode) methodVisitor);
+              lazyMethodIndices.add(methodIndex);
+            } else if (methodVisitor != null) {
+              eagerMethods.add(methodVisitor);
+              if (hasCode) {
+                eagerMethodsWithCode.put(methodIndex, methodVisitor);
+              }
+              methodVisitor =
+                  new MethodVisitor(Opcodes.ASM9, methodVisitor) {
+                    @Override
+                    public void visitEnd() {
+                      // Delayed until the code is visited.
+                    }
+                  };
+            }
+            methodIndex++;
+            return methodVisitor;
+          }
+
+          @Override
+          public void visitEnd() {
+            // Delayed until the code of the eager methods is visited.
+          }
+        },
+        attributePrototypes,
+        parsingOptions | ClassReader.SKIP_CODE);
+    if (!eagerMethodsWithCode.isEmpty()) {
+      classReader.accept(
+          new ClassVisitor(/* latest api = */ Opcodes.ASM9) {
+            private int methodIndex;
+
+            @Override
+            public MethodVisitor visitMethod(
+                final int access,
+                final String name,
+                final String descriptor,
+                final String signature,
+                final String[] exceptions) {
+              MethodVisitor methodVisitor = eagerMethodsWithCode.get(methodIndex++);
+              return methodVisitor == null ? null : new LazyInsnList.CodeFilter(methodVisitor);
+            }
+          },
+          attributePrototypes,
+          parsingOptions);
+    }
+    for (MethodVisitor methodVisitor : eagerMethods) {
+      methodVisitor.visitEnd();
+    }
+    for (int i = 0; i < lazyMethods.size(); ++i) {
+      MethodNode method = lazyMethods.get(i);
+      method.instructions =
+          new LazyInsnList(
+              method, classReader, lazyMethodIndices.get(i), attributePrototypes, parsingOptions);
+    }
+    visitEnd();
+  }
+
+  /**
+   * Makes the given class reader visit this class node, without decoding the method bodies. See
+   * {@link #readLazily(ClassReader, Attribute[], int)}.
+   *
+   * @param classReader the class reader containing the class to read.
+   * @param parsingOptions the options to use to parse this class. See {@link
+   *     ClassReader#accept(ClassVisitor, int)}.
+   */
+  public void readLazily(final ClassReader classReader, final int parsingOptions) {
+    readLazily(classReader, new Attribute[0], parsingOptions);
+  }
+
   // -----------------------------------------------------------------------------------------------
   // Accept method
   // -----------------------------------------------------------------------------------------------
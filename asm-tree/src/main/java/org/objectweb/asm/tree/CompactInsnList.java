@@ -0,0 +1,769 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.ListIterator;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.TypePath;
+
+/**
+ * An {@link InsnList} whose instructions are stored in a compact form, without any {@link
+ * AbstractInsnNode} object (except {@link LabelNode}s), until the list is used as a regular {@link
+ * InsnList}. The opcodes and operands of the instructions are stored in a few arrays, the constants
+ * (strings, numbers, types, handles, etc) are interned, and labels are referenced by their index in
+ * a label table. See {@link CompactMethodNode}.
+ *
+ * <p>The {@link #size}, {@link #accept} and {@link #resetLabels} methods use the compact form
+ * directly. All the other methods first <i>inflate</i> this list, i.e. replace the compact form
+ * with regular {@link AbstractInsnNode} objects.
+ */
+final class CompactInsnList extends InsnList {
+
+  /** The operand value used to encode a {@literal null} constant or array. */
+  private static final int NULL = -1;
+
+  /** The encoded value of the first String element of a frame (see {@link #addFrame}). */
+  private static final int FRAME_STRING = 8;
+
+  /** The encoded value of the first Label element of a frame (see {@link #addFrame}). */
+  private static final int FRAME_LABEL = 9;
+
+  /** The initial capacity of the arrays of this list. */
+  private static final int INITIAL_CAPACITY = 16;
+
+  /** Whether this list has been inflated, i.e. whether the compact form is no longer used. */
+  private boolean inflated;
+
+  /** The number of instructions stored in the compact form. */
+  private int insnCount;
+
+  /** The type of each instruction (see {@link AbstractInsnNode#getType}). */
+  private byte[] insnTypes;
+
+  /** The opcode of each instruction, or 0xFF for -1 (i.e. for labels, line numbers and frames). */
+  private byte[] insnOpcodes;
+
+  /**
+   * The offset in {@link #operands} of the operands of each instruction. The operands of the i-th
+   * instruction are stored from operandOffsets[i] to operandOffsets[i + 1] (exclusive).
+   */
+  private int[] operandOffsets;
+
+  /**
+   * The operands of the instructions. Constant operands are stored as indices in {@link
+   * #constants}, and label operands as indices in {@link #labels}.
+   */
+  private int[] operands;
+
+  /** The number of used elements in {@link #operands}. */
+  private int operandCount;
+
+  /** The interned constants used by the instructions. */
+  private Object[] constants;
+
+  /** The number of used elements in {@link #constants}. */
+  private int constantCount;
+
+  /**
+   * The index in {@link #constants} of each constant, or {@literal null} if this map must be
+   * recomputed from {@link #constants} before being used (see {@link #trim}).
+   */
+  private HashMap<Object, Integer> constantIndices;
+
+  /** The labels used by the instructions. */
+  private LabelNode[] labels;
+
+  /** The number of used elements in {@link #labels}. */
+  private int labelCount;
+
+  /**
+   * The index in {@link #labels} of each label, or {@literal null} if this map must be recomputed
+   * from {@link #labels} before being used (see {@link #trim}).
+   */
+  private HashMap<LabelNode, Integer> labelIndices;
+
+  /** The type annotations of the instructions, in instruction order, or {@literal null}. */
+  private List<InsnAnnotation> insnAnnotations;
+
+  CompactInsnList() {
+    insnTypes = new byte[INITIAL_CAPACITY];
+    insnOpcodes = new byte[INITIAL_CAPACITY];
+    operandOffsets = new int[INITIAL_CAPACITY + 1];
+    operands = new int[INITIAL_CAPACITY];
+    constants = new Object[INITIAL_CAPACITY];
+    constantIndices = new HashMap<Object, Integer>();
+    labels = new LabelNode[INITIAL_CAPACITY];
+    labelIndices = new HashMap<LabelNode, Integer>();
+  }
+
+  /**
+   * Returns whether the compact form of this list is no longer used.
+   *
+   * @return whether the instructions of this list are stored as regular {@link AbstractInsnNode}
+   *     objects.
+   */
+  boolean isInflated() {
+    return inflated;
+  }
+
+  // -----------------------------------------------------------------------------------------------
+  // Methods to add instructions to the compact form
+  // -----------------------------------------------------------------------------------------------
+
+  void addInsn(final int type, final int opcode) {
+    if (insnCount == insnTypes.length) {
+      int newCapacity = Math.max(INITIAL_CAPACITY, 2 * insnCount);
+      insnTypes = copyOf(insnTypes, newCapacity);
+      insnOpcodes = copyOf(insnOpcodes, newCapacity);
+      operandOffsets = copyOf(operandOffsets, newCapacity + 1);
+    }
+    insnTypes[insnCount] = (byte) type;
+    insnOpcodes[insnCount] = (byte) opcode;
+    operandOffsets[insnCount] = operandCount;
+    operandOffsets[++insnCount] = operandCount;
+  }
+
+  void addOperand(final int operand) {
+    if (operandCount == operands.length) {
+      operands = copyOf(operands, Math.max(INITIAL_CAPACITY, 2 * operandCount));
+    }
+    operands[operandCount++] = operand;
+    operandOffsets[insnCount] = operandCount;
+  }
+
+  void addConstantOperand(final Object constant) {
+    addOperand(constant == null ? NULL : getConstantIndex(constant));
+  }
+
+  void addLabelOperand(final LabelNode label) {
+    addOperand(getLabelIndex(label));
+  }
+
+  /**
+   * Adds a frame to the compact form. The operands of a frame are its type, its number of local
+   * variables, its number of stack elements, a bit mask indicating whether its local and stack
+   * arrays are null, and the elements of these arrays. Primitive types are encoded with their
+   * {@link Opcodes} value, the i-th constant with {@link #FRAME_STRING} + 2 * i, and the i-th label
+   * with {@link #FRAME_LABEL} + 2 * i.
+   *
+   * @param type the type of the frame.
+   * @param numLocal the number of local variables in the frame.
+   * @param local the local variable types of the frame, with {@link LabelNode}s instead of labels.
+   * @param numStack the number of operand stack elements in the frame.
+   * @param stack the operand stack types of the frame, with {@link LabelNode}s instead of labels.
+   */
+  void addFrame(
+      final int type,
+      final int numLocal,
+      final Object[] local,
+      final int numStack,
+      final Object[] stack) {
+    addInsn(AbstractInsnNode.FRAME, -1);
+    addOperand(type);
+    addOperand(numLocal);
+    addOperand(numStack);
+    addOperand((local == null ? 1 : 0) | (stack == null ? 2 : 0));
+    if (local != null) {
+      addFrameElements(numLocal, local);
+    }
+    if (stack != null) {
+      addFrameElements(numStack, stack);
+    }
+  }
+
+  private void addFrameElements(final int numElements, final Object[] elements) {
+    for (int i = 0; i < numElements; ++i) {
+      Object element = elements[i];
+      if (element instanceof Integer) {
+        addOperand(((Integer) element).intValue());
+      } else if (element instanceof LabelNode) {
+        addOperand(FRAME_LABEL + 2 * getLabelIndex((LabelNode) element));
+      } else {
+        addOperand(FRAME_STRING + 2 * getConstantIndex(element));
+      }
+    }
+  }
+
+  /**
+   * Adds a type annotation to the last real instruction of the compact form.
+   *
+   * @param typeRef a reference to the annotated type.
+   * @param typePath the path to the annotated type argument, wildcard bound, array element type, or
+   *     static inner type within 'typeRef'. May be {@literal null}.
+   * @param descriptor the class descriptor of the annotation class.
+   * @param visible {@literal true} if the annotation is visible at runtime.
+   * @return the node to which the annotation values must be added.
+   */
+  TypeAnnotationNode addInsnAnnotation(
+      final int typeRef, final TypePath typePath, final String descriptor, final boolean visible) {
+    int insnIndex = insnCount - 1;
+    while (insnOpcodes[insnIndex] == -1) {
+      --insnIndex;
+    }
+    TypeAnnotationNode typeAnnotation = new TypeAnnotationNode(typeRef, typePath, descriptor);
+    if (insnAnnotations == null) {
+      insnAnnotations = new ArrayList<InsnAnnotation>();
+    }
+    insnAnnotations.add(new InsnAnnotation(insnIndex, typeAnnotation, visible));
+    return typeAnnotation;
+  }
+
+  /**
+   * Trims the arrays of the compact form to their used size, and releases the maps used to intern
+   * the constants and the labels. They are recomputed if new instructions are added later on.
+   */
+  void trim() {
+    if (inflated) {
+      return;
+    }
+    insnTypes = copyOf(insnTypes, insnCount);
+    insnOpcodes = copyOf(insnOpcodes, insnCount);
+    operandOffsets = copyOf(operandOffsets, insnCount + 1);
+    operands = copyOf(operands, operandCount);
+    Object[] newConstants = new Object[constantCount];
+    System.arraycopy(constants, 0, newConstants, 0, constantCount);
+    constants = newConstants;
+    LabelNode[] newLabels = new LabelNode[labelCount];
+    System.arraycopy(labels, 0, newLabels, 0, labelCount);
+    labels = newLabels;
+    constantIndices = null;
+    labelIndices = null;
+  }
+
+  private int getConstantIndex(final Object constant) {
+    // NaN values are not interned, to preserve their exact bit pattern.
+    boolean intern =
+        !(constant instanceof Float && ((Float) constant).isNaN())
+            && !(constant instanceof Double && ((Double) constant).isNaN());
+    if (intern) {
+      if (constantIndices == null) {
+        constantIndices = new HashMap<Object, Integer>();
+        for (int i = 0; i < constantCount; ++i) {
+          constantIndices.put(constants[i], i);
+        }
+      }
+      Integer index = constantIndices.get(constant);
+      if (index != null) {
+        return index.intValue();
+      }
+      constantIndices.put(constant, constantCount);
+    }
+    if (constantCount == constants.length) {
+      Object[] newConstants = new Object[Math.max(INITIAL_CAPACITY, 2 * constantCount)];
+      System.arraycopy(constants, 0, newConstants, 0, constantCount);
+      constants = newConstants;
+    }
+    constants[constantCount] = constant;
+    return constantCount++;
+  }
+
+  private int getLabelIndex(final LabelNode label) {
+    if (labelIndices == null) {
+      labelIndices = new HashMap<LabelNode, Integer>();
+      for (int i = 0; i < labelCount; ++i) {
+        labelIndices.put(labels[i], i);
+      }
+    }
+    Integer index = labelIndices.get(label);
+    if (index != null) {
+      return index.intValue();
+    }
+    if (labelCount == labels.length) {
+      LabelNode[] newLabels = new LabelNode[Math.max(INITIAL_CAPACITY, 2 * labelCount)];
+      System.arraycopy(labels, 0, newLabels, 0, labelCount);
+      labels = newLabels;
+    }
+    labelIndices.put(label, labelCount);
+    labels[labelCount] = label;
+    return labelCount++;
+  }
+
+  // -----------------------------------------------------------------------------------------------
+  // Methods to read the compact form
+  // -----------------------------------------------------------------------------------------------
+
+  /**
+   * Returns the type of the given instruction of the compact form.
+   *
+   * @param index the index of an instruction.
+   * @return the type of this instruction (see {@link AbstractInsnNode#getType}).
+   */
+  int getType(final int index) {
+    return insnTypes[checkIndex(index)];
+  }
+
+  /**
+   * Returns the opcode of the given instruction of the compact form.
+   *
+   * @param index the index of an instruction.
+   * @return the opcode of this instruction, or -1 for labels, line numbers and frames.
+   */
+  int getOpcode(final int index) {
+    int opcode = insnOpcodes[checkIndex(index)] & 0xFF;
+    return opcode == 0xFF ? -1 : opcode;
+  }
+
+  /**
+   * Returns a new node representing the given instruction of the compact form. This node does not
+   * belong to any {@link InsnList} (except for {@link LabelNode}s, which are returned as is).
+   *
+   * @param index the index of an instruction.
+   * @return a new node representing this instruction.
+   */
+  AbstractInsnNode newInsnNode(final int index) {
+    AbstractInsnNode insnNode = createInsnNode(checkIndex(index));
+    if (insnAnnotations != null) {
+      for (int i = 0, n = insnAnnotations.size(); i < n; ++i) {
+        InsnAnnotation insnAnnotation = insnAnnotations.get(i);
+        if (insnAnnotation.insnIndex == index) {
+          if (insnAnnotation.visible) {
+            insnNode.visibleTypeAnnotations =
+                Util.add(insnNode.visibleTypeAnnotations, insnAnnotation.typeAnnotation);
+          } else {
+            insnNode.invisibleTypeAnnotations =
+                Util.add(insnNode.invisibleTypeAnnotations, insnAnnotation.typeAnnotation);
+          }
+        }
+      }
+    }
+    return insnNode;
+  }
+
+  private int checkIndex(final int index) {
+    if (index < 0 || index >= insnCount) {
+      throw new IndexOutOfBoundsException();
+    }
+    return index;
+  }
+
+  private AbstractInsnNode createInsnNode(final int index) {
+    int opcode = getOpcode(index);
+    int offset = operandOffsets[index];
+    switch (insnTypes[index]) {
+      case AbstractInsnNode.INSN:
+        return new InsnNode(opcode);
+      case AbstractInsnNode.INT_INSN:
+        return new IntInsnNode(opcode, operands[offset]);
+      case AbstractInsnNode.VAR_INSN:
+        return new VarInsnNode(opcode, operands[offset]);
+      case AbstractInsnNode.TYPE_INSN:
+        return new TypeInsnNode(opcode, getString(offset));
+      case AbstractInsnNode.FIELD_INSN:
+        return new FieldInsnNode(
+            opcode, getString(offset), getString(offset + 1), getString(offset + 2));
+      case AbstractInsnNode.METHOD_INSN:
+        return new MethodInsnNode(
+            opcode,
+            getString(offset),
+            getString(offset + 1),
+            getString(offset + 2),
+            operands[offset + 3] != 0);
+      case AbstractInsnNode.INVOKE_DYNAMIC_INSN:
+        return new InvokeDynamicInsnNode(
+            getString(offset),
+            getString(offset + 1),
+            (Handle) getConstant(offset + 2),
+            getConstants(offset + 4, operands[offset + 3]));
+      case AbstractInsnNode.JUMP_INSN:
+        return new JumpInsnNode(opcode, labels[operands[offset]]);
+      case AbstractInsnNode.LABEL:
+        return labels[operands[offset]];
+      case AbstractInsnNode.LDC_INSN:
+        return new LdcInsnNode(getConstant(offset));
+      case AbstractInsnNode.IINC_INSN:
+        return new IincInsnNode(operands[offset], operands[offset + 1]);
+      case AbstractInsnNode.TABLESWITCH_INSN:
+        return new TableSwitchInsnNode(
+            operands[offset],
+            operands[offset + 1],
+            labels[operands[offset + 2]],
+            getLabels(offset + 3, operandOffsets[index + 1] - offset - 3));
+      case AbstractInsnNode.LOOKUPSWITCH_INSN:
+        return new LookupSwitchInsnNode(
+            labels[operands[offset]],
+            getKeys(offset + 2, operands[offset + 1]),
+            getLabels(offset + 2 + operands[offset + 1], operands[offset + 1]));
+      case AbstractInsnNode.MULTIANEWARRAY_INSN:
+        return new MultiANewArrayInsnNode(getString(offset), operands[offset + 1]);
+      case AbstractInsnNode.FRAME:
+        return new FrameNode(
+            operands[offset],
+            operands[offset + 1],
+            getFrameLocal(offset),
+            operands[offset + 2],
+            getFrameStack(offset));
+      case AbstractInsnNode.LINE:
+        return new LineNumberNode(operands[offset], labels[operands[offset + 1]]);
+      default:
+        throw new AssertionError();
+    }
+  }
+
+  private Object getConstant(final int operandOffset) {
+    int constantIndex = operands[operandOffset];
+    return constantIndex == NULL ? null : constants[constantIndex];
+  }
+
+  private String getString(final int operandOffset) {
+    return (String) getConstant(operandOffset);
+  }
+
+  private Object[] getConstants(final int operandOffset, final int length) {
+    Object[] values = new Object[length];
+    for (int i = 0; i < length; ++i) {
+      values[i] = getConstant(operandOffset + i);
+    }
+    return values;
+  }
+
+  private int[] getKeys(final int operandOffset, final int length) {
+    int[] keys = new int[length];
+    System.arraycopy(operands, operandOffset, keys, 0, length);
+    return keys;
+  }
+
+  private LabelNode[] getLabels(final int operandOffset, final int length) {
+    LabelNode[] labelNodes = new LabelNode[length];
+    for (int i = 0; i < length; ++i) {
+      labelNodes[i] = labels[operands[operandOffset + i]];
+    }
+    return labelNodes;
+  }
+
+  private Object[] getFrameLocal(final int operandOffset) {
+    if ((operands[operandOffset + 3] & 1) != 0) {
+      return null;
+    }
+    return getFrameElements(operandOffset + 4, operands[operandOffset + 1]);
+  }
+
+  private Object[] getFrameStack(final int operandOffset) {
+    int flags = operands[operandOffset + 3];
+    if ((flags & 2) != 0) {
+      return null;
+    }
+    int numLocal = (flags & 1) != 0 ? 0 : operands[operandOffset + 1];
+    return getFrameElements(operandOffset + 4 + numLocal, operands[operandOffset + 2]);
+  }
+
+  private Object[] getFrameElements(final int operandOffset, final int length) {
+    Object[] elements = new Object[length];
+    for (int i = 0; i < length; ++i) {
+      int element = operands[operandOffset + i];
+      if (element < FRAME_STRING) {
+        elements[i] = element;
+      } else if ((element & 1) == 0) {
+        elements[i] = constants[(element - FRAME_STRING) >> 1];
+      } else {
+        elements[i] = labels[(element - FRAME_LABEL) >> 1];
+      }
+    }
+    return elements;
+  }
+
+  /**
+   * Replaces the compact form of this list with regular {@link AbstractInsnNode} objects, if this
+   * is not already done.
+   */
+  @Override
+  void inflate() {
+    if (inflated) {
+      return;
+    }
+    inflated = true;
+    for (int i = 0; i < insnCount; ++i) {
+      super.add(newInsnNode(i));
+    }
+    insnCount = 0;
+    insnTypes = null;
+    insnOpcodes = null;
+    operandOffsets = null;
+    operands = null;
+    constants = null;
+    constantIndices = null;
+    labels = null;
+    labelIndices = null;
+    insnAnnotations = null;
+  }
+
+  // -----------------------------------------------------------------------------------------------
+  // Overridden InsnList methods
+  // -----------------------------------------------------------------------------------------------
+
+  @Override
+  public int size() {
+    return inflated ? super.size() : insnCount;
+  }
+
+  @Override
+  public void accept(final MethodVisitor methodVisitor) {
+    if (inflated) {
+      super.accept(methodVisitor);
+      return;
+    }
+    int annotationIndex = 0;
+    for (int i = 0; i < insnCount; ++i) {
+      int offset = operandOffsets[i];
+      int opcode = getOpcode(i);
+      switch (insnTypes[i]) {
+        case AbstractInsnNode.INSN:
+          methodVisitor.visitInsn(opcode);
+          break;
+        case AbstractInsnNode.INT_INSN:
+          methodVisitor.visitIntInsn(opcode, operands[offset]);
+          break;
+        case AbstractInsnNode.VAR_INSN:
+          methodVisitor.visitVarInsn(opcode, operands[offset]);
+          break;
+        case AbstractInsnNode.TYPE_INSN:
+          methodVisitor.visitTypeInsn(opcode, getString(offset));
+          break;
+        case AbstractInsnNode.FIELD_INSN:
+          methodVisitor.visitFieldInsn(
+              opcode, getString(offset), getString(offset + 1), getString(offset + 2));
+          break;
+        case AbstractInsnNode.METHOD_INSN:
+          methodVisitor.visitMethodInsn(
+              opcode,
+              getString(offset),
+              getString(offset + 1),
+              getString(offset + 2),
+              operands[offset + 3] != 0);
+          break;
+        case AbstractInsnNode.INVOKE_DYNAMIC_INSN:
+          methodVisitor.visitInvokeDynamicInsn(
+              getString(offset),
+              getString(offset + 1),
+              (Handle) getConstant(offset + 2),
+              getConstants(offset + 4, operands[offset + 3]));
+          break;
+        case AbstractInsnNode.JUMP_INSN:
+          methodVisitor.visitJumpInsn(opcode, labels[operands[offset]].getLabel());
+          break;
+        case AbstractInsnNode.LABEL:
+          methodVisitor.visitLabel(labels[operands[offset]].getLabel());
+          break;
+        case AbstractInsnNode.LDC_INSN:
+          methodVisitor.visitLdcInsn(getConstant(offset));
+          break;
+        case AbstractInsnNode.IINC_INSN:
+          methodVisitor.visitIincInsn(operands[offset], operands[offset + 1]);
+          break;
+        case AbstractInsnNode.TABLESWITCH_INSN:
+        case AbstractInsnNode.LOOKUPSWITCH_INSN:
+        case AbstractInsnNode.FRAME:
+          // Rare and complex instructions are visited via a temporary node.
+          createInsnNode(i).accept(methodVisitor);
+          break;
+        case AbstractInsnNode.MULTIANEWARRAY_INSN:
+          methodVisitor.visitMultiANewArrayInsn(getString(offset), operands[offset + 1]);
+          break;
+        case AbstractInsnNode.LINE:
+          methodVisitor.visitLineNumber(operands[offset], labels[operands[offset + 1]].getLabel());
+          break;
+        default:
+          throw new AssertionError();
+      }
+      if (insnAnnotations != null) {
+        while (annotationIndex < insnAnnotations.size()
+            && insnAnnotations.get(annotationIndex).insnIndex == i) {
+          InsnAnnotation insnAnnotation = insnAnnotations.get(annotationIndex++);
+          TypeAnnotationNode typeAnnotation = insnAnnotation.typeAnnotation;
+          typeAnnotation.accept(
+              methodVisitor.visitInsnAnnotation(
+                  typeAnnotation.typeRef,
+                  typeAnnotation.typePath,
+                  typeAnnotation.desc,
+                  insnAnnotation.visible));
+        }
+      }
+    }
+  }
+
+  @Override
+  public void resetLabels() {
+    if (inflated) {
+      super.resetLabels();
+      return;
+    }
+    for (int i = 0; i < labelCount; ++i) {
+      labels[i].resetLabel();
+    }
+  }
+
+  @Override
+  public AbstractInsnNode getFirst() {
+    inflate();
+    return super.getFirst();
+  }
+
+  @Override
+  public AbstractInsnNode getLast() {
+    inflate();
+    return super.getLast();
+  }
+
+  @Override
+  public AbstractInsnNode get(final int index) {
+    inflate();
+    return super.get(index);
+  }
+
+  @Override
+  public boolean contains(final AbstractInsnNode insnNode) {
+    inflate();
+    return super.contains(insnNode);
+  }
+
+  @Override
+  public int indexOf(final AbstractInsnNode insnNode) {
+    inflate();
+    return super.indexOf(insnNode);
+  }
+
+  @Override
+  public ListIterator<AbstractInsnNode> iterator() {
+    inflate();
+    return super.iterator();
+  }
+
+  @Override
+  public ListIterator<AbstractInsnNode> iterator(final int index) {
+    inflate();
+    return super.iterator(index);
+  }
+
+  @Override
+  public AbstractInsnNode[] toArray() {
+    inflate();
+    return super.toArray();
+  }
+
+  @Override
+  public void set(final AbstractInsnNode oldInsnNode, final AbstractInsnNode newInsnNode) {
+    inflate();
+    super.set(oldInsnNode, newInsnNode);
+  }
+
+  @Override
+  public void add(final AbstractInsnNode insnNode) {
+    inflate();
+    super.add(insnNode);
+  }
+
+  @Override
+  public void add(final InsnList insnList) {
+    inflate();
+    super.add(insnList);
+  }
+
+  @Override
+  public void insert(final AbstractInsnNode insnNode) {
+    inflate();
+    super.insert(insnNode);
+  }
+
+  @Override
+  public void insert(final InsnList insnList) {
+    inflate();
+    super.insert(insnList);
+  }
+
+  @Override
+  public void insert(final AbstractInsnNode previousInsn, final AbstractInsnNode insnNode) {
+    inflate();
+    super.insert(previousInsn, insnNode);
+  }
+
+  @Override
+  public void insert(final AbstractInsnNode previousInsn, final InsnList insnList) {
+    inflate();
+    super.insert(previousInsn, insnList);
+  }
+
+  @Override
+  public void insertBefore(final AbstractInsnNode nextInsn, final AbstractInsnNode insnNode) {
+    inflate();
+    super.insertBefore(nextInsn, insnNode);
+  }
+
+  @Override
+  public void insertBefore(final AbstractInsnNode nextInsn, final InsnList insnList) {
+    inflate();
+    super.insertBefore(nextInsn, insnList);
+  }
+
+  @Override
+  public void remove(final AbstractInsnNode insnNode) {
+    inflate();
+    super.remove(insnNode);
+  }
+
+  @Override
+  public void clear() {
+    inflate();
+    super.clear();
+  }
+
+  private static byte[] copyOf(final byte[] array, final int length) {
+    byte[] newArray = new byte[length];
+    System.arraycopy(array, 0, newArray, 0, Math.min(array.length, length));
+    return newArray;
+  }
+
+  private static int[] copyOf(final int[] array, final int length) {
+    int[] newArray = new int[length];
+    System.arraycopy(array, 0, newArray, 0, Math.min(array.length, length));
+    return newArray;
+  }
+
+  /** A type annotation of an instruction stored in the compact form. */
+  private static final class InsnAnnotation {
+
+    /** The index of the annotated instruction. */
+    final int insnIndex;
+
+    /** The annotation. */
+    final TypeAnnotationNode typeAnnotation;
+
+    /** Whether the annotation is visible at runtime. */
+    final boolean visible;
+
+    InsnAnnotation(
+        final int insnIndex, final TypeAnnotationNode typeAnnotation, final boolean visible) {
+      this.insnIndex = insnIndex;
+      this.typeAnnotation = typeAnnotation;
+      this.visible = visible;
+    }
+  }
+}
@@ -0,0 +1,457 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.TypePath;
+
+/**
+ * A {@link MethodNode} whose instructions are stored in a compact form, suitable to keep the code
+ * of many methods in memory. Instead of one {@link AbstractInsnNode} object per instruction (with
+ * its links, index and annotation lists), the opcodes and operands of the instructions are stored
+ * in a few arrays, the constants are interned, and labels are referenced by their index in a label
+ * table. Only the {@link LabelNode}s, the try catch blocks and the local variables are stored as
+ * regular nodes.
+ *
+ * <p>This method node can be filled by a {@link org.objectweb.asm.ClassReader} like any method
+ * visitor (e.g. by overriding {@link ClassNode#visitMethod} to return a {@link CompactMethodNode}),
+ * and its {@link #accept(org.objectweb.asm.MethodVisitor)} methods visit the instructions directly
+ * from the compact form. The instructions can also be inspected one by one with {@link
+ * #getInsnOpcode}, {@link #getInsnType} and {@link #getInsnView}, without allocating a node for
+ * each instruction. Any other use of {@link #instructions} (other than {@link InsnList#size})
+ * replaces the compact form with regular nodes, after which this node behaves like a regular {@link
+ * MethodNode}.
+ */
+public class CompactMethodNode extends MethodNode {
+
+  /**
+   * Constructs an uninitialized {@link CompactMethodNode}. <i>Subclasses must not use this
+   * constructor</i>. Instead, they must use the {@link #CompactMethodNode(int)} version.
+   *
+   * @throws IllegalStateException If a subclass calls this constructor.
+   */
+  public CompactMethodNode() {
+    this(/* latest api = */ Opcodes.ASM9);
+    if (getClass() != CompactMethodNode.class) {
+      throw new IllegalStateException();
+    }
+  }
+
+  /**
+   * Constructs an uninitialized {@link CompactMethodNode}.
+   *
+   * @param api the ASM API version implemented by this visitor. Must be one of {@link
+   *     Opcodes#ASM4}, {@link Opcodes#ASM5}, {@link Opcodes#ASM6}, {@link Opcodes#ASM7}, {@link
+   *     Opcodes#ASM8} or {@link Opcodes#ASM9}.
+   */
+  public CompactMethodNode(final int api) {
+    super(api);
+    this.instructions = new CompactInsnList();
+  }
+
+  /**
+   * Constructs a new {@link CompactMethodNode}. <i>Subclasses must not use this constructor</i>.
+   * Instead, they must use the {@link #CompactMethodNode(int, int, String, String, String,
+   * String[])} version.
+   *
+   * @param access the method's access flags (see {@link Opcodes}). This parameter also indicates if
+   *     the method is synthetic and/or deprecated.
+   * @param name the method's name.
+   * @param descriptor the method's descriptor (see {@link Type}).
+   * @param signature the method's signature. May be {@literal null}.
+   * @param exceptions the internal names of the method's exception classes (see {@link
+   *     Type#getInternalName()}). May be {@literal null}.
+   * @throws IllegalStateException If a subclass calls this constructor.
+   */
+  public CompactMethodNode(
+      final int access,
+      final String name,
+      final String descriptor,
+      final String signature,
+      final String[] exceptions) {
+    this(/* latest api = */ Opcodes.ASM9, access, name, descriptor, signature, exceptions);
+    if (getClass() != CompactMethodNode.class) {
+      throw new IllegalStateException();
+    }
+  }
+
+  /**
+   * Constructs a new {@link CompactMethodNode}.
+   *
+   * @param api the ASM API version implemented by this visitor. Must be one of {@link
+   *     Opcodes#ASM4}, {@link Opcodes#ASM5}, {@link Opcodes#ASM6}, {@link Opcodes#ASM7}, {@link
+   *     Opcodes#ASM8} or {@link Opcodes#ASM9}.
+   * @param access the method's access flags (see {@link Opcodes}). This parameter also indicates if
+   *     the method is synthetic and/or deprecated.
+   * @param name the method's name.
+   * @param descriptor the method's descriptor (see {@link Type}).
+   * @param signature the method's signature. May be {@literal null}.
+   * @param exceptions the internal names of the method's exception classes (see {@link
+   *     Type#getInternalName()}). May be {@literal null}.
+   */
+  public CompactMethodNode(
+      final int api,
+      final int access,
+      final String name,
+      final String descriptor,
+      final String signature,
+      final String[] exceptions) {
+    super(api, access, name, descriptor, signature, exceptions);
+    this.instructions = new CompactInsnList();
+  }
+
+  // -----------------------------------------------------------------------------------------------
+  // Compact form accessors
+  // -----------------------------------------------------------------------------------------------
+
+  /**
+   * Returns whether the instructions of this method are stored in the compact form.
+   *
+   * @return whether the instructions of this method are stored in the compact form, i.e. whether
+   *     {@link #instructions} has not been used as a regular {@link InsnList}.
+   */
+  public boolean isCompact() {
+    return getCompactInsnList() != null;
+  }
+
+  /**
+   * Returns the opcode of the instruction at the given index.
+   *
+   * @param index the index of an instruction in {@link #instructions}.
+   * @return the opcode of this instruction, or -1 for labels, line numbers and frames.
+   * @throws IndexOutOfBoundsException if the index is invalid.
+   */
+  public int getInsnOpcode(final int index) {
+    CompactInsnList compactInsnList = getCompactInsnList();
+    return compactInsnList == null
+        ? instructions.get(index).getOpcode()
+        : compactInsnList.getOpcode(index);
+  }
+
+  /**
+   * Returns the type of the instruction at the given index.
+   *
+   * @param index the index of an instruction in {@link #instructions}.
+   * @return the type of this instruction (see {@link AbstractInsnNode#getType}).
+   * @throws IndexOutOfBoundsException if the index is invalid.
+   */
+  public int getInsnType(final int index) {
+    CompactInsnList compactInsnList = getCompactInsnList();
+    return compactInsnList == null
+        ? instructions.get(index).getType()
+        : compactInsnList.getType(index);
+  }
+
+  /**
+   * Returns a node representing the instruction at the given index. If the instructions are stored
+   * in the compact form, a new node is created at each call (except for labels, which are always
+   * represented with the same {@link LabelNode}). This node does not belong to {@link
+   * #instructions}, and changing it does not change this method. Otherwise, the node of {@link
+   * #instructions} at this index is returned.
+   *
+   * @param index the index of an instruction in {@link #instructions}.
+   * @return a node representing this instruction.
+   * @throws IndexOutOfBoundsException if the index is invalid.
+   */
+  public AbstractInsnNode getInsnView(final int index) {
+    CompactInsnList compactInsnList = getCompactInsnList();
+    return compactInsnList == null ? instructions.get(index) : compactInsnList.newInsnNode(index);
+  }
+
+  private CompactInsnList getCompactInsnList() {
+    if (instructions instanceof CompactInsnList) {
+      CompactInsnList compactInsnList = (CompactInsnList) instructions;
+      if (!compactInsnList.isInflated()) {
+        return compactInsnList;
+      }
+    }
+    return null;
+  }
+
+  // -----------------------------------------------------------------------------------------------
+  // Implementation of the MethodVisitor abstract class
+  // -----------------------------------------------------------------------------------------------
+
+  @Override
+  public void visitFrame(
+      final int type,
+      final int numLocal,
+      final Object[] local,
+      final int numStack,
+      final Object[] stack) {
+    CompactInsnList compactInsnList = getCompactInsnList();
+    if (compactInsnList == null) {
+      super.visitFrame(type, numLocal, local, numStack, stack);
+      return;
+    }
+    compactInsnList.addFrame(
+        type,
+        numLocal,
+        local == null ? null : getLabelNodes(local),
+        numStack,
+        stack == null ? null : getLabelNodes(stack));
+  }
+
+  @Override
+  public void visitInsn(final int opcode) {
+    CompactInsnList compactInsnList = getCompactInsnList();
+    if (compactInsnList == null) {
+      super.visitInsn(opcode);
+      return;
+    }
+    compactInsnList.addInsn(AbstractInsnNode.INSN, opcode);
+  }
+
+  @Override
+  public void visitIntInsn(final int opcode, final int operand) {
+    CompactInsnList compactInsnList = getCompactInsnList();
+    if (compactInsnList == null) {
+      super.visitIntInsn(opcode, operand);
+      return;
+    }
+    compactInsnList.addInsn(AbstractInsnNode.INT_INSN, opcode);
+    compactInsnList.addOperand(operand);
+  }
+
+  @Override
+  public void visitVarInsn(final int opcode, final int var) {
+    CompactInsnList compactInsnList = getCompactInsnList();
+    if (compactInsnList == null) {
+      super.visitVarInsn(opcode, var);
+      return;
+    }
+    compactInsnList.addInsn(AbstractInsnNode.VAR_INSN, opcode);
+    compactInsnList.addOperand(var);
+  }
+
+  @Override
+  public void visitTypeInsn(final int opcode, final String type) {
+    CompactInsnList compactInsnList = getCompactInsnList();
+    if (compactInsnList == null) {
+      super.visitTypeInsn(opcode, type);
+      return;
+    }
+    compactInsnList.addInsn(AbstractInsnNode.TYPE_INSN, opcode);
+    compactInsnList.addConstantOperand(type);
+  }
+
+  @Override
+  public void visitFieldInsn(
+      final int opcode, final String owner, final String name, final String descriptor) {
+    CompactInsnList compactInsnList = getCompactInsnList();
+    if (compactInsnList == null) {
+      super.visitFieldInsn(opcode, owner, name, descriptor);
+      return;
+    }
+    compactInsnList.addInsn(AbstractInsnNode.FIELD_INSN, opcode);
+    compactInsnList.addConstantOperand(owner);
+    compactInsnList.addConstantOperand(name);
+    compactInsnList.addConstantOperand(descriptor);
+  }
+
+  @Override
+  public void visitMethodInsn(
+      final int opcodeAndSource,
+      final String owner,
+      final String name,
+      final String descriptor,
+      final boolean isInterface) {
+    CompactInsnList compactInsnList = getCompactInsnList();
+    if (compactInsnList == null
+        || (api < Opcodes.ASM5 && (opcodeAndSource & Opcodes.SOURCE_DEPRECATED) == 0)) {
+      super.visitMethodInsn(opcodeAndSource, owner, name, descriptor, isInterface);
+      return;
+    }
+    compactInsnList.addInsn(AbstractInsnNode.METHOD_INSN, opcodeAndSource & ~Opcodes.SOURCE_MASK);
+    compactInsnList.addConstantOperand(owner);
+    compactInsnList.addConstantOperand(name);
+    compactInsnList.addConstantOperand(descriptor);
+    compactInsnList.addOperand(isInterface ? 1 : 0);
+  }
+
+  @Override
+  public void visitInvokeDynamicInsn(
+      final String name,
+      final String descriptor,
+      final Handle bootstrapMethodHandle,
+      final Object... bootstrapMethodArguments) {
+    CompactInsnList compactInsnList = getCompactInsnList();
+    if (compactInsnList == null) {
+      super.visitInvokeDynamicInsn(
+          name, descriptor, bootstrapMethodHandle, bootstrapMethodArguments);
+      return;
+    }
+    compactInsnList.addInsn(AbstractInsnNode.INVOKE_DYNAMIC_INSN, Opcodes.INVOKEDYNAMIC);
+    compactInsnList.addConstantOperand(name);
+    compactInsnList.addConstantOperand(descriptor);
+    compactInsnList.addConstantOperand(bootstrapMethodHandle);
+    compactInsnList.addOperand(bootstrapMethodArguments.length);
+    for (Object bootstrapMethodArgument : bootstrapMethodArguments) {
+      compactInsnList.addConstantOperand(bootstrapMethodArgument);
+    }
+  }
+
+  @Override
+  public void visitJumpInsn(final int opcode, final Label label) {
+    CompactInsnList compactInsnList = getCompactInsnList();
+    if (compactInsnList == null) {
+      super.visitJumpInsn(opcode, label);
+      return;
+    }
+    compactInsnList.addInsn(AbstractInsnNode.JUMP_INSN, opcode);
+    compactInsnList.addLabelOperand(getLabelNode(label));
+  }
+
+  @Override
+  public void visitLabel(final Label label) {
+    CompactInsnList compactInsnList = getCompactInsnList();
+    if (compactInsnList == null) {
+      super.visitLabel(label);
+      return;
+    }
+    compactInsnList.addInsn(AbstractInsnNode.LABEL, -1);
+    compactInsnList.addLabelOperand(getLabelNode(label));
+  }
+
+  @Override
+  public void visitLdcInsn(final Object value) {
+    CompactInsnList compactInsnList = getCompactInsnList();
+    if (compactInsnList == null) {
+      super.visitLdcInsn(value);
+      return;
+    }
+    compactInsnList.addInsn(AbstractInsnNode.LDC_INSN, Opcodes.LDC);
+    compactInsnList.addConstantOperand(value);
+  }
+
+  @Override
+  public void visitIincInsn(final int var, final int increment) {
+    CompactInsnList compactInsnList = getCompactInsnList();
+    if (compactInsnList == null) {
+      super.visitIincInsn(var, increment);
+      return;
+    }
+    compactInsnList.addInsn(AbstractInsnNode.IINC_INSN, Opcodes.IINC);
+    compactInsnList.addOperand(var);
+    compactInsnList.addOperand(increment);
+  }
+
+  @Override
+  public void visitTableSwitchInsn(
+      final int min, final int max, final Label dflt, final Label... labels) {
+    CompactInsnList compactInsnList = getCompactInsnList();
+    if (compactInsnList == null) {
+      super.visitTableSwitchInsn(min, max, dflt, labels);
+      return;
+    }
+    compactInsnList.addInsn(AbstractInsnNode.TABLESWITCH_INSN, Opcodes.TABLESWITCH);
+    compactInsnList.addOperand(min);
+    compactInsnList.addOperand(max);
+    compactInsnList.addLabelOperand(getLabelNode(dflt));
+    for (Label label : labels) {
+      compactInsnList.addLabelOperand(getLabelNode(label));
+    }
+  }
+
+  @Override
+  public void visitLookupSwitchInsn(final Label dflt, final int[] keys, final Label[] labels) {
+    CompactInsnList compactInsnList = getCompactInsnList();
+    if (compactInsnList == null) {
+      super.visitLookupSwitchInsn(dflt, keys, labels);
+      return;
+    }
+    compactInsnList.addInsn(AbstractInsnNode.LOOKUPSWITCH_INSN, Opcodes.LOOKUPSWITCH);
+    compactInsnList.addLabelOperand(getLabelNode(dflt));
+    compactInsnList.addOperand(keys.length);
+    for (int key : keys) {
+      compactInsnList.addOperand(key);
+    }
+    for (Label label : labels) {
+      compactInsnList.addLabelOperand(getLabelNode(label));
+    }
+  }
+
+  @Override
+  public void visitMultiANewArrayInsn(final String descriptor, final int numDimensions) {
+    CompactInsnList compactInsnList = getCompactInsnList();
+    if (compactInsnList == null) {
+      super.visitMultiANewArrayInsn(descriptor, numDimensions);
+      return;
+    }
+    compactInsnList.addInsn(AbstractInsnNode.MULTIANEWARRAY_INSN, Opcodes.MULTIANEWARRAY);
+    compactInsnList.addConstantOperand(descriptor);
+    compactInsnList.addOperand(numDimensions);
+  }
+
+  @Override
+  public AnnotationVisitor visitInsnAnnotation(
+      final int typeRef, final TypePath typePath, final String descriptor, final boolean visible) {
+    CompactInsnList compactInsnList = getCompactInsnList();
+    if (compactInsnList == null) {
+      return super.visitInsnAnnotation(typeRef, typePath, descriptor, visible);
+    }
+    return compactInsnList.addInsnAnnotation(typeRef, typePath, descriptor, visible);
+  }
+
+  @Override
+  public void visitLineNumber(final int line, final Label start) {
+    CompactInsnList compactInsnList = getCompactInsnList();
+    if (compactInsnList == null) {
+      super.visitLineNumber(line, start);
+      return;
+    }
+    compactInsnList.addInsn(AbstractInsnNode.LINE, -1);
+    compactInsnList.addOperand(line);
+    compactInsnList.addLabelOperand(getLabelNode(start));
+  }
+
+  @Override
+  public void visitEnd() {
+    CompactInsnList compactInsnList = getCompactInsnList();
+    if (compactInsnList != null) {
+      compactInsnList.trim();
+    }
+    super.visitEnd();
+  }
+
+  private Object[] getLabelNodes(final Object[] objects) {
+    Object[] labelNodes = new Object[objects.length];
+    for (int i = 0, n = objects.length; i < n; ++i) {
+      Object o = objects[i];
+      if (o instanceof Label) {
+        o = getLabelNode((Label) o);
+      }
+      labelNodes[i] = o;
+    }
+    return labelNodes;
+  }
+}
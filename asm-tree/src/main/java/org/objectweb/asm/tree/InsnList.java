@@ -243,9 +243,10 @@ public class InsnList implements Iterable<AbstractInsnNode> {
    *     different from 'this'.
    */
   public void add(final InsnList insnList) {
-    if (insnList.size == 0) {
+    if (insnList.size() == 0) {
       return;
     }
+    insnList.inflate();
     size += insnList.size;
     if (lastInsn == null) {
       firstInsn = insnList.firstInsn;
@@ -286,9 +287,10 @@ public class InsnList implements Iterable<AbstractInsnNode> {
    *     different from 'this'.
    */
   public void insert(final InsnList insnList) {
-    if (insnList.size == 0) {
+    if (insnList.size() == 0) {
       return;
     }
+    insnList.inflate();
     size += insnList.size;
     if (firstInsn == null) {
       firstInsn = insnList.firstInsn;
@@ -334,9 +336,10 @@ public class InsnList implements Iterable<AbstractInsnNode> {
    *     list must be different from 'this'.
    */
   public void insert(final AbstractInsnNode previousInsn, final InsnList insnList) {
-    if (insnList.size == 0) {
+    if (insnList.size() == 0) {
       return;
     }
+    insnList.inflate();
     size += insnList.size;
     AbstractInsnNode firstInsnListElement = insnList.firstInsn;
     AbstractInsnNode lastInsnListElement = insnList.lastInsn;
@@ -384,9 +387,10 @@ public class InsnList implements Iterable<AbstractInsnNode> {
    *     list must be different from 'this'.
    */
   public void insertBefore(final AbstractInsnNode nextInsn, final InsnList insnList) {
-    if (insnList.size == 0) {
+    if (insnList.size() == 0) {
       return;
     }
+    insnList.inflate();
     size += insnList.size;
     AbstractInsnNode firstInsnListElement = insnList.firstInsn;
     AbstractInsnNode lastInsnListElement = insnList.lastInsn;
@@ -435,6 +439,15 @@ public class InsnList implements Iterable<AbstractInsnNode> {
     insnNode.nextInsn = null;
   }
 
+  /**
+   * Makes sure that the instructions of this list are stored in its {@link AbstractInsnNode}
+   * linked list. Does nothing by default. Must be called on another list before accessing its
+   * fields directly.
+   */
+  void inflate() {
+    // Nothing to do, the instructions of a regular list are always stored in its linked list.
+  }
+
   /**
    * Removes all the instructions of this list.
    *
@@ -0,0 +1,534 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.ListIterator;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.Attribute;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.TypePath;
+
+/**
+ * An {@link InsnList} whose instructions are decoded from the original class bytes the first time
+ * it is used. Decoding the instructions also fills the other code related fields of the {@link
+ * MethodNode} to which this list belongs (try catch blocks, local variables, max stack, etc). See
+ * {@link ClassNode#readLazily}.
+ */
+final class LazyInsnList extends InsnList {
+
+  /** The method to which this list belongs. */
+  private final MethodNode methodNode;
+
+  /** The ClassReader containing the original method. */
+  private final ClassReader classReader;
+
+  /** The index of the original method in the ClassReader, in the order of the visited methods. */
+  private final int methodIndex;
+
+  /** The prototypes of the attributes that must be parsed in the original method. */
+  private final Attribute[] attributePrototypes;
+
+  /** The options used to parse the original class, without {@link ClassReader#SKIP_CODE}. */
+  private final int parsingOptions;
+
+  /** The header of the original method (see {@link #getHeader}). */
+  private final Object[] header;
+
+  /** The initial value of {@link MethodNode#tryCatchBlocks}. */
+  private final List<TryCatchBlockNode> initialTryCatchBlocks;
+
+  /** The initial value of {@link MethodNode#localVariables}. */
+  private final List<LocalVariableNode> initialLocalVariables;
+
+  /** The initial value of {@link MethodNode#visibleLocalVariableAnnotations}. */
+  private final List<LocalVariableAnnotationNode> initialVisibleLocalVariableAnnotations;
+
+  /** The initial value of {@link MethodNode#invisibleLocalVariableAnnotations}. */
+  private final List<LocalVariableAnnotationNode> initialInvisibleLocalVariableAnnotations;
+
+  /** Whether the instructions of this list have been decoded. */
+  private boolean materialized;
+
+  /**
+   * Constructs a new {@link LazyInsnList}.
+   *
+   * @param methodNode the method to which this list belongs, which must have been read from the
+   *     given ClassReader with the {@link ClassReader#SKIP_CODE} option.
+   * @param classReader the ClassReader containing the original method.
+   * @param methodIndex the index of the original method in the ClassReader.
+   * @param attributePrototypes the prototypes of the attributes that must be parsed in the original
+   *     method. May be {@literal null}.
+   * @param parsingOptions the options used to parse the original class.
+   */
+  LazyInsnList(
+      final MethodNode methodNode,
+      final ClassReader classReader,
+      final int methodIndex,
+      final Attribute[] attributePrototypes,
+      final int parsingOptions) {
+    this.methodNode = methodNode;
+    this.classReader = classReader;
+    this.methodIndex = methodIndex;
+    this.attributePrototypes = attributePrototypes;
+    this.parsingOptions = parsingOptions & ~ClassReader.SKIP_CODE;
+    this.header = getHeader(methodNode);
+    this.initialTryCatchBlocks = methodNode.tryCatchBlocks;
+    this.initialLocalVariables = methodNode.localVariables;
+    this.initialVisibleLocalVariableAnnotations = methodNode.visibleLocalVariableAnnotations;
+    this.initialInvisibleLocalVariableAnnotations = methodNode.invisibleLocalVariableAnnotations;
+  }
+
+  /**
+   * Returns whether the instructions of this list have been decoded.
+   *
+   * @return whether the instructions of this list have been decoded.
+   */
+  boolean isMaterialized() {
+    return materialized;
+  }
+
+  /**
+   * Decodes the original code of the method to which this list belongs, if this is not already
+   * done. The instructions are added to this list and the other code related elements (try catch
+   * blocks, local variables, etc) to the corresponding {@link MethodNode} fields. If some of these
+   * fields have been modified before, their modified value is kept instead of the decoded one.
+   */
+  void materialize() {
+    if (materialized) {
+      return;
+    }
+    materialized = true;
+    final MethodNode code = new MethodNode(Opcodes.ASM9, 0, null, null, null, null);
+    visitOriginalMethod(
+        new ClassVisitor(Opcodes.ASM9) {
+          @Override
+          public MethodVisitor visitMethod(
+              final int access,
+              final String name,
+              final String descriptor,
+              final String signature,
+              final String[] exceptions) {
+            return new CodeFilter(code);
+          }
+        });
+    super.add(code.instructions);
+    if (methodNode.maxStack == 0) {
+      methodNode.maxStack = code.maxStack;
+    }
+    if (methodNode.maxLocals == 0) {
+      methodNode.maxLocals = code.maxLocals;
+    }
+    methodNode.tryCatchBlocks =
+        merge(methodNode.tryCatchBlocks, initialTryCatchBlocks, code.tryCatchBlocks);
+    methodNode.localVariables =
+        merge(methodNode.localVariables, initialLocalVariables, code.localVariables);
+    methodNode.visibleLocalVariableAnnotations =
+        merge(
+            methodNode.visibleLocalVariableAnnotations,
+            initialVisibleLocalVariableAnnotations,
+            code.visibleLocalVariableAnnotations);
+    methodNode.invisibleLocalVariableAnnotations =
+        merge(
+            methodNode.invisibleLocalVariableAnnotations,
+            initialInvisibleLocalVariableAnnotations,
+            code.invisibleLocalVariableAnnotations);
+    if (code.attrs != null) {
+      if (methodNode.attrs == null) {
+        methodNode.attrs = new ArrayList<Attribute>(code.attrs.size());
+      }
+      methodNode.attrs.addAll(code.attrs);
+    }
+  }
+
+  /**
+   * Makes the given class visitor visit the original method, directly from the original class
+   * bytes, if this method is unchanged. A method is unchanged if its instructions have not been
+   * used, if its other code related fields have not been modified, and if its header fields (access
+   * flags, name, descriptor, signature and exceptions), its parameters, annotations and attributes
+   * are equal to the original ones. If the class visitor is a {@link org.objectweb.asm.ClassWriter}
+   * constructed with the original ClassReader, the original method is then copied as is, without
+   * decoding its code.
+   *
+   * @param classVisitor a class visitor.
+   * @return whether the original method has been visited (if not, the method must be visited from
+   *     the {@link MethodNode} fields instead).
+   */
+  boolean acceptOriginalMethod(final ClassVisitor classVisitor) {
+    if (materialized || hasModifiedCodeFields() || !Arrays.equals(header, getHeader(methodNode))) {
+      return false;
+    }
+    visitOriginalMethod(classVisitor);
+    return true;
+  }
+
+  /**
+   * Makes the given class visitor visit the original method, and only this method. Only the {@link
+   * ClassVisitor#visitMethod} method of the visitor is called (followed by the methods of the
+   * returned {@link MethodVisitor}, if any). The code of the other methods is skipped without being
+   * parsed.
+   *
+   * @param classVisitor a class visitor.
+   */
+  private void visitOriginalMethod(final ClassVisitor classVisitor) {
+    classReader.accept(
+        new ClassVisitor(Opcodes.ASM9) {
+          private int currentMethodIndex;
+
+          @Override
+          public MethodVisitor visitMethod(
+              final int access,
+              final String name,
+              final String descriptor,
+              final String signature,
+              final String[] exceptions) {
+            if (currentMethodIndex++ != methodIndex) {
+              return null;
+            }
+            return classVisitor.visitMethod(access, name, descriptor, signature, exceptions);
+          }
+        },
+        attributePrototypes,
+        parsingOptions);
+  }
+
+  /**
+   * Returns whether the code related fields of {@link #methodNode}, other than its instructions,
+   * have been modified since this list was created (these fields are empty until the code is
+   * decoded).
+   *
+   * @return whether the code related fields of {@link #methodNode} have been modified.
+   */
+  private boolean hasModifiedCodeFields() {
+    return methodNode.maxStack != 0
+        || methodNode.maxLocals != 0
+        || isModified(methodNode.tryCatchBlocks, initialTryCatchBlocks)
+        || isModified(methodNode.localVariables, initialLocalVariables)
+        || isModified(
+            methodNode.visibleLocalVariableAnnotations, initialVisibleLocalVariableAnnotations)
+        || isModified(
+            methodNode.invisibleLocalVariableAnnotations, initialInvisibleLocalVariableAnnotations);
+  }
+
+  private static boolean isModified(final List<?> list, final List<?> initialList) {
+    return list != initialList || (list != null && !list.isEmpty());
+  }
+
+  /**
+   * Returns the value of a code related field after the code has been decoded.
+   *
+   * @param <T> the type of the list elements.
+   * @param list the current value of the field.
+   * @param initialList the initial value of the field, which is null or empty.
+   * @param decodedList the decoded value of the field.
+   * @return list if it has been modified, or else the decoded elements (added to list, if it is not
+   *     null).
+   */
+  private static <T> List<T> merge(
+      final List<T> list, final List<T> initialList, final List<T> decodedList) {
+    if (isModified(list, initialList) || list == null) {
+      return list == null ? decodedList : list;
+    }
+    if (decodedList != null) {
+      list.addAll(decodedList);
+    }
+    return list;
+  }
+
+  /**
+   * Returns the header of the given method, i.e. the values which are compared to detect if a
+   * method has changed since it was read.
+   *
+   * @param method a method node.
+   * @return a deep copy of the header fields, parameters, annotations and attributes of the given
+   *     method.
+   */
+  private static Object[] getHeader(final MethodNode method) {
+    return new Object[] {
+      method.access,
+      method.name,
+      method.desc,
+      method.signature,
+      copy(method.exceptions),
+      copy(method.parameters),
+      copy(method.visibleAnnotations),
+      copy(method.invisibleAnnotations),
+      copy(method.visibleTypeAnnotations),
+      copy(method.invisibleTypeAnnotations),
+      copy(method.attrs),
+      copy(method.annotationDefault),
+      method.visibleAnnotableParameterCount,
+      copy(method.visibleParameterAnnotations),
+      method.invisibleAnnotableParameterCount,
+      copy(method.invisibleParameterAnnotations)
+    };
+  }
+
+  /**
+   * Returns a deep copy of the given header value, which can be compared with {@link Object#equals}
+   * with another copy to detect changes.
+   *
+   * @param value a list, an array, a parameter node, an annotation node, or an immutable value
+   *     (including an {@link Attribute}, compared by identity).
+   * @return a deep copy of value, where nodes, arrays and lists are replaced with lists.
+   */
+  private static Object copy(final Object value) {
+    if (value instanceof List) {
+      List<?> list = (List<?>) value;
+      List<Object> copy = new ArrayList<Object>(list.size());
+      for (Object element : list) {
+        copy.add(copy(element));
+      }
+      return copy;
+    } else if (value instanceof Object[]) {
+      return copy(Arrays.asList((Object[]) value));
+    } else if (value instanceof ParameterNode) {
+      ParameterNode parameter = (ParameterNode) value;
+      return Arrays.asList(parameter.name, parameter.access);
+    } else if (value instanceof TypeAnnotationNode) {
+      TypeAnnotationNode annotation = (TypeAnnotationNode) value;
+      return Arrays.asList(
+          annotation.typeRef,
+          annotation.typePath == null ? null : annotation.typePath.toString(),
+          annotation.desc,
+          copy(annotation.values));
+    } else if (value instanceof AnnotationNode) {
+      AnnotationNode annotation = (AnnotationNode) value;
+      return Arrays.asList(annotation.desc, copy(annotation.values));
+    }
+    return value;
+  }
+
+  // -----------------------------------------------------------------------------------------------
+  // Overridden InsnList methods
+  // -----------------------------------------------------------------------------------------------
+
+  @Override
+  public int size() {
+    materialize();
+    return super.size();
+  }
+
+  @Override
+  public AbstractInsnNode getFirst() {
+    materialize();
+    return super.getFirst();
+  }
+
+  @Override
+  public AbstractInsnNode getLast() {
+    materialize();
+    return super.getLast();
+  }
+
+  @Override
+  public AbstractInsnNode get(final int index) {
+    materialize();
+    return super.get(index);
+  }
+
+  @Override
+  public boolean contains(final AbstractInsnNode insnNode) {
+    materialize();
+    return super.contains(insnNode);
+  }
+
+  @Override
+  public int indexOf(final AbstractInsnNode insnNode) {
+    materialize();
+    return super.indexOf(insnNode);
+  }
+
+  @Override
+  public void accept(final MethodVisitor methodVisitor) {
+    materialize();
+    super.accept(methodVisitor);
+  }
+
+  @Override
+  public ListIterator<AbstractInsnNode> iterator() {
+    materialize();
+    return super.iterator();
+  }
+
+  @Override
+  public ListIterator<AbstractInsnNode> iterator(final int index) {
+    materialize();
+    return super.iterator(index);
+  }
+
+  @Override
+  public AbstractInsnNode[] toArray() {
+    materialize();
+    return super.toArray();
+  }
+
+  @Override
+  public void set(final AbstractInsnNode oldInsnNode, final AbstractInsnNode newInsnNode) {
+    materialize();
+    super.set(oldInsnNode, newInsnNode);
+  }
+
+  @Override
+  public void add(final AbstractInsnNode insnNode) {
+    materialize();
+    super.add(insnNode);
+  }
+
+  @Override
+  public void add(final InsnList insnList) {
+    materialize();
+    super.add(insnList);
+  }
+
+  @Override
+  public void insert(final AbstractInsnNode insnNode) {
+    materialize();
+    super.insert(insnNode);
+  }
+
+  @Override
+  public void insert(final InsnList insnList) {
+    materialize();
+    super.insert(insnList);
+  }
+
+  @Override
+  public void insert(final AbstractInsnNode previousInsn, final AbstractInsnNode insnNode) {
+    materialize();
+    super.insert(previousInsn, insnNode);
+  }
+
+  @Override
+  public void insert(final AbstractInsnNode previousInsn, final InsnList insnList) {
+    materialize();
+    super.insert(previousInsn, insnList);
+  }
+
+  @Override
+  public void insertBefore(final AbstractInsnNode nextInsn, final AbstractInsnNode insnNode) {
+    materialize();
+    super.insertBefore(nextInsn, insnNode);
+  }
+
+  @Override
+  public void insertBefore(final AbstractInsnNode nextInsn, final InsnList insnList) {
+    materialize();
+    super.insertBefore(nextInsn, insnList);
+  }
+
+  @Override
+  public void remove(final AbstractInsnNode insnNode) {
+    materialize();
+    super.remove(insnNode);
+  }
+
+  @Override
+  public void clear() {
+    materialize();
+    super.clear();
+  }
+
+  @Override
+  public void resetLabels() {
+    materialize();
+    super.resetLabels();
+  }
+
+  /**
+   * A MethodVisitor which forwards the code related events of a method to another method visitor,
+   * and ignores the other events (which have already been visited by this visitor).
+   */
+  static final class CodeFilter extends MethodVisitor {
+
+    /** Whether {@link #visitCode} has been called. */
+    private boolean visitedCode;
+
+    CodeFilter(final MethodVisitor methodVisitor) {
+      super(Opcodes.ASM9, methodVisitor);
+    }
+
+    @Override
+    public void visitParameter(final String name, final int access) {
+      // Already visited.
+    }
+
+    @Override
+    public AnnotationVisitor visitAnnotationDefault() {
+      return null;
+    }
+
+    @Override
+    public AnnotationVisitor visitAnnotation(final String descriptor, final boolean visible) {
+      return null;
+    }
+
+    @Override
+    public AnnotationVisitor visitTypeAnnotation(
+        final int typeRef,
+        final TypePath typePath,
+        final String descriptor,
+        final boolean visible) {
+      return null;
+    }
+
+    @Override
+    public void visitAnnotableParameterCount(final int parameterCount, final boolean visible) {
+      // Already visited.
+    }
+
+    @Override
+    public AnnotationVisitor visitParameterAnnotation(
+        final int parameter, final String descriptor, final boolean visible) {
+      return null;
+    }
+
+    @Override
+    public void visitAttribute(final Attribute attribute) {
+      if (visitedCode) {
+        super.visitAttribute(attribute);
+      }
+    }
+
+    @Override
+    public void visitCode() {
+      visitedCode = true;
+      super.visitCode();
+    }
+
+    @Override
+    public void visitEnd() {
+      // Already visited.
+    }
+  }
+}
@@ -571,6 +571,7 @@ public class MethodNode extends MethodVisitor {
    *     {@link Opcodes#ASM6}, {@link Opcodes#ASM7}, {@link Opcodes#ASM8} or {@link Opcodes#ASM9}.
    */
   public void check(final int api) {
+    materializeCode();
     if (api == Opcodes.ASM4) {
       if (parameters != null && !parameters.isEmpty()) {
         throw new UnsupportedClassVersionException();
@@ -637,11 +638,30 @@ public class MethodNode extends MethodVisitor {
   }
 
   /**
-   * Makes the given class visitor visit this method.
+   * Decodes the code of this method, if it was read with {@link ClassNode#readLazily} and if this is
+   * not already done. This is needed before accessing the code related fields other than {@link
+   * #instructions}, which are filled at the same time as the instructions.
+   */
+  private void materializeCode() {
+    if (instructions instanceof LazyInsnList) {
+      ((LazyInsnList) instructions).materialize();
+    }
+  }
+
+  /**
+   * Makes the given class visitor visit this method. If this method was read with {@link
+   * ClassNode#readLazily} and is unchanged (in particular if its instructions have never been
+   * used), it is visited directly from the original class bytes. In this case, if the class visitor
+   * is a {@link org.objectweb.asm.ClassWriter} constructed with the original ClassReader, the
+   * method is copied as is.
    *
    * @param classVisitor a class visitor.
    */
   public void accept(final ClassVisitor classVisitor) {
+    if (instructions instanceof LazyInsnList
+        && ((LazyInsnList) instructions).acceptOriginalMethod(classVisitor)) {
+      return;
+    }
     String[] exceptionsArray = exceptions == null ? null : exceptions.toArray(new String[0]);
     MethodVisitor methodVisitor =
         classVisitor.visitMethod(access, name, desc, signature, exceptionsArray);
@@ -656,6 +676,7 @@ public class MethodNode extends MethodVisitor {
    * @param methodVisitor a method visitor.
    */
   public void accept(final MethodVisitor methodVisitor) {
+    materializeCode();
     // Visit the parameters.
     if (parameters != null) {
       for (int i = 0, n = parameters.size(); i < n; i++) {
@@ -27,13 +27,17 @@
 // THE POSSIBILITY OF SUCH DAMAGE.
 package org.objectweb.asm.tree;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.function.Executable;
@@ -152,6 +156,172 @@ public class ClassNodeTest extends AsmTest {
         new ClassFile(expectedClassWriter.toByteArray()), new ClassFile(classWriter.toByteArray()));
   }
 
+  /**
+   * Tests that classes are unchanged with a ClassReader->ClassNode->ClassWriter transform, when the
+   * ClassNode is read lazily.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_ALL_APIS)
+  public void testReadLazilyAndAccept(
+      final PrecompiledClass classParameter, final Api apiParameter) {
+    byte[] classFile = classParameter.getBytes();
+    ClassReader classReader = new ClassReader(classFile);
+    ClassNode classNode = new ClassNode(apiParameter.value()) {};
+    ClassWriter classWriter = new ClassWriter(0);
+
+    classNode.readLazily(classReader, attributes(), 0);
+    classNode.accept(classWriter);
+
+    assertEquals(new ClassFile(classFile), new ClassFile(classWriter.toByteArray()));
+  }
+
+  /**
+   * Tests that the unchanged methods of a lazily read ClassNode are copied as is to a ClassWriter
+   * constructed with the original ClassReader.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testReadLazilyAndAccept_copyMethods(
+      final PrecompiledClass classParameter, final Api apiParameter) {
+    ClassReader classReader = new ClassReader(classParameter.getBytes());
+    ClassNode classNode = new ClassNode(apiParameter.value()) {};
+    ClassWriter classWriter = new ClassWriter(classReader, 0);
+
+    classNode.readLazily(classReader, attributes(), 0);
+    classNode.accept(classWriter);
+
+    ClassWriter expectedClassWriter = new ClassWriter(classReader, 0);
+    classReader.accept(expectedClassWriter, attributes(), 0);
+    assertArrayEquals(expectedClassWriter.toByteArray(), classWriter.toByteArray());
+  }
+
+  /**
+   * Tests that the instructions and the other code related fields of a lazily read ClassNode are
+   * the same as with an eager read, once the instructions are used.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_ALL_APIS)
+  public void testReadLazily_materializeInstructions(
+      final PrecompiledClass classParameter, final Api apiParameter) {
+    byte[] classFile = classParameter.getBytes();
+    ClassReader classReader = new ClassReader(classFile);
+    ClassNode classNode = new ClassNode(apiParameter.value()) {};
+    ClassNode expectedClassNode = new ClassNode(apiParameter.value()) {};
+    ClassWriter classWriter = new ClassWriter(0);
+
+    classNode.readLazily(classReader, attributes(), 0);
+    classReader.accept(expectedClassNode, attributes(), 0);
+    for (MethodNode methodNode : classNode.methods) {
+      cloneInstructions(methodNode);
+    }
+    classNode.accept(classWriter);
+
+    assertEquals(expectedClassNode.methods.size(), classNode.methods.size());
+    for (int i = 0; i < classNode.methods.size(); ++i) {
+      MethodNode expectedMethodNode = expectedClassNode.methods.get(i);
+      MethodNode methodNode = classNode.methods.get(i);
+      assertEquals(expectedMethodNode.instructions.size(), methodNode.instructions.size());
+      assertEquals(expectedMethodNode.tryCatchBlocks.size(), methodNode.tryCatchBlocks.size());
+      assertEquals(expectedMethodNode.maxStack, methodNode.maxStack);
+      assertEquals(expectedMethodNode.maxLocals, methodNode.maxLocals);
+      assertEquals(size(expectedMethodNode.localVariables), size(methodNode.localVariables));
+      assertEquals(size(expectedMethodNode.attrs), size(methodNode.attrs));
+    }
+    assertEquals(new ClassFile(classFile), new ClassFile(classWriter.toByteArray()));
+  }
+
+  /**
+   * Tests that the methods of a lazily read ClassNode whose header has changed are visited from the
+   * ClassNode fields, and not from the original class.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testReadLazilyAndAccept_changedMethods(
+      final PrecompiledClass classParameter, final Api apiParameter) {
+    ClassReader classReader = new ClassReader(classParameter.getBytes());
+    ClassNode classNode = new ClassNode(apiParameter.value()) {};
+    ClassNode expectedClassNode = new ClassNode(apiParameter.value()) {};
+    ClassWriter classWriter = new ClassWriter(classReader, 0);
+    ClassWriter expectedClassWriter = new ClassWriter(0);
+
+    classNode.readLazily(classReader, attributes(), 0);
+    classReader.accept(expectedClassNode, attributes(), 0);
+    for (ClassNode node : new ClassNode[] {classNode, expectedClassNode}) {
+      for (MethodNode methodNode : node.methods) {
+        methodNode.name = methodNode.name + "$";
+      }
+    }
+    classNode.accept(classWriter);
+    expectedClassNode.accept(expectedClassWriter);
+
+    assertEquals(
+        new ClassFile(expectedClassWriter.toByteArray()), new ClassFile(classWriter.toByteArray()));
+  }
+
+  /**
+   * Tests that the code of the methods of a lazily read ClassNode, whose visitor is not a
+   * MethodNode, is visited before their visitEnd method is called.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testReadLazily_methodNodeSubclass(
+      final PrecompiledClass classParameter, final Api apiParameter) {
+    byte[] classFile = classParameter.getBytes();
+    ClassReader classReader = new ClassReader(classFile);
+    List<Integer> visitEndSizes = new ArrayList<>();
+    ClassNode classNode =
+        new ClassNode(apiParameter.value()) {
+          @Override
+          public MethodVisitor visitMethod(
+              final int access,
+              final String name,
+              final String descriptor,
+              final String signature,
+              final String[] exceptions) {
+            MethodNode method =
+                new MethodNode(api, access, name, descriptor, signature, exceptions) {
+                  @Override
+                  public void visitEnd() {
+                    visitEndSizes.add(instructions.size());
+                  }
+                };
+            methods.add(method);
+            return method;
+          }
+        };
+    ClassNode expectedClassNode = new ClassNode(apiParameter.value()) {};
+    ClassWriter classWriter = new ClassWriter(0);
+
+    classNode.readLazily(classReader, attributes(), 0);
+    classReader.accept(expectedClassNode, attributes(), 0);
+    classNode.accept(classWriter);
+
+    assertEquals(expectedClassNode.methods.size(), visitEndSizes.size());
+    for (int i = 0; i < visitEndSizes.size(); ++i) {
+      assertEquals(
+          expectedClassNode.methods.get(i).instructions.size(), (int) visitEndSizes.get(i));
+      assertFalse(classNode.methods.get(i).instructions instanceof LazyInsnList);
+    }
+    assertEquals(new ClassFile(classFile), new ClassFile(classWriter.toByteArray()));
+  }
+
+  @Test
+  public void testReadLazily_skipCode() {
+    ClassReader classReader = new ClassReader(PrecompiledClass.JDK3_ALL_INSTRUCTIONS.getBytes());
+    ClassNode classNode = new ClassNode();
+
+    classNode.readLazily(classReader, ClassReader.SKIP_CODE);
+
+    for (MethodNode methodNode : classNode.methods) {
+      assertFalse(methodNode.instructions instanceof LazyInsnList);
+      assertEquals(0, methodNode.instructions.size());
+    }
+  }
+
+  private static int size(final List<?> list) {
+    return list == null ? 0 : list.size();
+  }
+
   private static Attribute[] attributes() {
     return new Attribute[] {new Comment(), new CodeComment()};
   }
@@ -0,0 +1,207 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.test.AsmTest.PrecompiledClass;
+
+/** Unit tests for {@link CompactInsnList}. */
+public class CompactInsnListTest {
+
+  @Test
+  public void testSize_notInflated() {
+    CompactMethodNode methodNode = getMethodNode();
+    CompactInsnList insnList = (CompactInsnList) methodNode.instructions;
+
+    int size = insnList.size();
+    insnList.accept(new MethodNode());
+    insnList.resetLabels();
+
+    assertFalse(insnList.isInflated());
+    assertEquals(getMethodNode(new ClassNode()).instructions.size(), size);
+  }
+
+  @ParameterizedTest
+  @MethodSource("insnListMethods")
+  public void testInsnListMethods_inflate(final Consumer<InsnList> insnListMethod) {
+    CompactMethodNode methodNode = getMethodNode();
+    CompactInsnList insnList = (CompactInsnList) methodNode.instructions;
+
+    insnListMethod.accept(insnList);
+
+    assertTrue(insnList.isInflated());
+    assertFalse(methodNode.isCompact());
+  }
+
+  @Test
+  public void testInflate() {
+    CompactMethodNode methodNode = getMethodNode();
+    MethodNode expectedMethodNode = getMethodNode(new ClassNode());
+
+    ((CompactInsnList) methodNode.instructions).inflate();
+    ((CompactInsnList) methodNode.instructions).inflate();
+
+    assertEquals(expectedMethodNode.instructions.size(), methodNode.instructions.size());
+    for (int i = 0; i < methodNode.instructions.size(); ++i) {
+      AbstractInsnNode insnNode = methodNode.instructions.get(i);
+      AbstractInsnNode expectedInsnNode = expectedMethodNode.instructions.get(i);
+      assertEquals(expectedInsnNode.getType(), insnNode.getType());
+      assertEquals(expectedInsnNode.getOpcode(), insnNode.getOpcode());
+    }
+    for (TryCatchBlockNode tryCatchBlock : methodNode.tryCatchBlocks) {
+      assertTrue(methodNode.instructions.contains(tryCatchBlock.start));
+      assertTrue(methodNode.instructions.contains(tryCatchBlock.handler));
+    }
+  }
+
+  @Test
+  public void testAddInsn_afterTrim() {
+    CompactMethodNode methodNode = new CompactMethodNode();
+    methodNode.visitLdcInsn("constant");
+    methodNode.visitEnd();
+
+    methodNode.visitLdcInsn("constant");
+    methodNode.visitLdcInsn(Double.NaN);
+    methodNode.visitLdcInsn(Double.NaN);
+
+    assertEquals(4, methodNode.instructions.size());
+    assertEquals("constant", ((LdcInsnNode) methodNode.getInsnView(1)).cst);
+    assertEquals(Double.NaN, ((LdcInsnNode) methodNode.getInsnView(3)).cst);
+  }
+
+  @Test
+  public void testAdd_compactInsnListToEmptyList() {
+    CompactInsnList compactInsnList = (CompactInsnList) getMethodNode().instructions;
+    int size = compactInsnList.size();
+    InsnList insnList = new InsnList();
+
+    insnList.add(compactInsnList);
+
+    assertEquals(size, insnList.size());
+    assertEquals(size, insnList.toArray().length);
+    assertEquals(0, compactInsnList.size());
+  }
+
+  @ParameterizedTest
+  @MethodSource("insnListAddMethods")
+  public void testAddOrInsert_compactInsnListToNonEmptyList(
+      final BiConsumer<InsnList, InsnList> insnListAddMethod) {
+    CompactInsnList compactInsnList = (CompactInsnList) getMethodNode().instructions;
+    int size = compactInsnList.size();
+    InsnList insnList = new InsnList();
+    insnList.add(new InsnNode(Opcodes.NOP));
+
+    insnListAddMethod.accept(insnList, compactInsnList);
+
+    assertEquals(size + 1, insnList.size());
+    assertEquals(size + 1, insnList.toArray().length);
+    assertEquals(0, compactInsnList.size());
+  }
+
+  private static Stream<Arguments> insnListAddMethods() {
+    List<BiConsumer<InsnList, InsnList>> insnListAddMethods = new ArrayList<>();
+    insnListAddMethods.add((insnList, otherInsnList) -> insnList.add(otherInsnList));
+    insnListAddMethods.add((insnList, otherInsnList) -> insnList.insert(otherInsnList));
+    insnListAddMethods.add(
+        (insnList, otherInsnList) -> insnList.insert(insnList.getFirst(), otherInsnList));
+    insnListAddMethods.add(
+        (insnList, otherInsnList) -> insnList.insertBefore(insnList.getFirst(), otherInsnList));
+    return insnListAddMethods.stream().map(Arguments::of);
+  }
+
+  private static Stream<Arguments> insnListMethods() {
+    InsnNode insnNode = new InsnNode(Opcodes.NOP);
+    List<Consumer<InsnList>> insnListMethods = new ArrayList<>();
+    insnListMethods.add(insnList -> insnList.getFirst());
+    insnListMethods.add(insnList -> insnList.getLast());
+    insnListMethods.add(insnList -> insnList.get(0));
+    insnListMethods.add(insnList -> insnList.contains(insnNode));
+    insnListMethods.add(insnList -> insnList.indexOf(insnList.getFirst()));
+    insnListMethods.add(insnList -> insnList.iterator());
+    insnListMethods.add(insnList -> insnList.iterator(0));
+    insnListMethods.add(insnList -> insnList.toArray());
+    insnListMethods.add(insnList -> insnList.set(insnList.getFirst(), new InsnNode(Opcodes.NOP)));
+    insnListMethods.add(insnList -> insnList.add(new InsnNode(Opcodes.NOP)));
+    insnListMethods.add(insnList -> insnList.add(new InsnList()));
+    insnListMethods.add(insnList -> insnList.insert(new InsnNode(Opcodes.NOP)));
+    insnListMethods.add(insnList -> insnList.insert(new InsnList()));
+    insnListMethods.add(insnList -> insnList.insert(insnList.getFirst(), new InsnNode(0)));
+    insnListMethods.add(insnList -> insnList.insert(insnList.getFirst(), new InsnList()));
+    insnListMethods.add(insnList -> insnList.insertBefore(insnList.getFirst(), new InsnNode(0)));
+    insnListMethods.add(insnList -> insnList.insertBefore(insnList.getFirst(), new InsnList()));
+    insnListMethods.add(insnList -> insnList.remove(insnList.getFirst()));
+    insnListMethods.add(insnList -> insnList.clear());
+    return insnListMethods.stream().map(Arguments::of);
+  }
+
+  private static CompactMethodNode getMethodNode() {
+    return (CompactMethodNode)
+        getMethodNode(
+            new ClassNode(Opcodes.ASM9) {
+              @Override
+              public MethodVisitor visitMethod(
+                  final int access,
+                  final String name,
+                  final String descriptor,
+                  final String signature,
+                  final String[] exceptions) {
+                MethodNode method =
+                    new CompactMethodNode(
+                        Opcodes.ASM9, access, name, descriptor, signature, exceptions);
+                methods.add(method);
+                return method;
+              }
+            });
+  }
+
+  private static MethodNode getMethodNode(final ClassVisitor classNode) {
+    new ClassReader(PrecompiledClass.JDK3_ALL_INSTRUCTIONS.getBytes()).accept(classNode, 0);
+    for (MethodNode methodNode : ((ClassNode) classNode).methods) {
+      if (methodNode.name.equals("jsrAndRetInstructions")) {
+        return methodNode;
+      }
+    }
+    throw new AssertionError();
+  }
+}
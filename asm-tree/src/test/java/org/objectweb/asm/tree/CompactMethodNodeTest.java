@@ -0,0 +1,208 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.test.AsmTest;
+
+/** Unit tests for {@link CompactMethodNode}. */
+public class CompactMethodNodeTest extends AsmTest {
+
+  @Test
+  public void testConstructor() {
+    CompactMethodNode methodNode = new CompactMethodNode(123, "method", "()V", null, null);
+
+    assertEquals(123, methodNode.access);
+    assertEquals("method", methodNode.name);
+    assertEquals("()V", methodNode.desc);
+    assertTrue(methodNode.isCompact());
+    assertEquals(0, methodNode.instructions.size());
+  }
+
+  @Test
+  public void testConstructor_illegalState() {
+    Executable constructor = () -> new CompactMethodNode() {};
+
+    assertThrows(IllegalStateException.class, constructor);
+  }
+
+  @Test
+  public void testGetInsnView() {
+    CompactMethodNode methodNode = new CompactMethodNode();
+    Label label = new Label();
+    methodNode.visitLabel(label);
+    methodNode.visitLineNumber(42, label);
+    methodNode.visitMethodInsn(Opcodes.INVOKESTATIC, "C", "m", "()V", false);
+    methodNode.visitJumpInsn(Opcodes.GOTO, label);
+
+    AbstractInsnNode labelNode = methodNode.getInsnView(0);
+    AbstractInsnNode lineNumberNode = methodNode.getInsnView(1);
+    AbstractInsnNode methodInsnNode = methodNode.getInsnView(2);
+    AbstractInsnNode jumpInsnNode = methodNode.getInsnView(3);
+
+    assertTrue(methodNode.isCompact());
+    assertSame(labelNode, methodNode.getInsnView(0));
+    assertSame(labelNode, ((LineNumberNode) lineNumberNode).start);
+    assertSame(labelNode, ((JumpInsnNode) jumpInsnNode).label);
+    assertEquals(42, ((LineNumberNode) lineNumberNode).line);
+    assertEquals("C", ((MethodInsnNode) methodInsnNode).owner);
+    assertEquals("m", ((MethodInsnNode) methodInsnNode).name);
+    assertNotSame(methodInsnNode, methodNode.getInsnView(2));
+    assertEquals(Opcodes.INVOKESTATIC, methodNode.getInsnOpcode(2));
+    assertEquals(AbstractInsnNode.METHOD_INSN, methodNode.getInsnType(2));
+    assertEquals(-1, methodNode.getInsnOpcode(1));
+    assertEquals(AbstractInsnNode.LINE, methodNode.getInsnType(1));
+    assertThrows(IndexOutOfBoundsException.class, () -> methodNode.getInsnView(4));
+  }
+
+  @Test
+  public void testGetInsnView_inflated() {
+    CompactMethodNode methodNode = new CompactMethodNode();
+    methodNode.visitInsn(Opcodes.NOP);
+    methodNode.visitEnd();
+    methodNode.visitInsn(Opcodes.RETURN);
+
+    AbstractInsnNode insnNode = methodNode.instructions.get(1);
+
+    assertFalse(methodNode.isCompact());
+    assertSame(insnNode, methodNode.getInsnView(1));
+    assertEquals(Opcodes.RETURN, methodNode.getInsnOpcode(1));
+    assertEquals(AbstractInsnNode.INSN, methodNode.getInsnType(1));
+  }
+
+  @Test
+  public void testVisitInsn_inflated() {
+    CompactMethodNode methodNode = new CompactMethodNode();
+    methodNode.visitInsn(Opcodes.NOP);
+    methodNode.instructions.getFirst();
+
+    methodNode.visitInsn(Opcodes.RETURN);
+
+    assertFalse(methodNode.isCompact());
+    assertEquals(2, methodNode.instructions.size());
+    assertEquals(Opcodes.RETURN, methodNode.instructions.getLast().getOpcode());
+  }
+
+  /**
+   * Tests that classes read into CompactMethodNodes are written back exactly as with regular
+   * MethodNodes, from the compact form, from instruction views, and after inflation.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testAccept_precompiledClass(
+      final PrecompiledClass classParameter, final Api apiParameter) {
+    ClassReader classReader = new ClassReader(classParameter.getBytes());
+    ClassNode expectedClassNode = new ClassNode();
+    classReader.accept(expectedClassNode, 0);
+    ClassNode classNode = new CompactClassNode();
+    classReader.accept(classNode, 0);
+
+    byte[] expectedClassFile = write(expectedClassNode);
+    byte[] compactClassFile = write(classNode);
+    byte[] compactClassFileAgain = write(classNode);
+    byte[] viewsClassFile = write(getClassNodeFromInsnViews(classNode));
+    for (MethodNode methodNode : classNode.methods) {
+      assertTrue(((CompactMethodNode) methodNode).isCompact());
+      methodNode.instructions.getFirst();
+    }
+    byte[] inflatedClassFile = write(classNode);
+
+    assertArrayEquals(expectedClassFile, compactClassFile);
+    assertArrayEquals(expectedClassFile, compactClassFileAgain);
+    assertArrayEquals(expectedClassFile, viewsClassFile);
+    assertArrayEquals(expectedClassFile, inflatedClassFile);
+  }
+
+  private static byte[] write(final ClassNode classNode) {
+    ClassWriter classWriter = new ClassWriter(0);
+    classNode.accept(classWriter);
+    return classWriter.toByteArray();
+  }
+
+  /**
+   * Returns a copy of the given class, whose instructions are the instruction views of its compact
+   * method nodes. The label nodes, try catch blocks and local variables are shared with the given
+   * class.
+   */
+  private static ClassNode getClassNodeFromInsnViews(final ClassNode compactClassNode) {
+    ClassNode classNode = new ClassNode();
+    compactClassNode.accept(classNode);
+    for (int i = 0; i < classNode.methods.size(); ++i) {
+      CompactMethodNode compactMethodNode = (CompactMethodNode) compactClassNode.methods.get(i);
+      compactMethodNode.instructions.resetLabels();
+      MethodNode methodNode = classNode.methods.get(i);
+      methodNode.instructions = new InsnList();
+      for (int j = 0; j < compactMethodNode.instructions.size(); ++j) {
+        methodNode.instructions.add(compactMethodNode.getInsnView(j));
+      }
+      methodNode.tryCatchBlocks = compactMethodNode.tryCatchBlocks;
+      methodNode.localVariables = compactMethodNode.localVariables;
+      methodNode.visibleLocalVariableAnnotations =
+          compactMethodNode.visibleLocalVariableAnnotations;
+      methodNode.invisibleLocalVariableAnnotations =
+          compactMethodNode.invisibleLocalVariableAnnotations;
+    }
+    return classNode;
+  }
+
+  private static class CompactClassNode extends ClassNode {
+
+    CompactClassNode() {
+      super(Opcodes.ASM9);
+    }
+
+    @Override
+    public MethodVisitor visitMethod(
+        final int access,
+        final String name,
+        final String descriptor,
+        final String signature,
+        final String[] exceptions) {
+      MethodNode method =
+          new CompactMethodNode(Opcodes.ASM9, access, name, descriptor, signature, exceptions);
+      methods.add(method);
+      return method;
+    }
+  }
+}
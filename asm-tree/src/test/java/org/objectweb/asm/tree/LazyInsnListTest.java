@@ -0,0 +1,279 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.test.AsmTest.PrecompiledClass;
+
+/** Unit tests for {@link LazyInsnList}. */
+public class LazyInsnListTest {
+
+  @Test
+  public void testConstructor() {
+    MethodNode methodNode = getMethodNode();
+
+    LazyInsnList insnList = (LazyInsnList) methodNode.instructions;
+
+    assertFalse(insnList.isMaterialized());
+    assertEquals(0, methodNode.maxStack);
+    assertEquals(0, methodNode.tryCatchBlocks.size());
+  }
+
+  @ParameterizedTest
+  @MethodSource("insnListMethods")
+  public void testInsnListMethods_materialize(final Consumer<InsnList> insnListMethod) {
+    MethodNode methodNode = getMethodNode();
+    LazyInsnList insnList = (LazyInsnList) methodNode.instructions;
+
+    insnListMethod.accept(insnList);
+
+    assertTrue(insnList.isMaterialized());
+    assertTrue(methodNode.maxStack > 0);
+    assertTrue(methodNode.maxLocals > 0);
+  }
+
+  @Test
+  public void testMaterialize() {
+    MethodNode methodNode = getMethodNode();
+    MethodNode expectedMethodNode = getMethodNode(0);
+
+    ((LazyInsnList) methodNode.instructions).materialize();
+    ((LazyInsnList) methodNode.instructions).materialize();
+
+    assertEquals(expectedMethodNode.instructions.size(), methodNode.instructions.size());
+    assertEquals(expectedMethodNode.tryCatchBlocks.size(), methodNode.tryCatchBlocks.size());
+    assertEquals(expectedMethodNode.localVariables.size(), methodNode.localVariables.size());
+    assertEquals(expectedMethodNode.maxStack, methodNode.maxStack);
+    assertEquals(expectedMethodNode.maxLocals, methodNode.maxLocals);
+  }
+
+  @Test
+  public void testAddToOtherList() {
+    MethodNode methodNode = getMethodNode();
+    int expectedSize = getMethodNode(0).instructions.size();
+    InsnList insnList = new InsnList();
+
+    insnList.add(methodNode.instructions);
+
+    assertEquals(expectedSize, insnList.size());
+    assertEquals(0, methodNode.instructions.size());
+  }
+
+  @Test
+  public void testAcceptOriginalMethod() {
+    MethodNode methodNode = getMethodNode();
+    LazyInsnList insnList = (LazyInsnList) methodNode.instructions;
+    List<String> visitedMethods = new ArrayList<>();
+    ClassVisitor classVisitor =
+        new ClassVisitor(Opcodes.ASM9) {
+          @Override
+          public MethodVisitor visitMethod(
+              final int access,
+              final String name,
+              final String descriptor,
+              final String signature,
+              final String[] exceptions) {
+            visitedMethods.add(name + descriptor);
+            return null;
+          }
+        };
+
+    boolean accepted = insnList.acceptOriginalMethod(classVisitor);
+    methodNode.signature = "()V";
+    boolean acceptedWithChangedSignature = insnList.acceptOriginalMethod(classVisitor);
+    methodNode.signature = null;
+    insnList.size();
+    boolean acceptedAfterMaterialization = insnList.acceptOriginalMethod(classVisitor);
+
+    assertTrue(accepted);
+    assertFalse(acceptedWithChangedSignature);
+    assertFalse(acceptedAfterMaterialization);
+    assertEquals(1, visitedMethods.size());
+    assertEquals(methodNode.name + methodNode.desc, visitedMethods.get(0));
+  }
+
+  @Test
+  public void testAcceptOriginalMethod_modifiedCodeFields() {
+    MethodNode methodNode = getMethodNode();
+    LazyInsnList insnList = (LazyInsnList) methodNode.instructions;
+    ClassVisitor classVisitor = new ClassVisitor(Opcodes.ASM9) {};
+
+    methodNode.maxStack = 42;
+    boolean acceptedWithChangedMaxStack = insnList.acceptOriginalMethod(classVisitor);
+    methodNode.maxStack = 0;
+    methodNode.tryCatchBlocks.add(
+        new TryCatchBlockNode(new LabelNode(), new LabelNode(), new LabelNode(), null));
+    boolean acceptedWithChangedTryCatchBlocks = insnList.acceptOriginalMethod(classVisitor);
+
+    assertFalse(acceptedWithChangedMaxStack);
+    assertFalse(acceptedWithChangedTryCatchBlocks);
+    assertFalse(insnList.isMaterialized());
+  }
+
+  @Test
+  public void testMaterialize_modifiedCodeFields() {
+    MethodNode methodNode = getMethodNode();
+    MethodNode expectedMethodNode = getMethodNode(0);
+    TryCatchBlockNode tryCatchBlock =
+        new TryCatchBlockNode(new LabelNode(), new LabelNode(), new LabelNode(), null);
+
+    methodNode.maxStack = 42;
+    methodNode.tryCatchBlocks.add(tryCatchBlock);
+    ((LazyInsnList) methodNode.instructions).materialize();
+
+    assertEquals(expectedMethodNode.instructions.size(), methodNode.instructions.size());
+    assertEquals(42, methodNode.maxStack);
+    assertEquals(expectedMethodNode.maxLocals, methodNode.maxLocals);
+    assertEquals(1, methodNode.tryCatchBlocks.size());
+    assertSame(tryCatchBlock, methodNode.tryCatchBlocks.get(0));
+    assertEquals(expectedMethodNode.localVariables.size(), methodNode.localVariables.size());
+  }
+
+  @Test
+  public void testAcceptOriginalMethod_inPlaceEdits() {
+    ClassReader classReader = new ClassReader(getClassWithParameterAndAnnotation());
+    ClassNode classNode = new ClassNode();
+    classNode.readLazily(classReader, 0);
+    MethodNode methodNode = classNode.methods.get(0);
+
+    methodNode.parameters.get(0).name = "renamed";
+    methodNode.visibleAnnotations.set(0, new AnnotationNode("LNew;"));
+    ClassWriter classWriter = new ClassWriter(classReader, 0);
+    classNode.accept(classWriter);
+
+    ClassNode newClassNode = new ClassNode();
+    new ClassReader(classWriter.toByteArray()).accept(newClassNode, 0);
+    MethodNode newMethodNode = newClassNode.methods.get(0);
+    assertEquals("renamed", newMethodNode.parameters.get(0).name);
+    assertEquals("LNew;", newMethodNode.visibleAnnotations.get(0).desc);
+    assertEquals(2, newMethodNode.instructions.size());
+  }
+
+  @Test
+  public void testAcceptOriginalMethod_inPlaceAnnotationValueEdit() {
+    ClassReader classReader = new ClassReader(getClassWithParameterAndAnnotation());
+    ClassNode classNode = new ClassNode();
+    classNode.readLazily(classReader, 0);
+    MethodNode methodNode = classNode.methods.get(0);
+    LazyInsnList insnList = (LazyInsnList) methodNode.instructions;
+    ClassVisitor classVisitor = new ClassVisitor(Opcodes.ASM9) {};
+
+    boolean accepted = insnList.acceptOriginalMethod(classVisitor);
+    methodNode.visibleAnnotations.get(0).values.set(1, "changed");
+    boolean acceptedWithChangedValue = insnList.acceptOriginalMethod(classVisitor);
+
+    assertTrue(accepted);
+    assertFalse(acceptedWithChangedValue);
+  }
+
+  private static Stream<Arguments> insnListMethods() {
+    InsnNode insnNode = new InsnNode(Opcodes.NOP);
+    List<Consumer<InsnList>> insnListMethods = new ArrayList<>();
+    insnListMethods.add(insnList -> insnList.size());
+    insnListMethods.add(insnList -> insnList.getFirst());
+    insnListMethods.add(insnList -> insnList.getLast());
+    insnListMethods.add(insnList -> insnList.get(0));
+    insnListMethods.add(insnList -> insnList.contains(insnNode));
+    insnListMethods.add(insnList -> insnList.indexOf(insnList.getFirst()));
+    insnListMethods.add(insnList -> insnList.accept(new MethodNode()));
+    insnListMethods.add(insnList -> insnList.iterator());
+    insnListMethods.add(insnList -> insnList.iterator(0));
+    insnListMethods.add(insnList -> insnList.toArray());
+    insnListMethods.add(insnList -> insnList.set(insnList.getFirst(), new InsnNode(Opcodes.NOP)));
+    insnListMethods.add(insnList -> insnList.add(new InsnNode(Opcodes.NOP)));
+    insnListMethods.add(insnList -> insnList.add(new InsnList()));
+    insnListMethods.add(insnList -> insnList.insert(new InsnNode(Opcodes.NOP)));
+    insnListMethods.add(insnList -> insnList.insert(new InsnList()));
+    insnListMethods.add(insnList -> insnList.insert(insnList.getFirst(), new InsnNode(0)));
+    insnListMethods.add(insnList -> insnList.insert(insnList.getFirst(), new InsnList()));
+    insnListMethods.add(insnList -> insnList.insertBefore(insnList.getFirst(), new InsnNode(0)));
+    insnListMethods.add(insnList -> insnList.insertBefore(insnList.getFirst(), new InsnList()));
+    insnListMethods.add(insnList -> insnList.remove(insnList.getFirst()));
+    insnListMethods.add(insnList -> insnList.clear());
+    insnListMethods.add(insnList -> insnList.resetLabels());
+    return insnListMethods.stream().map(Arguments::of);
+  }
+
+  private static MethodNode getMethodNode() {
+    ClassNode classNode = new ClassNode();
+    classNode.readLazily(new ClassReader(PrecompiledClass.JDK3_ALL_INSTRUCTIONS.getBytes()), 0);
+    return getMethodWithTryCatchBlocks(classNode);
+  }
+
+  private static MethodNode getMethodNode(final int parsingOptions) {
+    ClassNode classNode = new ClassNode();
+    new ClassReader(PrecompiledClass.JDK3_ALL_INSTRUCTIONS.getBytes())
+        .accept(classNode, parsingOptions);
+    return getMethodWithTryCatchBlocks(classNode);
+  }
+
+  private static byte[] getClassWithParameterAndAnnotation() {
+    ClassWriter classWriter = new ClassWriter(0);
+    classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "C", null, "java/lang/Object", null);
+    MethodVisitor methodVisitor =
+        classWriter.visitMethod(Opcodes.ACC_STATIC, "m", "(I)I", null, null);
+    methodVisitor.visitParameter("value", 0);
+    AnnotationVisitor annotationVisitor = methodVisitor.visitAnnotation("LOld;", true);
+    annotationVisitor.visit("name", "value");
+    annotationVisitor.visitEnd();
+    methodVisitor.visitCode();
+    methodVisitor.visitVarInsn(Opcodes.ILOAD, 0);
+    methodVisitor.visitInsn(Opcodes.IRETURN);
+    methodVisitor.visitMaxs(1, 1);
+    methodVisitor.visitEnd();
+    classWriter.visitEnd();
+    return classWriter.toByteArray();
+  }
+
+  private static MethodNode getMethodWithTryCatchBlocks(final ClassNode classNode) {
+    for (MethodNode methodNode : classNode.methods) {
+      if (methodNode.name.equals("jsrAndRetInstructions")) {
+        return methodNode;
+      }
+    }
+    throw new AssertionError();
+  }
+}
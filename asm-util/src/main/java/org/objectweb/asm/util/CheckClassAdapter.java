@@ -37,6 +37,7 @@ import java.util.List;
 import java.util.Map;
 import org.objectweb.asm.AnnotationVisitor;
 import org.objectweb.asm.Attribute;
+import org.objectweb.asm.ClassHierarchy;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.FieldVisitor;
@@ -1016,7 +1017,7 @@ public class CheckClassAdapter extends ClassVisitor {
    */
   public static void verify(
       final ClassReader classReader, final boolean printResults, final PrintWriter printWriter) {
-    verify(classReader, null, printResults, printWriter);
+    verify(classReader, null, null, printResults, printWriter);
   }
 
   /**
@@ -1033,6 +1034,43 @@ public class CheckClassAdapter extends ClassVisitor {
       final ClassLoader loader,
       final boolean printResults,
       final PrintWriter printWriter) {
+    verify(classReader, loader, null, printResults, printWriter);
+  }
+
+  /**
+   * Checks the given class, without loading the referenced classes.
+   *
+   * @param classReader the class to be checked.
+   * @param classHierarchy the class hierarchy used to get the super class and the interfaces of the
+   *     referenced classes. May be shared between several calls to this method.
+   * @param printResults whether to print the results of the bytecode verification.
+   * @param printWriter where the results (or the stack trace in case of error) must be printed.
+   */
+  public static void verifyWithHierarchy(
+      final ClassReader classReader,
+      final ClassHierarchy classHierarchy,
+      final boolean printResults,
+      final PrintWriter printWriter) {
+    verify(classReader, null, classHierarchy, printResults, printWriter);
+  }
+
+  /**
+   * Checks the given class.
+   *
+   * @param classReader the class to be checked.
+   * @param loader a <code>ClassLoader</code> which will be used to load referenced classes. May be
+   *     {@literal null}.
+   * @param classHierarchy the class hierarchy to use instead of loading the referenced classes. May
+   *     be {@literal null}.
+   * @param printResults whether to print the results of the bytecode verification.
+   * @param printWriter where the results (or the stack trace in case of error) must be printed.
+   */
+  private static void verify(
+      final ClassReader classReader,
+      final ClassLoader loader,
+      final ClassHierarchy classHierarchy,
+      final boolean printResults,
+      final PrintWriter printWriter) {
     ClassNode classNode = new ClassNode();
     classReader.accept(
         new CheckClassAdapter(/*latest*/ Opcodes.ASM10_EXPERIMENTAL, classNode, false) {},
@@ -1057,6 +1095,7 @@ public class CheckClassAdapter extends ClassVisitor {
       if (loader != null) {
         verifier.setClassLoader(loader);
       }
+      verifier.setClassHierarchy(classHierarchy);
       try {
         analyzer.analyze(classNode.name, method);
       } catch (AnalyzerException e) {
@@ -41,6 +41,7 @@ import org.junit.jupiter.api.function.Executable;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.objectweb.asm.Attribute;
+import org.objectweb.asm.ClassFileHierarchy;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
@@ -551,6 +552,19 @@ public class CheckClassAdapterTest extends AsmTest implements Opcodes {
     assertTrue(log.contains("00000 CheckClassAdapterTest  :  :     ALOAD 0"));
   }
 
+  @Test
+  public void testVerifyWithHierarchy_validClass() throws Exception {
+    ClassReader classReader = new ClassReader(getClass().getName());
+    StringWriter logger = new StringWriter();
+
+    CheckClassAdapter.verifyWithHierarchy(
+        classReader, new ClassFileHierarchy(null), true, new PrintWriter(logger, true));
+
+    String log = logger.toString();
+    assertFalse(log.startsWith(AnalyzerException.class.getName() + ": Error at instruction"));
+    assertTrue(log.contains("00000 CheckClassAdapterTest  :  :     ALOAD 0"));
+  }
+
   @Test
   public void testVerify_invalidClass() {
     ClassWriter classWriter = new ClassWriter(0);
@@ -140,7 +140,7 @@ final class AnnotationWriter extends AnnotationVisitor {
       final AnnotationWriter previousAnnotation) {
     // Create a ByteVector to hold an 'annotation' JVMS structure.
     // See https://docs.oracle.com/javase/specs/jvms/se9/html/jvms-4.html#jvms-4.7.16.
-    ByteVector annotation = new ByteVector();
+    ByteVector annotation = symbolTable.newByteVector();
     // Write type_index and reserve space for num_element_value_pairs.
     annotation.putShort(symbolTable.addConstantUtf8(descriptor)).putShort(0);
     return new AnnotationWriter(
@@ -172,7 +172,7 @@ final class AnnotationWriter extends AnnotationVisitor {
       final AnnotationWriter previousAnnotation) {
     // Create a ByteVector to hold a 'type_annotation' JVMS structure.
     // See https://docs.oracle.com/javase/specs/jvms/se9/html/jvms-4.html#jvms-4.7.20.
-    ByteVector typeAnnotation = new ByteVector();
+    ByteVector typeAnnotation = symbolTable.newByteVector();
     // Write target_type, target_info, and target_path.
     TypeReference.putTarget(typeRef, typeAnnotation);
     TypePath.put(typePath, typeAnnotation);
@@ -0,0 +1,137 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm;
+
+/**
+ * A pool of byte arrays, used as the storage of the {@link ByteVector}s of a {@link ClassWriter}
+ * which is reused to build many classes (see {@link ClassWriterPool}). The arrays allocated by this
+ * pool are all given back to it when the writer is reset, since the ByteVectors using them are no
+ * longer used at this point. In a steady state, the writer thus reuses the same arrays from one
+ * class to the next, instead of allocating new ones.
+ *
+ * <p>The array lengths are powers of 2, larger than or equal to the requested capacities. Arrays
+ * larger than {@link #MAX_POOLED_LENGTH} are not pooled. This class is not thread safe.
+ */
+final class ByteArrayPool {
+
+  /** The base 2 logarithm of the smallest array length returned by {@link #allocate}. */
+  private static final int MIN_POOLED_LENGTH_LOG2 = 6;
+
+  /** The base 2 logarithm of the largest array length which can be reused by this pool. */
+  private static final int MAX_POOLED_LENGTH_LOG2 = 20;
+
+  /** The largest array length which can be reused by this pool. */
+  static final int MAX_POOLED_LENGTH = 1 << MAX_POOLED_LENGTH_LOG2;
+
+  /**
+   * The arrays which can be returned by {@link #allocate}, indexed by the base 2 logarithm of their
+   * length minus {@link #MIN_POOLED_LENGTH_LOG2}. Only the first freeArrayCounts[i] elements of
+   * freeArrays[i] are used.
+   */
+  private final byte[][][] freeArrays;
+
+  /** The number of arrays in each freeArrays[i] array. */
+  private final int[] freeArrayCounts;
+
+  /**
+   * The arrays returned by {@link #allocate} since the last call to {@link #releaseAll}. Only the
+   * first {@link #usedArrayCount} elements are used.
+   */
+  private byte[][] usedArrays;
+
+  /** The number of arrays in {@link #usedArrays}. */
+  private int usedArrayCount;
+
+  /** Constructs a new, empty {@link ByteArrayPool}. */
+  ByteArrayPool() {
+    int sizeClassCount = MAX_POOLED_LENGTH_LOG2 - MIN_POOLED_LENGTH_LOG2 + 1;
+    freeArrays = new byte[sizeClassCount][][];
+    freeArrayCounts = new int[sizeClassCount];
+    usedArrays = new byte[64][];
+  }
+
+  /**
+   * Returns a byte array of at least the given length. The content of the returned array is
+   * unspecified (it can contain the data of a previous class).
+   *
+   * @param minLength the minimum length of the returned array.
+   * @return a byte array of at least the given length, which remains valid until the next call to
+   *     {@link #releaseAll}.
+   */
+  byte[] allocate(final int minLength) {
+    int lengthLog2 =
+        minLength <= 1 << MIN_POOLED_LENGTH_LOG2
+            ? MIN_POOLED_LENGTH_LOG2
+            : 32 - Integer.numberOfLeadingZeros(minLength - 1);
+    if (lengthLog2 > MAX_POOLED_LENGTH_LOG2) {
+      return new byte[minLength];
+    }
+    int sizeClass = lengthLog2 - MIN_POOLED_LENGTH_LOG2;
+    int freeArrayCount = freeArrayCounts[sizeClass];
+    byte[] array;
+    if (freeArrayCount > 0) {
+      byte[][] sizeClassArrays = freeArrays[sizeClass];
+      array = sizeClassArrays[--freeArrayCount];
+      sizeClassArrays[freeArrayCount] = null;
+      freeArrayCounts[sizeClass] = freeArrayCount;
+    } else {
+      array = new byte[1 << lengthLog2];
+    }
+    if (usedArrayCount == usedArrays.length) {
+      byte[][] newUsedArrays = new byte[2 * usedArrayCount][];
+      System.arraycopy(usedArrays, 0, newUsedArrays, 0, usedArrayCount);
+      usedArrays = newUsedArrays;
+    }
+    usedArrays[usedArrayCount++] = array;
+    return array;
+  }
+
+  /**
+   * Gives back all the arrays returned by {@link #allocate} to this pool. These arrays must no
+   * longer be used by the caller after this call.
+   */
+  void releaseAll() {
+    for (int i = 0; i < usedArrayCount; ++i) {
+      byte[] array = usedArrays[i];
+      usedArrays[i] = null;
+      int sizeClass = Integer.numberOfTrailingZeros(array.length) - MIN_POOLED_LENGTH_LOG2;
+      byte[][] sizeClassArrays = freeArrays[sizeClass];
+      int freeArrayCount = freeArrayCounts[sizeClass];
+      if (sizeClassArrays == null) {
+        sizeClassArrays = freeArrays[sizeClass] = new byte[4][];
+      } else if (freeArrayCount == sizeClassArrays.length) {
+        byte[][] newSizeClassArrays = new byte[2 * freeArrayCount][];
+        System.arraycopy(sizeClassArrays, 0, newSizeClassArrays, 0, freeArrayCount);
+        sizeClassArrays = freeArrays[sizeClass] = newSizeClassArrays;
+      }
+      sizeClassArrays[freeArrayCount] = array;
+      freeArrayCounts[sizeClass] = freeArrayCount + 1;
+    }
+    usedArrayCount = 0;
+  }
+}
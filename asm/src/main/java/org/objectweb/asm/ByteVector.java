@@ -41,9 +41,16 @@ public class ByteVector {
   /** The actual number of bytes in this vector. */
   int length;
 
+  /**
+   * The pool used to allocate the {@link #data} arrays of this vector, or {@literal null} to
+   * allocate them with 'new'.
+   */
+  private final ByteArrayPool byteArrayPool;
+
   /** Constructs a new {@link ByteVector} with a default initial capacity. */
   public ByteVector() {
     data = new byte[64];
+    byteArrayPool = null;
   }
 
   /**
@@ -53,6 +60,18 @@ public class ByteVector {
    */
   public ByteVector(final int initialCapacity) {
     data = new byte[initialCapacity];
+    byteArrayPool = null;
+  }
+
+  /**
+   * Constructs a new {@link ByteVector} whose content is stored in arrays allocated by the given
+   * pool. This vector must no longer be used after the arrays of this pool are released.
+   *
+   * @param byteArrayPool the pool used to allocate the content of this vector.
+   */
+  ByteVector(final ByteArrayPool byteArrayPool) {
+    this.data = byteArrayPool.allocate(64);
+    this.byteArrayPool = byteArrayPool;
   }
 
   /**
@@ -63,6 +82,7 @@ public class ByteVector {
   ByteVector(final byte[] data) {
     this.data = data;
     this.length = data.length;
+    this.byteArrayPool = null;
   }
 
   /**
@@ -341,6 +361,11 @@ public class ByteVector {
     }
     if (byteArrayValue != null) {
       System.arraycopy(byteArrayValue, byteOffset, data, length, byteLength);
+    } else if (byteArrayPool != null) {
+      // Reused arrays are not necessarily filled with zeros.
+      for (int i = 0; i < byteLength; ++i) {
+        data[length + i] = 0;
+      }
     }
     length += byteLength;
     return this;
@@ -354,7 +379,9 @@ public class ByteVector {
   private void enlarge(final int size) {
     int doubleCapacity = 2 * data.length;
     int minimalCapacity = length + size;
-    byte[] newData = new byte[doubleCapacity > minimalCapacity ? doubleCapacity : minimalCapacity];
+    int newCapacity = doubleCapacity > minimalCapacity ? doubleCapacity : minimalCapacity;
+    byte[] newData =
+        byteArrayPool == null ? new byte[newCapacity] : byteArrayPool.allocate(newCapacity);
     System.arraycopy(data, 0, newData, 0, length);
     data = newData;
   }
@@ -0,0 +1,115 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm;
+
+/**
+ * A fixed size table of immutable entries, used to implement caches which can be shared between
+ * threads without any lock. Each entry can only be stored in one of two consecutive slots, given by
+ * its hash code, and the least recently inserted entry of these two slots is evicted when both are
+ * used. Concurrent insertions can overwrite each other, which only results in cache misses.
+ *
+ * @param <E> the type of the entries of this table. Entries must be immutable, so that they can be
+ *     published without synchronization.
+ */
+final class CacheTable<E> {
+
+  /** The maximum capacity of a {@link CacheTable}. */
+  private static final int MAX_CAPACITY = 1 << 30;
+
+  /** The entries of this table. The length of this array is a power of 2. */
+  private final Object[] entries;
+
+  /**
+   * Constructs a new {@link CacheTable}.
+   *
+   * @param capacity the maximum number of entries of this table. It is rounded up to the next
+   *     power of 2.
+   * @throws IllegalArgumentException if the capacity is less than 2 or greater than 2^30.
+   */
+  CacheTable(final int capacity) {
+    if (capacity < 2 || capacity > MAX_CAPACITY) {
+      throw new IllegalArgumentException("Invalid capacity: " + capacity);
+    }
+    int tableSize = Integer.highestOneBit(capacity);
+    entries = new Object[tableSize < capacity ? tableSize << 1 : tableSize];
+  }
+
+  /**
+   * Returns the maximum number of entries of this table.
+   *
+   * @return the maximum number of entries of this table.
+   */
+  int getCapacity() {
+    return entries.length;
+  }
+
+  /** Removes all the entries of this table. */
+  void clear() {
+    for (int i = 0; i < entries.length; ++i) {
+      entries[i] = null;
+    }
+  }
+
+  /**
+   * Returns the index of the first slot where an entry with the given hash code can be stored. The
+   * second slot is at this index xor 1.
+   *
+   * @param hashCode the hash code of an entry, whose low bits should be well distributed.
+   * @return the index of the first slot where an entry with this hash code can be stored.
+   */
+  int getIndex(final int hashCode) {
+    return hashCode & (entries.length - 1);
+  }
+
+  /**
+   * Returns the entry stored in the given slot.
+   *
+   * @param index a slot index.
+   * @return the entry stored in this slot, or {@literal null}.
+   */
+  @SuppressWarnings("unchecked")
+  E get(final int index) {
+    return (E) entries[index];
+  }
+
+  /**
+   * Stores the given entry in the given first slot, and moves the previous entry of this slot, if
+   * any, to the second slot (thus evicting the least recently inserted entry of the two).
+   *
+   * @param index the index of the first slot where the entry can be stored (see {@link
+   *     #getIndex}).
+   * @param entry an immutable entry.
+   */
+  void put(final int index, final E entry) {
+    Object firstEntry = entries[index];
+    if (firstEntry != null) {
+      entries[index ^ 1] = firstEntry;
+    }
+    entries[index] = entry;
+  }
+}
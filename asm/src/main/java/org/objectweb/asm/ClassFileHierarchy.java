@@ -0,0 +1,229 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A {@link ClassHierarchy} reading the super class and interfaces of each class from its class
+ * file, without loading it. The class headers, the super class chains and the common super classes
+ * are kept in bounded, thread safe caches. A single instance can therefore be shared between
+ * several {@link ClassWriter}, possibly used concurrently from several threads.
+ *
+ * <p>By default, the class files are read with {@link ClassLoader#getResourceAsStream}. Subclasses
+ * can override {@link #getClassReader} to read them from other sources (e.g. jar files which are
+ * not in the class path).
+ */
+public class ClassFileHierarchy extends ClassHierarchy {
+
+  /** The default maximum number of classes whose header is cached. */
+  public static final int DEFAULT_CACHE_SIZE = 8192;
+
+  /** The suffix of the class file resource names. */
+  private static final String CLASS_FILE_SUFFIX = ".class";
+
+  /**
+   * The class loader used to find the class files, or {@literal null} to use the system class
+   * loader.
+   */
+  private final ClassLoader classLoader;
+
+  /** The cached class headers, indexed by class internal name. */
+  private final LruCache<String, ClassInfo> classInfos;
+
+  /** The cached common super classes, indexed by "type1 type2" strings. */
+  private final LruCache<String, String> commonSuperClasses;
+
+  /**
+   * Constructs a new {@link ClassFileHierarchy} with a default cache size.
+   *
+   * @param classLoader the class loader used to find the class files, or {@literal null} to use the
+   *     system class loader. This class loader is only used to read resources, not to load classes.
+   */
+  public ClassFileHierarchy(final ClassLoader classLoader) {
+    this(classLoader, DEFAULT_CACHE_SIZE);
+  }
+
+  /**
+   * Constructs a new {@link ClassFileHierarchy}.
+   *
+   * @param classLoader the class loader used to find the class files, or {@literal null} to use the
+   *     system class loader. This class loader is only used to read resources, not to load classes.
+   * @param maxCacheSize the maximum number of class headers, and of common super classes, which are
+   *     kept in cache. Must be strictly positive.
+   */
+  public ClassFileHierarchy(final ClassLoader classLoader, final int maxCacheSize) {
+    this.classLoader = classLoader;
+    this.classInfos = new LruCache<String, ClassInfo>(maxCacheSize);
+    this.commonSuperClasses = new LruCache<String, String>(maxCacheSize);
+  }
+
+  // -----------------------------------------------------------------------------------------------
+  // Implementation of the ClassHierarchy abstract class
+  // -----------------------------------------------------------------------------------------------
+
+  @Override
+  public String getSuperClass(final String type) {
+    return getClassInfo(type).superClass;
+  }
+
+  @Override
+  public String[] getInterfaces(final String type) {
+    return getClassInfo(type).interfaces.clone();
+  }
+
+  @Override
+  public boolean isInterface(final String type) {
+    return (getClassInfo(type).access & Opcodes.ACC_INTERFACE) != 0;
+  }
+
+  @Override
+  public boolean isAssignableFrom(final String type1, final String type2) {
+    if (type1.equals(type2) || type1.equals(OBJECT)) {
+      return true;
+    }
+    if (isInterface(type1)) {
+      return super.isAssignableFrom(type1, type2);
+    }
+    for (String superClass : getSuperClasses(getClassInfo(type2))) {
+      if (superClass.equals(type1)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public String getCommonSuperClass(final String type1, final String type2) {
+    String key = type1 + ' ' + type2;
+    String commonSuperClass = commonSuperClasses.get(key);
+    if (commonSuperClass == null) {
+      commonSuperClass =
+          commonSuperClasses.putIfAbsent(key, super.getCommonSuperClass(type1, type2));
+    }
+    return commonSuperClass;
+  }
+
+  // -----------------------------------------------------------------------------------------------
+  // Class file reading
+  // -----------------------------------------------------------------------------------------------
+
+  /**
+   * Returns a {@link ClassReader} for the class file of the given class. This method can be called
+   * concurrently from several threads.
+   *
+   * @param type the internal name of a class or interface.
+   * @return a {@link ClassReader} for the class file of type.
+   * @throws IOException if the class file is not found or can't be read.
+   */
+  protected ClassReader getClassReader(final String type) throws IOException {
+    String resourceName = type + CLASS_FILE_SUFFIX;
+    try (InputStream inputStream =
+        classLoader == null
+            ? ClassLoader.getSystemResourceAsStream(resourceName)
+            : classLoader.getResourceAsStream(resourceName)) {
+      return new ClassReader(inputStream);
+    }
+  }
+
+  /**
+   * Returns the header of the given class, reading it and caching it if necessary.
+   *
+   * @param type the internal name of a class or interface.
+   * @return the header of type.
+   * @throws TypeNotPresentException if the class file of type is not found or can't be read.
+   */
+  private ClassInfo getClassInfo(final String type) {
+    ClassInfo classInfo = classInfos.get(type);
+    if (classInfo == null) {
+      ClassReader classReader;
+      try {
+        classReader = getClassReader(type);
+      } catch (IOException e) {
+        throw new TypeNotPresentException(type, e);
+      }
+      classInfo =
+          classInfos.putIfAbsent(
+              type,
+              new ClassInfo(
+                  classReader.getAccess(),
+                  classReader.getSuperName(),
+                  classReader.getInterfaces()));
+    }
+    return classInfo;
+  }
+
+  /**
+   * Returns the super classes of the given class, computing and caching them if necessary.
+   *
+   * @param classInfo the header of a class or interface.
+   * @return the direct and indirect super classes of this class, from the direct super class to
+   *     {@link Object}.
+   */
+  private String[] getSuperClasses(final ClassInfo classInfo) {
+    String[] superClasses = classInfo.superClasses;
+    if (superClasses == null) {
+      if (classInfo.superClass == null) {
+        superClasses = new String[0];
+      } else {
+        String[] superSuperClasses = getSuperClasses(getClassInfo(classInfo.superClass));
+        superClasses = new String[superSuperClasses.length + 1];
+        superClasses[0] = classInfo.superClass;
+        System.arraycopy(superSuperClasses, 0, superClasses, 1, superSuperClasses.length);
+      }
+      classInfo.superClasses = superClasses;
+    }
+    return superClasses;
+  }
+
+  /** The header of a class file. */
+  private static final class ClassInfo {
+
+    /** The access flags of the class. */
+    final int access;
+
+    /** The internal name of the super class, or {@literal null} for {@link Object}. */
+    final String superClass;
+
+    /** The internal names of the directly implemented interfaces. */
+    final String[] interfaces;
+
+    /**
+     * The direct and indirect super classes of this class, from the direct super class to {@link
+     * Object}, or {@literal null} if they have not been computed yet.
+     */
+    volatile String[] superClasses;
+
+    ClassInfo(final int access, final String superClass, final String[] interfaces) {
+      this.access = access;
+      this.superClass = superClass;
+      this.interfaces = interfaces;
+    }
+  }
+}
@@ -0,0 +1,419 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm;
+
+/**
+ * A lightweight parser of the header of class files, designed to index a large number of classes.
+ * Unlike {@link ClassReader}, it decodes nothing but the requested values, and reuses the same
+ * constant pool offsets and char buffer from one class to the next. Its typical use is:
+ *
+ * <pre>
+ * ClassHeaderScanner scanner = new ClassHeaderScanner();
+ * for (byte[] classFile : classFiles) {
+ *   scanner.scan(classFile);
+ *   index(scanner.getClassName(), scanner.getSuperName(), scanner.getInterfaces());
+ * }
+ * </pre>
+ *
+ * <p>A {@link ClassHeaderScanner} is not thread safe. The values returned by its accessors are
+ * those of the last scanned class.
+ */
+public class ClassHeaderScanner {
+
+  /** The name of the attribute containing the runtime visible annotations of a class. */
+  private static final String RUNTIME_VISIBLE_ANNOTATIONS = "RuntimeVisibleAnnotations";
+
+  /** The name of the attribute containing the runtime invisible annotations of a class. */
+  private static final String RUNTIME_INVISIBLE_ANNOTATIONS = "RuntimeInvisibleAnnotations";
+
+  /** The byte array containing the last scanned class. */
+  private byte[] classFileBuffer;
+
+  /** The offset of the last scanned class in {@link #classFileBuffer}. */
+  private int classFileOffset;
+
+  /**
+   * The offset in {@link #classFileBuffer} of each cp_info entry of the last scanned class, plus
+   * one. Only the first constantPoolCount elements are used. This array is reused from one class to
+   * the next.
+   */
+  private int[] cpInfoOffsets;
+
+  /** A buffer large enough to decode any CONSTANT_Utf8 entry of the last scanned class. */
+  private char[] charBuffer;
+
+  /** The offset of the access_flags field of the last scanned class. */
+  private int header;
+
+  /**
+   * The offset of the first attribute_info structure of the last scanned class, or 0 if it has not
+   * been computed yet.
+   */
+  private int firstAttributeOffset;
+
+  /** Constructs a new {@link ClassHeaderScanner}. */
+  public ClassHeaderScanner() {
+    this.cpInfoOffsets = new int[0];
+    this.charBuffer = new char[0];
+  }
+
+  // -----------------------------------------------------------------------------------------------
+  // Scanning
+  // -----------------------------------------------------------------------------------------------
+
+  /**
+   * Scans the header of the given class. Only the offsets of the constant pool entries are
+   * computed, the values are decoded when requested with the accessors.
+   *
+   * @param classFile the JVMS ClassFile structure to be scanned.
+   * @throws IllegalArgumentException if the class file version is not supported, or if the constant
+   *     pool is invalid.
+   */
+  public void scan(final byte[] classFile) {
+    scan(classFile, 0);
+  }
+
+  /**
+   * Scans the header of the given class. Only the offsets of the constant pool entries are
+   * computed, the values are decoded when requested with the accessors.
+   *
+   * @param classFileBuffer a byte array containing the JVMS ClassFile structure to be scanned. It
+   *     must not be modified until the next scan.
+   * @param classFileOffset the offset in classFileBuffer of the first byte of the ClassFile.
+   * @throws IllegalArgumentException if the class file version is not supported, or if the constant
+   *     pool is invalid.
+   */
+  public void scan(final byte[] classFileBuffer, final int classFileOffset) {
+    this.classFileBuffer = classFileBuffer;
+    this.classFileOffset = classFileOffset;
+    this.firstAttributeOffset = 0;
+    // Check the class' major_version. This field is after the magic and minor_version fields, which
+    // use 4 and 2 bytes respectively.
+    if (readUnsignedShort(classFileOffset + 6) > Opcodes.V17) {
+      throw new IllegalArgumentException(
+          "Unsupported class file major version " + readUnsignedShort(classFileOffset + 6));
+    }
+    int constantPoolCount = readUnsignedShort(classFileOffset + 8);
+    if (cpInfoOffsets.length < constantPoolCount) {
+      cpInfoOffsets = new int[Math.max(constantPoolCount, 2 * cpInfoOffsets.length)];
+    }
+    // Compute the offset of each constant pool entry, as well as a conservative estimate of the
+    // maximum length of the constant pool strings (see the ClassReader constructor).
+    int[] currentCpInfoOffsets = cpInfoOffsets;
+    int currentCpInfoIndex = 1;
+    int currentCpInfoOffset = classFileOffset + 10;
+    int currentMaxStringLength = 0;
+    while (currentCpInfoIndex < constantPoolCount) {
+      currentCpInfoOffsets[currentCpInfoIndex++] = currentCpInfoOffset + 1;
+      int cpInfoSize;
+      switch (classFileBuffer[currentCpInfoOffset]) {
+        case Symbol.CONSTANT_FIELDREF_TAG:
+        case Symbol.CONSTANT_METHODREF_TAG:
+        case Symbol.CONSTANT_INTERFACE_METHODREF_TAG:
+        case Symbol.CONSTANT_INTEGER_TAG:
+        case Symbol.CONSTANT_FLOAT_TAG:
+        case Symbol.CONSTANT_NAME_AND_TYPE_TAG:
+        case Symbol.CONSTANT_DYNAMIC_TAG:
+        case Symbol.CONSTANT_INVOKE_DYNAMIC_TAG:
+          cpInfoSize = 5;
+          break;
+        case Symbol.CONSTANT_LONG_TAG:
+        case Symbol.CONSTANT_DOUBLE_TAG:
+          cpInfoSize = 9;
+          currentCpInfoIndex++;
+          break;
+        case Symbol.CONSTANT_UTF8_TAG:
+          cpInfoSize = 3 + readUnsignedShort(currentCpInfoOffset + 1);
+          if (cpInfoSize > currentMaxStringLength) {
+            currentMaxStringLength = cpInfoSize;
+          }
+          break;
+        case Symbol.CONSTANT_METHOD_HANDLE_TAG:
+          cpInfoSize = 4;
+          break;
+        case Symbol.CONSTANT_CLASS_TAG:
+        case Symbol.CONSTANT_STRING_TAG:
+        case Symbol.CONSTANT_METHOD_TYPE_TAG:
+        case Symbol.CONSTANT_PACKAGE_TAG:
+        case Symbol.CONSTANT_MODULE_TAG:
+          cpInfoSize = 3;
+          break;
+        default:
+          throw new IllegalArgumentException();
+      }
+      currentCpInfoOffset += cpInfoSize;
+    }
+    if (charBuffer.length < currentMaxStringLength) {
+      charBuffer = new char[Math.max(currentMaxStringLength, 2 * charBuffer.length)];
+    }
+    // The Classfile's access_flags field is just after the last constant pool entry.
+    header = currentCpInfoOffset;
+  }
+
+  // -----------------------------------------------------------------------------------------------
+  // Accessors
+  // -----------------------------------------------------------------------------------------------
+
+  /**
+   * Returns the class file version of the last scanned class.
+   *
+   * @return the class version. The minor version is stored in the 16 most significant bits, and the
+   *     major version in the 16 least significant bits.
+   * @see ClassVisitor#visit(int, int, String, String, String, String[])
+   */
+  public int getVersion() {
+    return readInt(classFileOffset + 4);
+  }
+
+  /**
+   * Returns the access flags of the last scanned class (see {@link Opcodes}). As with {@link
+   * ClassReader#getAccess()}, this value may not reflect Deprecated and Synthetic flags when
+   * bytecode is before 1.5 and those flags are represented by attributes.
+   *
+   * @return the class access flags.
+   */
+  public int getAccess() {
+    return readUnsignedShort(header);
+  }
+
+  /**
+   * Returns the internal name of the last scanned class (see {@link Type#getInternalName()}).
+   *
+   * @return the internal class name.
+   */
+  public String getClassName() {
+    // this_class is just after the access_flags field (using 2 bytes).
+    return readClass(header + 2);
+  }
+
+  /**
+   * Returns the internal of name of the super class of the last scanned class (see {@link
+   * Type#getInternalName()}). For interfaces, the super class is {@link Object}.
+   *
+   * @return the internal name of the super class, or {@literal null} for {@link Object} class.
+   */
+  public String getSuperName() {
+    // super_class is after the access_flags and this_class fields (2 bytes each).
+    return readClass(header + 4);
+  }
+
+  /**
+   * Returns the internal names of the interfaces implemented by the last scanned class (see {@link
+   * Type#getInternalName()}).
+   *
+   * @return the internal names of the directly implemented interfaces. Inherited implemented
+   *     interfaces are not returned.
+   */
+  public String[] getInterfaces() {
+    // interfaces_count is after the access_flags, this_class and super_class fields (2 bytes each).
+    int currentOffset = header + 6;
+    String[] interfaces = new String[readUnsignedShort(currentOffset)];
+    for (int i = 0; i < interfaces.length; ++i) {
+      currentOffset += 2;
+      interfaces[i] = readClass(currentOffset);
+    }
+    return interfaces;
+  }
+
+  /**
+   * Returns the descriptors of the annotations of the last scanned class. This requires skipping
+   * its fields and methods, but their content is not decoded.
+   *
+   * @param visible {@literal true} to return the runtime visible annotations, {@literal false} to
+   *     return the runtime invisible ones.
+   * @return the descriptors of the runtime visible or invisible annotations of the class.
+   */
+  public String[] getAnnotationDescriptors(final boolean visible) {
+    String attributeName = visible ? RUNTIME_VISIBLE_ANNOTATIONS : RUNTIME_INVISIBLE_ANNOTATIONS;
+    int currentAttributeOffset = getFirstAttributeOffset();
+    for (int i = readUnsignedShort(currentAttributeOffset - 2); i > 0; --i) {
+      int attributeLength = readInt(currentAttributeOffset + 2);
+      if (isUtf8(readUnsignedShort(currentAttributeOffset), attributeName)) {
+        int currentOffset = currentAttributeOffset + 6;
+        String[] descriptors = new String[readUnsignedShort(currentOffset)];
+        currentOffset += 2;
+        for (int j = 0; j < descriptors.length; ++j) {
+          descriptors[j] = readUtf8(readUnsignedShort(currentOffset));
+          currentOffset = skipAnnotation(currentOffset);
+        }
+        return descriptors;
+      }
+      currentAttributeOffset += 6 + attributeLength;
+    }
+    return new String[0];
+  }
+
+  // -----------------------------------------------------------------------------------------------
+  // Utility methods
+  // -----------------------------------------------------------------------------------------------
+
+  /**
+   * Returns the offset of the first attribute_info structure of the last scanned class.
+   *
+   * @return the offset of the first attribute_info structure of the last scanned class.
+   */
+  private int getFirstAttributeOffset() {
+    if (firstAttributeOffset != 0) {
+      return firstAttributeOffset;
+    }
+    // Skip the access_flags, this_class, super_class, and interfaces_count fields (using 2 bytes
+    // each), as well as the interfaces array field (2 bytes per interface).
+    int currentOffset = header + 8 + readUnsignedShort(header + 6) * 2;
+    // Skip the fields_count and 'fields' fields, then the methods_count and 'methods' fields.
+    for (int i = 0; i < 2; ++i) {
+      int membersCount = readUnsignedShort(currentOffset);
+      currentOffset += 2;
+      while (membersCount-- > 0) {
+        int attributesCount = readUnsignedShort(currentOffset + 6);
+        currentOffset += 8;
+        while (attributesCount-- > 0) {
+          currentOffset += 6 + readInt(currentOffset + 2);
+        }
+      }
+    }
+    // Skip the ClassFile's attributes_count field.
+    firstAttributeOffset = currentOffset + 2;
+    return firstAttributeOffset;
+  }
+
+  /**
+   * Returns the offset just after the given annotation structure.
+   *
+   * @param annotationOffset the offset of an annotation structure.
+   * @return the offset just after this structure.
+   */
+  private int skipAnnotation(final int annotationOffset) {
+    // Skip the type_index field, and read the num_element_value_pairs field.
+    int numElementValuePairs = readUnsignedShort(annotationOffset + 2);
+    int currentOffset = annotationOffset + 4;
+    while (numElementValuePairs-- > 0) {
+      // Skip the element_name_index field.
+      currentOffset = skipElementValue(currentOffset + 2);
+    }
+    return currentOffset;
+  }
+
+  /**
+   * Returns the offset just after the given element_value structure.
+   *
+   * @param elementValueOffset the offset of an element_value structure.
+   * @return the offset just after this structure.
+   */
+  private int skipElementValue(final int elementValueOffset) {
+    int currentOffset = elementValueOffset + 1;
+    switch (classFileBuffer[elementValueOffset]) {
+      case 'e': // enum_const_value
+        return currentOffset + 4;
+      case '@': // annotation_value
+        return skipAnnotation(currentOffset);
+      case '[': // array_value
+        int numValues = readUnsignedShort(currentOffset);
+        currentOffset += 2;
+        while (numValues-- > 0) {
+          currentOffset = skipElementValue(currentOffset);
+        }
+        return currentOffset;
+      default: // const_value_index or class_info_index
+        return currentOffset + 2;
+    }
+  }
+
+  /**
+   * Reads a CONSTANT_Class constant pool entry.
+   *
+   * @param offset the offset of an unsigned short value whose value is the index of a
+   *     CONSTANT_Class entry, or 0.
+   * @return the internal name of the class, or {@literal null} if the index is 0.
+   */
+  private String readClass(final int offset) {
+    int constantPoolEntryIndex = readUnsignedShort(offset);
+    if (constantPoolEntryIndex == 0) {
+      return null;
+    }
+    return readUtf8(readUnsignedShort(cpInfoOffsets[constantPoolEntryIndex]));
+  }
+
+  /**
+   * Reads a CONSTANT_Utf8 constant pool entry, using {@link #charBuffer}.
+   *
+   * @param constantPoolEntryIndex the index of a CONSTANT_Utf8 entry.
+   * @return the String corresponding to this entry.
+   */
+  private String readUtf8(final int constantPoolEntryIndex) {
+    int cpInfoOffset = cpInfoOffsets[constantPoolEntryIndex];
+    return ClassReader.readUtf(
+        classFileBuffer, cpInfoOffset + 2, readUnsignedShort(cpInfoOffset), charBuffer);
+  }
+
+  /**
+   * Returns whether a CONSTANT_Utf8 constant pool entry is equal to the given ASCII string, without
+   * decoding it.
+   *
+   * @param constantPoolEntryIndex the index of a CONSTANT_Utf8 entry.
+   * @param value a string containing only ASCII characters.
+   * @return whether the entry is equal to 'value'.
+   */
+  private boolean isUtf8(final int constantPoolEntryIndex, final String value) {
+    int cpInfoOffset = cpInfoOffsets[constantPoolEntryIndex];
+    int length = value.length();
+    if (readUnsignedShort(cpInfoOffset) != length) {
+      return false;
+    }
+    for (int i = 0; i < length; ++i) {
+      if (classFileBuffer[cpInfoOffset + 2 + i] != value.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Reads an unsigned short value in {@link #classFileBuffer}.
+   *
+   * @param offset the start offset of the value to be read.
+   * @return the read value.
+   */
+  private int readUnsignedShort(final int offset) {
+    byte[] classBuffer = classFileBuffer;
+    return ((classBuffer[offset] & 0xFF) << 8) | (classBuffer[offset + 1] & 0xFF);
+  }
+
+  /**
+   * Reads a signed int value in {@link #classFileBuffer}.
+   *
+   * @param offset the start offset of the value to be read.
+   * @return the read value.
+   */
+  private int readInt(final int offset) {
+    byte[] classBuffer = classFileBuffer;
+    return ((classBuffer[offset] & 0xFF) << 24)
+        | ((classBuffer[offset + 1] & 0xFF) << 16)
+        | ((classBuffer[offset + 2] & 0xFF) << 8)
+        | (classBuffer[offset + 3] & 0xFF);
+  }
+}
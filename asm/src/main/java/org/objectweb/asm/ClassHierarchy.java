@@ -0,0 +1,154 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm;
+
+/**
+ * The class hierarchy used to compute the common super class of two classes (see {@link
+ * ClassWriter#getCommonSuperClass}), or to check whether a class is assignable to another one.
+ * Subclasses only need to provide the direct super class and interfaces of each class, and whether
+ * it is an interface or not. They can get this information without loading any class, e.g. by
+ * reading class files (see {@link ClassFileHierarchy}).
+ *
+ * <p>All the classes are identified with their internal name (see {@link Type#getInternalName()}).
+ * Array types are not supported.
+ */
+public abstract class ClassHierarchy {
+
+  /** The internal name of the Object class. */
+  static final String OBJECT = "java/lang/Object";
+
+  /** Constructs a new {@link ClassHierarchy}. */
+  protected ClassHierarchy() {
+    // Nothing to do.
+  }
+
+  /**
+   * Returns the internal name of the direct super class of the given class. For interfaces, the
+   * super class is {@link Object}.
+   *
+   * @param type the internal name of a class or interface.
+   * @return the internal name of the direct super class of type, or {@literal null} if type is
+   *     {@link Object}.
+   * @throws TypeNotPresentException if type is not found in this hierarchy.
+   */
+  public abstract String getSuperClass(String type);
+
+  /**
+   * Returns the internal names of the interfaces directly implemented by the given class.
+   *
+   * @param type the internal name of a class or interface.
+   * @return the internal names of the interfaces directly implemented by type (inherited
+   *     implemented interfaces are not returned).
+   * @throws TypeNotPresentException if type is not found in this hierarchy.
+   */
+  public abstract String[] getInterfaces(String type);
+
+  /**
+   * Returns whether the given class is an interface.
+   *
+   * @param type the internal name of a class or interface.
+   * @return whether type is an interface.
+   * @throws TypeNotPresentException if type is not found in this hierarchy.
+   */
+  public abstract boolean isInterface(String type);
+
+  /**
+   * Returns whether a value of the second given type can be assigned to a variable of the first
+   * given type, with the same semantics as {@link Class#isAssignableFrom}.
+   *
+   * @param type1 the internal name of a class or interface.
+   * @param type2 the internal name of another class or interface.
+   * @return whether type1 is equal to type2, or is a super class or a super interface of type2.
+   * @throws TypeNotPresentException if type1, type2 or one of their super types is not found in
+   *     this hierarchy.
+   */
+  public boolean isAssignableFrom(final String type1, final String type2) {
+    if (type1.equals(type2) || type1.equals(OBJECT)) {
+      return true;
+    }
+    if (isInterface(type1)) {
+      return implementsInterface(type2, type1);
+    }
+    String superClass = getSuperClass(type2);
+    while (superClass != null) {
+      if (superClass.equals(type1)) {
+        return true;
+      }
+      superClass = getSuperClass(superClass);
+    }
+    return false;
+  }
+
+  /**
+   * Returns the common super class of the two given classes, with the same semantics as {@link
+   * ClassWriter#getCommonSuperClass}.
+   *
+   * @param type1 the internal name of a class or interface.
+   * @param type2 the internal name of another class or interface.
+   * @return the internal name of the common super class of the two given classes.
+   * @throws TypeNotPresentException if type1, type2 or one of their super types is not found in
+   *     this hierarchy.
+   */
+  public String getCommonSuperClass(final String type1, final String type2) {
+    if (isAssignableFrom(type1, type2)) {
+      return type1;
+    }
+    if (isAssignableFrom(type2, type1)) {
+      return type2;
+    }
+    if (isInterface(type1) || isInterface(type2)) {
+      return OBJECT;
+    }
+    String superClass = type1;
+    do {
+      superClass = getSuperClass(superClass);
+    } while (!isAssignableFrom(superClass, type2));
+    return superClass;
+  }
+
+  /**
+   * Returns whether the given class implements the given interface, directly or not.
+   *
+   * @param type the internal name of a class or interface.
+   * @param interfaceType the internal name of an interface.
+   * @return whether type implements interfaceType, directly or via its super types.
+   */
+  private boolean implementsInterface(final String type, final String interfaceType) {
+    String currentType = type;
+    while (currentType != null) {
+      for (String directInterface : getInterfaces(currentType)) {
+        if (directInterface.equals(interfaceType)
+            || implementsInterface(directInterface, interfaceType)) {
+          return true;
+        }
+      }
+      currentType = getSuperClass(currentType);
+    }
+    return false;
+  }
+}
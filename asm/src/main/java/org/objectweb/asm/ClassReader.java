@@ -150,6 +150,12 @@ public class ClassReader {
    */
   private final int maxStringLength;
 
+  /**
+   * The cache used to share the String values of the CONSTANT_Utf8 entries with other {@link
+   * ClassReader}s, or {@literal null}.
+   */
+  private Utf8Cache utf8Cache;
+
   // -----------------------------------------------------------------------------------------------
   // Constructors
   // -----------------------------------------------------------------------------------------------
@@ -385,6 +391,19 @@ public class ClassReader {
     return interfaces;
   }
 
+  /**
+   * Sets the cache used to share the String values of the CONSTANT_Utf8 constant pool entries with
+   * other {@link ClassReader}s. The strings are then decoded only once for all the readers using
+   * this cache, and the equal strings they return are the same instances. This method must be
+   * called before the strings of this class are read.
+   *
+   * @param utf8Cache a cache of String values, or {@literal null} to decode each string
+   *     independently of the other {@link ClassReader}s (the default).
+   */
+  public void setUtf8Cache(final Utf8Cache utf8Cache) {
+    this.utf8Cache = utf8Cache;
+  }
+
   // -----------------------------------------------------------------------------------------------
   // Public methods
   // -----------------------------------------------------------------------------------------------
@@ -3648,6 +3667,11 @@ public class ClassReader {
       return value;
     }
     int cpInfoOffset = cpInfoOffsets[constantPoolEntryIndex];
+    if (utf8Cache != null) {
+      return constantUtf8Values[constantPoolEntryIndex] =
+          utf8Cache.get(
+              classFileBuffer, cpInfoOffset + 2, readUnsignedShort(cpInfoOffset), charBuffer);
+    }
     return constantUtf8Values[constantPoolEntryIndex] =
         readUtf(cpInfoOffset + 2, readUnsignedShort(cpInfoOffset), charBuffer);
   }
@@ -3662,10 +3686,24 @@ public class ClassReader {
    * @return the String corresponding to the specified UTF8 string.
    */
   private String readUtf(final int utfOffset, final int utfLength, final char[] charBuffer) {
+    return readUtf(classFileBuffer, utfOffset, utfLength, charBuffer);
+  }
+
+  /**
+   * Reads an UTF8 string in the given byte array.
+   *
+   * @param classBuffer a byte array.
+   * @param utfOffset the start offset of the UTF8 string to be read.
+   * @param utfLength the length of the UTF8 string to be read.
+   * @param charBuffer the buffer to be used to read the string. This buffer must be sufficiently
+   *     large. It is not automatically resized.
+   * @return the String corresponding to the specified UTF8 string.
+   */
+  static String readUtf(
+      final byte[] classBuffer, final int utfOffset, final int utfLength, final char[] charBuffer) {
     int currentOffset = utfOffset;
     int endOffset = currentOffset + utfLength;
     int strLength = 0;
-    byte[] classBuffer = classFileBuffer;
     while (currentOffset < endOffset) {
       int currentByte = classBuffer[currentOffset++];
       if ((currentByte & 0x80) == 0) {
@@ -27,6 +27,11 @@
 // THE POSSIBILITY OF SUCH DAMAGE.
 package org.objectweb.asm;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
 /**
  * A {@link ClassVisitor} that generates a corresponding ClassFile structure, as defined in the Java
  * Virtual Machine Specification (JVMS). It can be used alone, to generate a Java class "from
@@ -65,6 +70,41 @@ public class ClassWriter extends ClassVisitor {
    */
   public static final int COMPUTE_FRAMES = 2;
 
+  /**
+   * A flag to automatically compute the stack map frames of methods which are required but which
+   * are not visited, typically because new code has been inserted in existing methods. If this flag
+   * is set, then the frames visited with {@link MethodVisitor#visitFrame} are kept as is, and must
+   * be expanded frames (see {@link ClassReader#EXPAND_FRAMES}). The missing frames are computed
+   * from the previous visited frame and the bytecode instructions in between, which is much faster
+   * than {@link #COMPUTE_FRAMES}. The arguments of the {@link MethodVisitor#visitMaxs} method are
+   * replaced with the computed values, if these are larger.
+   *
+   * <p>This is only possible for missing frames at forward jump targets, whose local variables are
+   * merged without any knowledge of the type hierarchy. If some missing frames can't be computed
+   * this way (e.g. for new exception handlers or new backward jump targets), then all the frames of
+   * the class are recomputed from scratch, as with {@link #COMPUTE_FRAMES}. This flag is ignored if
+   * {@link #COMPUTE_FRAMES} is set, and is equivalent to {@link #COMPUTE_MAXS} for classes whose
+   * version is {@link Opcodes#V1_5} or less.
+   *
+   * @see #ClassWriter(int)
+   */
+  public static final int COMPUTE_MISSING_FRAMES = 4;
+
+  /**
+   * A flag to remove the unused constant pool entries and bootstrap methods from the class files
+   * built by this class writer, and to renumber the other ones. Unused entries typically come from
+   * the constant pool copied by {@link #ClassWriter(ClassReader, int)} (e.g. if some methods have
+   * been removed or renamed), or from a {@link ConstantPoolTemplate}. The methods copied as is from
+   * the {@link ClassReader} are still copied as is, only the constant pool indices they contain
+   * being updated. This requires an additional pass over the class file in {@link #toByteArray}.
+   *
+   * <p>The class files containing non standard attributes (i.e. {@link Attribute} instances) are
+   * not compacted, because the constant pool indices that these attributes may contain are unknown.
+   *
+   * @see #ClassWriter(int)
+   */
+  public static final int COMPACT_CONSTANT_POOL = 8;
+
   // Note: fields are ordered as in the ClassFile structure, and those related to attributes are
   // ordered as in Section 4.7 of the JVMS.
 
@@ -211,10 +251,22 @@ public class ClassWriter extends ClassVisitor {
   /**
    * Indicates what must be automatically computed in {@link MethodWriter}. Must be one of {@link
    * MethodWriter#COMPUTE_NOTHING}, {@link MethodWriter#COMPUTE_MAX_STACK_AND_LOCAL}, {@link
-   * MethodWriter#COMPUTE_INSERTED_FRAMES}, or {@link MethodWriter#COMPUTE_ALL_FRAMES}.
+   * MethodWriter#COMPUTE_INSERTED_FRAMES}, {@link MethodWriter#COMPUTE_MISSING_FRAMES}, or {@link
+   * MethodWriter#COMPUTE_ALL_FRAMES}.
    */
   private int compute;
 
+  /**
+   * Whether the unused constant pool entries must be removed. See {@link #COMPACT_CONSTANT_POOL}.
+   */
+  private boolean compactConstantPool;
+
+  /**
+   * The class hierarchy used to compute common super classes, or {@literal null} to load classes
+   * with {@link #getClassLoader}.
+   */
+  private final ClassHierarchy classHierarchy;
+
   // -----------------------------------------------------------------------------------------------
   // Constructor
   // -----------------------------------------------------------------------------------------------
@@ -223,7 +275,8 @@ public class ClassWriter extends ClassVisitor {
    * Constructs a new {@link ClassWriter} object.
    *
    * @param flags option flags that can be used to modify the default behavior of this class. Must
-   *     be zero or more of {@link #COMPUTE_MAXS} and {@link #COMPUTE_FRAMES}.
+   *     be zero or more of {@link #COMPUTE_MAXS}, {@link #COMPUTE_FRAMES}, {@link
+   *     #COMPUTE_MISSING_FRAMES} and {@link #COMPACT_CONSTANT_POOL}.
    */
   public ClassWriter(final int flags) {
     this(null, flags);
@@ -249,19 +302,98 @@ public class ClassWriter extends ClassVisitor {
    *     copy the entire constant pool and bootstrap methods from the original class and also to
    *     copy other fragments of original bytecode where applicable.
    * @param flags option flags that can be used to modify the default behavior of this class.Must be
-   *     zero or more of {@link #COMPUTE_MAXS} and {@link #COMPUTE_FRAMES}. <i>These option flags do
-   *     not affect methods that are copied as is in the new class. This means that neither the
-   *     maximum stack size nor the stack frames will be computed for these methods</i>.
+   *     zero or more of {@link #COMPUTE_MAXS}, {@link #COMPUTE_FRAMES}, {@link
+   *     #COMPUTE_MISSING_FRAMES} and {@link #COMPACT_CONSTANT_POOL}. <i>These option flags do not
+   *     affect methods that are copied as is in the new class. This means that neither the maximum
+   *     stack size nor the stack frames will be computed for these methods</i>.
    */
   public ClassWriter(final ClassReader classReader, final int flags) {
+    this(classReader, flags, null);
+  }
+
+  /**
+   * Constructs a new {@link ClassWriter} object using the given class hierarchy to compute common
+   * super classes, instead of loading classes (see {@link #getCommonSuperClass}).
+   *
+   * @param classReader the {@link ClassReader} used to read the original class, or {@literal null}.
+   *     See {@link #ClassWriter(ClassReader, int)}.
+   * @param flags option flags that can be used to modify the default behavior of this class. Must
+   *     be zero or more of {@link #COMPUTE_MAXS}, {@link #COMPUTE_FRAMES}, {@link
+   *     #COMPUTE_MISSING_FRAMES} and {@link #COMPACT_CONSTANT_POOL}.
+   * @param classHierarchy the class hierarchy used to compute common super classes, or {@literal
+   *     null} to load classes with {@link #getClassLoader}. A single class hierarchy can be shared
+   *     between several class writers.
+   */
+  public ClassWriter(
+      final ClassReader classReader, final int flags, final ClassHierarchy classHierarchy) {
     super(/* latest api = */ Opcodes.ASM9);
+    this.classHierarchy = classHierarchy;
     symbolTable = classReader == null ? new SymbolTable(this) : new SymbolTable(this, classReader);
+    this.compute = getCompute(flags);
+    this.compactConstantPool = (flags & COMPACT_CONSTANT_POOL) != 0;
+  }
+
+  /**
+   * Constructs a new {@link ClassWriter} object whose constant pool and bootstrap methods are
+   * initialized with a copy of those of the given template. Copying a template is much faster than
+   * adding its entries one by one, in particular because their hash codes are not recomputed. The
+   * template entries are kept in the new class, even if they are not used, unless {@link
+   * #COMPACT_CONSTANT_POOL} is set.
+   *
+   * @param flags option flags that can be used to modify the default behavior of this class. Must
+   *     be zero or more of {@link #COMPUTE_MAXS}, {@link #COMPUTE_FRAMES}, {@link
+   *     #COMPUTE_MISSING_FRAMES} and {@link #COMPACT_CONSTANT_POOL}.
+   * @param constantPoolTemplate the constant pool entries to copy in the new class. A single
+   *     template can be shared between several class writers, possibly used concurrently.
+   */
+  public ClassWriter(final int flags, final ConstantPoolTemplate constantPoolTemplate) {
+    this(flags, constantPoolTemplate, null);
+  }
+
+  /**
+   * Constructs a new {@link ClassWriter} object whose constant pool and bootstrap methods are
+   * initialized with a copy of those of the given template, and using the given class hierarchy to
+   * compute common super classes.
+   *
+   * @param flags option flags that can be used to modify the default behavior of this class. Must
+   *     be zero or more of {@link #COMPUTE_MAXS}, {@link #COMPUTE_FRAMES}, {@link
+   *     #COMPUTE_MISSING_FRAMES} and {@link #COMPACT_CONSTANT_POOL}.
+   * @param constantPoolTemplate the constant pool entries to copy in the new class. See {@link
+   *     #ClassWriter(int, ConstantPoolTemplate)}.
+   * @param classHierarchy the class hierarchy used to compute common super classes, or {@literal
+   *     null} to load classes with {@link #getClassLoader}.
+   */
+  public ClassWriter(
+      final int flags,
+      final ConstantPoolTemplate constantPoolTemplate,
+      final ClassHierarchy classHierarchy) {
+    super(/* latest api = */ Opcodes.ASM9);
+    this.classHierarchy = classHierarchy;
+    symbolTable = new SymbolTable(this, constantPoolTemplate.symbolTable, /* isTemplate = */ true);
+    this.compute = getCompute(flags);
+    this.compactConstantPool = (flags & COMPACT_CONSTANT_POOL) != 0;
+  }
+
+  /**
+   * Returns what must be automatically computed in {@link MethodWriter}, for the given option
+   * flags.
+   *
+   * @param flags option flags that can be used to modify the default behavior of this class. Must
+   *     be zero or more of {@link #COMPUTE_MAXS}, {@link #COMPUTE_FRAMES}, {@link
+   *     #COMPUTE_MISSING_FRAMES} and {@link #COMPACT_CONSTANT_POOL}.
+   * @return one of {@link MethodWriter#COMPUTE_NOTHING}, {@link
+   *     MethodWriter#COMPUTE_MAX_STACK_AND_LOCAL}, {@link MethodWriter#COMPUTE_MISSING_FRAMES} or
+   *     {@link MethodWriter#COMPUTE_ALL_FRAMES}.
+   */
+  private static int getCompute(final int flags) {
     if ((flags & COMPUTE_FRAMES) != 0) {
-      this.compute = MethodWriter.COMPUTE_ALL_FRAMES;
+      return MethodWriter.COMPUTE_ALL_FRAMES;
+    } else if ((flags & COMPUTE_MISSING_FRAMES) != 0) {
+      return MethodWriter.COMPUTE_MISSING_FRAMES;
     } else if ((flags & COMPUTE_MAXS) != 0) {
-      this.compute = MethodWriter.COMPUTE_MAX_STACK_AND_LOCAL;
+      return MethodWriter.COMPUTE_MAX_STACK_AND_LOCAL;
     } else {
-      this.compute = MethodWriter.COMPUTE_NOTHING;
+      return MethodWriter.COMPUTE_NOTHING;
     }
   }
 
@@ -293,6 +425,9 @@ public class ClassWriter extends ClassVisitor {
     }
     if (compute == MethodWriter.COMPUTE_MAX_STACK_AND_LOCAL && (version & 0xFFFF) >= Opcodes.V1_7) {
       compute = MethodWriter.COMPUTE_MAX_STACK_AND_LOCAL_FROM_FRAMES;
+    } else if (compute == MethodWriter.COMPUTE_MISSING_FRAMES
+        && (version & 0xFFFF) < Opcodes.V1_6) {
+      compute = MethodWriter.COMPUTE_MAX_STACK_AND_LOCAL;
     }
   }
 
@@ -302,7 +437,7 @@ public class ClassWriter extends ClassVisitor {
       sourceFileIndex = symbolTable.addConstantUtf8(file);
     }
     if (debug != null) {
-      debugExtension = new ByteVector().encodeUtf8(debug, 0, Integer.MAX_VALUE);
+      debugExtension = symbolTable.newByteVector().encodeUtf8(debug, 0, Integer.MAX_VALUE);
     }
   }
 
@@ -366,7 +501,7 @@ public class ClassWriter extends ClassVisitor {
   @Override
   public final void visitNestMember(final String nestMember) {
     if (nestMemberClasses == null) {
-      nestMemberClasses = new ByteVector();
+      nestMemberClasses = symbolTable.newByteVector();
     }
     ++numberOfNestMemberClasses;
     nestMemberClasses.putShort(symbolTable.addConstantClass(nestMember).index);
@@ -375,7 +510,7 @@ public class ClassWriter extends ClassVisitor {
   @Override
   public final void visitPermittedSubclass(final String permittedSubclass) {
     if (permittedSubclasses == null) {
-      permittedSubclasses = new ByteVector();
+      permittedSubclasses = symbolTable.newByteVector();
     }
     ++numberOfPermittedSubclasses;
     permittedSubclasses.putShort(symbolTable.addConstantClass(permittedSubclass).index);
@@ -385,7 +520,7 @@ public class ClassWriter extends ClassVisitor {
   public final void visitInnerClass(
       final String name, final String outerName, final String innerName, final int access) {
     if (innerClasses == null) {
-      innerClasses = new ByteVector();
+      innerClasses = symbolTable.newByteVector();
     }
     // Section 4.7.6 of the JVMS states "Every CONSTANT_Class_info entry in the constant_pool table
     // which represents a class or interface C that is not a package member must have exactly one
@@ -470,6 +605,85 @@ public class ClassWriter extends ClassVisitor {
    * @throws MethodTooLargeException if the Code attribute of a method is too large.
    */
   public byte[] toByteArray() {
+    return this.<RuntimeException>writeClassFile(null);
+  }
+
+  /**
+   * Writes the JVMS ClassFile structure built by this ClassWriter to the given stream. Unlike
+   * {@link #toByteArray}, this method does not build the whole class file in a single byte array:
+   * the constant pool is written directly from its internal storage, and the other parts of the
+   * class file are written one field or method at a time. The stream is neither flushed nor closed.
+   *
+   * @param outputStream the stream where the class file must be written.
+   * @throws IOException if an I/O error occurs.
+   * @throws ClassTooLargeException if the constant pool of the class is too large.
+   * @throws MethodTooLargeException if the Code attribute of a method is too large.
+   */
+  public void writeTo(final OutputStream outputStream) throws IOException {
+    writeClassFile(
+        new ClassFileSink<IOException>() {
+          @Override
+          public void write(final byte[] data, final int offset, final int length)
+              throws IOException {
+            outputStream.write(data, offset, length);
+          }
+        });
+  }
+
+  /**
+   * Writes the JVMS ClassFile structure built by this ClassWriter to the given channel. See {@link
+   * #writeTo(OutputStream)}. The channel is not closed.
+   *
+   * @param channel the channel where the class file must be written.
+   * @throws IOException if an I/O error occurs.
+   * @throws ClassTooLargeException if the constant pool of the class is too large.
+   * @throws MethodTooLargeException if the Code attribute of a method is too large.
+   */
+  public void writeTo(final WritableByteChannel channel) throws IOException {
+    writeClassFile(
+        new ClassFileSink<IOException>() {
+          @Override
+          public void write(final byte[] data, final int offset, final int length)
+              throws IOException {
+            ByteBuffer byteBuffer = ByteBuffer.wrap(data, offset, length);
+            while (byteBuffer.hasRemaining()) {
+              channel.write(byteBuffer);
+            }
+          }
+        });
+  }
+
+  /**
+   * Writes the JVMS ClassFile structure built by this ClassWriter to the given buffer, starting at
+   * its current position. See {@link #writeTo(OutputStream)}. The position of the buffer is
+   * advanced by the size of the class file.
+   *
+   * @param byteBuffer the buffer where the class file must be written.
+   * @throws java.nio.BufferOverflowException if there is not enough space remaining in the buffer.
+   *     In this case the content and position of the buffer are unspecified.
+   * @throws ClassTooLargeException if the constant pool of the class is too large.
+   * @throws MethodTooLargeException if the Code attribute of a method is too large.
+   */
+  public void writeTo(final ByteBuffer byteBuffer) {
+    writeClassFile(
+        new ClassFileSink<RuntimeException>() {
+          @Override
+          public void write(final byte[] data, final int offset, final int length) {
+            byteBuffer.put(data, offset, length);
+          }
+        });
+  }
+
+  /**
+   * Builds the JVMS ClassFile structure of this ClassWriter, in a byte array or in the given sink.
+   *
+   * @param <E> the type of the exceptions thrown by the sink.
+   * @param sink where the class file must be written, or {@literal null} to return it in a byte
+   *     array.
+   * @return the class file, or {@literal null} if a sink is used.
+   * @throws E if the sink throws an exception.
+   */
+  private <E extends Exception> byte[] writeClassFile(final ClassFileSink<E> sink) throws E {
     // First step: compute the size in bytes of the ClassFile structure.
     // The magic field uses 4 bytes, 10 mandatory fields (minor_version, major_version,
     // constant_pool_count, access_flags, this_class, super_class, interfaces_count, fields_count,
@@ -483,9 +697,13 @@ public class ClassWriter extends ClassVisitor {
       fieldWriter = (FieldWriter) fieldWriter.fv;
     }
     int methodsCount = 0;
+    boolean hasAsmInstructions = false;
+    boolean hasInvalidFrames = false;
     MethodWriter methodWriter = firstMethod;
     while (methodWriter != null) {
       ++methodsCount;
+      hasAsmInstructions |= methodWriter.hasAsmInstructions();
+      hasInvalidFrames |= methodWriter.hasInvalidFrames();
       size += methodWriter.computeMethodInfoSize();
       methodWriter = (MethodWriter) methodWriter.mv;
     }
@@ -599,11 +817,27 @@ public class ClassWriter extends ClassVisitor {
       throw new ClassTooLargeException(symbolTable.getClassName(), constantPoolCount);
     }
 
+    // The ASM specific instructions and the invalid frames can only be replaced, and the constant
+    // pool compacted, in a complete class file (see third step), which must be built first.
+    if (sink != null && (hasAsmInstructions || hasInvalidFrames || compactConstantPool)) {
+      byte[] classFile = this.<RuntimeException>writeClassFile(null);
+      sink.write(classFile, 0, classFile.length);
+      return null;
+    }
+
     // Second step: allocate a ByteVector of the correct size (in order to avoid any array copy in
-    // dynamic resizes) and fill it with the ClassFile content.
-    ByteVector result = new ByteVector(size);
+    // dynamic resizes) and fill it with the ClassFile content. With a sink, use instead a small
+    // ByteVector, flushed to the sink after each large part of the ClassFile content.
+    ByteVector result = sink == null ? new ByteVector(size) : symbolTable.newByteVector();
     result.putInt(0xCAFEBABE).putInt(version);
-    symbolTable.putConstantPool(result);
+    if (sink == null) {
+      symbolTable.putConstantPool(result);
+    } else {
+      result.putShort(constantPoolCount);
+      flush(result, sink);
+      ByteVector constantPool = symbolTable.getConstantPool();
+      sink.write(constantPool.data, 0, constantPool.length);
+    }
     int mask = (version & 0xFFFF) < Opcodes.V1_5 ? Opcodes.ACC_SYNTHETIC : 0;
     result.putShort(accessFlags & ~mask).putShort(thisClass).putShort(superClass);
     result.putShort(interfaceCount);
@@ -614,16 +848,20 @@ public class ClassWriter extends ClassVisitor {
     fieldWriter = firstField;
     while (fieldWriter != null) {
       fieldWriter.putFieldInfo(result);
+      if (sink != null) {
+        flush(result, sink);
+      }
       fieldWriter = (FieldWriter) fieldWriter.fv;
     }
     result.putShort(methodsCount);
     boolean hasFrames = false;
-    boolean hasAsmInstructions = false;
     methodWriter = firstMethod;
     while (methodWriter != null) {
       hasFrames |= methodWriter.hasFrames();
-      hasAsmInstructions |= methodWriter.hasAsmInstructions();
       methodWriter.putMethodInfo(result);
+      if (sink != null) {
+        flush(result, sink);
+      }
       methodWriter = (MethodWriter) methodWriter.mv;
     }
     // For ease of reference, we use here the same attribute order as in Section 4.7 of the JVMS.
@@ -712,15 +950,109 @@ public class ClassWriter extends ClassVisitor {
     if (firstAttribute != null) {
       firstAttribute.putAttributes(symbolTable, result);
     }
+    if (sink != null) {
+      flush(result, sink);
+      return null;
+    }
 
-    // Third step: replace the ASM specific instructions, if any.
-    if (hasAsmInstructions) {
-      return replaceAsmInstructions(result.data, hasFrames);
+    // Third step: replace the ASM specific instructions and the invalid frames, if any (the
+    // constant pool is then compacted, if needed, by the recursive toByteArray call), and compact
+    // the constant pool if requested.
+    if (hasAsmInstructions || hasInvalidFrames) {
+      return replaceAsmInstructions(result.data, hasFrames, hasInvalidFrames);
+    } else if (compactConstantPool) {
+      return ConstantPoolCompactor.compact(result.data);
     } else {
       return result.data;
     }
   }
 
+  /**
+   * Writes the content of the given ByteVector to the given sink, and clears this ByteVector.
+   *
+   * @param <E> the type of the exceptions thrown by the sink.
+   * @param byteVector a ByteVector.
+   * @param sink where the content of byteVector must be written.
+   * @throws E if the sink throws an exception.
+   */
+  private static <E extends Exception> void flush(
+      final ByteVector byteVector, final ClassFileSink<E> sink) throws E {
+    sink.write(byteVector.data, 0, byteVector.length);
+    byteVector.length = 0;
+  }
+
+  /**
+   * Resets this ClassWriter so that it can be reused to build a new class, as if it had just been
+   * constructed with {@link #ClassWriter(ClassReader, int, ClassHierarchy)} with the given
+   * arguments and with the class hierarchy of this ClassWriter (or with {@link #ClassWriter(int,
+   * ConstantPoolTemplate, ClassHierarchy)} if this ClassWriter has a template and classReader is
+   * {@literal null}). Unlike a new ClassWriter, a reset ClassWriter reuses the arrays allocated to
+   * build the previous classes (for the constant pool, the bootstrap methods and the symbol table),
+   * which reduces the allocation rate when many classes are built in sequence (see {@link
+   * ClassWriterPool}). The result of the previous {@link #toByteArray} calls is not affected by
+   * this method.
+   *
+   * @param classReader the {@link ClassReader} used to read the original class, or {@literal null}.
+   *     See {@link #ClassWriter(ClassReader, int)}.
+   * @param flags option flags that can be used to modify the default behavior of this class. Must
+   *     be zero or more of {@link #COMPUTE_MAXS}, {@link #COMPUTE_FRAMES}, {@link
+   *     #COMPUTE_MISSING_FRAMES} and {@link #COMPACT_CONSTANT_POOL}.
+   */
+  public void reset(final ClassReader classReader, final int flags) {
+    version = 0;
+    symbolTable.reset(classReader);
+    accessFlags = 0;
+    thisClass = 0;
+    superClass = 0;
+    interfaceCount = 0;
+    interfaces = null;
+    firstField = null;
+    lastField = null;
+    firstMethod = null;
+    lastMethod = null;
+    numberOfInnerClasses = 0;
+    innerClasses = null;
+    enclosingClassIndex = 0;
+    enclosingMethodIndex = 0;
+    signatureIndex = 0;
+    sourceFileIndex = 0;
+    debugExtension = null;
+    lastRuntimeVisibleAnnotation = null;
+    lastRuntimeInvisibleAnnotation = null;
+    lastRuntimeVisibleTypeAnnotation = null;
+    lastRuntimeInvisibleTypeAnnotation = null;
+    moduleWriter = null;
+    nestHostClassIndex = 0;
+    numberOfNestMemberClasses = 0;
+    nestMemberClasses = null;
+    numberOfPermittedSubclasses = 0;
+    permittedSubclasses = null;
+    firstRecordComponent = null;
+    lastRecordComponent = null;
+    firstAttribute = null;
+    compute = getCompute(flags);
+    compactConstantPool = (flags & COMPACT_CONSTANT_POOL) != 0;
+  }
+
+  /**
+   * Makes this ClassWriter also reuse, after each {@link #reset}, the arrays allocated to store the
+   * content of the previous class (its methods code, annotations, attributes, etc). This is only
+   * possible if the previous content is no longer used after the reset, as guaranteed by {@link
+   * ClassWriterPool}.
+   */
+  final void enableByteArrayPool() {
+    symbolTable.enableByteArrayPool();
+  }
+
+  /**
+   * Returns the symbol table of this ClassWriter.
+   *
+   * @return the symbol table of this ClassWriter.
+   */
+  final SymbolTable getSymbolTable() {
+    return symbolTable;
+  }
+
   /**
    * Returns the equivalent of the given class file, with the ASM specific instructions replaced
    * with standard ones. This is done with a ClassReader -&gt; ClassWriter round trip.
@@ -728,10 +1060,13 @@ public class ClassWriter extends ClassVisitor {
    * @param classFile a class file containing ASM specific instructions, generated by this
    *     ClassWriter.
    * @param hasFrames whether there is at least one stack map frames in 'classFile'.
+   * @param hasInvalidFrames whether some stack map frames in 'classFile' could not be computed with
+   *     {@link #COMPUTE_MISSING_FRAMES}. In this case all the frames are recomputed from scratch.
    * @return an equivalent of 'classFile', with the ASM specific instructions replaced with standard
    *     ones.
    */
-  private byte[] replaceAsmInstructions(final byte[] classFile, final boolean hasFrames) {
+  private byte[] replaceAsmInstructions(
+      final byte[] classFile, final boolean hasFrames, final boolean hasInvalidFrames) {
     final Attribute[] attributes = getAttributePrototypes();
     firstField = null;
     lastField = null;
@@ -750,12 +1085,16 @@ public class ClassWriter extends ClassVisitor {
     firstRecordComponent = null;
     lastRecordComponent = null;
     firstAttribute = null;
-    compute = hasFrames ? MethodWriter.COMPUTE_INSERTED_FRAMES : MethodWriter.COMPUTE_NOTHING;
+    int parsingOptions;
+    if (hasInvalidFrames) {
+      compute = MethodWriter.COMPUTE_ALL_FRAMES;
+      parsingOptions = ClassReader.SKIP_FRAMES;
+    } else {
+      compute = hasFrames ? MethodWriter.COMPUTE_INSERTED_FRAMES : MethodWriter.COMPUTE_NOTHING;
+      parsingOptions = hasFrames ? ClassReader.EXPAND_FRAMES : 0;
+    }
     new ClassReader(classFile, 0, /* checkClassVersion = */ false)
-        .accept(
-            this,
-            attributes,
-            (hasFrames ? ClassReader.EXPAND_FRAMES : 0) | ClassReader.EXPAND_ASM_INSNS);
+        .accept(this, attributes, parsingOptions | ClassReader.EXPAND_ASM_INSNS);
     return toByteArray();
   }
 
@@ -1000,17 +1339,20 @@ public class ClassWriter extends ClassVisitor {
 
   /**
    * Returns the common super type of the two given types. The default implementation of this method
-   * <i>loads</i> the two given classes and uses the java.lang.Class methods to find the common
-   * super class. It can be overridden to compute this common super type in other ways, in
-   * particular without actually loading any class, or to take into account the class that is
-   * currently being generated by this ClassWriter, which can of course not be loaded since it is
-   * under construction.
+   * uses the {@link ClassHierarchy} passed to the constructor, if any. Otherwise, it <i>loads</i>
+   * the two given classes and uses the java.lang.Class methods to find the common super class. It
+   * can be overridden to compute this common super type in other ways, in particular without
+   * actually loading any class, or to take into account the class that is currently being generated
+   * by this ClassWriter, which can of course not be loaded since it is under construction.
    *
    * @param type1 the internal name of a class.
    * @param type2 the internal name of another class.
    * @return the internal name of the common super class of the two given classes.
    */
   protected String getCommonSuperClass(final String type1, final String type2) {
+    if (classHierarchy != null) {
+      return classHierarchy.getCommonSuperClass(type1, type2);
+    }
     ClassLoader classLoader = getClassLoader();
     Class<?> class1;
     try {
@@ -1050,4 +1392,23 @@ public class ClassWriter extends ClassVisitor {
   protected ClassLoader getClassLoader() {
     return getClass().getClassLoader();
   }
+
+  /**
+   * A destination of the bytes of a class file, used by {@link #writeTo(OutputStream)} and its
+   * variants.
+   *
+   * @param <E> the type of the exceptions thrown by this sink.
+   */
+  private interface ClassFileSink<E extends Exception> {
+
+    /**
+     * Writes the given bytes to this sink.
+     *
+     * @param data a byte array.
+     * @param offset the offset of the first byte to write in data.
+     * @param length the number of bytes to write.
+     * @throws E if the bytes can't be written.
+     */
+    void write(byte[] data, int offset, int length) throws E;
+  }
 }
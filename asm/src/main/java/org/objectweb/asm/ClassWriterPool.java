@@ -0,0 +1,142 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A pool of {@link ClassWriter} instances, with one set of writers per thread. A writer obtained
+ * with {@link #acquire} is equivalent to a new ClassWriter, but reuses the arrays allocated by the
+ * previous classes built with it (see {@link ClassWriter#reset}), including those used to store the
+ * code of its methods, its annotations and its attributes. This reduces the allocation rate when
+ * many classes are transformed in sequence, e.g. by a Java agent at startup. A ClassWriterPool can
+ * be shared between several threads, but a writer must only be used, and released, by the thread
+ * which acquired it.
+ *
+ * <p>Typical usage:
+ *
+ * <pre>
+ * ClassWriter classWriter = classWriterPool.acquire(classReader, ClassWriter.COMPUTE_MAXS);
+ * try {
+ *   classReader.accept(new MyClassAdapter(classWriter), 0);
+ *   return classWriter.toByteArray();
+ * } finally {
+ *   classWriterPool.release(classWriter);
+ * }
+ * </pre>
+ */
+public class ClassWriterPool {
+
+  /** The maximum number of released writers which are kept per thread. */
+  private static final int MAX_POOLED_WRITERS_PER_THREAD = 4;
+
+  /**
+   * The class hierarchy used by the writers created by this pool, or {@literal null} to load
+   * classes with {@link ClassWriter#getClassLoader}.
+   */
+  private final ClassHierarchy classHierarchy;
+
+  /** The released writers of each thread, which can be returned by {@link #acquire}. */
+  private final ThreadLocal<List<ClassWriter>> pooledWriters;
+
+  /** Constructs a new {@link ClassWriterPool} whose writers load classes if needed. */
+  public ClassWriterPool() {
+    this(null);
+  }
+
+  /**
+   * Constructs a new {@link ClassWriterPool}.
+   *
+   * @param classHierarchy the class hierarchy used by the writers created by this pool to compute
+   *     common super classes, or {@literal null} to load classes with {@link
+   *     ClassWriter#getClassLoader}.
+   */
+  public ClassWriterPool(final ClassHierarchy classHierarchy) {
+    this.classHierarchy = classHierarchy;
+    this.pooledWriters =
+        new ThreadLocal<List<ClassWriter>>() {
+          @Override
+          protected List<ClassWriter> initialValue() {
+            return new ArrayList<ClassWriter>(MAX_POOLED_WRITERS_PER_THREAD);
+          }
+        };
+  }
+
+  /**
+   * Returns a ClassWriter equivalent to {@code new ClassWriter(classReader, flags,
+   * classHierarchy)}. This writer should be given back to this pool with {@link #release} when it
+   * is no longer used.
+   *
+   * @param classReader the {@link ClassReader} used to read the original class, or {@literal null}.
+   *     See {@link ClassWriter#ClassWriter(ClassReader, int)}.
+   * @param flags option flags that can be used to modify the default behavior of the writer. Must
+   *     be zero or more of {@link ClassWriter#COMPUTE_MAXS}, {@link ClassWriter#COMPUTE_FRAMES},
+   *     {@link ClassWriter#COMPUTE_MISSING_FRAMES} and {@link ClassWriter#COMPACT_CONSTANT_POOL}.
+   * @return a new or a reset ClassWriter, which must only be used by the current thread.
+   */
+  public ClassWriter acquire(final ClassReader classReader, final int flags) {
+    List<ClassWriter> writers = pooledWriters.get();
+    if (writers.isEmpty()) {
+      ClassWriter classWriter = newClassWriter(classReader, flags);
+      classWriter.enableByteArrayPool();
+      return classWriter;
+    }
+    ClassWriter classWriter = writers.remove(writers.size() - 1);
+    classWriter.reset(classReader, flags);
+    return classWriter;
+  }
+
+  /**
+   * Gives the given ClassWriter back to this pool, so that it can be returned by a subsequent
+   * {@link #acquire} call from the current thread. The given writer must no longer be used by the
+   * caller after this call (the byte arrays previously returned by its {@link
+   * ClassWriter#toByteArray} method can still be used).
+   *
+   * @param classWriter a ClassWriter returned by {@link #acquire}, in the current thread.
+   */
+  public void release(final ClassWriter classWriter) {
+    List<ClassWriter> writers = pooledWriters.get();
+    if (writers.size() < MAX_POOLED_WRITERS_PER_THREAD && !writers.contains(classWriter)) {
+      writers.add(classWriter);
+    }
+  }
+
+  /**
+   * Constructs a new ClassWriter. This method is called by {@link #acquire} when the pool of the
+   * current thread is empty. Subclasses can override it to return ClassWriter subclasses (e.g. to
+   * override {@link ClassWriter#getCommonSuperClass}).
+   *
+   * @param classReader the {@link ClassReader} used to read the original class, or {@literal null}.
+   * @param flags option flags that can be used to modify the default behavior of the writer.
+   * @return a new ClassWriter.
+   */
+  protected ClassWriter newClassWriter(final ClassReader classReader, final int flags) {
+    return new ClassWriter(classReader, flags, classHierarchy);
+  }
+}
@@ -0,0 +1,958 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm;
+
+/**
+ * Removes the unused entries of the constant pool and of the BootstrapMethods attribute of a class
+ * file, and renumbers the other ones. The rest of the class file, including the bytecode of its
+ * methods, is copied as is, except for the constant pool and bootstrap method indices it contains,
+ * which are updated in place. The remaining entries keep their relative order, so their new indices
+ * are never larger than the old ones. Thus, no instruction or attribute size changes (in
+ * particular, an ldc instruction remains valid).
+ *
+ * <p>A class file containing non standard attributes is not compacted, because the constant pool
+ * indices that these attributes may contain are unknown.
+ *
+ * @see <a href="https://docs.oracle.com/javase/specs/jvms/se9/html/jvms-4.html#jvms-4.4">JVMS
+ *     4.4</a>
+ */
+final class ConstantPoolCompactor {
+
+  /** The content of the class file to compact. Modified in place. */
+  private final byte[] classFile;
+
+  /** The ClassReader used to read {@link #classFile}. */
+  private final ClassReader classReader;
+
+  /** The buffer used to read the attribute names. */
+  private final char[] charBuffer;
+
+  /** Whether each constant pool entry is used. */
+  private final boolean[] usedEntries;
+
+  /** The used constant pool entries whose own references have not been followed yet. */
+  private int[] pendingEntries;
+
+  /** The number of valid elements in {@link #pendingEntries}. */
+  private int pendingEntryCount;
+
+  /**
+   * The offsets in {@link #classFile} of the constant pool indices outside of the constant pool.
+   * The offsets of the one byte indices (used in ldc instructions) are stored as negative values.
+   */
+  private int[] references;
+
+  /** The number of valid elements in {@link #references}. */
+  private int referenceCount;
+
+  /** The offset in {@link #classFile} of the class attributes_count field. */
+  private int classAttributesCountOffset;
+
+  /** The offset in {@link #classFile} of the BootstrapMethods attribute, or 0. */
+  private int bootstrapMethodsAttributeOffset;
+
+  /** The offsets in {@link #classFile} of the elements of the bootstrap_methods array, or null. */
+  private int[] bootstrapMethodOffsets;
+
+  /** Whether each bootstrap method is used, or {@literal null}. */
+  private boolean[] usedBootstrapMethods;
+
+  /** Whether the class file contains a non standard attribute. */
+  private boolean hasUnknownAttribute;
+
+  /**
+   * Constructs a new {@link ConstantPoolCompactor}.
+   *
+   * @param classFile the class file to compact.
+   */
+  private ConstantPoolCompactor(final byte[] classFile) {
+    this.classFile = classFile;
+    this.classReader = new ClassReader(classFile, 0, /* checkClassVersion = */ false);
+    this.charBuffer = new char[classReader.getMaxStringLength()];
+    this.usedEntries = new boolean[classReader.getItemCount()];
+    this.pendingEntries = new int[64];
+    this.references = new int[256];
+  }
+
+  /**
+   * Removes the unused entries of the constant pool and of the BootstrapMethods attribute of the
+   * given class file.
+   *
+   * @param classFile a class file. Its content is modified by this method, unless it is returned as
+   *     is.
+   * @return the compacted class file, or classFile itself if it has no unused entry or if it
+   *     contains non standard attributes.
+   */
+  static byte[] compact(final byte[] classFile) {
+    return new ConstantPoolCompactor(classFile).compact();
+  }
+
+  /**
+   * Removes the unused entries of the constant pool and of the BootstrapMethods attribute of {@link
+   * #classFile}.
+   *
+   * @return the compacted class file, or {@link #classFile} itself if it can't or needs not be
+   *     compacted.
+   */
+  private byte[] compact() {
+    // Find and mark the entries referenced outside the constant pool.
+    int currentOffset = classReader.header;
+    addReference(currentOffset + 2);
+    addReference(currentOffset + 4);
+    int interfacesCount = classReader.readUnsignedShort(currentOffset + 6);
+    currentOffset += 8;
+    while (interfacesCount-- > 0) {
+      addReference(currentOffset);
+      currentOffset += 2;
+    }
+    // Read the fields and the methods, which have the same structure.
+    for (int i = 0; i < 2; ++i) {
+      int membersCount = classReader.readUnsignedShort(currentOffset);
+      currentOffset += 2;
+      while (membersCount-- > 0) {
+        addReference(currentOffset + 2);
+        addReference(currentOffset + 4);
+        currentOffset = readAttributes(currentOffset + 6);
+      }
+    }
+    classAttributesCountOffset = currentOffset;
+    readAttributes(currentOffset);
+    if (hasUnknownAttribute) {
+      return classFile;
+    }
+
+    // Mark the entries and the bootstrap methods referenced by the used entries, recursively.
+    while (pendingEntryCount > 0) {
+      markReferencedEntries(pendingEntries[--pendingEntryCount]);
+    }
+    int oldBootstrapMethodCount = 0;
+    int newBootstrapMethodCount = 0;
+    int newBootstrapMethodsLength = 0;
+    int[] newBootstrapMethodIndices = null;
+    if (bootstrapMethodOffsets != null) {
+      oldBootstrapMethodCount = bootstrapMethodOffsets.length;
+      newBootstrapMethodIndices = new int[oldBootstrapMethodCount];
+      for (int i = 0; i < oldBootstrapMethodCount; ++i) {
+        if (usedBootstrapMethods[i]) {
+          newBootstrapMethodIndices[i] = newBootstrapMethodCount++;
+          newBootstrapMethodsLength +=
+              4 + 2 * classReader.readUnsignedShort(bootstrapMethodOffsets[i] + 2);
+        }
+      }
+      if (newBootstrapMethodCount > 0) {
+        markEntry(classReader.readUnsignedShort(bootstrapMethodsAttributeOffset));
+      }
+    }
+
+    // Compute the new index of each used constant pool entry.
+    int oldConstantPoolCount = usedEntries.length;
+    int newConstantPoolCount = 1;
+    int newConstantPoolLength = 0;
+    int[] newIndices = new int[oldConstantPoolCount];
+    for (int i = 1; i < oldConstantPoolCount; ++i) {
+      if (usedEntries[i]) {
+        newIndices[i] = newConstantPoolCount;
+        int offset = classReader.getItem(i);
+        int tag = classFile[offset - 1];
+        if (tag == Symbol.CONSTANT_LONG_TAG || tag == Symbol.CONSTANT_DOUBLE_TAG) {
+          newConstantPoolCount += 2;
+          newConstantPoolLength += 9;
+        } else {
+          newConstantPoolCount += 1;
+          newConstantPoolLength += getEntrySize(tag, offset);
+        }
+      }
+    }
+    if (newConstantPoolCount == oldConstantPoolCount
+        && newBootstrapMethodCount == oldBootstrapMethodCount) {
+      return classFile;
+    }
+
+    // Compute the size of the compacted class file. The magic, minor_version, major_version and
+    // constant_pool_count fields use 10 bytes, and the BootstrapMethods attribute header 8 bytes.
+    int size = 10 + newConstantPoolLength + classFile.length - classReader.header;
+    if (bootstrapMethodsAttributeOffset != 0) {
+      size -= 6 + classReader.readInt(bootstrapMethodsAttributeOffset + 2);
+      if (newBootstrapMethodCount > 0) {
+        size += 8 + newBootstrapMethodsLength;
+      }
+    }
+
+    // Write the magic, minor_version, major_version, constant_pool_count and constant_pool fields.
+    ByteVector result = new ByteVector(size);
+    result.putByteArray(classFile, 0, 8).putShort(newConstantPoolCount);
+    for (int i = 1; i < oldConstantPoolCount; ++i) {
+      if (usedEntries[i]) {
+        putEntry(i, newIndices, newBootstrapMethodIndices, result);
+      }
+    }
+
+    // Update the constant pool indices in the rest of the class file, then copy it, except the
+    // BootstrapMethods attribute which is rewritten (or removed if it is no longer used).
+    for (int i = 0; i < referenceCount; ++i) {
+      int offset = references[i];
+      if (offset < 0) {
+        classFile[-offset] = (byte) newIndices[classFile[-offset] & 0xFF];
+      } else {
+        int newIndex = newIndices[classReader.readUnsignedShort(offset)];
+        classFile[offset] = (byte) (newIndex >>> 8);
+        classFile[offset + 1] = (byte) newIndex;
+      }
+    }
+    if (bootstrapMethodsAttributeOffset == 0) {
+      result.putByteArray(classFile, classReader.header, classFile.length - classReader.header);
+      return result.data;
+    }
+    if (newBootstrapMethodCount == 0) {
+      int attributesCount = classReader.readUnsignedShort(classAttributesCountOffset) - 1;
+      classFile[classAttributesCountOffset] = (byte) (attributesCount >>> 8);
+      classFile[classAttributesCountOffset + 1] = (byte) attributesCount;
+    }
+    result.putByteArray(
+        classFile, classReader.header, bootstrapMethodsAttributeOffset - classReader.header);
+    if (newBootstrapMethodCount > 0) {
+      putBootstrapMethods(newIndices, newBootstrapMethodCount, newBootstrapMethodsLength, result);
+    }
+    int attributeEndOffset =
+        bootstrapMethodsAttributeOffset
+            + 6
+            + classReader.readInt(bootstrapMethodsAttributeOffset + 2);
+    result.putByteArray(classFile, attributeEndOffset, classFile.length - attributeEndOffset);
+    return result.data;
+  }
+
+  // -----------------------------------------------------------------------------------------------
+  // Methods to find the constant pool indices
+  // -----------------------------------------------------------------------------------------------
+
+  /**
+   * Reads an attributes_count field and the following attributes, and records the constant pool
+   * indices they contain.
+   *
+   * @param attributesCountOffset the offset of an attributes_count field in {@link #classFile}.
+   * @return the offset of the first byte following the attributes.
+   */
+  private int readAttributes(final int attributesCountOffset) {
+    int attributesCount = classReader.readUnsignedShort(attributesCountOffset);
+    int currentOffset = attributesCountOffset + 2;
+    while (attributesCount-- > 0) {
+      String attributeName = classReader.readUTF8(currentOffset, charBuffer);
+      int attributeLength = classReader.readInt(currentOffset + 2);
+      if (Constants.BOOTSTRAP_METHODS.equals(attributeName)) {
+        readBootstrapMethods(currentOffset);
+      } else {
+        addReference(currentOffset);
+        readAttribute(attributeName, currentOffset + 6);
+      }
+      currentOffset += 6 + attributeLength;
+    }
+    return currentOffset;
+  }
+
+  /**
+   * Records the constant pool indices contained in an attribute.
+   *
+   * @param attributeName the name of the attribute.
+   * @param offset the offset of the attribute content in {@link #classFile}.
+   */
+  private void readAttribute(final String attributeName, final int offset) {
+    if (Constants.CODE.equals(attributeName)) {
+      readCode(offset);
+    } else if (Constants.CONSTANT_VALUE.equals(attributeName)
+        || Constants.SIGNATURE.equals(attributeName)
+        || Constants.SOURCE_FILE.equals(attributeName)
+        || Constants.NEST_HOST.equals(attributeName)
+        || Constants.MODULE_MAIN_CLASS.equals(attributeName)) {
+      addReference(offset);
+    } else if (Constants.EXCEPTIONS.equals(attributeName)
+        || Constants.NEST_MEMBERS.equals(attributeName)
+        || Constants.PERMITTED_SUBCLASSES.equals(attributeName)
+        || Constants.MODULE_PACKAGES.equals(attributeName)) {
+      addReferences(offset);
+    } else if (Constants.INNER_CLASSES.equals(attributeName)) {
+      int numberOfClasses = classReader.readUnsignedShort(offset);
+      int currentOffset = offset + 2;
+      while (numberOfClasses-- > 0) {
+        addReference(currentOffset);
+        addReference(currentOffset + 2);
+        addReference(currentOffset + 4);
+        currentOffset += 8;
+      }
+    } else if (Constants.ENCLOSING_METHOD.equals(attributeName)) {
+      addReference(offset);
+      addReference(offset + 2);
+    } else if (Constants.LOCAL_VARIABLE_TABLE.equals(attributeName)
+        || Constants.LOCAL_VARIABLE_TYPE_TABLE.equals(attributeName)) {
+      int tableLength = classReader.readUnsignedShort(offset);
+      int currentOffset = offset + 2;
+      while (tableLength-- > 0) {
+        addReference(currentOffset + 4);
+        addReference(currentOffset + 6);
+        currentOffset += 10;
+      }
+    } else if (Constants.STACK_MAP_TABLE.equals(attributeName)) {
+      readStackMapTable(offset);
+    } else if (Constants.RUNTIME_VISIBLE_ANNOTATIONS.equals(attributeName)
+        || Constants.RUNTIME_INVISIBLE_ANNOTATIONS.equals(attributeName)) {
+      readAnnotations(offset);
+    } else if (Constants.RUNTIME_VISIBLE_PARAMETER_ANNOTATIONS.equals(attributeName)
+        || Constants.RUNTIME_INVISIBLE_PARAMETER_ANNOTATIONS.equals(attributeName)) {
+      int numParameters = classReader.readByte(offset);
+      int currentOffset = offset + 1;
+      while (numParameters-- > 0) {
+        currentOffset = readAnnotations(currentOffset);
+      }
+    } else if (Constants.RUNTIME_VISIBLE_TYPE_ANNOTATIONS.equals(attributeName)
+        || Constants.RUNTIME_INVISIBLE_TYPE_ANNOTATIONS.equals(attributeName)) {
+      int numAnnotations = classReader.readUnsignedShort(offset);
+      int currentOffset = offset + 2;
+      while (numAnnotations-- > 0) {
+        currentOffset = readTypeAnnotation(currentOffset);
+      }
+    } else if (Constants.ANNOTATION_DEFAULT.equals(attributeName)) {
+      readElementValue(offset);
+    } else if (Constants.METHOD_PARAMETERS.equals(attributeName)) {
+      int parametersCount = classReader.readByte(offset);
+      int currentOffset = offset + 1;
+      while (parametersCount-- > 0) {
+        addReference(currentOffset);
+        currentOffset += 4;
+      }
+    } else if (Constants.MODULE.equals(attributeName)) {
+      readModule(offset);
+    } else if (Constants.RECORD.equals(attributeName)) {
+      int componentsCount = classReader.readUnsignedShort(offset);
+      int currentOffset = offset + 2;
+      while (componentsCount-- > 0) {
+        addReference(currentOffset);
+        addReference(currentOffset + 2);
+        currentOffset = readAttributes(currentOffset + 4);
+      }
+    } else if (!Constants.SYNTHETIC.equals(attributeName)
+        && !Constants.DEPRECATED.equals(attributeName)
+        && !Constants.SOURCE_DEBUG_EXTENSION.equals(attributeName)
+        && !Constants.LINE_NUMBER_TABLE.equals(attributeName)) {
+      hasUnknownAttribute = true;
+    }
+  }
+
+  /**
+   * Records the constant pool indices contained in a Code attribute.
+   *
+   * @param codeOffset the offset of the Code attribute content in {@link #classFile}.
+   */
+  private void readCode(final int codeOffset) {
+    final int bytecodeStartOffset = codeOffset + 8;
+    final int bytecodeEndOffset = bytecodeStartOffset + classReader.readInt(codeOffset + 4);
+    int currentOffset = bytecodeStartOffset;
+    while (currentOffset < bytecodeEndOffset) {
+      switch (classFile[currentOffset] & 0xFF) {
+        case Opcodes.LDC:
+          addByteReference(currentOffset + 1);
+          currentOffset += 2;
+          break;
+        case Constants.LDC_W:
+        case Constants.LDC2_W:
+        case Opcodes.GETSTATIC:
+        case Opcodes.PUTSTATIC:
+        case Opcodes.GETFIELD:
+        case Opcodes.PUTFIELD:
+        case Opcodes.INVOKEVIRTUAL:
+        case Opcodes.INVOKESPECIAL:
+        case Opcodes.INVOKESTATIC:
+        case Opcodes.NEW:
+        case Opcodes.ANEWARRAY:
+        case Opcodes.CHECKCAST:
+        case Opcodes.INSTANCEOF:
+          addReference(currentOffset + 1);
+          currentOffset += 3;
+          break;
+        case Opcodes.MULTIANEWARRAY:
+          addReference(currentOffset + 1);
+          currentOffset += 4;
+          break;
+        case Opcodes.INVOKEINTERFACE:
+        case Opcodes.INVOKEDYNAMIC:
+          addReference(currentOffset + 1);
+          currentOffset += 5;
+          break;
+        case Opcodes.BIPUSH:
+        case Opcodes.NEWARRAY:
+        case Opcodes.ILOAD:
+        case Opcodes.LLOAD:
+        case Opcodes.FLOAD:
+        case Opcodes.DLOAD:
+        case Opcodes.ALOAD:
+        case Opcodes.ISTORE:
+        case Opcodes.LSTORE:
+        case Opcodes.FSTORE:
+        case Opcodes.DSTORE:
+        case Opcodes.ASTORE:
+        case Opcodes.RET:
+          currentOffset += 2;
+          break;
+        case Opcodes.SIPUSH:
+        case Opcodes.IINC:
+        case Opcodes.IFEQ:
+        case Opcodes.IFNE:
+        case Opcodes.IFLT:
+        case Opcodes.IFGE:
+        case Opcodes.IFGT:
+        case Opcodes.IFLE:
+        case Opcodes.IF_ICMPEQ:
+        case Opcodes.IF_ICMPNE:
+        case Opcodes.IF_ICMPLT:
+        case Opcodes.IF_ICMPGE:
+        case Opcodes.IF_ICMPGT:
+        case Opcodes.IF_ICMPLE:
+        case Opcodes.IF_ACMPEQ:
+        case Opcodes.IF_ACMPNE:
+        case Opcodes.GOTO:
+        case Opcodes.JSR:
+        case Opcodes.IFNULL:
+        case Opcodes.IFNONNULL:
+          currentOffset += 3;
+          break;
+        case Constants.GOTO_W:
+        case Constants.JSR_W:
+          currentOffset += 5;
+          break;
+        case Constants.WIDE:
+          currentOffset += (classFile[currentOffset + 1] & 0xFF) == Opcodes.IINC ? 6 : 4;
+          break;
+        case Opcodes.TABLESWITCH:
+          // Skip the opcode and the 0 to 3 padding bytes.
+          currentOffset += 4 - ((currentOffset - bytecodeStartOffset) & 3);
+          currentOffset +=
+              12
+                  + 4
+                      * (classReader.readInt(currentOffset + 8)
+                          - classReader.readInt(currentOffset + 4)
+                          + 1);
+          break;
+        case Opcodes.LOOKUPSWITCH:
+          // Skip the opcode and the 0 to 3 padding bytes.
+          currentOffset += 4 - ((currentOffset - bytecodeStartOffset) & 3);
+          currentOffset += 8 + 8 * classReader.readInt(currentOffset + 4);
+          break;
+        default:
+          currentOffset += 1;
+          break;
+      }
+    }
+    int exceptionTableLength = classReader.readUnsignedShort(currentOffset);
+    currentOffset += 2;
+    while (exceptionTableLength-- > 0) {
+      addReference(currentOffset + 6);
+      currentOffset += 8;
+    }
+    readAttributes(currentOffset);
+  }
+
+  /**
+   * Records the constant pool indices contained in a StackMapTable attribute.
+   *
+   * @param offset the offset of the StackMapTable attribute content in {@link #classFile}.
+   */
+  private void readStackMapTable(final int offset) {
+    int numberOfEntries = classReader.readUnsignedShort(offset);
+    int currentOffset = offset + 2;
+    while (numberOfEntries-- > 0) {
+      int frameType = classFile[currentOffset++] & 0xFF;
+      if (frameType < Frame.SAME_LOCALS_1_STACK_ITEM_FRAME) {
+        continue;
+      } else if (frameType < Frame.RESERVED) {
+        currentOffset = readVerificationTypeInfo(currentOffset);
+      } else if (frameType == Frame.SAME_LOCALS_1_STACK_ITEM_FRAME_EXTENDED) {
+        currentOffset = readVerificationTypeInfo(currentOffset + 2);
+      } else if (frameType < Frame.APPEND_FRAME) {
+        currentOffset += 2;
+      } else if (frameType < Frame.FULL_FRAME) {
+        currentOffset += 2;
+        for (int i = 0; i < frameType - Frame.SAME_FRAME_EXTENDED; ++i) {
+          currentOffset = readVerificationTypeInfo(currentOffset);
+        }
+      } else {
+        // Read the number_of_locals and locals fields, then number_of_stack_items and stack.
+        currentOffset += 2;
+        for (int i = 0; i < 2; ++i) {
+          int numberOfItems = classReader.readUnsignedShort(currentOffset);
+          currentOffset += 2;
+          while (numberOfItems-- > 0) {
+            currentOffset = readVerificationTypeInfo(currentOffset);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Records the constant pool index contained in a verification_type_info structure, if any.
+   *
+   * @param offset the offset of a verification_type_info structure in {@link #classFile}.
+   * @return the offset of the first byte following the verification_type_info structure.
+   */
+  private int readVerificationTypeInfo(final int offset) {
+    int tag = classFile[offset];
+    if (tag == Frame.ITEM_OBJECT) {
+      addReference(offset + 1);
+      return offset + 3;
+    }
+    return tag == Frame.ITEM_UNINITIALIZED ? offset + 3 : offset + 1;
+  }
+
+  /**
+   * Records the constant pool indices contained in a num_annotations field and the following
+   * annotations.
+   *
+   * @param offset the offset of a num_annotations field in {@link #classFile}.
+   * @return the offset of the first byte following the annotations.
+   */
+  private int readAnnotations(final int offset) {
+    int numAnnotations = classReader.readUnsignedShort(offset);
+    int currentOffset = offset + 2;
+    while (numAnnotations-- > 0) {
+      currentOffset = readAnnotation(currentOffset);
+    }
+    return currentOffset;
+  }
+
+  /**
+   * Records the constant pool indices contained in an annotation structure.
+   *
+   * @param offset the offset of an annotation structure in {@link #classFile}.
+   * @return the offset of the first byte following the annotation structure.
+   */
+  private int readAnnotation(final int offset) {
+    addReference(offset);
+    int numElementValuePairs = classReader.readUnsignedShort(offset + 2);
+    int currentOffset = offset + 4;
+    while (numElementValuePairs-- > 0) {
+      addReference(currentOffset);
+      currentOffset = readElementValue(currentOffset + 2);
+    }
+    return currentOffset;
+  }
+
+  /**
+   * Records the constant pool indices contained in a type_annotation structure.
+   *
+   * @param offset the offset of a type_annotation structure in {@link #classFile}.
+   * @return the offset of the first byte following the type_annotation structure.
+   */
+  private int readTypeAnnotation(final int offset) {
+    int currentOffset = offset;
+    switch (classFile[currentOffset] & 0xFF) {
+      case TypeReference.FIELD:
+      case TypeReference.METHOD_RETURN:
+      case TypeReference.METHOD_RECEIVER:
+        currentOffset += 1;
+        break;
+      case TypeReference.CLASS_TYPE_PARAMETER:
+      case TypeReference.METHOD_TYPE_PARAMETER:
+      case TypeReference.METHOD_FORMAL_PARAMETER:
+        currentOffset += 2;
+        break;
+      case TypeReference.CLASS_EXTENDS:
+      case TypeReference.CLASS_TYPE_PARAMETER_BOUND:
+      case TypeReference.METHOD_TYPE_PARAMETER_BOUND:
+      case TypeReference.THROWS:
+      case TypeReference.EXCEPTION_PARAMETER:
+      case TypeReference.INSTANCEOF:
+      case TypeReference.NEW:
+      case TypeReference.CONSTRUCTOR_REFERENCE:
+      case TypeReference.METHOD_REFERENCE:
+        currentOffset += 3;
+        break;
+      case TypeReference.CAST:
+      case TypeReference.CONSTRUCTOR_INVOCATION_TYPE_ARGUMENT:
+      case TypeReference.METHOD_INVOCATION_TYPE_ARGUMENT:
+      case TypeReference.CONSTRUCTOR_REFERENCE_TYPE_ARGUMENT:
+      case TypeReference.METHOD_REFERENCE_TYPE_ARGUMENT:
+        currentOffset += 4;
+        break;
+      case TypeReference.LOCAL_VARIABLE:
+      case TypeReference.RESOURCE_VARIABLE:
+        currentOffset += 3 + 6 * classReader.readUnsignedShort(currentOffset + 1);
+        break;
+      default:
+        throw new IllegalArgumentException();
+    }
+    // Skip the type_path structure.
+    currentOffset += 1 + 2 * classReader.readByte(currentOffset);
+    return readAnnotation(currentOffset);
+  }
+
+  /**
+   * Records the constant pool indices contained in an element_value structure.
+   *
+   * @param offset the offset of an element_value structure in {@link #classFile}.
+   * @return the offset of the first byte following the element_value structure.
+   */
+  private int readElementValue(final int offset) {
+    switch (classFile[offset]) {
+      case 'B':
+      case 'C':
+      case 'D':
+      case 'F':
+      case 'I':
+      case 'J':
+      case 'S':
+      case 'Z':
+      case 's':
+      case 'c':
+        addReference(offset + 1);
+        return offset + 3;
+      case 'e':
+        addReference(offset + 1);
+        addReference(offset + 3);
+        return offset + 5;
+      case '@':
+        return readAnnotation(offset + 1);
+      case '[':
+        int numValues = classReader.readUnsignedShort(offset + 1);
+        int currentOffset = offset + 3;
+        while (numValues-- > 0) {
+          currentOffset = readElementValue(currentOffset);
+        }
+        return currentOffset;
+      default:
+        throw new IllegalArgumentException();
+    }
+  }
+
+  /**
+   * Records the constant pool indices contained in a Module attribute.
+   *
+   * @param offset the offset of the Module attribute content in {@link #classFile}.
+   */
+  private void readModule(final int offset) {
+    // Read the module_name_index, module_flags and module_version_index fields.
+    addReference(offset);
+    addReference(offset + 4);
+    int currentOffset = offset + 6;
+    // Read the 'requires' array.
+    int requiresCount = classReader.readUnsignedShort(currentOffset);
+    currentOffset += 2;
+    while (requiresCount-- > 0) {
+      addReference(currentOffset);
+      addReference(currentOffset + 4);
+      currentOffset += 6;
+    }
+    // Read the 'exports' and 'opens' arrays, which have the same structure.
+    for (int i = 0; i < 2; ++i) {
+      int count = classReader.readUnsignedShort(currentOffset);
+      currentOffset += 2;
+      while (count-- > 0) {
+        addReference(currentOffset);
+        currentOffset = addReferences(currentOffset + 4);
+      }
+    }
+    // Read the 'uses' array.
+    currentOffset = addReferences(currentOffset);
+    // Read the 'provides' array.
+    int providesCount = classReader.readUnsignedShort(currentOffset);
+    currentOffset += 2;
+    while (providesCount-- > 0) {
+      addReference(currentOffset);
+      currentOffset = addReferences(currentOffset + 2);
+    }
+  }
+
+  /**
+   * Records the offsets of the elements of the bootstrap_methods array of a BootstrapMethods
+   * attribute. The constant pool indices of these elements are only recorded if they are used.
+   *
+   * @param attributeOffset the offset of the BootstrapMethods attribute in {@link #classFile}.
+   */
+  private void readBootstrapMethods(final int attributeOffset) {
+    int numBootstrapMethods = classReader.readUnsignedShort(attributeOffset + 6);
+    bootstrapMethodsAttributeOffset = attributeOffset;
+    bootstrapMethodOffsets = new int[numBootstrapMethods];
+    usedBootstrapMethods = new boolean[numBootstrapMethods];
+    int currentOffset = attributeOffset + 8;
+    for (int i = 0; i < numBootstrapMethods; ++i) {
+      bootstrapMethodOffsets[i] = currentOffset;
+      currentOffset += 4 + 2 * classReader.readUnsignedShort(currentOffset + 2);
+    }
+  }
+
+  /**
+   * Records a number of constant pool indices, followed by these indices.
+   *
+   * @param offset the offset in {@link #classFile} of a number of constant pool indices.
+   * @return the offset of the first byte following these indices.
+   */
+  private int addReferences(final int offset) {
+    int count = classReader.readUnsignedShort(offset);
+    int currentOffset = offset + 2;
+    while (count-- > 0) {
+      addReference(currentOffset);
+      currentOffset += 2;
+    }
+    return currentOffset;
+  }
+
+  /**
+   * Records a two bytes constant pool index, and marks the corresponding entry as used.
+   *
+   * @param offset the offset in {@link #classFile} of a two bytes constant pool index (which can be
+   *     0, meaning no entry).
+   */
+  private void addReference(final int offset) {
+    addReference(offset, classReader.readUnsignedShort(offset));
+  }
+
+  /**
+   * Records a one byte constant pool index, and marks the corresponding entry as used.
+   *
+   * @param offset the offset in {@link #classFile} of the constant pool index of an ldc
+   *     instruction.
+   */
+  private void addByteReference(final int offset) {
+    addReference(-offset, classReader.readByte(offset));
+  }
+
+  /**
+   * Records a constant pool index, and marks the corresponding entry as used.
+   *
+   * @param reference the offset in {@link #classFile} of a constant pool index, or minus this
+   *     offset for a one byte index.
+   * @param index the value of this constant pool index.
+   */
+  private void addReference(final int reference, final int index) {
+    if (referenceCount == references.length) {
+      int[] newReferences = new int[2 * references.length];
+      System.arraycopy(references, 0, newReferences, 0, referenceCount);
+      references = newReferences;
+    }
+    references[referenceCount++] = reference;
+    markEntry(index);
+  }
+
+  // -----------------------------------------------------------------------------------------------
+  // Methods to mark the used entries
+  // -----------------------------------------------------------------------------------------------
+
+  /**
+   * Marks a constant pool entry as used. Its own references are followed later, in {@link
+   * #markReferencedEntries}.
+   *
+   * @param index a constant pool index, or 0.
+   */
+  private void markEntry(final int index) {
+    if (index != 0 && !usedEntries[index]) {
+      usedEntries[index] = true;
+      if (pendingEntryCount == pendingEntries.length) {
+        int[] newPendingEntries = new int[2 * pendingEntries.length];
+        System.arraycopy(pendingEntries, 0, newPendingEntries, 0, pendingEntryCount);
+        pendingEntries = newPendingEntries;
+      }
+      pendingEntries[pendingEntryCount++] = index;
+    }
+  }
+
+  /**
+   * Marks the constant pool entries and the bootstrap method referenced by a constant pool entry as
+   * used.
+   *
+   * @param index the index of a used constant pool entry.
+   */
+  private void markReferencedEntries(final int index) {
+    int offset = classReader.getItem(index);
+    switch (classFile[offset - 1]) {
+      case Symbol.CONSTANT_CLASS_TAG:
+      case Symbol.CONSTANT_STRING_TAG:
+      case Symbol.CONSTANT_METHOD_TYPE_TAG:
+      case Symbol.CONSTANT_MODULE_TAG:
+      case Symbol.CONSTANT_PACKAGE_TAG:
+        markEntry(classReader.readUnsignedShort(offset));
+        break;
+      case Symbol.CONSTANT_FIELDREF_TAG:
+      case Symbol.CONSTANT_METHODREF_TAG:
+      case Symbol.CONSTANT_INTERFACE_METHODREF_TAG:
+      case Symbol.CONSTANT_NAME_AND_TYPE_TAG:
+        markEntry(classReader.readUnsignedShort(offset));
+        markEntry(classReader.readUnsignedShort(offset + 2));
+        break;
+      case Symbol.CONSTANT_METHOD_HANDLE_TAG:
+        markEntry(classReader.readUnsignedShort(offset + 1));
+        break;
+      case Symbol.CONSTANT_DYNAMIC_TAG:
+      case Symbol.CONSTANT_INVOKE_DYNAMIC_TAG:
+        markBootstrapMethod(classReader.readUnsignedShort(offset));
+        markEntry(classReader.readUnsignedShort(offset + 2));
+        break;
+      default:
+        break;
+    }
+  }
+
+  /**
+   * Marks a bootstrap method, and the constant pool entries it references, as used.
+   *
+   * @param bootstrapMethodIndex the index of a bootstrap method.
+   */
+  private void markBootstrapMethod(final int bootstrapMethodIndex) {
+    if (usedBootstrapMethods[bootstrapMethodIndex]) {
+      return;
+    }
+    usedBootstrapMethods[bootstrapMethodIndex] = true;
+    int currentOffset = bootstrapMethodOffsets[bootstrapMethodIndex];
+    markEntry(classReader.readUnsignedShort(currentOffset));
+    int numBootstrapArguments = classReader.readUnsignedShort(currentOffset + 2);
+    currentOffset += 4;
+    while (numBootstrapArguments-- > 0) {
+      markEntry(classReader.readUnsignedShort(currentOffset));
+      currentOffset += 2;
+    }
+  }
+
+  // -----------------------------------------------------------------------------------------------
+  // Methods to write the compacted constant pool and bootstrap methods
+  // -----------------------------------------------------------------------------------------------
+
+  /**
+   * Returns the size in bytes of a constant pool entry, other than a CONSTANT_Long or
+   * CONSTANT_Double entry.
+   *
+   * @param tag the tag of a constant pool entry.
+   * @param offset the offset in {@link #classFile} of the content of this entry, after its tag.
+   * @return the size in bytes of this entry, including its tag.
+   */
+  private int getEntrySize(final int tag, final int offset) {
+    switch (tag) {
+      case Symbol.CONSTANT_CLASS_TAG:
+      case Symbol.CONSTANT_STRING_TAG:
+      case Symbol.CONSTANT_METHOD_TYPE_TAG:
+      case Symbol.CONSTANT_MODULE_TAG:
+      case Symbol.CONSTANT_PACKAGE_TAG:
+        return 3;
+      case Symbol.CONSTANT_METHOD_HANDLE_TAG:
+        return 4;
+      case Symbol.CONSTANT_UTF8_TAG:
+        return 3 + classReader.readUnsignedShort(offset);
+      default:
+        return 5;
+    }
+  }
+
+  /**
+   * Puts a constant pool entry in the given ByteVector, with updated indices.
+   *
+   * @param index the index of a used constant pool entry.
+   * @param newIndices the new index of each used constant pool entry.
+   * @param newBootstrapMethodIndices the new index of each used bootstrap method, or {@literal
+   *     null} if there is no bootstrap method.
+   * @param output where the constant pool entry must be put.
+   */
+  private void putEntry(
+      final int index,
+      final int[] newIndices,
+      final int[] newBootstrapMethodIndices,
+      final ByteVector output) {
+    int offset = classReader.getItem(index);
+    int tag = classFile[offset - 1];
+    switch (tag) {
+      case Symbol.CONSTANT_CLASS_TAG:
+      case Symbol.CONSTANT_STRING_TAG:
+      case Symbol.CONSTANT_METHOD_TYPE_TAG:
+      case Symbol.CONSTANT_MODULE_TAG:
+      case Symbol.CONSTANT_PACKAGE_TAG:
+        output.put12(tag, newIndices[classReader.readUnsignedShort(offset)]);
+        break;
+      case Symbol.CONSTANT_FIELDREF_TAG:
+      case Symbol.CONSTANT_METHODREF_TAG:
+      case Symbol.CONSTANT_INTERFACE_METHODREF_TAG:
+      case Symbol.CONSTANT_NAME_AND_TYPE_TAG:
+        output.put122(
+            tag,
+            newIndices[classReader.readUnsignedShort(offset)],
+            newIndices[classReader.readUnsignedShort(offset + 2)]);
+        break;
+      case Symbol.CONSTANT_METHOD_HANDLE_TAG:
+        output.put112(
+            tag, classFile[offset], newIndices[classReader.readUnsignedShort(offset + 1)]);
+        break;
+      case Symbol.CONSTANT_DYNAMIC_TAG:
+      case Symbol.CONSTANT_INVOKE_DYNAMIC_TAG:
+        output.put122(
+            tag,
+            newBootstrapMethodIndices[classReader.readUnsignedShort(offset)],
+            newIndices[classReader.readUnsignedShort(offset + 2)]);
+        break;
+      case Symbol.CONSTANT_INTEGER_TAG:
+      case Symbol.CONSTANT_FLOAT_TAG:
+        output.putByteArray(classFile, offset - 1, 5);
+        break;
+      case Symbol.CONSTANT_LONG_TAG:
+      case Symbol.CONSTANT_DOUBLE_TAG:
+        output.putByteArray(classFile, offset - 1, 9);
+        break;
+      case Symbol.CONSTANT_UTF8_TAG:
+        output.putByteArray(classFile, offset - 1, 3 + classReader.readUnsignedShort(offset));
+        break;
+      default:
+        throw new IllegalArgumentException();
+    }
+  }
+
+  /**
+   * Puts a BootstrapMethods attribute containing the used bootstrap methods in the given
+   * ByteVector, with updated indices.
+   *
+   * @param newIndices the new index of each used constant pool entry.
+   * @param newBootstrapMethodCount the number of used bootstrap methods.
+   * @param newBootstrapMethodsLength the size in bytes of the used bootstrap methods.
+   * @param output where the BootstrapMethods attribute must be put.
+   */
+  private void putBootstrapMethods(
+      final int[] newIndices,
+      final int newBootstrapMethodCount,
+      final int newBootstrapMethodsLength,
+      final ByteVector output) {
+    output
+        .putShort(newIndices[classReader.readUnsignedShort(bootstrapMethodsAttributeOffset)])
+        .putInt(2 + newBootstrapMethodsLength)
+        .putShort(newBootstrapMethodCount);
+    for (int i = 0; i < bootstrapMethodOffsets.length; ++i) {
+      if (usedBootstrapMethods[i]) {
+        int currentOffset = bootstrapMethodOffsets[i];
+        int numBootstrapArguments = classReader.readUnsignedShort(currentOffset + 2);
+        output
+            .putShort(newIndices[classReader.readUnsignedShort(currentOffset)])
+            .putShort(numBootstrapArguments);
+        currentOffset += 4;
+        while (numBootstrapArguments-- > 0) {
+          output.putShort(newIndices[classReader.readUnsignedShort(currentOffset)]);
+          currentOffset += 2;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,65 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm;
+
+/**
+ * An immutable snapshot of the constant pool and bootstrap methods of a {@link ClassWriter}, used
+ * to initialize new class writers (see {@link ClassWriter#ClassWriter(int, ConstantPoolTemplate)}).
+ * This is useful to generate many similar classes, which share a large number of constant pool
+ * entries. A template is typically created from a ClassWriter in which these shared entries have
+ * been added with {@link ClassWriter#newClass}, {@link ClassWriter#newMethod}, {@link
+ * ClassWriter#newConst}, etc. A template can be used concurrently by several threads.
+ */
+public final class ConstantPoolTemplate {
+
+  /** A copy of the symbol table of the ClassWriter used to create this template. */
+  final SymbolTable symbolTable;
+
+  /**
+   * Constructs a new {@link ConstantPoolTemplate} from the current constant pool and bootstrap
+   * methods of the given ClassWriter. The subsequent changes to this ClassWriter do not affect the
+   * template.
+   *
+   * @param classWriter the ClassWriter whose constant pool and bootstrap methods must be copied.
+   */
+  public ConstantPoolTemplate(final ClassWriter classWriter) {
+    this.symbolTable =
+        new SymbolTable(
+            /* classWriter = */ null, classWriter.getSymbolTable(), /* isTemplate = */ false);
+  }
+
+  /**
+   * Returns the number of constant pool items of this template, plus 1.
+   *
+   * @return the number of constant pool items of this template, plus 1 (long and double items count
+   *     for two items).
+   */
+  public int getConstantPoolCount() {
+    return symbolTable.getConstantPoolCount();
+  }
+}
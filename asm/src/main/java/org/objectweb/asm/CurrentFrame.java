@@ -48,6 +48,13 @@ final class CurrentFrame extends Frame {
   @Override
   void execute(
       final int opcode, final int arg, final Symbol symbolArg, final SymbolTable symbolTable) {
+    // The input frame must contain the local variables used by the instruction, which are not
+    // necessarily known in advance with MethodWriter#COMPUTE_MISSING_FRAMES.
+    if ((opcode >= Opcodes.ILOAD && opcode <= Opcodes.ALOAD)
+        || (opcode >= Opcodes.ISTORE && opcode <= Opcodes.ASTORE)
+        || opcode == Opcodes.IINC) {
+      growInputLocals(arg + 2);
+    }
     super.execute(opcode, arg, symbolArg, symbolTable);
     Frame successor = new Frame(null);
     merge(symbolTable, successor, 0);
@@ -27,6 +27,8 @@
 // THE POSSIBILITY OF SUCH DAMAGE.
 package org.objectweb.asm;
 
+import java.util.Arrays;
+
 /**
  * The input and output stack map frames of a basic block.
  *
@@ -467,6 +469,89 @@ class Frame {
     return inputStack.length;
   }
 
+  /**
+   * Sets the input frame to a copy of the input frame of the given frame, and clears the output
+   * frame.
+   *
+   * @param frame a frame whose input frame has been computed.
+   */
+  final void copyInputFrame(final Frame frame) {
+    inputLocals = frame.inputLocals.clone();
+    inputStack = frame.inputStack.clone();
+    outputLocals = null;
+    outputStack = null;
+    outputStackStart = 0;
+    outputStackTop = 0;
+    initializationCount = 0;
+    initializations = null;
+  }
+
+  /**
+   * Merges the input frame of the given frame into the input frame of this frame, without any
+   * knowledge of the type hierarchy. For this the stack types must be equal, and the local variables
+   * whose types differ are set to TOP, except if one of them is the NULL type and the other a
+   * reference type (the merged type is then the reference type). Two different reference types
+   * can't be merged, since their common super class is unknown.
+   *
+   * @param frame a frame whose input frame has been computed.
+   * @return whether the input frames could be merged without any knowledge of the type hierarchy.
+   *     If not, the result of the merge is undefined.
+   */
+  final boolean mergeInputFrame(final Frame frame) {
+    if (!Arrays.equals(inputStack, frame.inputStack)) {
+      return false;
+    }
+    int[] frameInputLocals = frame.inputLocals;
+    for (int i = 0; i < inputLocals.length; ++i) {
+      int inputLocal = inputLocals[i];
+      int frameInputLocal = i < frameInputLocals.length ? frameInputLocals[i] : TOP;
+      if (inputLocal != frameInputLocal) {
+        if (isReferenceType(inputLocal)) {
+          if (frameInputLocal != NULL) {
+            if (isReferenceType(frameInputLocal)) {
+              return false;
+            }
+            inputLocals[i] = TOP;
+          }
+        } else if (inputLocal == NULL && isReferenceType(frameInputLocal)) {
+          inputLocals[i] = frameInputLocal;
+        } else {
+          inputLocals[i] = TOP;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns whether the given abstract type is a reference type of any array dimension, or an array
+   * type.
+   *
+   * @param abstractType an abstract type.
+   * @return whether abstractType is a reference type of any array dimension, or an array type.
+   */
+  private static boolean isReferenceType(final int abstractType) {
+    return (abstractType & DIM_MASK) != 0 || (abstractType & KIND_MASK) == REFERENCE_KIND;
+  }
+
+  /**
+   * Appends TOP types to the input frame local variables, if needed, so that there are at least the
+   * given number of them.
+   *
+   * @param numLocal a number of local variables.
+   */
+  final void growInputLocals(final int numLocal) {
+    int inputLocalsLength = inputLocals.length;
+    if (numLocal > inputLocalsLength) {
+      int[] newInputLocals = new int[numLocal];
+      System.arraycopy(inputLocals, 0, newInputLocals, 0, inputLocalsLength);
+      for (int i = inputLocalsLength; i < numLocal; ++i) {
+        newInputLocals[i] = TOP;
+      }
+      inputLocals = newInputLocals;
+    }
+  }
+
   // -----------------------------------------------------------------------------------------------
   // Methods related to the output frame
   // -----------------------------------------------------------------------------------------------
@@ -244,7 +244,8 @@ public class Label {
   /**
    * The input and output stack map frames of the basic block corresponding to this label. This
    * field is only used when the {@link MethodWriter#COMPUTE_ALL_FRAMES} or {@link
-   * MethodWriter#COMPUTE_INSERTED_FRAMES} option is used.
+   * MethodWriter#COMPUTE_INSERTED_FRAMES} option is used. With {@link
+   * MethodWriter#COMPUTE_MISSING_FRAMES}, it contains the input frame of a forward jump target.
    */
   Frame frame;
 
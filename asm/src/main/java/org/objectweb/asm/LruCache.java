@@ -0,0 +1,153 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A thread safe cache with a bounded size and a least recently used eviction policy. The entries
+ * are partitioned in several independently locked stripes, based on the hash code of their key, to
+ * reduce lock contention.
+ *
+ * @param <K> the type of the keys of this cache.
+ * @param <V> the type of the values of this cache.
+ */
+final class LruCache<K, V> {
+
+  /** The maximum number of stripes of a cache. */
+  private static final int MAX_STRIPE_COUNT = 16;
+
+  /** The minimum number of entries of each stripe, when there are several stripes. */
+  private static final int MIN_STRIPE_SIZE = 16;
+
+  /** The stripes of this cache. Their number is a power of two. */
+  private final List<Stripe<K, V>> stripes;
+
+  /**
+   * Constructs a new {@link LruCache}.
+   *
+   * @param maxSize the maximum number of entries of this cache. Must be strictly positive.
+   */
+  LruCache(final int maxSize) {
+    int stripeCount = 1;
+    while (stripeCount < MAX_STRIPE_COUNT && stripeCount * 2 * MIN_STRIPE_SIZE <= maxSize) {
+      stripeCount *= 2;
+    }
+    stripes = new ArrayList<Stripe<K, V>>(stripeCount);
+    int stripeSize = Math.max(1, maxSize / stripeCount);
+    for (int i = 0; i < stripeCount; ++i) {
+      stripes.add(new Stripe<K, V>(stripeSize));
+    }
+  }
+
+  /**
+   * Returns the value associated with the given key, and marks it as the most recently used one.
+   *
+   * @param key a key.
+   * @return the value associated with key, or {@literal null} if there is none.
+   */
+  V get(final K key) {
+    Stripe<K, V> stripe = getStripe(key);
+    synchronized (stripe) {
+      return stripe.get(key);
+    }
+  }
+
+  /**
+   * Associates the given value with the given key, unless a value is already associated with it. In
+   * this case the existing value is returned, so that all the threads use the same value.
+   *
+   * @param key a key.
+   * @param value a value.
+   * @return the value associated with key.
+   */
+  V putIfAbsent(final K key, final V value) {
+    Stripe<K, V> stripe = getStripe(key);
+    synchronized (stripe) {
+      V existingValue = stripe.get(key);
+      if (existingValue != null) {
+        return existingValue;
+      }
+      stripe.put(key, value);
+      return value;
+    }
+  }
+
+  /**
+   * Returns the number of entries of this cache.
+   *
+   * @return the number of entries of this cache.
+   */
+  int size() {
+    int size = 0;
+    for (Stripe<K, V> stripe : stripes) {
+      synchronized (stripe) {
+        size += stripe.size();
+      }
+    }
+    return size;
+  }
+
+  /** Removes all the entries of this cache. */
+  void clear() {
+    for (Stripe<K, V> stripe : stripes) {
+      synchronized (stripe) {
+        stripe.clear();
+      }
+    }
+  }
+
+  private Stripe<K, V> getStripe(final K key) {
+    int hashCode = key.hashCode();
+    // Spread the high bits of the hash code, which are otherwise ignored by the mask.
+    hashCode ^= hashCode >>> 16;
+    return stripes.get(hashCode & (stripes.size() - 1));
+  }
+
+  /** A stripe of a {@link LruCache}, with its own maximum size. */
+  private static final class Stripe<K, V> extends LinkedHashMap<K, V> {
+
+    private static final long serialVersionUID = 4208093452476416232L;
+
+    /** The maximum number of entries of this stripe. */
+    private final int maxSize;
+
+    Stripe(final int maxSize) {
+      super(/* initialCapacity = */ 16, /* loadFactor = */ 0.75f, /* accessOrder = */ true);
+      this.maxSize = maxSize;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(final Map.Entry<K, V> eldest) {
+      return size() > maxSize;
+    }
+  }
+}
@@ -69,6 +69,18 @@ final class MethodWriter extends MethodVisitor {
    */
   static final int COMPUTE_ALL_FRAMES = 4;
 
+  /**
+   * Indicates that the stack map frames which are required but which are not visited must be
+   * computed, together with the maximum stack size and the maximum number of local variables. The
+   * visited frames are kept as is. They should all be of type F_NEW. The missing frames are
+   * computed from the previous F_NEW frame and the bytecode instructions in between, if possible,
+   * i.e. without any knowledge of the type hierarchy. Otherwise {@link #hasInvalidFrames} returns
+   * {@literal true}, and the frames of this method must be recomputed with {@link
+   * #COMPUTE_ALL_FRAMES}. This value is replaced with {@link #COMPUTE_INSERTED_FRAMES} in {@link
+   * #compute}, and with {@literal true} in {@link #computeMissingFrames}.
+   */
+  static final int COMPUTE_MISSING_FRAMES = 5;
+
   /** Indicates that {@link #STACK_SIZE_DELTA} is not applicable (not constant or never used). */
   private static final int NA = 0;
 
@@ -317,7 +329,7 @@ final class MethodWriter extends MethodVisitor {
   private int maxLocals;
 
   /** The 'code' field of the Code attribute. */
-  private final ByteVector code = new ByteVector();
+  private final ByteVector code;
 
   /**
    * The first element in the exception handler list (used to generate the exception_table of the
@@ -467,8 +479,58 @@ final class MethodWriter extends MethodVisitor {
   /**
    * Indicates what must be computed. Must be one of {@link #COMPUTE_ALL_FRAMES}, {@link
    * #COMPUTE_INSERTED_FRAMES}, {@link #COMPUTE_MAX_STACK_AND_LOCAL} or {@link #COMPUTE_NOTHING}.
+   * This field is set to {@link #COMPUTE_NOTHING} if {@link #computeMissingFrames} is true and a
+   * missing frame can't be computed.
+   */
+  private int compute;
+
+  /**
+   * Whether the missing stack map frames must be computed (see {@link #COMPUTE_MISSING_FRAMES}). In
+   * this case {@link #compute} is equal to {@link #COMPUTE_INSERTED_FRAMES}, and the frame of
+   * {@link #currentBasicBlock} contains the input frame of the current instruction.
+   */
+  private boolean computeMissingFrames;
+
+  /**
+   * Whether the current instruction can be reached from the previous one, or has a visited stack
+   * map frame. Only used if {@link #computeMissingFrames} is true.
+   */
+  private boolean currentInsnReachable;
+
+  /**
+   * Whether a stack map frame is required at the current instruction, and has not been visited yet.
+   * Only used if {@link #computeMissingFrames} is true.
+   */
+  private boolean missingFrameRequired;
+
+  /**
+   * Whether the missing frame at the current instruction, if any, can't be computed (this is the
+   * case for exception handlers). Only used if {@link #computeMissingFrames} is true.
    */
-  private final int compute;
+  private boolean missingFrameUncomputable;
+
+  /**
+   * The merged input frames of the forward jump instructions targeting the current instruction, or
+   * {@literal null}. The input frame of each forward jump target is stored in the {@link
+   * Label#frame} field of its label, which is also flagged with {@link Label#FLAG_JUMP_TARGET}.
+   * Only used if {@link #computeMissingFrames} is true.
+   */
+  private Frame jumpFrame;
+
+  /**
+   * The bytecode offsets of the visited stack map frames, in increasing order. Only used if {@link
+   * #computeMissingFrames} is true.
+   */
+  private int[] visitedFrameOffsets;
+
+  /** The number of valid elements in {@link #visitedFrameOffsets}. */
+  private int numberOfVisitedFrames;
+
+  /**
+   * Whether some stack map frames of this method could not be computed with {@link
+   * #COMPUTE_MISSING_FRAMES}.
+   */
+  private boolean hasInvalidFrames;
 
   /**
    * The first basic block of the method. The next ones (in bytecode offset order) can be accessed
@@ -594,6 +656,7 @@ final class MethodWriter extends MethodVisitor {
       final int compute) {
     super(/* latest api = */ Opcodes.ASM9);
     this.symbolTable = symbolTable;
+    this.code = symbolTable.newByteVector();
     this.accessFlags = "<init>".equals(name) ? access | Constants.ACC_CONSTRUCTOR : access;
     this.nameIndex = symbolTable.addConstantUtf8(name);
     this.name = name;
@@ -610,7 +673,12 @@ final class MethodWriter extends MethodVisitor {
       numberOfExceptions = 0;
       this.exceptionIndexTable = null;
     }
-    this.compute = compute;
+    if (compute == COMPUTE_MISSING_FRAMES) {
+      this.compute = COMPUTE_INSERTED_FRAMES;
+      this.computeMissingFrames = true;
+    } else {
+      this.compute = compute;
+    }
     if (compute != COMPUTE_NOTHING) {
       // Update maxLocals and currentLocals.
       int argumentsSize = Type.getArgumentsAndReturnSizes(descriptor) >> 2;
@@ -622,6 +690,15 @@ final class MethodWriter extends MethodVisitor {
       // Create and visit the label for the first basic block.
       firstBasicBlock = new Label();
       visitLabel(firstBasicBlock);
+      if (computeMissingFrames) {
+        // Compute the implicit first frame (which is not visited with EXPAND_FRAMES).
+        currentBasicBlock.frame = new CurrentFrame(currentBasicBlock);
+        currentBasicBlock.frame.setInputFrameFromDescriptor(
+            symbolTable, accessFlags, descriptor, argumentsSize);
+        currentBasicBlock.frame.accept(this);
+        currentInsnReachable = true;
+        visitedFrameOffsets = new int[16];
+      }
     }
   }
 
@@ -633,6 +710,10 @@ final class MethodWriter extends MethodVisitor {
     return hasAsmInstructions;
   }
 
+  boolean hasInvalidFrames() {
+    return hasInvalidFrames;
+  }
+
   // -----------------------------------------------------------------------------------------------
   // Implementation of the MethodVisitor abstract class
   // -----------------------------------------------------------------------------------------------
@@ -640,7 +721,7 @@ final class MethodWriter extends MethodVisitor {
   @Override
   public void visitParameter(final String name, final int access) {
     if (parameters == null) {
-      parameters = new ByteVector();
+      parameters = symbolTable.newByteVector();
     }
     ++parametersCount;
     parameters.putShort((name == null) ? 0 : symbolTable.addConstantUtf8(name)).putShort(access);
@@ -648,7 +729,7 @@ final class MethodWriter extends MethodVisitor {
 
   @Override
   public AnnotationVisitor visitAnnotationDefault() {
-    defaultValue = new ByteVector();
+    defaultValue = symbolTable.newByteVector();
     return new AnnotationWriter(symbolTable, /* useNamedValues = */ false, defaultValue, null);
   }
 
@@ -734,11 +815,13 @@ final class MethodWriter extends MethodVisitor {
       final Object[] local,
       final int numStack,
       final Object[] stack) {
-    if (compute == COMPUTE_ALL_FRAMES) {
+    if (compute == COMPUTE_ALL_FRAMES || hasInvalidFrames) {
       return;
     }
 
-    if (compute == COMPUTE_INSERTED_FRAMES) {
+    if (computeMissingFrames) {
+      visitFrameWithMissingFrames(type, numLocal, local, numStack, stack);
+    } else if (compute == COMPUTE_INSERTED_FRAMES) {
       if (currentBasicBlock.frame == null) {
         // This should happen only once, for the implicit first frame (which is explicitly visited
         // in ClassReader if the EXPAND_ASM_INSNS option is used - and COMPUTE_INSERTED_FRAMES
@@ -780,7 +863,7 @@ final class MethodWriter extends MethodVisitor {
       }
       int offsetDelta;
       if (stackMapTableEntries == null) {
-        stackMapTableEntries = new ByteVector();
+        stackMapTableEntries = symbolTable.newByteVector();
         offsetDelta = code.length;
       } else {
         offsetDelta = code.length - previousFrameOffset - 1;
@@ -860,6 +943,9 @@ final class MethodWriter extends MethodVisitor {
   @Override
   public void visitInsn(final int opcode) {
     lastBytecodeOffset = code.length;
+    if (computeMissingFrames) {
+      computeMissingFrame();
+    }
     // Add the instruction to the bytecode of the method.
     code.putByte(opcode);
     // If needed, update the maximum stack size and number of locals, and stack map frames.
@@ -882,6 +968,9 @@ final class MethodWriter extends MethodVisitor {
   @Override
   public void visitIntInsn(final int opcode, final int operand) {
     lastBytecodeOffset = code.length;
+    if (computeMissingFrames) {
+      computeMissingFrame();
+    }
     // Add the instruction to the bytecode of the method.
     if (opcode == Opcodes.SIPUSH) {
       code.put12(opcode, operand);
@@ -906,6 +995,9 @@ final class MethodWriter extends MethodVisitor {
   @Override
   public void visitVarInsn(final int opcode, final int var) {
     lastBytecodeOffset = code.length;
+    if (computeMissingFrames) {
+      computeMissingFrame();
+    }
     // Add the instruction to the bytecode of the method.
     if (var < 4 && opcode != Opcodes.RET) {
       int optimizedOpcode;
@@ -968,6 +1060,9 @@ final class MethodWriter extends MethodVisitor {
   @Override
   public void visitTypeInsn(final int opcode, final String type) {
     lastBytecodeOffset = code.length;
+    if (computeMissingFrames) {
+      computeMissingFrame();
+    }
     // Add the instruction to the bytecode of the method.
     Symbol typeSymbol = symbolTable.addConstantClass(type);
     code.put12(opcode, typeSymbol.index);
@@ -990,6 +1085,9 @@ final class MethodWriter extends MethodVisitor {
   public void visitFieldInsn(
       final int opcode, final String owner, final String name, final String descriptor) {
     lastBytecodeOffset = code.length;
+    if (computeMissingFrames) {
+      computeMissingFrame();
+    }
     // Add the instruction to the bytecode of the method.
     Symbol fieldrefSymbol = symbolTable.addConstantFieldref(owner, name, descriptor);
     code.put12(opcode, fieldrefSymbol.index);
@@ -1031,6 +1129,9 @@ final class MethodWriter extends MethodVisitor {
       final String descriptor,
       final boolean isInterface) {
     lastBytecodeOffset = code.length;
+    if (computeMissingFrames) {
+      computeMissingFrame();
+    }
     // Add the instruction to the bytecode of the method.
     Symbol methodrefSymbol = symbolTable.addConstantMethodref(owner, name, descriptor, isInterface);
     if (opcode == Opcodes.INVOKEINTERFACE) {
@@ -1067,6 +1168,9 @@ final class MethodWriter extends MethodVisitor {
       final Handle bootstrapMethodHandle,
       final Object... bootstrapMethodArguments) {
     lastBytecodeOffset = code.length;
+    if (computeMissingFrames) {
+      computeMissingFrame();
+    }
     // Add the instruction to the bytecode of the method.
     Symbol invokeDynamicSymbol =
         symbolTable.addConstantInvokeDynamic(
@@ -1092,6 +1196,9 @@ final class MethodWriter extends MethodVisitor {
   @Override
   public void visitJumpInsn(final int opcode, final Label label) {
     lastBytecodeOffset = code.length;
+    if (computeMissingFrames) {
+      computeMissingFrame();
+    }
     // Add the instruction to the bytecode of the method.
     // Compute the 'base' opcode, i.e. GOTO or JSR if opcode is GOTO_W or JSR_W, otherwise opcode.
     int baseOpcode =
@@ -1155,6 +1262,9 @@ final class MethodWriter extends MethodVisitor {
         }
       } else if (compute == COMPUTE_INSERTED_FRAMES) {
         currentBasicBlock.frame.execute(baseOpcode, 0, null, null);
+        if (computeMissingFrames) {
+          addJumpFrame(label);
+        }
       } else if (compute == COMPUTE_MAX_STACK_AND_LOCAL_FROM_FRAMES) {
         // No need to update maxRelativeStackSize (the stack size delta is always negative).
         relativeStackSize += STACK_SIZE_DELTA[baseOpcode];
@@ -1248,6 +1358,9 @@ final class MethodWriter extends MethodVisitor {
       } else {
         // Update the frame owner so that a correct frame offset is computed in Frame.accept().
         currentBasicBlock.frame.owner = label;
+        if (computeMissingFrames && (label.flags & Label.FLAG_JUMP_TARGET) != 0) {
+          visitJumpTarget(label);
+        }
       }
     } else if (compute == COMPUTE_MAX_STACK_AND_LOCAL) {
       if (currentBasicBlock != null) {
@@ -1275,6 +1388,9 @@ final class MethodWriter extends MethodVisitor {
   @Override
   public void visitLdcInsn(final Object value) {
     lastBytecodeOffset = code.length;
+    if (computeMissingFrames) {
+      computeMissingFrame();
+    }
     // Add the instruction to the bytecode of the method.
     Symbol constantSymbol = symbolTable.addConstant(value);
     int constantIndex = constantSymbol.index;
@@ -1309,6 +1425,9 @@ final class MethodWriter extends MethodVisitor {
   @Override
   public void visitIincInsn(final int var, final int increment) {
     lastBytecodeOffset = code.length;
+    if (computeMissingFrames) {
+      computeMissingFrame();
+    }
     // Add the instruction to the bytecode of the method.
     if ((var > 255) || (increment > 127) || (increment < -128)) {
       code.putByte(Constants.WIDE).put12(Opcodes.IINC, var).putShort(increment);
@@ -1332,6 +1451,9 @@ final class MethodWriter extends MethodVisitor {
   public void visitTableSwitchInsn(
       final int min, final int max, final Label dflt, final Label... labels) {
     lastBytecodeOffset = code.length;
+    if (computeMissingFrames) {
+      computeMissingFrame();
+    }
     // Add the instruction to the bytecode of the method.
     code.putByte(Opcodes.TABLESWITCH).putByteArray(null, 0, (4 - code.length % 4) % 4);
     dflt.put(code, lastBytecodeOffset, true);
@@ -1346,6 +1468,9 @@ final class MethodWriter extends MethodVisitor {
   @Override
   public void visitLookupSwitchInsn(final Label dflt, final int[] keys, final Label[] labels) {
     lastBytecodeOffset = code.length;
+    if (computeMissingFrames) {
+      computeMissingFrame();
+    }
     // Add the instruction to the bytecode of the method.
     code.putByte(Opcodes.LOOKUPSWITCH).putByteArray(null, 0, (4 - code.length % 4) % 4);
     dflt.put(code, lastBytecodeOffset, true);
@@ -1369,6 +1494,14 @@ final class MethodWriter extends MethodVisitor {
           addSuccessorToCurrentBasicBlock(Edge.JUMP, label);
           label.getCanonicalInstance().flags |= Label.FLAG_JUMP_TARGET;
         }
+      } else if (compute == COMPUTE_INSERTED_FRAMES) {
+        currentBasicBlock.frame.execute(Opcodes.LOOKUPSWITCH, 0, null, null);
+        if (computeMissingFrames) {
+          addJumpFrame(dflt);
+          for (int i = 0; i < labels.length && computeMissingFrames; ++i) {
+            addJumpFrame(labels[i]);
+          }
+        }
       } else if (compute == COMPUTE_MAX_STACK_AND_LOCAL) {
         // No need to update maxRelativeStackSize (the stack size delta is always negative).
         --relativeStackSize;
@@ -1386,6 +1519,9 @@ final class MethodWriter extends MethodVisitor {
   @Override
   public void visitMultiANewArrayInsn(final String descriptor, final int numDimensions) {
     lastBytecodeOffset = code.length;
+    if (computeMissingFrames) {
+      computeMissingFrame();
+    }
     // Add the instruction to the bytecode of the method.
     Symbol descSymbol = symbolTable.addConstantClass(descriptor);
     code.put12(Opcodes.MULTIANEWARRAY, descSymbol.index).putByte(numDimensions);
@@ -1435,6 +1571,18 @@ final class MethodWriter extends MethodVisitor {
       lastHandler.nextHandler = newHandler;
     }
     lastHandler = newHandler;
+    if (computeMissingFrames) {
+      if ((handler.flags & Label.FLAG_RESOLVED) != 0) {
+        if (!hasVisitedFrameAt(handler.bytecodeOffset)) {
+          invalidateFrames();
+        }
+      } else {
+        // The frame of an exception handler can't be computed here, it must be visited. This is
+        // represented with a jump target label without any frame (see visitJumpTarget).
+        handler.flags |= Label.FLAG_JUMP_TARGET;
+        handler.frame = null;
+      }
+    }
   }
 
   @Override
@@ -1461,7 +1609,7 @@ final class MethodWriter extends MethodVisitor {
       final int index) {
     if (signature != null) {
       if (localVariableTypeTable == null) {
-        localVariableTypeTable = new ByteVector();
+        localVariableTypeTable = symbolTable.newByteVector();
       }
       ++localVariableTypeTableLength;
       localVariableTypeTable
@@ -1472,7 +1620,7 @@ final class MethodWriter extends MethodVisitor {
           .putShort(index);
     }
     if (localVariableTable == null) {
-      localVariableTable = new ByteVector();
+      localVariableTable = symbolTable.newByteVector();
     }
     ++localVariableTableLength;
     localVariableTable
@@ -1501,7 +1649,7 @@ final class MethodWriter extends MethodVisitor {
       final boolean visible) {
     // Create a ByteVector to hold a 'type_annotation' JVMS structure.
     // See https://docs.oracle.com/javase/specs/jvms/se9/html/jvms-4.html#jvms-4.7.20.
-    ByteVector typeAnnotation = new ByteVector();
+    ByteVector typeAnnotation = symbolTable.newByteVector();
     // Write target_type, target_info, and target_path.
     typeAnnotation.putByte(typeRef >>> 24).putShort(start.length);
     for (int i = 0; i < start.length; ++i) {
@@ -1533,7 +1681,7 @@ final class MethodWriter extends MethodVisitor {
   @Override
   public void visitLineNumber(final int line, final Label start) {
     if (lineNumberTable == null) {
-      lineNumberTable = new ByteVector();
+      lineNumberTable = symbolTable.newByteVector();
     }
     ++lineNumberTableLength;
     lineNumberTable.putShort(start.bytecodeOffset);
@@ -1548,6 +1696,9 @@ final class MethodWriter extends MethodVisitor {
       computeMaxStackAndLocal();
     } else if (compute == COMPUTE_MAX_STACK_AND_LOCAL_FROM_FRAMES) {
       this.maxStack = maxRelativeStackSize;
+    } else if (computeMissingFrames) {
+      this.maxStack = Math.max(this.maxStack, maxStack);
+      this.maxLocals = Math.max(this.maxLocals, maxLocals);
     } else {
       this.maxStack = maxStack;
       this.maxLocals = maxLocals;
@@ -1801,6 +1952,9 @@ final class MethodWriter extends MethodVisitor {
     } else if (compute == COMPUTE_MAX_STACK_AND_LOCAL) {
       currentBasicBlock.outputStackMax = (short) maxRelativeStackSize;
       currentBasicBlock = null;
+    } else if (computeMissingFrames) {
+      // The next instruction, if any, can only be reached with a jump.
+      currentInsnReachable = false;
     }
   }
 
@@ -1808,6 +1962,159 @@ final class MethodWriter extends MethodVisitor {
   // Utility methods: stack map frames
   // -----------------------------------------------------------------------------------------------
 
+  /**
+   * Visits a stack map frame when {@link #computeMissingFrames} is true (see {@link #visitFrame}).
+   *
+   * @param type the type of this stack map frame. Must be F_NEW or F_INSERT.
+   * @param numLocal the number of local variables in the visited frame.
+   * @param local the local variable types in this frame.
+   * @param numStack the number of operand stack elements in the visited frame.
+   * @param stack the operand stack types in this frame.
+   */
+  private void visitFrameWithMissingFrames(
+      final int type,
+      final int numLocal,
+      final Object[] local,
+      final int numStack,
+      final Object[] stack) {
+    if (type == Constants.F_INSERT) {
+      missingFrameRequired = true;
+      computeMissingFrame();
+      return;
+    }
+    if (type != Opcodes.F_NEW) {
+      throw new IllegalArgumentException(
+          "COMPUTE_MISSING_FRAMES requires expanded frames (see ClassReader.EXPAND_FRAMES).");
+    }
+    int numLocalSlots = numLocal;
+    for (int i = 0; i < numLocal; ++i) {
+      if (local[i] == Opcodes.LONG || local[i] == Opcodes.DOUBLE) {
+        numLocalSlots++;
+      }
+    }
+    Frame frame = currentBasicBlock.frame;
+    frame.growInputLocals(numLocalSlots);
+    frame.setInputFrameFromApiFormat(symbolTable, numLocal, local, numStack, stack);
+    frame.accept(this);
+    // The visited frame is supposed to be compatible with all the jumps to this instruction.
+    currentInsnReachable = true;
+    missingFrameRequired = false;
+    missingFrameUncomputable = false;
+    jumpFrame = null;
+    if (numberOfVisitedFrames == visitedFrameOffsets.length) {
+      int[] newVisitedFrameOffsets = new int[2 * numberOfVisitedFrames];
+      System.arraycopy(visitedFrameOffsets, 0, newVisitedFrameOffsets, 0, numberOfVisitedFrames);
+      visitedFrameOffsets = newVisitedFrameOffsets;
+    }
+    visitedFrameOffsets[numberOfVisitedFrames++] = code.length;
+  }
+
+  /**
+   * Inserts the stack map frame of the current instruction if it is required and has not been
+   * visited, and updates the maximum stack size. Must be called at the start of each instruction
+   * when {@link #computeMissingFrames} is true.
+   */
+  private void computeMissingFrame() {
+    Frame frame = currentBasicBlock.frame;
+    if (missingFrameRequired || !currentInsnReachable) {
+      if (missingFrameUncomputable || (!currentInsnReachable && jumpFrame == null)) {
+        // An exception handler, or unreachable code, without a visited frame.
+        invalidateFrames();
+        return;
+      }
+      if (!currentInsnReachable) {
+        frame.copyInputFrame(jumpFrame);
+      } else if (jumpFrame != null && !frame.mergeInputFrame(jumpFrame)) {
+        invalidateFrames();
+        return;
+      }
+      frame.accept(this);
+      currentInsnReachable = true;
+      missingFrameRequired = false;
+      jumpFrame = null;
+    }
+    int inputStackSize = frame.getInputStackSize();
+    if (inputStackSize > maxStack) {
+      maxStack = inputStackSize;
+    }
+  }
+
+  /**
+   * Records the input frame of the given jump target, computed from the current frame (which must
+   * be the frame just after the jump instruction), when {@link #computeMissingFrames} is true.
+   *
+   * @param label the target of a jump instruction.
+   */
+  private void addJumpFrame(final Label label) {
+    if ((label.flags & Label.FLAG_RESOLVED) != 0) {
+      // Backward jumps are only supported to instructions with a visited frame, which is supposed
+      // to be compatible with this jump.
+      if (!hasVisitedFrameAt(label.bytecodeOffset)) {
+        invalidateFrames();
+      }
+    } else if ((label.flags & Label.FLAG_JUMP_TARGET) == 0) {
+      label.flags |= Label.FLAG_JUMP_TARGET;
+      label.frame = new Frame(label);
+      label.frame.copyInputFrame(currentBasicBlock.frame);
+    } else if (label.frame != null && !label.frame.mergeInputFrame(currentBasicBlock.frame)) {
+      invalidateFrames();
+    }
+  }
+
+  /**
+   * Records that a stack map frame is required at the current instruction, which is the target of
+   * the given label, when {@link #computeMissingFrames} is true.
+   *
+   * @param label a label flagged with {@link Label#FLAG_JUMP_TARGET}.
+   */
+  private void visitJumpTarget(final Label label) {
+    missingFrameRequired = true;
+    if (label.frame == null) {
+      missingFrameUncomputable = true;
+    } else if (jumpFrame == null) {
+      jumpFrame = label.frame;
+    } else if (!jumpFrame.mergeInputFrame(label.frame)) {
+      invalidateFrames();
+    }
+  }
+
+  /**
+   * Returns whether a stack map frame has been visited at the given bytecode offset, when {@link
+   * #computeMissingFrames} is true.
+   *
+   * @param bytecodeOffset a bytecode offset.
+   * @return whether a stack map frame has been visited at the given bytecode offset.
+   */
+  private boolean hasVisitedFrameAt(final int bytecodeOffset) {
+    int low = 0;
+    int high = numberOfVisitedFrames - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int middleOffset = visitedFrameOffsets[middle];
+      if (middleOffset < bytecodeOffset) {
+        low = middle + 1;
+      } else if (middleOffset > bytecodeOffset) {
+        high = middle - 1;
+      } else {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Stops the computation of the missing stack map frames, when one of them can't be computed. The
+   * frames of this method must then be recomputed from scratch (see {@link #hasInvalidFrames}).
+   */
+  private void invalidateFrames() {
+    hasInvalidFrames = true;
+    computeMissingFrames = false;
+    compute = COMPUTE_NOTHING;
+    currentBasicBlock = null;
+    jumpFrame = null;
+    visitedFrameOffsets = null;
+  }
+
   /**
    * Starts the visit of a new stack map frame, stored in {@link #currentFrame}.
    *
@@ -1845,7 +2152,7 @@ final class MethodWriter extends MethodVisitor {
   void visitFrameEnd() {
     if (previousFrame != null) {
       if (stackMapTableEntries == null) {
-        stackMapTableEntries = new ByteVector();
+        stackMapTableEntries = symbolTable.newByteVector();
       }
       putFrame();
       ++stackMapTableNumberOfEntries;
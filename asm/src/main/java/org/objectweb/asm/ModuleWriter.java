@@ -99,12 +99,12 @@ final class ModuleWriter extends ModuleVisitor {
     this.moduleNameIndex = name;
     this.moduleFlags = access;
     this.moduleVersionIndex = version;
-    this.requires = new ByteVector();
-    this.exports = new ByteVector();
-    this.opens = new ByteVector();
-    this.usesIndex = new ByteVector();
-    this.provides = new ByteVector();
-    this.packageIndex = new ByteVector();
+    this.requires = symbolTable.newByteVector();
+    this.exports = symbolTable.newByteVector();
+    this.opens = symbolTable.newByteVector();
+    this.usesIndex = symbolTable.newByteVector();
+    this.provides = symbolTable.newByteVector();
+    this.packageIndex = symbolTable.newByteVector();
   }
 
   @Override
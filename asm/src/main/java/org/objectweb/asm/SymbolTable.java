@@ -27,6 +27,8 @@
 // THE POSSIBILITY OF SUCH DAMAGE.
 package org.objectweb.asm;
 
+import java.util.Arrays;
+
 /**
  * The constant pool entries, the BootstrapMethods attribute entries and the (ASM specific) type
  * table entries of a class.
@@ -50,7 +52,14 @@ final class SymbolTable {
    * The ClassReader from which this SymbolTable was constructed, or {@literal null} if it was
    * constructed from scratch.
    */
-  private final ClassReader sourceClassReader;
+  private ClassReader sourceClassReader;
+
+  /**
+   * The SymbolTable whose content is copied to initialize this SymbolTable, after its construction
+   * and after each {@link #reset} without a ClassReader, or {@literal null}. The content of this
+   * template SymbolTable must never change.
+   */
+  private final SymbolTable template;
 
   /** The major version number of the class to which this symbol table belongs. */
   private int majorVersion;
@@ -113,6 +122,13 @@ final class SymbolTable {
    */
   private Entry[] typeTable;
 
+  /**
+   * The pool used to allocate the content of the ByteVectors returned by {@link #newByteVector}, or
+   * {@literal null} to allocate it with 'new'. The arrays of this pool are released in {@link
+   * #reset}.
+   */
+  private ByteArrayPool byteArrayPool;
+
   /**
    * Constructs a new, empty SymbolTable for the given ClassWriter.
    *
@@ -121,6 +137,7 @@ final class SymbolTable {
   SymbolTable(final ClassWriter classWriter) {
     this.classWriter = classWriter;
     this.sourceClassReader = null;
+    this.template = null;
     this.entries = new Entry[256];
     this.constantPoolCount = 1;
     this.constantPool = new ByteVector();
@@ -137,19 +154,109 @@ final class SymbolTable {
   SymbolTable(final ClassWriter classWriter, final ClassReader classReader) {
     this.classWriter = classWriter;
     this.sourceClassReader = classReader;
+    this.template = null;
+    copyConstantPool(classReader);
+  }
+
+  /**
+   * Constructs a new SymbolTable for the given ClassWriter, initialized with a copy of the given
+   * SymbolTable.
+   *
+   * @param classWriter a ClassWriter, or {@literal null} to construct a template SymbolTable.
+   * @param symbolTable the SymbolTable whose constant pool, bootstrap methods and type table must
+   *     be copied to initialize the SymbolTable.
+   * @param isTemplate whether symbolTable must also be copied after each {@link #reset} without a
+   *     ClassReader. In this case, the content of symbolTable must never change.
+   */
+  SymbolTable(
+      final ClassWriter classWriter, final SymbolTable symbolTable, final boolean isTemplate) {
+    this.classWriter = classWriter;
+    this.sourceClassReader = null;
+    this.template = isTemplate ? symbolTable : null;
+    copySymbolTable(symbolTable);
+  }
+
+  /**
+   * Resets this SymbolTable to its initial state, i.e. to the state it had just after its
+   * construction with the given ClassReader (or from scratch, or from its template SymbolTable, if
+   * it is {@literal null}). The arrays allocated so far ({@link #entries}, {@link #typeTable} and
+   * those of {@link #constantPool} and {@link #bootstrapMethods}) are kept and reused, if they are
+   * large enough.
+   *
+   * @param classReader the ClassReader whose constant pool and bootstrap methods must be copied to
+   *     initialize the SymbolTable, or {@literal null} to reset it to an empty symbol table.
+   */
+  void reset(final ClassReader classReader) {
+    sourceClassReader = classReader;
+    majorVersion = 0;
+    className = null;
+    entryCount = 0;
+    Arrays.fill(entries, null);
+    constantPoolCount = 1;
+    constantPool.length = 0;
+    bootstrapMethodCount = 0;
+    if (bootstrapMethods != null) {
+      bootstrapMethods.length = 0;
+    }
+    if (typeTable != null) {
+      Arrays.fill(typeTable, 0, typeCount, null);
+    }
+    typeCount = 0;
+    if (byteArrayPool != null) {
+      byteArrayPool.releaseAll();
+    }
+    if (classReader != null) {
+      copyConstantPool(classReader);
+    } else if (template != null) {
+      copySymbolTable(template);
+    }
+  }
+
+  /**
+   * Makes the ByteVectors returned by {@link #newByteVector} reuse the arrays allocated for the
+   * previous classes, instead of allocating new ones. This SymbolTable and its ClassWriter must no
+   * longer use the previous ByteVectors after each {@link #reset}.
+   */
+  void enableByteArrayPool() {
+    if (byteArrayPool == null) {
+      byteArrayPool = new ByteArrayPool();
+    }
+  }
+
+  /**
+   * Returns a new, empty ByteVector, to store some content of the class built with this
+   * SymbolTable. This ByteVector must no longer be used after the next {@link #reset}.
+   *
+   * @return a new, empty ByteVector.
+   */
+  ByteVector newByteVector() {
+    return byteArrayPool == null ? new ByteVector() : new ByteVector(byteArrayPool);
+  }
 
+  /**
+   * Copies the constant pool and bootstrap methods of the given ClassReader into this (empty)
+   * SymbolTable, and adds them as entries of the SymbolTable.
+   *
+   * @param classReader the ClassReader whose constant pool and bootstrap methods must be copied to
+   *     initialize the SymbolTable.
+   */
+  private void copyConstantPool(final ClassReader classReader) {
     // Copy the constant pool binary content.
     byte[] inputBytes = classReader.classFileBuffer;
     int constantPoolOffset = classReader.getItem(1) - 1;
     int constantPoolLength = classReader.header - constantPoolOffset;
     constantPoolCount = classReader.getItemCount();
-    constantPool = new ByteVector(constantPoolLength);
+    if (constantPool == null) {
+      constantPool = new ByteVector(constantPoolLength);
+    }
     constantPool.putByteArray(inputBytes, constantPoolOffset, constantPoolLength);
 
     // Add the constant pool items in the symbol table entries. Reserve enough space in 'entries' to
     // avoid too many hash set collisions (entries is not dynamically resized by the addConstant*
     // method calls below), and to account for bootstrap method entries.
-    entries = new Entry[constantPoolCount * 2];
+    if (entries == null || entries.length < constantPoolCount * 2) {
+      entries = new Entry[constantPoolCount * 2];
+    }
     char[] charBuffer = new char[classReader.getMaxStringLength()];
     boolean hasBootstrapMethods = false;
     int itemIndex = 1;
@@ -232,6 +339,45 @@ final class SymbolTable {
     }
   }
 
+  /**
+   * Copies the constant pool, bootstrap methods and type table of the given SymbolTable into this
+   * (empty) SymbolTable. The hash codes of the entries are not recomputed.
+   *
+   * @param symbolTable the SymbolTable whose content must be copied to initialize this SymbolTable.
+   */
+  private void copySymbolTable(final SymbolTable symbolTable) {
+    constantPoolCount = symbolTable.constantPoolCount;
+    if (constantPool == null) {
+      constantPool = new ByteVector(symbolTable.constantPool.length);
+    }
+    constantPool.putByteArray(symbolTable.constantPool.data, 0, symbolTable.constantPool.length);
+    bootstrapMethodCount = symbolTable.bootstrapMethodCount;
+    if (symbolTable.bootstrapMethods != null) {
+      if (bootstrapMethods == null) {
+        bootstrapMethods = new ByteVector(symbolTable.bootstrapMethods.length);
+      }
+      bootstrapMethods.putByteArray(
+          symbolTable.bootstrapMethods.data, 0, symbolTable.bootstrapMethods.length);
+    }
+    typeCount = symbolTable.typeCount;
+    if (typeCount > 0 && (typeTable == null || typeTable.length < typeCount)) {
+      typeTable = new Entry[symbolTable.typeTable.length];
+    }
+    if (entries == null || entries.length < symbolTable.entries.length) {
+      entries = new Entry[symbolTable.entries.length];
+    }
+    for (Entry entry : symbolTable.entries) {
+      while (entry != null) {
+        Entry copiedEntry = new Entry(entry);
+        add(copiedEntry);
+        if (copiedEntry.tag >= Symbol.TYPE_TAG) {
+          typeTable[copiedEntry.index] = copiedEntry;
+        }
+        entry = entry.next;
+      }
+    }
+  }
+
   /**
    * Read the BootstrapMethods 'bootstrap_methods' array binary content and add them as entries of
    * the SymbolTable.
@@ -256,7 +402,9 @@ final class SymbolTable {
       // Compute the offset and the length of the BootstrapMethods 'bootstrap_methods' array.
       int bootstrapMethodsOffset = currentAttributeOffset + 8;
       int bootstrapMethodsLength = classReader.readInt(currentAttributeOffset + 2) - 2;
-      bootstrapMethods = new ByteVector(bootstrapMethodsLength);
+      if (bootstrapMethods == null) {
+        bootstrapMethods = new ByteVector(bootstrapMethodsLength);
+      }
       bootstrapMethods.putByteArray(inputBytes, bootstrapMethodsOffset, bootstrapMethodsLength);
 
       // Add each bootstrap method in the symbol table entries.
@@ -338,6 +486,16 @@ final class SymbolTable {
     return constantPool.length;
   }
 
+  /**
+   * Returns the content of this symbol table's constant_pool array. The constant_pool_count field
+   * is <i>not</i> included. The returned vector must not be modified.
+   *
+   * @return the content of this symbol table's constant_pool array.
+   */
+  ByteVector getConstantPool() {
+    return constantPool;
+  }
+
   /**
    * Puts this symbol table's constant_pool array in the given ByteVector, preceded by the
    * constant_pool_count value.
@@ -355,7 +513,7 @@ final class SymbolTable {
    * @return the size in bytes of this symbol table's BootstrapMethods attribute.
    */
   int computeBootstrapMethodsSize() {
-    if (bootstrapMethods != null) {
+    if (bootstrapMethodCount > 0) {
       addConstantUtf8(Constants.BOOTSTRAP_METHODS);
       return 8 + bootstrapMethods.length;
     } else {
@@ -370,7 +528,7 @@ final class SymbolTable {
    * @param output where the JVMS BootstrapMethods attribute must be put.
    */
   void putBootstrapMethods(final ByteVector output) {
-    if (bootstrapMethods != null) {
+    if (bootstrapMethodCount > 0) {
       output
           .putShort(addConstantUtf8(Constants.BOOTSTRAP_METHODS))
           .putInt(bootstrapMethods.length + 2)
@@ -1318,5 +1476,11 @@ final class SymbolTable {
       super(index, tag, /* owner = */ null, /* name = */ null, /* value = */ null, data);
       this.hashCode = hashCode;
     }
+
+    Entry(final Entry entry) {
+      super(entry.index, entry.tag, entry.owner, entry.name, entry.value, entry.data);
+      this.hashCode = entry.hashCode;
+      this.info = entry.info;
+    }
   }
 }
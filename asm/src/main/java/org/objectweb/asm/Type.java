@@ -110,6 +110,11 @@ public final class Type {
   public static final Type DOUBLE_TYPE =
       new Type(DOUBLE, PRIMITIVE_DESCRIPTORS, DOUBLE, DOUBLE + 1);
 
+  /**
+   * The cache used to parse descriptors in the static methods of this class, or {@literal null}.
+   */
+  private static volatile TypeCache typeCache;
+
   // -----------------------------------------------------------------------------------------------
   // Fields
   // -----------------------------------------------------------------------------------------------
@@ -167,6 +172,30 @@ public final class Type {
   // Methods to get Type(s) from a descriptor, a reflected Method or Constructor, other types, etc.
   // -----------------------------------------------------------------------------------------------
 
+  /**
+   * Sets the cache used to parse descriptors in {@link #getType(String)}, {@link
+   * #getMethodType(String)}, {@link #getArgumentTypes(String)}, {@link #getReturnType(String)} and
+   * {@link #getArgumentsAndReturnSizes(String)}. These methods then return shared {@link Type}
+   * instances, and parse each descriptor only once as long as it stays in the cache. The cache is
+   * global: it is used by all the classes which call these methods.
+   *
+   * @param typeCache the cache to use, or {@literal null} to parse descriptors at each call (the
+   *     default).
+   */
+  public static void setTypeCache(final TypeCache typeCache) {
+    Type.typeCache = typeCache;
+  }
+
+  /**
+   * Returns the cache used to parse descriptors in the static methods of this class.
+   *
+   * @return the cache used to parse descriptors in the static methods of this class, or {@literal
+   *     null}.
+   */
+  public static TypeCache getTypeCache() {
+    return typeCache;
+  }
+
   /**
    * Returns the {@link Type} corresponding to the given type descriptor.
    *
@@ -174,6 +203,10 @@ public final class Type {
    * @return the {@link Type} corresponding to the given type descriptor.
    */
   public static Type getType(final String typeDescriptor) {
+    TypeCache cache = typeCache;
+    if (cache != null) {
+      return cache.getType(typeDescriptor);
+    }
     return getTypeInternal(typeDescriptor, 0, typeDescriptor.length());
   }
 
@@ -261,6 +294,10 @@ public final class Type {
    * @return the {@link Type} corresponding to the given method descriptor.
    */
   public static Type getMethodType(final String methodDescriptor) {
+    TypeCache cache = typeCache;
+    if (cache != null) {
+      return cache.getType(methodDescriptor);
+    }
     return new Type(METHOD, methodDescriptor, 0, methodDescriptor.length());
   }
 
@@ -294,6 +331,22 @@ public final class Type {
    *     descriptor.
    */
   public static Type[] getArgumentTypes(final String methodDescriptor) {
+    TypeCache cache = typeCache;
+    if (cache != null) {
+      return cache.getArgumentTypes(methodDescriptor);
+    }
+    return getArgumentTypesInternal(methodDescriptor);
+  }
+
+  /**
+   * Returns the {@link Type} values corresponding to the argument types of the given method
+   * descriptor, without using the {@link TypeCache}.
+   *
+   * @param methodDescriptor a method descriptor.
+   * @return the {@link Type} values corresponding to the argument types of the given method
+   *     descriptor.
+   */
+  static Type[] getArgumentTypesInternal(final String methodDescriptor) {
     // First step: compute the number of argument types in methodDescriptor.
     int numArgumentTypes = 0;
     // Skip the first character, which is always a '('.
@@ -365,6 +418,21 @@ public final class Type {
    * @return the {@link Type} corresponding to the return type of the given method descriptor.
    */
   public static Type getReturnType(final String methodDescriptor) {
+    TypeCache cache = typeCache;
+    if (cache != null) {
+      return cache.getReturnType(methodDescriptor);
+    }
+    return getReturnTypeInternal(methodDescriptor);
+  }
+
+  /**
+   * Returns the {@link Type} corresponding to the return type of the given method descriptor,
+   * without using the {@link TypeCache}.
+   *
+   * @param methodDescriptor a method descriptor.
+   * @return the {@link Type} corresponding to the return type of the given method descriptor.
+   */
+  static Type getReturnTypeInternal(final String methodDescriptor) {
     return getTypeInternal(
         methodDescriptor, getReturnTypeOffset(methodDescriptor), methodDescriptor.length());
   }
@@ -412,7 +480,7 @@ public final class Type {
    *     descriptorBuffer.
    * @return the {@link Type} corresponding to the given type descriptor.
    */
-  private static Type getTypeInternal(
+  static Type getTypeInternal(
       final String descriptorBuffer, final int descriptorBegin, final int descriptorEnd) {
     switch (descriptorBuffer.charAt(descriptorBegin)) {
       case 'V':
@@ -725,6 +793,22 @@ public final class Type {
    *     i &gt;&gt; 2}, and returnSize to {@code i &amp; 0x03}).
    */
   public static int getArgumentsAndReturnSizes(final String methodDescriptor) {
+    TypeCache cache = typeCache;
+    if (cache != null) {
+      return cache.getArgumentsAndReturnSizes(methodDescriptor);
+    }
+    return getArgumentsAndReturnSizesInternal(methodDescriptor);
+  }
+
+  /**
+   * Computes the size of the arguments and of the return value of a method, without using the
+   * {@link TypeCache}.
+   *
+   * @param methodDescriptor a method descriptor.
+   * @return the size of the arguments of the method (plus one for the implicit this argument) and
+   *     the size of its return value, packed as in {@link #getArgumentsAndReturnSizes(String)}.
+   */
+  static int getArgumentsAndReturnSizesInternal(final String methodDescriptor) {
     int argumentsSize = 1;
     // Skip the first character, which is always a '('.
     int currentOffset = 1;
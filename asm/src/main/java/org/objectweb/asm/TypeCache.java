@@ -0,0 +1,194 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm;
+
+/**
+ * A bounded cache of parsed field and method descriptors, which returns shared {@link Type}
+ * instances. For method descriptors, the argument types, the return type and the arguments and
+ * return sizes are computed once, when the descriptor is first parsed. A cache can be used
+ * directly, or installed with {@link Type#setTypeCache} to be used by the static methods of {@link
+ * Type} which parse descriptors (and therefore by all the classes which use them).
+ *
+ * <p>This class is thread safe, and does not use any lock. Its capacity is fixed: a descriptor
+ * evicted to make room for new ones is parsed again, into new {@link Type} instances, when needed.
+ */
+public final class TypeCache {
+
+  /** The default number of descriptors that can be stored in a {@link TypeCache}. */
+  public static final int DEFAULT_CAPACITY = 4096;
+
+  /** The cached entries. */
+  private final CacheTable<Entry> entries;
+
+  /** Constructs a new {@link TypeCache} with the {@link #DEFAULT_CAPACITY}. */
+  public TypeCache() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Constructs a new {@link TypeCache}.
+   *
+   * @param capacity the maximum number of descriptors that can be stored in this cache. It is
+   *     rounded up to the next power of 2.
+   * @throws IllegalArgumentException if the capacity is less than 2 or greater than 2^30.
+   */
+  public TypeCache(final int capacity) {
+    entries = new CacheTable<Entry>(capacity);
+  }
+
+  /**
+   * Returns the maximum number of descriptors that can be stored in this cache.
+   *
+   * @return the maximum number of descriptors that can be stored in this cache.
+   */
+  public int getCapacity() {
+    return entries.getCapacity();
+  }
+
+  /** Removes all the descriptors stored in this cache. */
+  public void clear() {
+    entries.clear();
+  }
+
+  /**
+   * Returns the {@link Type} corresponding to the given type descriptor. Equivalent to {@link
+   * Type#getType(String)}, but returns the same instance for equal descriptors, as long as they are
+   * stored in this cache.
+   *
+   * @param typeDescriptor a field or method type descriptor.
+   * @return the {@link Type} corresponding to the given type descriptor.
+   */
+  public Type getType(final String typeDescriptor) {
+    return get(typeDescriptor).type;
+  }
+
+  /**
+   * Returns the {@link Type} values corresponding to the argument types of the given method
+   * descriptor. Equivalent to {@link Type#getArgumentTypes(String)}.
+   *
+   * @param methodDescriptor a method descriptor.
+   * @return the {@link Type} values corresponding to the argument types of the given method
+   *     descriptor. This is a copy of the cached array, which can therefore be modified.
+   */
+  public Type[] getArgumentTypes(final String methodDescriptor) {
+    Type[] argumentTypes = get(methodDescriptor).argumentTypes;
+    return argumentTypes == null
+        ? Type.getArgumentTypesInternal(methodDescriptor)
+        : argumentTypes.clone();
+  }
+
+  /**
+   * Returns the {@link Type} corresponding to the return type of the given method descriptor.
+   * Equivalent to {@link Type#getReturnType(String)}.
+   *
+   * @param methodDescriptor a method descriptor.
+   * @return the {@link Type} corresponding to the return type of the given method descriptor.
+   */
+  public Type getReturnType(final String methodDescriptor) {
+    Type returnType = get(methodDescriptor).returnType;
+    return returnType == null ? Type.getReturnTypeInternal(methodDescriptor) : returnType;
+  }
+
+  /**
+   * Computes the size of the arguments and of the return value of a method. Equivalent to {@link
+   * Type#getArgumentsAndReturnSizes(String)}.
+   *
+   * @param methodDescriptor a method descriptor.
+   * @return the size of the arguments of the method (plus one for the implicit this argument) and
+   *     the size of its return value, packed into a single int (see {@link
+   *     Type#getArgumentsAndReturnSizes(String)}).
+   */
+  public int getArgumentsAndReturnSizes(final String methodDescriptor) {
+    Entry entry = get(methodDescriptor);
+    return entry.returnType == null
+        ? Type.getArgumentsAndReturnSizesInternal(methodDescriptor)
+        : entry.argumentsAndReturnSizes;
+  }
+
+  /**
+   * Returns the entry corresponding to the given descriptor, parsing and caching it if necessary.
+   *
+   * @param descriptor a field or method descriptor.
+   * @return the entry corresponding to the given descriptor.
+   */
+  private Entry get(final String descriptor) {
+    int hashCode = descriptor.hashCode();
+    hashCode ^= hashCode >>> 16;
+    int index = entries.getIndex(hashCode);
+    Entry entry = entries.get(index);
+    if (entry != null && entry.descriptor.equals(descriptor)) {
+      return entry;
+    }
+    entry = entries.get(index ^ 1);
+    if (entry != null && entry.descriptor.equals(descriptor)) {
+      return entry;
+    }
+    entry = new Entry(descriptor);
+    entries.put(index, entry);
+    return entry;
+  }
+
+  /** An immutable entry of a {@link TypeCache}. */
+  private static final class Entry {
+
+    /** The cached field or method descriptor. */
+    final String descriptor;
+
+    /** The {@link Type} corresponding to {@link #descriptor}. */
+    final Type type;
+
+    /**
+     * The argument types of {@link #descriptor}, or {@literal null} for a field descriptor (the
+     * methods of {@link TypeCache} then parse the descriptor each time, as in {@link Type}).
+     */
+    final Type[] argumentTypes;
+
+    /** The return type of {@link #descriptor}, or {@literal null} for a field descriptor. */
+    final Type returnType;
+
+    /**
+     * The size of the arguments and of the return value of {@link #descriptor}, or 0 for a field
+     * descriptor.
+     */
+    final int argumentsAndReturnSizes;
+
+    Entry(final String descriptor) {
+      this.descriptor = descriptor;
+      this.type = Type.getTypeInternal(descriptor, 0, descriptor.length());
+      if (type.getSort() == Type.METHOD) {
+        this.argumentTypes = Type.getArgumentTypesInternal(descriptor);
+        this.returnType = Type.getReturnTypeInternal(descriptor);
+        this.argumentsAndReturnSizes = Type.getArgumentsAndReturnSizesInternal(descriptor);
+      } else {
+        this.argumentTypes = null;
+        this.returnType = null;
+        this.argumentsAndReturnSizes = 0;
+      }
+    }
+  }
+}
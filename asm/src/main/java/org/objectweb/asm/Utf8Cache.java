@@ -0,0 +1,181 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm;
+
+/**
+ * A bounded cache of the String values of CONSTANT_Utf8 constant pool entries, which can be shared
+ * by several {@link ClassReader}s (see {@link ClassReader#setUtf8Cache}). Each string is keyed by
+ * its modified UTF-8 bytes, so that a string already decoded by one reader is neither decoded nor
+ * allocated again by the others, and equal strings of different classes are the same instances.
+ *
+ * <p>This class is thread safe, and does not use any lock. Its capacity is fixed, and the strings
+ * which are evicted to make room for new ones are simply decoded again when needed.
+ */
+public final class Utf8Cache {
+
+  /** The default number of strings that can be stored in a {@link Utf8Cache}. */
+  public static final int DEFAULT_CAPACITY = 8192;
+
+  /** The cached entries. */
+  private final CacheTable<Entry> entries;
+
+  /** Constructs a new {@link Utf8Cache} with the {@link #DEFAULT_CAPACITY}. */
+  public Utf8Cache() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Constructs a new {@link Utf8Cache}.
+   *
+   * @param capacity the maximum number of strings that can be stored in this cache. It is rounded
+   *     up to the next power of 2.
+   * @throws IllegalArgumentException if the capacity is less than 2 or greater than 2^30.
+   */
+  public Utf8Cache(final int capacity) {
+    entries = new CacheTable<Entry>(capacity);
+  }
+
+  /**
+   * Returns the maximum number of strings that can be stored in this cache.
+   *
+   * @return the maximum number of strings that can be stored in this cache.
+   */
+  public int getCapacity() {
+    return entries.getCapacity();
+  }
+
+  /** Removes all the strings stored in this cache. */
+  public void clear() {
+    entries.clear();
+  }
+
+  /**
+   * Returns the String corresponding to the given modified UTF-8 bytes, decoding and caching it if
+   * necessary.
+   *
+   * @param buffer a byte array.
+   * @param utfOffset the start offset of the UTF8 string to be read.
+   * @param utfLength the length of the UTF8 string to be read.
+   * @param charBuffer the buffer to be used to decode the string, if needed. This buffer must be
+   *     sufficiently large. It is not automatically resized.
+   * @return the String corresponding to the specified UTF8 string.
+   */
+  String get(
+      final byte[] buffer, final int utfOffset, final int utfLength, final char[] charBuffer) {
+    int hashCode = hash(buffer, utfOffset, utfLength);
+    int index = entries.getIndex(hashCode);
+    Entry entry = entries.get(index);
+    if (entry != null && entry.matches(hashCode, buffer, utfOffset, utfLength)) {
+      return entry.value;
+    }
+    entry = entries.get(index ^ 1);
+    if (entry != null && entry.matches(hashCode, buffer, utfOffset, utfLength)) {
+      return entry.value;
+    }
+    String value = ClassReader.readUtf(buffer, utfOffset, utfLength, charBuffer);
+    entries.put(index, new Entry(hashCode, utfLength, value));
+    return value;
+  }
+
+  /**
+   * Returns the hash code of the given bytes.
+   *
+   * @param buffer a byte array.
+   * @param offset the start offset of the bytes to hash.
+   * @param length the number of bytes to hash.
+   * @return a hash code of the bytes buffer[offset..offset + length - 1].
+   */
+  private static int hash(final byte[] buffer, final int offset, final int length) {
+    int hashCode = length;
+    int endOffset = offset + length;
+    for (int i = offset; i < endOffset; ++i) {
+      hashCode = 31 * hashCode + buffer[i];
+    }
+    return hashCode ^ (hashCode >>> 16);
+  }
+
+  /** An immutable entry of a {@link Utf8Cache}. */
+  private static final class Entry {
+
+    /** The hash code of the modified UTF-8 bytes of {@link #value}. */
+    final int hashCode;
+
+    /** The number of modified UTF-8 bytes of {@link #value}. */
+    final int utfLength;
+
+    /** The cached String value. */
+    final String value;
+
+    Entry(final int hashCode, final int utfLength, final String value) {
+      this.hashCode = hashCode;
+      this.utfLength = utfLength;
+      this.value = value;
+    }
+
+    /**
+     * Returns whether the given modified UTF-8 bytes encode {@link #value}. The bytes are decoded
+     * on the fly, without allocating any object.
+     *
+     * @param otherHashCode the hash code of the given bytes.
+     * @param buffer a byte array.
+     * @param utfOffset the start offset of the UTF8 string to compare with {@link #value}.
+     * @param utfLength the length of the UTF8 string to compare with {@link #value}.
+     * @return whether the given bytes encode {@link #value}.
+     */
+    boolean matches(
+        final int otherHashCode, final byte[] buffer, final int utfOffset, final int utfLength) {
+      if (otherHashCode != hashCode || utfLength != this.utfLength) {
+        return false;
+      }
+      String string = value;
+      int stringLength = string.length();
+      int currentOffset = utfOffset;
+      int endOffset = utfOffset + utfLength;
+      int charIndex = 0;
+      while (currentOffset < endOffset) {
+        int currentByte = buffer[currentOffset++];
+        char currentChar;
+        if ((currentByte & 0x80) == 0) {
+          currentChar = (char) (currentByte & 0x7F);
+        } else if ((currentByte & 0xE0) == 0xC0) {
+          currentChar = (char) (((currentByte & 0x1F) << 6) + (buffer[currentOffset++] & 0x3F));
+        } else {
+          currentChar =
+              (char)
+                  (((currentByte & 0xF) << 12)
+                      + ((buffer[currentOffset++] & 0x3F) << 6)
+                      + (buffer[currentOffset++] & 0x3F));
+        }
+        if (charIndex == stringLength || string.charAt(charIndex++) != currentChar) {
+          return false;
+        }
+      }
+      return charIndex == stringLength;
+    }
+  }
+}
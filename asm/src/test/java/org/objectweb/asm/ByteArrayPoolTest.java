@@ -0,0 +1,82 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for {@link ByteArrayPool}. */
+public class ByteArrayPoolTest {
+
+  @Test
+  public void testAllocate_lengths() {
+    ByteArrayPool byteArrayPool = new ByteArrayPool();
+
+    assertEquals(64, byteArrayPool.allocate(0).length);
+    assertEquals(64, byteArrayPool.allocate(64).length);
+    assertEquals(128, byteArrayPool.allocate(65).length);
+    assertEquals(1024, byteArrayPool.allocate(1000).length);
+    assertEquals(
+        ByteArrayPool.MAX_POOLED_LENGTH,
+        byteArrayPool.allocate(ByteArrayPool.MAX_POOLED_LENGTH).length);
+    assertEquals(
+        ByteArrayPool.MAX_POOLED_LENGTH + 1,
+        byteArrayPool.allocate(ByteArrayPool.MAX_POOLED_LENGTH + 1).length);
+  }
+
+  @Test
+  public void testAllocate_noReuseBeforeRelease() {
+    ByteArrayPool byteArrayPool = new ByteArrayPool();
+
+    byte[] array1 = byteArrayPool.allocate(100);
+    byte[] array2 = byteArrayPool.allocate(100);
+
+    assertNotSame(array1, array2);
+  }
+
+  @Test
+  public void testReleaseAll() {
+    ByteArrayPool byteArrayPool = new ByteArrayPool();
+    byte[][] arrays = new byte[100][];
+    for (int i = 0; i < arrays.length; ++i) {
+      arrays[i] = byteArrayPool.allocate(100);
+    }
+    byte[] largeArray = byteArrayPool.allocate(ByteArrayPool.MAX_POOLED_LENGTH + 1);
+
+    byteArrayPool.releaseAll();
+
+    for (int i = arrays.length - 1; i >= 0; --i) {
+      assertSame(arrays[i], byteArrayPool.allocate(128));
+    }
+    assertNotSame(arrays[0], byteArrayPool.allocate(128));
+    assertNotSame(largeArray, byteArrayPool.allocate(ByteArrayPool.MAX_POOLED_LENGTH + 1));
+  }
+}
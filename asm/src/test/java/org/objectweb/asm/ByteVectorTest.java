@@ -174,6 +174,33 @@ public class ByteVectorTest {
     assertArrayEquals(new byte[] {1, 2, 3}, toArray(byteVector));
   }
 
+  @Test
+  public void testPutByteArray_pooledNullArray() {
+    ByteArrayPool byteArrayPool = new ByteArrayPool();
+    new ByteVector(byteArrayPool).putByteArray(new byte[] {1, 2, 3, 4}, 0, 4);
+    byteArrayPool.releaseAll();
+    ByteVector byteVector = new ByteVector(byteArrayPool);
+
+    byteVector.putByte(5).putByteArray(null, 0, 3);
+
+    assertArrayEquals(new byte[] {5, 0, 0, 0}, toArray(byteVector));
+  }
+
+  @Test
+  public void testEnlarge_pooled() {
+    ByteArrayPool byteArrayPool = new ByteArrayPool();
+    ByteVector byteVector = new ByteVector(byteArrayPool);
+    byte[] byteArray = new byte[100];
+    for (int i = 0; i < byteArray.length; ++i) {
+      byteArray[i] = (byte) i;
+    }
+
+    byteVector.putByteArray(byteArray, 0, 50).putByteArray(byteArray, 50, 50);
+
+    assertArrayEquals(byteArray, toArray(byteVector));
+    assertEquals(128, byteVector.data.length);
+  }
+
   private static byte[] toArray(final ByteVector byteVector) {
     byte[] result = new byte[byteVector.length];
     System.arraycopy(byteVector.data, 0, result, 0, byteVector.length);
@@ -0,0 +1,151 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+/** Unit tests for {@link ClassFileHierarchy}. */
+public class ClassFileHierarchyTest {
+
+  @Test
+  public void testGetSuperClass() {
+    ClassFileHierarchy classHierarchy = new ClassFileHierarchy(null);
+
+    assertEquals("java/util/AbstractList", classHierarchy.getSuperClass("java/util/ArrayList"));
+    assertEquals("java/lang/Object", classHierarchy.getSuperClass("java/lang/Runnable"));
+    assertEquals(null, classHierarchy.getSuperClass("java/lang/Object"));
+  }
+
+  @Test
+  public void testGetInterfaces() {
+    ClassFileHierarchy classHierarchy = new ClassFileHierarchy(getClass().getClassLoader());
+
+    String[] interfaces = classHierarchy.getInterfaces("java/util/List");
+    interfaces[0] = null;
+
+    assertArrayEquals(
+        new String[] {"java/util/Collection"}, classHierarchy.getInterfaces("java/util/List"));
+  }
+
+  @Test
+  public void testIsInterface() {
+    ClassFileHierarchy classHierarchy = new ClassFileHierarchy(null);
+
+    assertTrue(classHierarchy.isInterface("java/util/List"));
+    assertFalse(classHierarchy.isInterface("java/util/ArrayList"));
+  }
+
+  @Test
+  public void testIsAssignableFrom() {
+    ClassFileHierarchy classHierarchy = new ClassFileHierarchy(null);
+
+    assertTrue(classHierarchy.isAssignableFrom("java/util/List", "java/util/List"));
+    assertTrue(classHierarchy.isAssignableFrom("java/lang/Object", "java/util/List"));
+    assertTrue(classHierarchy.isAssignableFrom("java/util/AbstractList", "java/util/ArrayList"));
+    assertTrue(classHierarchy.isAssignableFrom("java/lang/Iterable", "java/util/ArrayList"));
+    assertFalse(classHierarchy.isAssignableFrom("java/util/ArrayList", "java/util/AbstractList"));
+    assertFalse(classHierarchy.isAssignableFrom("java/util/ArrayList", "java/util/List"));
+    assertFalse(classHierarchy.isAssignableFrom("java/util/Map", "java/util/ArrayList"));
+  }
+
+  @Test
+  public void testGetCommonSuperClass() {
+    ClassFileHierarchy classHierarchy = new ClassFileHierarchy(null, 1);
+
+    assertEquals(
+        "java/lang/Object",
+        classHierarchy.getCommonSuperClass("java/lang/Object", "java/lang/Integer"));
+    assertEquals(
+        "java/lang/Object",
+        classHierarchy.getCommonSuperClass("java/lang/Integer", "java/lang/Object"));
+    assertEquals(
+        "java/lang/Object",
+        classHierarchy.getCommonSuperClass("java/lang/Integer", "java/lang/Runnable"));
+    assertEquals(
+        "java/lang/Object",
+        classHierarchy.getCommonSuperClass("java/lang/Runnable", "java/lang/Integer"));
+    assertEquals(
+        "java/util/List",
+        classHierarchy.getCommonSuperClass("java/util/List", "java/util/ArrayList"));
+    assertEquals(
+        "java/util/AbstractList",
+        classHierarchy.getCommonSuperClass("java/util/ArrayList", "java/util/LinkedList"));
+    assertEquals(
+        "java/lang/Throwable",
+        classHierarchy.getCommonSuperClass(
+            "java/lang/IndexOutOfBoundsException", "java/lang/AssertionError"));
+  }
+
+  @Test
+  public void testGetCommonSuperClass_cached() {
+    AtomicInteger readCount = new AtomicInteger();
+    ClassFileHierarchy classHierarchy =
+        new ClassFileHierarchy(null) {
+          @Override
+          protected ClassReader getClassReader(final String type) throws IOException {
+            readCount.incrementAndGet();
+            return super.getClassReader(type);
+          }
+        };
+
+    String commonSuperClass1 =
+        classHierarchy.getCommonSuperClass("java/util/ArrayList", "java/util/LinkedList");
+    int firstReadCount = readCount.get();
+    String commonSuperClass2 =
+        classHierarchy.getCommonSuperClass("java/util/ArrayList", "java/util/LinkedList");
+    classHierarchy.getCommonSuperClass("java/util/ArrayList", "java/util/Vector");
+
+    assertSame(commonSuperClass1, commonSuperClass2);
+    assertEquals(firstReadCount + 1, readCount.get());
+  }
+
+  @Test
+  public void testGetCommonSuperClass_typeNotPresent() {
+    ClassFileHierarchy classHierarchy = new ClassFileHierarchy(null);
+
+    Executable getCommonSuperClass1 =
+        () -> classHierarchy.getCommonSuperClass("-", "java/lang/Object");
+    Executable getCommonSuperClass2 =
+        () -> classHierarchy.getCommonSuperClass("java/lang/Number", "-");
+
+    Exception exception = assertThrows(TypeNotPresentException.class, getCommonSuperClass1);
+    assertEquals("Type - not present", exception.getMessage());
+    exception = assertThrows(TypeNotPresentException.class, getCommonSuperClass2);
+    assertEquals("Type - not present", exception.getMessage());
+  }
+}
@@ -0,0 +1,133 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.objectweb.asm.test.AsmTest;
+
+/** Unit tests for {@link ClassHeaderScanner}. */
+public class ClassHeaderScannerTest extends AsmTest {
+
+  @Test
+  public void testScan_precompiledClasses() {
+    ClassHeaderScanner classHeaderScanner = new ClassHeaderScanner();
+
+    for (PrecompiledClass precompiledClass : PrecompiledClass.values()) {
+      byte[] classFile = precompiledClass.getBytes();
+      ClassReader classReader = new ClassReader(classFile);
+      HeaderCollector headerCollector = new HeaderCollector();
+      classReader.accept(headerCollector, ClassReader.SKIP_CODE);
+
+      classHeaderScanner.scan(classFile);
+
+      assertEquals(headerCollector.version, classHeaderScanner.getVersion());
+      assertEquals(classReader.getAccess(), classHeaderScanner.getAccess());
+      assertEquals(classReader.getClassName(), classHeaderScanner.getClassName());
+      assertEquals(classReader.getSuperName(), classHeaderScanner.getSuperName());
+      assertArrayEquals(classReader.getInterfaces(), classHeaderScanner.getInterfaces());
+      assertEquals(
+          headerCollector.visibleAnnotations,
+          Arrays.asList(classHeaderScanner.getAnnotationDescriptors(/* visible = */ true)));
+      assertEquals(
+          headerCollector.invisibleAnnotations,
+          Arrays.asList(classHeaderScanner.getAnnotationDescriptors(/* visible = */ false)));
+    }
+  }
+
+  @Test
+  public void testScan_withOffset() {
+    byte[] classFile = PrecompiledClass.JDK8_ALL_STRUCTURES.getBytes();
+    byte[] classFileWithOffset = new byte[classFile.length + 10];
+    System.arraycopy(classFile, 0, classFileWithOffset, 10, classFile.length);
+    ClassHeaderScanner classHeaderScanner = new ClassHeaderScanner();
+
+    classHeaderScanner.scan(classFileWithOffset, 10);
+
+    assertEquals(Opcodes.V1_8, classHeaderScanner.getVersion());
+    assertEquals("jdk8/AllStructures", classHeaderScanner.getClassName());
+    assertEquals("java/util/HashMap", classHeaderScanner.getSuperName());
+  }
+
+  @Test
+  public void testScan_invalidVersion() {
+    byte[] classFile = PrecompiledClass.JDK3_ALL_INSTRUCTIONS.getBytes();
+    classFile[7] = (byte) (Opcodes.V17 + 1);
+
+    Executable scan = () -> new ClassHeaderScanner().scan(classFile);
+
+    Exception exception = assertThrows(IllegalArgumentException.class, scan);
+    assertEquals("Unsupported class file major version 62", exception.getMessage());
+  }
+
+  @Test
+  public void testScan_invalidConstantPoolTag() {
+    byte[] classFile = PrecompiledClass.JDK3_ALL_INSTRUCTIONS.getBytes();
+    classFile[10] = 0;
+
+    Executable scan = () -> new ClassHeaderScanner().scan(classFile);
+
+    assertThrows(IllegalArgumentException.class, scan);
+  }
+
+  /** A class visitor collecting the version and the annotations of a class. */
+  private static class HeaderCollector extends ClassVisitor {
+
+    int version;
+    final List<String> visibleAnnotations = new ArrayList<>();
+    final List<String> invisibleAnnotations = new ArrayList<>();
+
+    HeaderCollector() {
+      super(/* latest */ Opcodes.ASM10_EXPERIMENTAL);
+    }
+
+    @Override
+    public void visit(
+        final int version,
+        final int access,
+        final String name,
+        final String signature,
+        final String superName,
+        final String[] interfaces) {
+      this.version = version;
+    }
+
+    @Override
+    public AnnotationVisitor visitAnnotation(final String descriptor, final boolean visible) {
+      (visible ? visibleAnnotations : invisibleAnnotations).add(descriptor);
+      return null;
+    }
+  }
+}
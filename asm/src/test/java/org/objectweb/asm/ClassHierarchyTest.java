@@ -0,0 +1,86 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for {@link ClassHierarchy}. */
+public class ClassHierarchyTest {
+
+  private static final ClassHierarchy CLASS_HIERARCHY = new DelegatingClassHierarchy();
+
+  @Test
+  public void testIsAssignableFrom() {
+    assertTrue(CLASS_HIERARCHY.isAssignableFrom("java/util/List", "java/util/List"));
+    assertTrue(CLASS_HIERARCHY.isAssignableFrom("java/lang/Object", "java/util/List"));
+    assertTrue(CLASS_HIERARCHY.isAssignableFrom("java/util/AbstractList", "java/util/ArrayList"));
+    assertTrue(CLASS_HIERARCHY.isAssignableFrom("java/util/Collection", "java/util/ArrayList"));
+    assertFalse(CLASS_HIERARCHY.isAssignableFrom("java/util/ArrayList", "java/util/List"));
+    assertFalse(CLASS_HIERARCHY.isAssignableFrom("java/util/Map", "java/util/ArrayList"));
+  }
+
+  @Test
+  public void testGetCommonSuperClass() {
+    assertEquals(
+        "java/util/AbstractList",
+        CLASS_HIERARCHY.getCommonSuperClass("java/util/ArrayList", "java/util/LinkedList"));
+    assertEquals(
+        "java/util/List",
+        CLASS_HIERARCHY.getCommonSuperClass("java/util/ArrayList", "java/util/List"));
+    assertEquals(
+        "java/lang/Object", CLASS_HIERARCHY.getCommonSuperClass("java/util/List", "java/util/Map"));
+    assertEquals(
+        "java/lang/Object",
+        CLASS_HIERARCHY.getCommonSuperClass("java/util/ArrayList", "java/util/Map"));
+  }
+
+  /** A ClassHierarchy which only implements the abstract methods of ClassHierarchy. */
+  private static class DelegatingClassHierarchy extends ClassHierarchy {
+
+    private final ClassHierarchy delegate = new ClassFileHierarchy(null);
+
+    @Override
+    public String getSuperClass(final String type) {
+      return delegate.getSuperClass(type);
+    }
+
+    @Override
+    public String[] getInterfaces(final String type) {
+      return delegate.getInterfaces(type);
+    }
+
+    @Override
+    public boolean isInterface(final String type) {
+      return delegate.isInterface(type);
+    }
+  }
+}
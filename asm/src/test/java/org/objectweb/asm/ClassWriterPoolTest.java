@@ -0,0 +1,159 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.test.AsmTest.PrecompiledClass;
+
+/** Unit tests for {@link ClassWriterPool}. */
+public class ClassWriterPoolTest {
+
+  @Test
+  public void testAcquire_reusesReleasedWriter() {
+    ClassWriterPool classWriterPool = new ClassWriterPool();
+    ClassWriter classWriter = classWriterPool.acquire(null, 0);
+    classWriterPool.release(classWriter);
+
+    ClassWriter reusedClassWriter = classWriterPool.acquire(null, 0);
+    ClassWriter otherClassWriter = classWriterPool.acquire(null, 0);
+
+    assertSame(classWriter, reusedClassWriter);
+    assertNotSame(classWriter, otherClassWriter);
+  }
+
+  @Test
+  public void testAcquire_producesSameResultAsNewWriter() {
+    ClassWriterPool classWriterPool = new ClassWriterPool(new ClassFileHierarchy(null));
+
+    for (PrecompiledClass precompiledClass : PrecompiledClass.values()) {
+      ClassReader classReader = new ClassReader(precompiledClass.getBytes());
+      ClassWriter expectedClassWriter = new ClassWriter(classReader, ClassWriter.COMPUTE_MAXS);
+      classReader.accept(expectedClassWriter, 0);
+      ClassWriter classWriter = classWriterPool.acquire(classReader, ClassWriter.COMPUTE_MAXS);
+      classReader.accept(classWriter, 0);
+
+      assertArrayEquals(expectedClassWriter.toByteArray(), classWriter.toByteArray());
+      classWriterPool.release(classWriter);
+    }
+  }
+
+  @Test
+  public void testAcquire_reusesByteArrays() {
+    ClassWriterPool classWriterPool = new ClassWriterPool();
+
+    // Build each class twice, so that the second build reuses the arrays (and their content) of
+    // the previous classes.
+    for (int i = 0; i < 2; ++i) {
+      for (PrecompiledClass precompiledClass : PrecompiledClass.values()) {
+        ClassReader classReader = new ClassReader(precompiledClass.getBytes());
+        ClassWriter expectedClassWriter = new ClassWriter(0);
+        classReader.accept(expectedClassWriter, 0);
+        ClassWriter classWriter = classWriterPool.acquire(null, 0);
+        classReader.accept(classWriter, 0);
+
+        assertArrayEquals(expectedClassWriter.toByteArray(), classWriter.toByteArray());
+        classWriterPool.release(classWriter);
+      }
+    }
+  }
+
+  @Test
+  public void testRelease_twice() {
+    ClassWriterPool classWriterPool = new ClassWriterPool();
+    ClassWriter classWriter = classWriterPool.acquire(null, 0);
+    classWriterPool.release(classWriter);
+    classWriterPool.release(classWriter);
+
+    ClassWriter classWriter1 = classWriterPool.acquire(null, 0);
+    ClassWriter classWriter2 = classWriterPool.acquire(null, 0);
+
+    assertSame(classWriter, classWriter1);
+    assertNotSame(classWriter1, classWriter2);
+  }
+
+  @Test
+  public void testRelease_tooManyWriters() {
+    ClassWriterPool classWriterPool = new ClassWriterPool();
+    ClassWriter[] classWriters = new ClassWriter[8];
+    for (int i = 0; i < classWriters.length; ++i) {
+      classWriters[i] = classWriterPool.acquire(null, 0);
+    }
+    for (ClassWriter classWriter : classWriters) {
+      classWriterPool.release(classWriter);
+    }
+
+    for (int i = 3; i >= 0; --i) {
+      assertSame(classWriters[i], classWriterPool.acquire(null, 0));
+    }
+    assertNotSame(classWriters[4], classWriterPool.acquire(null, 0));
+  }
+
+  @Test
+  public void testAcquire_perThread() throws InterruptedException, ExecutionException {
+    ClassWriterPool classWriterPool = new ClassWriterPool();
+    ClassWriter classWriter = classWriterPool.acquire(null, 0);
+    classWriterPool.release(classWriter);
+    ExecutorService executorService = Executors.newSingleThreadExecutor();
+
+    try {
+      ClassWriter otherThreadClassWriter =
+          executorService.submit(() -> classWriterPool.acquire(null, 0)).get();
+
+      assertNotSame(classWriter, otherThreadClassWriter);
+    } finally {
+      executorService.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testNewClassWriter() {
+    AtomicInteger newClassWriterCount = new AtomicInteger();
+    ClassWriterPool classWriterPool =
+        new ClassWriterPool() {
+          @Override
+          protected ClassWriter newClassWriter(final ClassReader classReader, final int flags) {
+            newClassWriterCount.incrementAndGet();
+            return super.newClassWriter(classReader, flags);
+          }
+        };
+
+    classWriterPool.release(classWriterPool.acquire(null, 0));
+    classWriterPool.release(classWriterPool.acquire(null, 0));
+
+    assertEquals(1, newClassWriterCount.get());
+  }
+}
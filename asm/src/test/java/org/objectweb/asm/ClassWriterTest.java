@@ -28,6 +28,7 @@
 package org.objectweb.asm;
 
 import static java.util.stream.Collectors.toSet;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -36,10 +37,14 @@ import static org.junit.jupiter.api.Assertions.fail;
 import static org.junit.jupiter.api.Assumptions.assumeFalse;
 import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
@@ -110,11 +115,13 @@ public class ClassWriterTest extends AsmTest {
                 "firstRecordComponent",
                 "lastRecordComponent",
                 "firstAttribute",
-                "compute"));
+                "compute",
+                "compactConstantPool",
+                "classHierarchy"));
     // IMPORTANT: if this fails, update the string list AND update the logic that resets the
     // ClassWriter fields in ClassWriter.toByteArray(), if needed (this logic is used to do a
     // ClassReader->ClassWriter round trip to remove the ASM specific instructions due to large
-    // forward jumps).
+    // forward jumps), AND update ClassWriter.reset().
     assertEquals(expectedFields, actualFields);
   }
 
@@ -485,6 +492,20 @@ public class ClassWriterTest extends AsmTest {
     assertEquals("Type - not present", exception.getMessage());
   }
 
+  @Test
+  public void testGetCommonSuperClass_classHierarchy() {
+    ClassWriter classWriter = new ClassWriter(null, 0, new ClassFileHierarchy(null));
+
+    assertEquals(
+        "java/util/AbstractList",
+        classWriter.getCommonSuperClass("java/util/ArrayList", "java/util/LinkedList"));
+    Exception exception =
+        assertThrows(
+            TypeNotPresentException.class,
+            () -> classWriter.getCommonSuperClass("-", "java/lang/Object"));
+    assertEquals("Type - not present", exception.getMessage());
+  }
+
   /** Tests that a ClassReader -> ClassWriter transform leaves classes unchanged. */
   @ParameterizedTest
   @MethodSource(ALL_CLASSES_AND_ALL_APIS)
@@ -592,6 +613,59 @@ public class ClassWriterTest extends AsmTest {
     }
   }
 
+  /**
+   * Tests that a ClassWriter reset after being used to write another class produces the same result
+   * as a new ClassWriter, with and without a ClassReader to copy the constant pool from.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testReadAndWrite_reset(
+      final PrecompiledClass classParameter, final Api apiParameter) {
+    byte[] classFile = classParameter.getBytes();
+    ClassReader classReader = new ClassReader(classFile);
+    ClassReader otherClassReader =
+        new ClassReader(PrecompiledClass.JDK11_ALL_INSTRUCTIONS.getBytes());
+    ClassWriter classWriter = new ClassWriter(0);
+    ClassWriter classWriterWithReader = new ClassWriter(classReader, 0);
+    ClassWriter resetClassWriter = new ClassWriter(otherClassReader, ClassWriter.COMPUTE_MAXS);
+    otherClassReader.accept(resetClassWriter, attributes(), 0);
+    resetClassWriter.toByteArray();
+
+    classReader.accept(classWriter, attributes(), 0);
+    classReader.accept(classWriterWithReader, attributes(), 0);
+    resetClassWriter.reset(null, 0);
+    classReader.accept(resetClassWriter, attributes(), 0);
+    byte[] resetClassFile = resetClassWriter.toByteArray();
+    resetClassWriter.reset(classReader, 0);
+    classReader.accept(resetClassWriter, attributes(), 0);
+    byte[] resetClassFileWithReader = resetClassWriter.toByteArray();
+
+    assertArrayEquals(classWriter.toByteArray(), resetClassFile);
+    assertArrayEquals(classWriterWithReader.toByteArray(), resetClassFileWithReader);
+  }
+
+  /**
+   * Tests that a ClassWriter reset with the COMPUTE_FRAMES option produces the same result as a new
+   * ClassWriter with this option.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testReadAndWrite_resetComputeFrames(
+      final PrecompiledClass classParameter, final Api apiParameter) {
+    assumeFalse(hasJsrOrRetInstructions(classParameter));
+    byte[] classFile = classParameter.getBytes();
+    ClassReader classReader = new ClassReader(classFile);
+    ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+    ClassWriter resetClassWriter = new ClassWriter(0);
+    new ClassReader(PrecompiledClass.JDK8_ALL_FRAMES.getBytes()).accept(resetClassWriter, 0);
+
+    classReader.accept(classWriter, attributes(), 0);
+    resetClassWriter.reset(null, ClassWriter.COMPUTE_FRAMES);
+    classReader.accept(resetClassWriter, attributes(), 0);
+
+    assertArrayEquals(classWriter.toByteArray(), resetClassWriter.toByteArray());
+  }
+
   /**
    * Tests that classes going through a ClassReader -> ClassWriter transform with the COMPUTE_FRAMES
    * option can be loaded and pass bytecode verification.
@@ -622,6 +696,29 @@ public class ClassWriterTest extends AsmTest {
     }
   }
 
+  /**
+   * Tests that a ClassReader -> ClassWriter transform with the COMPUTE_FRAMES option gives the same
+   * result with a {@link ClassFileHierarchy} as with the default class loading implementation.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testReadAndWrite_computeFramesWithClassHierarchy(
+      final PrecompiledClass classParameter, final Api apiParameter) {
+    assumeFalse(hasJsrOrRetInstructions(classParameter));
+    byte[] classFile = classParameter.getBytes();
+    ClassReader classReader = new ClassReader(classFile);
+    ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+    ClassWriter classWriterWithHierarchy =
+        new ClassWriter(null, ClassWriter.COMPUTE_FRAMES, new ClassFileHierarchy(null));
+
+    classReader.accept(classWriter, attributes(), 0);
+    classReader.accept(classWriterWithHierarchy, attributes(), 0);
+
+    assertEquals(
+        new ClassFile(classWriter.toByteArray()),
+        new ClassFile(classWriterWithHierarchy.toByteArray()));
+  }
+
   /**
    * Tests that classes going through a ClassReader -> ClassWriter transform with the COMPUTE_FRAMES
    * option can be loaded and pass bytecode verification.
@@ -739,6 +836,340 @@ public class ClassWriterTest extends AsmTest {
         new ClassFile(transformedClassWithoutCode.toByteArray()));
   }
 
+  /**
+   * Tests that a ClassReader -> ClassWriter transform with the EXPAND_FRAMES and
+   * COMPUTE_MISSING_FRAMES options leaves classes unchanged.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_ALL_APIS)
+  public void testReadAndWrite_computeMissingFrames(
+      final PrecompiledClass classParameter, final Api apiParameter) {
+    byte[] classFile = classParameter.getBytes();
+    ClassReader classReader = new ClassReader(classFile);
+    ClassWriter classWriter =
+        new ClassWriterWithoutGetCommonSuperClass(ClassWriter.COMPUTE_MISSING_FRAMES);
+
+    classReader.accept(classWriter, attributes(), ClassReader.EXPAND_FRAMES);
+
+    assertEquals(new ClassFile(classFile), new ClassFile(classWriter.toByteArray()));
+  }
+
+  /**
+   * Tests that classes with inserted forward jumps going through a ClassWriter with the
+   * COMPUTE_MISSING_FRAMES option can be loaded and pass bytecode verification, without computing
+   * the frames from scratch (i.e. without calling {@link ClassWriter#getCommonSuperClass}).
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_ALL_APIS)
+  public void testReadAndWrite_computeMissingFrames_insertedForwardJump(
+      final PrecompiledClass classParameter, final Api apiParameter) {
+    assumeFalse(classParameter.isMoreRecentThan(apiParameter));
+    byte[] classFile = classParameter.getBytes();
+    ClassReader classReader = new ClassReader(classFile);
+    ClassWriter classWriter =
+        new ClassWriterWithoutGetCommonSuperClass(ClassWriter.COMPUTE_MISSING_FRAMES);
+    ClassVisitor classVisitor = new JumpInserter(apiParameter.value(), classWriter, false);
+
+    classReader.accept(classVisitor, attributes(), ClassReader.EXPAND_FRAMES);
+    byte[] newClassFile = classWriter.toByteArray();
+
+    Executable newInstance = () -> new ClassFile(newClassFile).newInstance();
+    if (classParameter.isNotCompatibleWithCurrentJdk()) {
+      assertThrows(UnsupportedClassVersionError.class, newInstance);
+    } else {
+      assertDoesNotThrow(newInstance);
+    }
+  }
+
+  /**
+   * Tests that classes with inserted backward jumps going through a ClassWriter with the
+   * COMPUTE_MISSING_FRAMES option have their frames computed from scratch, as with the
+   * COMPUTE_FRAMES option.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testReadAndWrite_computeMissingFrames_insertedBackwardJump(
+      final PrecompiledClass classParameter, final Api apiParameter) {
+    // Classes before JDK8 don't have frames, and COMPUTE_MISSING_FRAMES is equivalent to
+    // COMPUTE_MAXS for classes before JDK6.
+    assumeTrue(classParameter.isMoreRecentThan(Api.ASM4));
+    byte[] classFile = classParameter.getBytes();
+    ClassReader classReader = new ClassReader(classFile);
+    ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MISSING_FRAMES);
+    ClassWriter classWriterWithComputeFrames = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+
+    classReader.accept(
+        new JumpInserter(apiParameter.value(), classWriter, true),
+        attributes(),
+        ClassReader.EXPAND_FRAMES);
+    classReader.accept(
+        new JumpInserter(apiParameter.value(), classWriterWithComputeFrames, true),
+        attributes(),
+        ClassReader.EXPAND_FRAMES);
+
+    assertEquals(
+        new ClassFile(classWriterWithComputeFrames.toByteArray()),
+        new ClassFile(classWriter.toByteArray()));
+  }
+
+  @Test
+  public void testVisitFrame_computeMissingFrames_compressedFrame() {
+    ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MISSING_FRAMES);
+    classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "C", null, "java/lang/Object", null);
+    MethodVisitor methodVisitor =
+        classWriter.visitMethod(Opcodes.ACC_STATIC, "m", "()V", null, null);
+    methodVisitor.visitCode();
+
+    Executable visitFrame = () -> methodVisitor.visitFrame(Opcodes.F_SAME, 0, null, 0, null);
+
+    Exception exception = assertThrows(IllegalArgumentException.class, visitFrame);
+    assertEquals(
+        "COMPUTE_MISSING_FRAMES requires expanded frames (see ClassReader.EXPAND_FRAMES).",
+        exception.getMessage());
+  }
+
+  @Test
+  public void testToByteArray_computeMissingFrames_mergedLocals() {
+    ClassWriter classWriter =
+        new ClassWriterWithoutGetCommonSuperClass(ClassWriter.COMPUTE_MISSING_FRAMES);
+    classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "C", null, "java/lang/Object", null);
+    MethodVisitor methodVisitor =
+        classWriter.visitMethod(Opcodes.ACC_STATIC, "m", "(I)I", null, null);
+    methodVisitor.visitCode();
+    Label label = new Label();
+    methodVisitor.visitInsn(Opcodes.ICONST_0);
+    methodVisitor.visitVarInsn(Opcodes.ISTORE, 1);
+    methodVisitor.visitVarInsn(Opcodes.ILOAD, 0);
+    methodVisitor.visitJumpInsn(Opcodes.IFEQ, label);
+    methodVisitor.visitInsn(Opcodes.FCONST_0);
+    methodVisitor.visitVarInsn(Opcodes.FSTORE, 1);
+    methodVisitor.visitLabel(label);
+    methodVisitor.visitVarInsn(Opcodes.ILOAD, 0);
+    methodVisitor.visitInsn(Opcodes.IRETURN);
+    methodVisitor.visitMaxs(0, 0);
+    methodVisitor.visitEnd();
+    MethodVisitor constructor =
+        classWriter.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+    constructor.visitCode();
+    constructor.visitVarInsn(Opcodes.ALOAD, 0);
+    constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+    constructor.visitInsn(Opcodes.RETURN);
+    constructor.visitMaxs(0, 0);
+    constructor.visitEnd();
+    classWriter.visitEnd();
+
+    byte[] classFile = classWriter.toByteArray();
+
+    String dump = new ClassFile(classFile).toString();
+    assertTrue(dump.contains("max_stack: 1"));
+    assertTrue(dump.contains("max_locals: 2"));
+    assertTrue(dump.contains("StackMapTable"));
+    assertDoesNotThrow(() -> new ClassFile(classFile).newInstance());
+  }
+
+  @Test
+  public void testToByteArray_computeMissingFrames_mergedReferenceLocals() {
+    byte[] classFile =
+        newMergedReferenceLocalsClass(
+            new ClassWriter(ClassWriter.COMPUTE_MISSING_FRAMES), "java/util/ArrayList");
+
+    assertDoesNotThrow(() -> new ClassFile(classFile).newInstance());
+    // The merged type can't be computed without the type hierarchy, so all frames are recomputed.
+    byte[] expectedClassFile =
+        newMergedReferenceLocalsClass(
+            new ClassWriter(ClassWriter.COMPUTE_FRAMES), "java/util/ArrayList");
+    assertEquals(new ClassFile(expectedClassFile), new ClassFile(classFile));
+  }
+
+  @Test
+  public void testToByteArray_computeMissingFrames_mergedNullAndReferenceLocals() {
+    byte[] classFile =
+        newMergedReferenceLocalsClass(
+            new ClassWriterWithoutGetCommonSuperClass(ClassWriter.COMPUTE_MISSING_FRAMES), null);
+
+    assertDoesNotThrow(() -> new ClassFile(classFile).newInstance());
+    assertTrue(new ClassFile(classFile).toString().contains("StackMapTable"));
+  }
+
+  /**
+   * Returns a class with a method storing a String or an instance of the given class in a local
+   * variable, depending on its argument, and returning this local variable after the join point.
+   *
+   * @param classWriter the class writer to use to generate the class.
+   * @param otherClass the internal name of a class with a public no-arg constructor, or {@literal
+   *     null} to store null in the local variable instead.
+   * @return the generated class.
+   */
+  private static byte[] newMergedReferenceLocalsClass(
+      final ClassWriter classWriter, final String otherClass) {
+    classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "C", null, "java/lang/Object", null);
+    MethodVisitor constructor =
+        classWriter.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+    constructor.visitCode();
+    constructor.visitVarInsn(Opcodes.ALOAD, 0);
+    constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+    constructor.visitInsn(Opcodes.RETURN);
+    constructor.visitMaxs(1, 1);
+    constructor.visitEnd();
+    MethodVisitor methodVisitor =
+        classWriter.visitMethod(Opcodes.ACC_STATIC, "m", "(I)Ljava/lang/Object;", null, null);
+    methodVisitor.visitCode();
+    Label label = new Label();
+    methodVisitor.visitLdcInsn("a");
+    methodVisitor.visitVarInsn(Opcodes.ASTORE, 1);
+    methodVisitor.visitVarInsn(Opcodes.ILOAD, 0);
+    methodVisitor.visitJumpInsn(Opcodes.IFEQ, label);
+    if (otherClass == null) {
+      methodVisitor.visitInsn(Opcodes.ACONST_NULL);
+    } else {
+      methodVisitor.visitTypeInsn(Opcodes.NEW, otherClass);
+      methodVisitor.visitInsn(Opcodes.DUP);
+      methodVisitor.visitMethodInsn(Opcodes.INVOKESPECIAL, otherClass, "<init>", "()V", false);
+    }
+    methodVisitor.visitVarInsn(Opcodes.ASTORE, 1);
+    methodVisitor.visitLabel(label);
+    methodVisitor.visitVarInsn(Opcodes.ALOAD, 1);
+    methodVisitor.visitInsn(Opcodes.ARETURN);
+    methodVisitor.visitMaxs(2, 2);
+    methodVisitor.visitEnd();
+    classWriter.visitEnd();
+    return classWriter.toByteArray();
+  }
+
+  @ParameterizedTest
+  @ValueSource(booleans = {false, true})
+  public void testToByteArray_computeMissingFrames_switchAndExceptionHandler(
+      final boolean withExceptionHandler) {
+    byte[] classFile =
+        newSwitchClass(
+            new ClassWriterWithoutGetCommonSuperClass(ClassWriter.COMPUTE_MISSING_FRAMES),
+            withExceptionHandler);
+
+    assertDoesNotThrow(() -> new ClassFile(classFile).newInstance());
+    if (withExceptionHandler) {
+      // The frame of the exception handler can't be computed, so all frames are recomputed.
+      byte[] expectedClassFile =
+          newSwitchClass(new ClassWriter(ClassWriter.COMPUTE_FRAMES), withExceptionHandler);
+      assertEquals(new ClassFile(expectedClassFile), new ClassFile(classFile));
+    }
+  }
+
+  private static byte[] newSwitchClass(
+      final ClassWriter classWriter, final boolean withExceptionHandler) {
+    classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "C", null, "java/lang/Object", null);
+    MethodVisitor constructor =
+        classWriter.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+    constructor.visitCode();
+    constructor.visitVarInsn(Opcodes.ALOAD, 0);
+    constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+    constructor.visitInsn(Opcodes.RETURN);
+    constructor.visitMaxs(1, 1);
+    constructor.visitEnd();
+    MethodVisitor methodVisitor =
+        classWriter.visitMethod(Opcodes.ACC_STATIC, "m", "(I)I", null, null);
+    methodVisitor.visitCode();
+    Label start = new Label();
+    Label label1 = new Label();
+    Label label2 = new Label();
+    Label end = new Label();
+    Label handler = new Label();
+    if (withExceptionHandler) {
+      methodVisitor.visitTryCatchBlock(start, end, handler, null);
+    }
+    methodVisitor.visitLabel(start);
+    methodVisitor.visitVarInsn(Opcodes.ILOAD, 0);
+    methodVisitor.visitTableSwitchInsn(0, 1, end, label1, label2);
+    methodVisitor.visitLabel(label1);
+    methodVisitor.visitInsn(Opcodes.ICONST_1);
+    methodVisitor.visitInsn(Opcodes.IRETURN);
+    methodVisitor.visitLabel(label2);
+    methodVisitor.visitInsn(Opcodes.ICONST_2);
+    methodVisitor.visitInsn(Opcodes.IRETURN);
+    methodVisitor.visitLabel(end);
+    methodVisitor.visitInsn(Opcodes.ICONST_0);
+    methodVisitor.visitInsn(Opcodes.IRETURN);
+    if (withExceptionHandler) {
+      methodVisitor.visitLabel(handler);
+      methodVisitor.visitInsn(Opcodes.POP);
+      methodVisitor.visitInsn(Opcodes.ICONST_M1);
+      methodVisitor.visitInsn(Opcodes.IRETURN);
+    }
+    methodVisitor.visitMaxs(0, 0);
+    methodVisitor.visitEnd();
+    classWriter.visitEnd();
+    return classWriter.toByteArray();
+  }
+
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testWriteTo_outputStream(
+      final PrecompiledClass classParameter, final Api apiParameter) throws IOException {
+    ClassWriter classWriter = new ClassWriter(0);
+    new ClassReader(classParameter.getBytes()).accept(classWriter, attributes(), 0);
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+    classWriter.writeTo(outputStream);
+
+    assertArrayEquals(classWriter.toByteArray(), outputStream.toByteArray());
+  }
+
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testWriteTo_channel(final PrecompiledClass classParameter, final Api apiParameter)
+      throws IOException {
+    ClassWriter classWriter = new ClassWriter(0);
+    new ClassReader(classParameter.getBytes()).accept(classWriter, attributes(), 0);
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+    classWriter.writeTo(Channels.newChannel(outputStream));
+
+    assertArrayEquals(classWriter.toByteArray(), outputStream.toByteArray());
+  }
+
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testWriteTo_byteBuffer(
+      final PrecompiledClass classParameter, final Api apiParameter) {
+    ClassWriter classWriter = new ClassWriter(0);
+    new ClassReader(classParameter.getBytes()).accept(classWriter, attributes(), 0);
+    byte[] classFile = classWriter.toByteArray();
+    ByteBuffer byteBuffer = ByteBuffer.allocate(classFile.length + 3);
+    byteBuffer.put((byte) 1);
+
+    classWriter.writeTo(byteBuffer);
+
+    assertEquals(classFile.length + 1, byteBuffer.position());
+    byte[] content = new byte[classFile.length];
+    byteBuffer.position(1);
+    byteBuffer.get(content);
+    assertArrayEquals(classFile, content);
+  }
+
+  @Test
+  public void testWriteTo_byteBufferOverflow() {
+    ClassWriter classWriter = newEmptyClassWriter();
+    ByteBuffer byteBuffer = ByteBuffer.allocate(8);
+
+    Executable writeTo = () -> classWriter.writeTo(byteBuffer);
+
+    assertThrows(BufferOverflowException.class, writeTo);
+  }
+
+  /** Tests that writeTo also works when ASM specific instructions must be replaced. */
+  @Test
+  public void testWriteTo_largeMethod() throws IOException {
+    ClassReader classReader = new ClassReader(PrecompiledClass.JDK8_ALL_FRAMES.getBytes());
+    ClassWriter classWriter = new ClassWriter(0);
+    classReader.accept(new WideForwardJumpInserter(Opcodes.ASM9, classWriter), 0);
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+    classWriter.writeTo(outputStream);
+
+    ClassWriter expectedClassWriter = new ClassWriter(0);
+    classReader.accept(new WideForwardJumpInserter(Opcodes.ASM9, expectedClassWriter), 0);
+    assertArrayEquals(expectedClassWriter.toByteArray(), outputStream.toByteArray());
+  }
+
   private static boolean hasJsrOrRetInstructions(final PrecompiledClass classParameter) {
     return classParameter == PrecompiledClass.JDK3_ALL_INSTRUCTIONS
         || classParameter == PrecompiledClass.JDK3_LARGE_METHOD;
@@ -943,6 +1374,47 @@ public class ClassWriterTest extends AsmTest {
     }
   }
 
+  /**
+   * Inserts a conditional jump at the beginning of each method, either a forward jump over a NOP
+   * instruction or a backward jump to the beginning of the method.
+   */
+  private static class JumpInserter extends ClassVisitor {
+
+    private final boolean backwardJump;
+
+    JumpInserter(final int api, final ClassVisitor classVisitor, final boolean backwardJump) {
+      super(api, classVisitor);
+      this.backwardJump = backwardJump;
+    }
+
+    @Override
+    public MethodVisitor visitMethod(
+        final int access,
+        final String name,
+        final String descriptor,
+        final String signature,
+        final String[] exceptions) {
+      return new MethodVisitor(
+          api, super.visitMethod(access, name, descriptor, signature, exceptions)) {
+        @Override
+        public void visitCode() {
+          super.visitCode();
+          Label label = new Label();
+          if (backwardJump) {
+            super.visitLabel(label);
+            super.visitInsn(Opcodes.ICONST_0);
+            super.visitJumpInsn(Opcodes.IFNE, label);
+          } else {
+            super.visitInsn(Opcodes.ICONST_0);
+            super.visitJumpInsn(Opcodes.IFEQ, label);
+            super.visitInsn(Opcodes.NOP);
+            super.visitLabel(label);
+          }
+        }
+      };
+    }
+  }
+
   /** Inserts NOP instructions after the first forward jump found, to get a wide jump. */
   private static class ForwardJumpNopInserter extends ClassVisitor {
 
@@ -1046,7 +1518,11 @@ public class ClassWriterTest extends AsmTest {
   private static class ClassWriterWithoutGetCommonSuperClass extends ClassWriter {
 
     public ClassWriterWithoutGetCommonSuperClass() {
-      super(0);
+      this(0);
+    }
+
+    public ClassWriterWithoutGetCommonSuperClass(final int flags) {
+      super(flags);
     }
 
     @Override
@@ -0,0 +1,257 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.objectweb.asm.test.AsmTest;
+import org.objectweb.asm.test.ClassFile;
+
+/**
+ * Unit tests for {@link ConstantPoolCompactor}, and for {@link ClassWriter#COMPACT_CONSTANT_POOL}.
+ */
+class ConstantPoolCompactorTest extends AsmTest {
+
+  private static final Handle NULL_CONSTANT =
+      new Handle(
+          Opcodes.H_INVOKESTATIC,
+          "java/lang/invoke/ConstantBootstraps",
+          "nullConstant",
+          "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/Class;)"
+              + "Ljava/lang/Object;",
+          false);
+
+  private static final Handle PRIMITIVE_CLASS =
+      new Handle(
+          Opcodes.H_INVOKESTATIC,
+          "java/lang/invoke/ConstantBootstraps",
+          "primitiveClass",
+          "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/Class;)"
+              + "Ljava/lang/Class;",
+          false);
+
+  @Test
+  void testCompact_noUnusedEntry() {
+    byte[] classFile = generateClass(new ClassWriter(0));
+
+    assertSame(classFile, ConstantPoolCompactor.compact(classFile));
+  }
+
+  @Test
+  void testCompact_removedMethod() throws ReflectiveOperationException {
+    ClassReader classReader = new ClassReader(generateClass(new ClassWriter(0)));
+    ClassWriter classWriter = new ClassWriter(classReader, ClassWriter.COMPACT_CONSTANT_POOL);
+
+    classReader.accept(new MethodRemover(classWriter, "nullConstant"), 0);
+    byte[] classFile = classWriter.toByteArray();
+
+    assertTrue(new ClassReader(classFile).getItemCount() < classReader.getItemCount());
+    assertFalse(contains(classFile, "nullConstant"));
+    assertTrue(contains(classFile, "primitiveClass"));
+    assertEquals(int.class, invoke(classFile, "primitiveClass"));
+    assertEquals(12345678, invoke(classFile, "intConstant"));
+  }
+
+  @Test
+  void testCompact_removedBootstrapMethods() throws ReflectiveOperationException {
+    ClassReader classReader = new ClassReader(generateClass(new ClassWriter(0)));
+    ClassWriter classWriter = new ClassWriter(classReader, ClassWriter.COMPACT_CONSTANT_POOL);
+
+    classReader.accept(
+        new MethodRemover(new MethodRemover(classWriter, "nullConstant"), "primitiveClass"), 0);
+    byte[] classFile = classWriter.toByteArray();
+
+    assertFalse(contains(classFile, Constants.BOOTSTRAP_METHODS));
+    assertEquals(12345678, invoke(classFile, "intConstant"));
+  }
+
+  @Test
+  void testCompact_unknownAttribute() {
+    ClassWriter classWriter = new ClassWriter(0);
+    classWriter.newConst("unused");
+    classWriter.visitAttribute(new Comment());
+    byte[] classFile = generateClass(classWriter);
+
+    assertSame(classFile, ConstantPoolCompactor.compact(classFile));
+  }
+
+  @Test
+  void testCompact_constantPoolTemplate() {
+    ClassWriter prototype = new ClassWriter(0);
+    prototype.newConst("unused");
+    ConstantPoolTemplate constantPoolTemplate = new ConstantPoolTemplate(prototype);
+
+    byte[] classFile = generateClass(new ClassWriter(0, constantPoolTemplate));
+    byte[] compactedClassFile =
+        generateClass(new ClassWriter(ClassWriter.COMPACT_CONSTANT_POOL, constantPoolTemplate));
+
+    assertTrue(contains(classFile, "unused"));
+    assertFalse(contains(compactedClassFile, "unused"));
+    assertEquals(new ClassFile(classFile), new ClassFile(compactedClassFile));
+  }
+
+  @Test
+  void testWriteTo_compactConstantPool() {
+    ClassReader classReader = new ClassReader(generateClass(new ClassWriter(0)));
+    ClassWriter classWriter = new ClassWriter(classReader, ClassWriter.COMPACT_CONSTANT_POOL);
+    classReader.accept(new MethodRemover(classWriter, "nullConstant"), 0);
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+    assertDoesNotThrow(() -> classWriter.writeTo(outputStream));
+
+    assertEquals(
+        new ClassFile(classWriter.toByteArray()), new ClassFile(outputStream.toByteArray()));
+  }
+
+  /**
+   * Tests that a ClassReader -&gt; ClassWriter transform with {@link
+   * ClassWriter#COMPACT_CONSTANT_POOL}, with methods copied as is, leaves classes unchanged.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  void testCompact_precompiledClass(final PrecompiledClass classParameter, final Api apiParameter) {
+    byte[] classFile = classParameter.getBytes();
+    ClassReader classReader = new ClassReader(classFile);
+    ClassWriter classWriter = new ClassWriter(classReader, ClassWriter.COMPACT_CONSTANT_POOL);
+
+    classReader.accept(new ClassVisitor(apiParameter.value(), classWriter) {}, attributes(), 0);
+    byte[] compactedClassFile = classWriter.toByteArray();
+
+    assertTrue(new ClassReader(compactedClassFile).getItemCount() <= classReader.getItemCount());
+    assertEquals(new ClassFile(classFile), new ClassFile(compactedClassFile));
+  }
+
+  /**
+   * Tests that a ClassWriter with {@link ClassWriter#COMPACT_CONSTANT_POOL}, initialized with
+   * unused constant pool entries, produces the same classes as without these entries.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  void testCompact_precompiledClassWithoutCopy(
+      final PrecompiledClass classParameter, final Api apiParameter) {
+    byte[] classFile = classParameter.getBytes();
+    ClassReader classReader = new ClassReader(classFile);
+    ClassWriter prototype = new ClassWriter(0);
+    prototype.newConst("unused");
+    prototype.newConst(Long.MAX_VALUE);
+    ClassWriter classWriter =
+        new ClassWriter(ClassWriter.COMPACT_CONSTANT_POOL, new ConstantPoolTemplate(prototype));
+
+    classReader.accept(classWriter, attributes(), 0);
+    byte[] compactedClassFile = classWriter.toByteArray();
+
+    assertEquals(new ClassFile(classFile), new ClassFile(compactedClassFile));
+  }
+
+  private static Attribute[] attributes() {
+    return new Attribute[] {new Comment(), new CodeComment()};
+  }
+
+  private static boolean contains(final byte[] classFile, final String utf8) {
+    return new String(classFile, StandardCharsets.ISO_8859_1).contains(utf8);
+  }
+
+  private static Object invoke(final byte[] classFile, final String methodName)
+      throws ReflectiveOperationException {
+    Object instance = new ClassFile(classFile).newInstance();
+    return instance.getClass().getMethod(methodName).invoke(null);
+  }
+
+  private static byte[] generateClass(final ClassWriter classWriter) {
+    classWriter.visit(Opcodes.V11, Opcodes.ACC_PUBLIC, "C", null, "java/lang/Object", null);
+    MethodVisitor methodVisitor =
+        classWriter.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+    methodVisitor.visitCode();
+    methodVisitor.visitVarInsn(Opcodes.ALOAD, 0);
+    methodVisitor.visitMethodInsn(
+        Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+    methodVisitor.visitInsn(Opcodes.RETURN);
+    methodVisitor.visitMaxs(1, 1);
+    methodVisitor.visitEnd();
+    generateLdcMethod(
+        classWriter,
+        "nullConstant",
+        new ConstantDynamic("constant", "Ljava/lang/Object;", NULL_CONSTANT));
+    generateLdcMethod(
+        classWriter,
+        "primitiveClass",
+        new ConstantDynamic("I", "Ljava/lang/Class;", PRIMITIVE_CLASS));
+    generateLdcMethod(classWriter, "intConstant", 12345678);
+    classWriter.visitEnd();
+    return classWriter.toByteArray();
+  }
+
+  private static void generateLdcMethod(
+      final ClassWriter classWriter, final String name, final Object constant) {
+    MethodVisitor methodVisitor =
+        classWriter.visitMethod(
+            Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, name, "()Ljava/lang/Object;", null, null);
+    methodVisitor.visitCode();
+    methodVisitor.visitLdcInsn(constant);
+    if (constant instanceof Integer) {
+      methodVisitor.visitMethodInsn(
+          Opcodes.INVOKESTATIC, "java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;", false);
+    }
+    methodVisitor.visitInsn(Opcodes.ARETURN);
+    methodVisitor.visitMaxs(1, 0);
+    methodVisitor.visitEnd();
+  }
+
+  /** A ClassVisitor removing a method. */
+  private static class MethodRemover extends ClassVisitor {
+
+    private final String methodName;
+
+    MethodRemover(final ClassVisitor classVisitor, final String methodName) {
+      super(Opcodes.ASM9, classVisitor);
+      this.methodName = methodName;
+    }
+
+    @Override
+    public MethodVisitor visitMethod(
+        final int access,
+        final String name,
+        final String descriptor,
+        final String signature,
+        final String[] exceptions) {
+      if (name.equals(methodName)) {
+        return null;
+      }
+      return super.visitMethod(access, name, descriptor, signature, exceptions);
+    }
+  }
+}
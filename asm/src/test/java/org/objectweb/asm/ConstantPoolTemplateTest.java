@@ -0,0 +1,181 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.objectweb.asm.test.AsmTest;
+import org.objectweb.asm.test.ClassFile;
+
+/** Unit tests for {@link ConstantPoolTemplate}. */
+class ConstantPoolTemplateTest extends AsmTest {
+
+  @Test
+  void testConstructor() {
+    ClassWriter classWriter = new ClassWriter(0);
+    classWriter.newClass("java/lang/Object");
+    classWriter.newConst(1L);
+
+    ConstantPoolTemplate constantPoolTemplate = new ConstantPoolTemplate(classWriter);
+    classWriter.newClass("java/lang/String");
+
+    assertEquals(5, constantPoolTemplate.getConstantPoolCount());
+    assertEquals(7, new ConstantPoolTemplate(classWriter).getConstantPoolCount());
+  }
+
+  @Test
+  void testNewClassWriter() {
+    ClassWriter prototype = new ClassWriter(0);
+    int objectIndex = prototype.newClass("java/lang/Object");
+    int methodIndex = prototype.newMethod("java/lang/Object", "<init>", "()V", false);
+    int longIndex = prototype.newConst(123L);
+    int invokeDynamicIndex =
+        prototype.newInvokeDynamic(
+            "name",
+            "()V",
+            new Handle(Opcodes.H_INVOKESTATIC, "Owner", "bsm", "()V", false),
+            "argument");
+    ConstantPoolTemplate constantPoolTemplate = new ConstantPoolTemplate(prototype);
+
+    ClassWriter classWriter = new ClassWriter(0, constantPoolTemplate);
+
+    assertEquals(objectIndex, classWriter.newClass("java/lang/Object"));
+    assertEquals(methodIndex, classWriter.newMethod("java/lang/Object", "<init>", "()V", false));
+    assertEquals(longIndex, classWriter.newConst(123L));
+    assertEquals(
+        invokeDynamicIndex,
+        classWriter.newInvokeDynamic(
+            "name",
+            "()V",
+            new Handle(Opcodes.H_INVOKESTATIC, "Owner", "bsm", "()V", false),
+            "argument"));
+    assertEquals(
+        constantPoolTemplate.getConstantPoolCount() + 1, classWriter.newClass("java/lang/String"));
+    assertEquals(
+        constantPoolTemplate.getConstantPoolCount() + 1,
+        new ClassWriter(0, constantPoolTemplate).newClass("java/lang/Integer"));
+  }
+
+  @Test
+  void testReset() {
+    ClassWriter prototype = new ClassWriter(0);
+    int objectIndex = prototype.newClass("java/lang/Object");
+    ConstantPoolTemplate constantPoolTemplate = new ConstantPoolTemplate(prototype);
+    ClassWriter classWriter = new ClassWriter(0, constantPoolTemplate);
+    classWriter.newClass("java/lang/String");
+
+    classWriter.reset(null, 0);
+
+    assertEquals(objectIndex, classWriter.newClass("java/lang/Object"));
+    assertEquals(
+        constantPoolTemplate.getConstantPoolCount() + 1, classWriter.newClass("java/lang/Integer"));
+  }
+
+  @Test
+  void testNewClassWriter_computeFrames() {
+    ClassWriter prototype = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+    generateClass(prototype, "C1");
+    prototype.toByteArray();
+    ConstantPoolTemplate constantPoolTemplate = new ConstantPoolTemplate(prototype);
+
+    ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES, constantPoolTemplate);
+    generateClass(classWriter, "C2");
+    byte[] classFile = classWriter.toByteArray();
+
+    assertEquals(
+        constantPoolTemplate.getConstantPoolCount() + 2, new ClassReader(classFile).getItemCount());
+    assertDoesNotThrow(() -> new ClassFile(classFile).newInstance());
+  }
+
+  /**
+   * Tests that a ClassWriter initialized with a template containing all the constant pool entries
+   * of a class does not add any new entry when this class is written with it.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  void testNewClassWriter_precompiledClass(
+      final PrecompiledClass classParameter, final Api apiParameter) {
+    ClassReader classReader = new ClassReader(classParameter.getBytes());
+    ConstantPoolTemplate constantPoolTemplate =
+        new ConstantPoolTemplate(new ClassWriter(classReader, 0));
+    ClassWriter classWriter = new ClassWriter(0, constantPoolTemplate);
+
+    classReader.accept(classWriter, attributes(), 0);
+    byte[] classFile = classWriter.toByteArray();
+
+    assertEquals(classReader.getItemCount(), new ClassReader(classFile).getItemCount());
+    if (classParameter.isNotCompatibleWithCurrentJdk()) {
+      assertThrows(
+          UnsupportedClassVersionError.class, () -> new ClassFile(classFile).newInstance());
+    } else {
+      assertDoesNotThrow(() -> new ClassFile(classFile).newInstance());
+    }
+  }
+
+  private static void generateClass(final ClassWriter classWriter, final String className) {
+    classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, className, null, "java/lang/Object", null);
+    MethodVisitor methodVisitor =
+        classWriter.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+    methodVisitor.visitCode();
+    methodVisitor.visitVarInsn(Opcodes.ALOAD, 0);
+    methodVisitor.visitMethodInsn(
+        Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+    methodVisitor.visitInsn(Opcodes.RETURN);
+    methodVisitor.visitMaxs(0, 0);
+    methodVisitor.visitEnd();
+    methodVisitor =
+        classWriter.visitMethod(
+            Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "m", "(Z)Ljava/lang/Object;", null, null);
+    methodVisitor.visitCode();
+    Label elseLabel = new Label();
+    Label endLabel = new Label();
+    methodVisitor.visitVarInsn(Opcodes.ILOAD, 0);
+    methodVisitor.visitJumpInsn(Opcodes.IFEQ, elseLabel);
+    methodVisitor.visitLdcInsn("string");
+    methodVisitor.visitJumpInsn(Opcodes.GOTO, endLabel);
+    methodVisitor.visitLabel(elseLabel);
+    methodVisitor.visitTypeInsn(Opcodes.NEW, "java/lang/Object");
+    methodVisitor.visitInsn(Opcodes.DUP);
+    methodVisitor.visitMethodInsn(
+        Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+    methodVisitor.visitLabel(endLabel);
+    methodVisitor.visitInsn(Opcodes.ARETURN);
+    methodVisitor.visitMaxs(0, 0);
+    methodVisitor.visitEnd();
+    classWriter.visitEnd();
+  }
+
+  private static Attribute[] attributes() {
+    return new Attribute[] {new Comment(), new CodeComment()};
+  }
+}
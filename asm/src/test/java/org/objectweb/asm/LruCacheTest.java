@@ -0,0 +1,92 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for {@link LruCache}. */
+public class LruCacheTest {
+
+  @Test
+  public void testPutIfAbsent() {
+    LruCache<String, String> cache = new LruCache<>(100);
+    String value1 = new String("value");
+    String value2 = new String("value");
+
+    String putValue1 = cache.putIfAbsent("key", value1);
+    String putValue2 = cache.putIfAbsent("key", value2);
+
+    assertSame(value1, putValue1);
+    assertSame(value1, putValue2);
+    assertSame(value1, cache.get("key"));
+    assertNull(cache.get("otherKey"));
+  }
+
+  @Test
+  public void testPutIfAbsent_evictLeastRecentlyUsed() {
+    LruCache<Integer, Integer> cache = new LruCache<>(2);
+
+    cache.putIfAbsent(1, 1);
+    cache.putIfAbsent(2, 2);
+    cache.get(1);
+    cache.putIfAbsent(3, 3);
+
+    assertEquals(2, cache.size());
+    assertEquals(1, cache.get(1));
+    assertNull(cache.get(2));
+    assertEquals(3, cache.get(3));
+  }
+
+  @Test
+  public void testPutIfAbsent_boundedSize() {
+    LruCache<Integer, Integer> cache = new LruCache<>(1000);
+
+    for (int i = 0; i < 10000; ++i) {
+      cache.putIfAbsent(i, i);
+    }
+
+    assertTrue(cache.size() <= 1000);
+    assertEquals(9999, cache.get(9999));
+  }
+
+  @Test
+  public void testClear() {
+    LruCache<String, String> cache = new LruCache<>(100);
+    cache.putIfAbsent("key", "value");
+
+    cache.clear();
+
+    assertEquals(0, cache.size());
+    assertNull(cache.get("key"));
+  }
+}
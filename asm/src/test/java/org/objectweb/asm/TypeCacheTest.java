@@ -0,0 +1,187 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.objectweb.asm.test.AsmTest;
+
+/** Unit tests for {@link TypeCache}. */
+public class TypeCacheTest extends AsmTest {
+
+  @Test
+  public void testConstructor_invalidCapacity() {
+    Executable constructor = () -> new TypeCache(1);
+
+    Exception exception = assertThrows(IllegalArgumentException.class, constructor);
+    assertEquals("Invalid capacity: 1", exception.getMessage());
+    assertThrows(IllegalArgumentException.class, () -> new TypeCache((1 << 30) + 1));
+  }
+
+  @Test
+  public void testGetCapacity() {
+    assertEquals(TypeCache.DEFAULT_CAPACITY, new TypeCache().getCapacity());
+    assertEquals(16, new TypeCache(16).getCapacity());
+    assertEquals(32, new TypeCache(17).getCapacity());
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"I", "J", "[[D", "Ljava/lang/Object;", "[Ljava/lang/String;", "()V"})
+  public void testGetType(final String descriptor) {
+    TypeCache typeCache = new TypeCache();
+
+    Type type = typeCache.getType(descriptor);
+
+    assertEquals(Type.getType(descriptor), type);
+    assertSame(type, typeCache.getType(new String(descriptor)));
+  }
+
+  @ParameterizedTest
+  @ValueSource(
+      strings = {
+        "()V",
+        "(IJ)D",
+        "([[ILjava/lang/Object;Z)Ljava/lang/String;",
+        "(Ljava/util/List;[J)[Ljava/lang/Object;"
+      })
+  public void testGetMethodInfo(final String methodDescriptor) {
+    TypeCache typeCache = new TypeCache();
+
+    Type[] argumentTypes = typeCache.getArgumentTypes(methodDescriptor);
+    Type returnType = typeCache.getReturnType(methodDescriptor);
+    int argumentsAndReturnSizes = typeCache.getArgumentsAndReturnSizes(methodDescriptor);
+
+    assertArrayEquals(Type.getArgumentTypes(methodDescriptor), argumentTypes);
+    assertEquals(Type.getReturnType(methodDescriptor), returnType);
+    assertEquals(Type.getArgumentsAndReturnSizes(methodDescriptor), argumentsAndReturnSizes);
+    assertSame(returnType, typeCache.getReturnType(methodDescriptor));
+  }
+
+  @Test
+  public void testGetArgumentTypes_copy() {
+    TypeCache typeCache = new TypeCache();
+    Type[] argumentTypes = typeCache.getArgumentTypes("(ILjava/lang/Object;)V");
+
+    argumentTypes[0] = null;
+
+    Type[] newArgumentTypes = typeCache.getArgumentTypes("(ILjava/lang/Object;)V");
+    assertNotSame(argumentTypes, newArgumentTypes);
+    assertEquals(Type.INT_TYPE, newArgumentTypes[0]);
+    assertSame(argumentTypes[1], newArgumentTypes[1]);
+  }
+
+  @Test
+  public void testGetMethodInfo_fieldDescriptor() {
+    TypeCache typeCache = new TypeCache();
+
+    assertThrows(StringIndexOutOfBoundsException.class, () -> typeCache.getArgumentTypes("LA;"));
+    assertThrows(StringIndexOutOfBoundsException.class, () -> typeCache.getReturnType("LA;"));
+    assertThrows(
+        StringIndexOutOfBoundsException.class, () -> typeCache.getArgumentsAndReturnSizes("LA;"));
+  }
+
+  @Test
+  public void testGetType_eviction() {
+    TypeCache typeCache = new TypeCache(2);
+
+    Type typeA = typeCache.getType("LA;");
+    Type typeB = typeCache.getType("LB;");
+    Type typeC = typeCache.getType("LC;");
+
+    assertSame(typeC, typeCache.getType("LC;"));
+    int cachedTypes = 0;
+    cachedTypes += typeA == typeCache.getType("LA;") ? 1 : 0;
+    cachedTypes += typeB == typeCache.getType("LB;") ? 1 : 0;
+    assertTrue(cachedTypes <= 1);
+  }
+
+  @Test
+  public void testClear() {
+    TypeCache typeCache = new TypeCache();
+    Type type = typeCache.getType("Ljava/lang/Object;");
+
+    typeCache.clear();
+
+    assertNotSame(type, typeCache.getType("Ljava/lang/Object;"));
+  }
+
+  @Test
+  public void testSetTypeCache() {
+    TypeCache typeCache = new TypeCache();
+    assertNull(Type.getTypeCache());
+    Type.setTypeCache(typeCache);
+    try {
+      assertSame(typeCache, Type.getTypeCache());
+      assertSame(Type.getType("LA;"), Type.getType("LA;"));
+      assertSame(Type.getMethodType("(LA;)LB;"), Type.getType("(LA;)LB;"));
+      assertSame(Type.getReturnType("(LA;)LB;"), Type.getReturnType("(LA;)LB;"));
+      assertSame(
+          Type.getArgumentTypes("(LA;)LB;")[0],
+          Type.getMethodType("(LA;)LB;").getArgumentTypes()[0]);
+      assertEquals(9, Type.getArgumentsAndReturnSizes("(LA;)LB;"));
+    } finally {
+      Type.setTypeCache(null);
+    }
+    assertNotSame(Type.getType("LA;"), Type.getType("LA;"));
+  }
+
+  /**
+   * Tests that a {@link TypeCache} does not change the maximum stack sizes computed by a
+   * ClassWriter.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testSetTypeCache_precompiledClass(
+      final PrecompiledClass classParameter, final Api apiParameter) {
+    byte[] classFile = classParameter.getBytes();
+    ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    new ClassReader(classFile).accept(classWriter, 0);
+    ClassWriter classWriterWithCache = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+
+    // Use a small cache to test evictions too.
+    Type.setTypeCache(new TypeCache(16));
+    try {
+      new ClassReader(classFile).accept(classWriterWithCache, 0);
+    } finally {
+      Type.setTypeCache(null);
+    }
+
+    assertArrayEquals(classWriter.toByteArray(), classWriterWithCache.toByteArray());
+  }
+}
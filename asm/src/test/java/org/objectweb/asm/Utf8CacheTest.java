@@ -0,0 +1,213 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.objectweb.asm.test.AsmTest;
+
+/** Unit tests for {@link Utf8Cache}. */
+public class Utf8CacheTest extends AsmTest {
+
+  @Test
+  public void testConstructor_invalidCapacity() {
+    Executable constructor = () -> new Utf8Cache(1);
+
+    Exception exception = assertThrows(IllegalArgumentException.class, constructor);
+    assertEquals("Invalid capacity: 1", exception.getMessage());
+    assertThrows(IllegalArgumentException.class, () -> new Utf8Cache((1 << 30) + 1));
+  }
+
+  @Test
+  public void testGetCapacity() {
+    assertEquals(Utf8Cache.DEFAULT_CAPACITY, new Utf8Cache().getCapacity());
+    assertEquals(16, new Utf8Cache(16).getCapacity());
+    assertEquals(32, new Utf8Cache(17).getCapacity());
+  }
+
+  @Test
+  public void testGet_sameInstance() {
+    Utf8Cache utf8Cache = new Utf8Cache();
+    byte[] utf8 = encode("java/lang/Object");
+    byte[] utf8WithOffset = new byte[utf8.length + 3];
+    System.arraycopy(utf8, 0, utf8WithOffset, 3, utf8.length);
+    char[] charBuffer = new char[utf8.length];
+
+    String value1 = utf8Cache.get(utf8, 2, utf8.length - 2, charBuffer);
+    String value2 = utf8Cache.get(utf8WithOffset, 5, utf8.length - 2, charBuffer);
+
+    assertEquals("java/lang/Object", value1);
+    assertSame(value1, value2);
+  }
+
+  @Test
+  public void testGet_multiByteCharacters() {
+    Utf8Cache utf8Cache = new Utf8Cache();
+    String[] values = {"", "\u0000", "caf\u00e9", "\u20ac10", "\u0800\u07ff\u0080\u007f", "caf"};
+    char[] charBuffer = new char[64];
+
+    for (String value : values) {
+      byte[] utf8 = encode(value);
+      assertEquals(value, utf8Cache.get(utf8, 2, utf8.length - 2, charBuffer));
+    }
+    for (String value : values) {
+      byte[] utf8 = encode(value);
+      assertEquals(value, utf8Cache.get(utf8, 2, utf8.length - 2, charBuffer));
+    }
+  }
+
+  @Test
+  public void testGet_eviction() {
+    Utf8Cache utf8Cache = new Utf8Cache(2);
+    char[] charBuffer = new char[8];
+    byte[] utf8A = encode("A");
+    byte[] utf8B = encode("B");
+    byte[] utf8C = encode("C");
+
+    String valueA = utf8Cache.get(utf8A, 2, 1, charBuffer);
+    String valueB = utf8Cache.get(utf8B, 2, 1, charBuffer);
+    String valueC = utf8Cache.get(utf8C, 2, 1, charBuffer);
+
+    assertSame(valueC, utf8Cache.get(utf8C, 2, 1, charBuffer));
+    int cachedValues = 0;
+    cachedValues += valueA == utf8Cache.get(utf8A, 2, 1, charBuffer) ? 1 : 0;
+    cachedValues += valueB == utf8Cache.get(utf8B, 2, 1, charBuffer) ? 1 : 0;
+    assertTrue(cachedValues <= 1);
+  }
+
+  @Test
+  public void testClear() {
+    Utf8Cache utf8Cache = new Utf8Cache();
+    byte[] utf8 = encode("java/lang/Object");
+    char[] charBuffer = new char[utf8.length];
+    String value = utf8Cache.get(utf8, 2, utf8.length - 2, charBuffer);
+
+    utf8Cache.clear();
+
+    assertNotSame(value, utf8Cache.get(utf8, 2, utf8.length - 2, charBuffer));
+  }
+
+  @Test
+  public void testSetUtf8Cache_sharedStrings() {
+    Utf8Cache utf8Cache = new Utf8Cache();
+    byte[] classFile = PrecompiledClass.JDK8_ALL_STRUCTURES.getBytes();
+    ClassReader classReader1 = new ClassReader(classFile);
+    ClassReader classReader2 = new ClassReader(classFile.clone());
+    classReader1.setUtf8Cache(utf8Cache);
+    classReader2.setUtf8Cache(utf8Cache);
+
+    assertSame(classReader1.getClassName(), classReader2.getClassName());
+    assertSame(classReader1.getSuperName(), classReader2.getSuperName());
+  }
+
+  /** Tests that a {@link Utf8Cache} does not change the content visited by a ClassReader. */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  public void testSetUtf8Cache_precompiledClass(
+      final PrecompiledClass classParameter, final Api apiParameter) {
+    byte[] classFile = classParameter.getBytes();
+    ClassWriter classWriter = new ClassWriter(0);
+    new ClassReader(classFile).accept(classWriter, 0);
+    // Use a small cache to test evictions too.
+    Utf8Cache utf8Cache = new Utf8Cache(16);
+    ClassReader classReader = new ClassReader(classFile);
+    classReader.setUtf8Cache(utf8Cache);
+    ClassWriter classWriterWithCache = new ClassWriter(0);
+
+    classReader.accept(classWriterWithCache, 0);
+
+    assertArrayEquals(classWriter.toByteArray(), classWriterWithCache.toByteArray());
+  }
+
+  @Test
+  public void testSetUtf8Cache_concurrentReaders() throws Exception {
+    final Utf8Cache utf8Cache = new Utf8Cache(64);
+    ExecutorService executorService = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Boolean>> futures = new ArrayList<>();
+      for (int i = 0; i < 8; ++i) {
+        futures.add(executorService.submit(new ReadAllClasses(utf8Cache)));
+      }
+      for (Future<Boolean> future : futures) {
+        assertEquals(Boolean.TRUE, future.get());
+      }
+    } finally {
+      executorService.shutdown();
+    }
+  }
+
+  private static byte[] encode(final String value) {
+    ByteVector byteVector = new ByteVector();
+    byteVector.putUTF8(value);
+    byte[] data = new byte[byteVector.length];
+    System.arraycopy(byteVector.data, 0, data, 0, byteVector.length);
+    return data;
+  }
+
+  private static class ReadAllClasses implements Callable<Boolean> {
+
+    private final Utf8Cache utf8Cache;
+
+    ReadAllClasses(final Utf8Cache utf8Cache) {
+      this.utf8Cache = utf8Cache;
+    }
+
+    @Override
+    public Boolean call() {
+      for (PrecompiledClass precompiledClass : PrecompiledClass.values()) {
+        byte[] classFile = precompiledClass.getBytes();
+        ClassWriter classWriter = new ClassWriter(0);
+        new ClassReader(classFile).accept(classWriter, 0);
+        ClassReader classReader = new ClassReader(classFile);
+        classReader.setUtf8Cache(utf8Cache);
+        ClassWriter classWriterWithCache = new ClassWriter(0);
+        classReader.accept(classWriterWithCache, 0);
+        if (!Arrays.equals(classWriter.toByteArray(), classWriterWithCache.toByteArray())) {
+          return Boolean.FALSE;
+        }
+      }
+      return Boolean.TRUE;
+    }
+  }
+}
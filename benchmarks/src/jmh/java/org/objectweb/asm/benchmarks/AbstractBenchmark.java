@@ -32,10 +32,26 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
+import java.net.URI;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.ProviderNotFoundException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.objectweb.asm.ClassFileHierarchy;
+import org.objectweb.asm.ClassHierarchy;
+import org.objectweb.asm.ClassReader;
 
 /**
  * A benchmark to benchmark different versions of ASM and possibly other bytecode libraries.
@@ -63,6 +79,9 @@ public abstract class AbstractBenchmark {
   private static final String INPUT_CLASSES_JAVA8 =
       "/benchmarks/build/input-classes-java8/io/vavr/control/";
 
+  // The package of the JDK classes that can be used as input data for the benchmarks.
+  private static final String JDK_CLASSES_PACKAGE = "java/util/";
+
   private final String asmBenchmarkClass;
 
   /**
@@ -79,6 +98,13 @@ public abstract class AbstractBenchmark {
    */
   ArrayList<byte[]> java8classFiles;
 
+  /**
+   * Some class files of the JDK used to run the benchmarks, namely the classes of the java.util
+   * package and its sub packages. These classes form a large and realistic corpus, which contains
+   * stack map frames and invokedynamic instructions if the JDK version is at least 8.
+   */
+  ArrayList<byte[]> jdkClassFiles;
+
   /** The ASM versions that can be benchmarked. */
   public enum AsmVersion {
     V4_0,
@@ -128,6 +154,85 @@ public abstract class AbstractBenchmark {
     findClasses(new File(ROOT_DIR + INPUT_CLASSES_JAVA8), java8classFiles);
   }
 
+  /**
+   * Creates and populates {@link #jdkClassFiles} with some class files read from the JDK used to
+   * run the benchmarks (from the jrt file system, or from rt.jar before Java 9).
+   */
+  protected void prepareJdkClasses() throws IOException {
+    jdkClassFiles = new ArrayList<>();
+    FileSystem jrtFileSystem;
+    try {
+      jrtFileSystem = FileSystems.getFileSystem(URI.create("jrt:/"));
+    } catch (ProviderNotFoundException e) {
+      try (ZipFile rtJar = new ZipFile(System.getProperty("java.home") + "/lib/rt.jar")) {
+        List<String> entryNames = new ArrayList<>();
+        Enumeration<? extends ZipEntry> entries = rtJar.entries();
+        while (entries.hasMoreElements()) {
+          String entryName = entries.nextElement().getName();
+          if (entryName.startsWith(JDK_CLASSES_PACKAGE) && entryName.endsWith(".class")) {
+            entryNames.add(entryName);
+          }
+        }
+        Collections.sort(entryNames);
+        for (String entryName : entryNames) {
+          jdkClassFiles.add(readInputStream(rtJar.getInputStream(rtJar.getEntry(entryName))));
+        }
+      }
+      return;
+    }
+    List<Path> paths = new ArrayList<>();
+    try (Stream<Path> stream =
+        Files.walk(jrtFileSystem.getPath("/modules/java.base/" + JDK_CLASSES_PACKAGE))) {
+      stream.filter(path -> path.toString().endsWith(".class")).forEach(paths::add);
+    }
+    Collections.sort(paths);
+    for (Path path : paths) {
+      jdkClassFiles.add(Files.readAllBytes(path));
+    }
+  }
+
+  /**
+   * Returns the class files of the given corpus. {@link #prepareClasses} must be called before, as
+   * well as {@link #prepareJdkClasses} for the "jdk" corpus.
+   *
+   * @param corpus "java5", "java8" or "jdk" for {@link #classFiles}, {@link #java8classFiles} or
+   *     {@link #jdkClassFiles}, respectively.
+   * @return the class files of the given corpus.
+   */
+  ArrayList<byte[]> getClassFiles(final String corpus) {
+    switch (corpus) {
+      case "java5":
+        return classFiles;
+      case "java8":
+        return java8classFiles;
+      case "jdk":
+        return jdkClassFiles;
+      default:
+        throw new IllegalArgumentException(corpus);
+    }
+  }
+
+  /**
+   * Returns a class hierarchy for the given classes, which reads the classes which are not in this
+   * list from the class path, without loading them.
+   *
+   * @param classFiles some class files.
+   * @return a class hierarchy for the given classes.
+   */
+  static ClassHierarchy newClassHierarchy(final List<byte[]> classFiles) {
+    final Map<String, byte[]> classFileByName = new HashMap<>();
+    for (byte[] classFile : classFiles) {
+      classFileByName.put(new ClassReader(classFile).getClassName(), classFile);
+    }
+    return new ClassFileHierarchy(AbstractBenchmark.class.getClassLoader()) {
+      @Override
+      protected ClassReader getClassReader(final String type) throws IOException {
+        byte[] classFile = classFileByName.get(type);
+        return classFile != null ? new ClassReader(classFile) : super.getClassReader(type);
+      }
+    };
+  }
+
   private static void findClasses(final File directory, final ArrayList<byte[]> classFiles)
       throws IOException {
     for (File file : directory.listFiles()) {
@@ -0,0 +1,126 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.benchmarks;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.commons.AdviceAdapter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * A benchmark to measure the performance of an {@link AdviceAdapter} which adds a static method
+ * call at the beginning and at the end of each method, as done by profiling agents.
+ */
+@Fork(1)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class AdviceAdapterBenchmark extends AbstractBenchmark {
+
+  @Param({"java8", "jdk"})
+  public String corpus;
+
+  private ArrayList<byte[]> corpusClassFiles;
+
+  public AdviceAdapterBenchmark() {
+    super("org.objectweb.asm.benchmarks.AdviceAdapter");
+  }
+
+  /**
+   * Prepares the benchmark by loading the class files of the corpus.
+   *
+   * @throws Exception if an error occurs.
+   */
+  @Setup
+  public void prepare() throws Exception {
+    prepareClasses();
+    prepareJdkClasses();
+    corpusClassFiles = getClassFiles(corpus);
+  }
+
+  @Benchmark
+  public void addAdvices(final Blackhole blackhole) {
+    for (byte[] classFile : corpusClassFiles) {
+      ClassReader classReader = new ClassReader(classFile);
+      ClassWriter classWriter = new ClassWriter(classReader, ClassWriter.COMPUTE_MAXS);
+      classReader.accept(new AddAdvicesClassVisitor(classWriter), ClassReader.EXPAND_FRAMES);
+      blackhole.consume(classWriter.toByteArray());
+    }
+  }
+
+  static class AddAdvicesClassVisitor extends ClassVisitor {
+
+    AddAdvicesClassVisitor(final ClassVisitor classVisitor) {
+      super(Opcodes.ASM9, classVisitor);
+    }
+
+    @Override
+    public MethodVisitor visitMethod(
+        final int access,
+        final String name,
+        final String descriptor,
+        final String signature,
+        final String[] exceptions) {
+      MethodVisitor methodVisitor =
+          super.visitMethod(access, name, descriptor, signature, exceptions);
+      if (methodVisitor == null || (access & Opcodes.ACC_ABSTRACT) != 0) {
+        return methodVisitor;
+      }
+      return new AdviceAdapter(api, methodVisitor, access, name, descriptor) {
+
+        @Override
+        protected void onMethodEnter() {
+          addAdvice();
+        }
+
+        @Override
+        protected void onMethodExit(final int opcode) {
+          addAdvice();
+        }
+
+        private void addAdvice() {
+          visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/System", "nanoTime", "()J", false);
+          visitInsn(Opcodes.POP2);
+        }
+      };
+    }
+  }
+}
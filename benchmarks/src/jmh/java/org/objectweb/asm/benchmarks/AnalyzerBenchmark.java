@@ -0,0 +1,149 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.objectweb.asm.ClassHierarchy;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.BasicInterpreter;
+import org.objectweb.asm.tree.analysis.BasicValue;
+import org.objectweb.asm.tree.analysis.FlatAnalyzer;
+import org.objectweb.asm.tree.analysis.Interpreter;
+import org.objectweb.asm.tree.analysis.SimpleVerifier;
+import org.objectweb.asm.tree.analysis.SourceInterpreter;
+import org.objectweb.asm.tree.analysis.Value;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * A benchmark to measure the performance of the ASM {@link Analyzer} with several interpreters, and
+ * of the {@link FlatAnalyzer} with a {@link BasicInterpreter}. The classes are parsed in ClassNode
+ * objects before the benchmark, so that only the analysis is measured.
+ */
+@Fork(1)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class AnalyzerBenchmark extends AbstractBenchmark {
+
+  @Param({"java8", "jdk"})
+  public String corpus;
+
+  private ArrayList<ClassNode> classNodes;
+  private ClassHierarchy classHierarchy;
+
+  public AnalyzerBenchmark() {
+    super("org.objectweb.asm.benchmarks.Analyzer");
+  }
+
+  /**
+   * Prepares the benchmark by parsing the class files of the corpus.
+   *
+   * @throws Exception if an error occurs.
+   */
+  @Setup
+  public void prepare() throws Exception {
+    prepareClasses();
+    prepareJdkClasses();
+    ArrayList<byte[]> corpusClassFiles = getClassFiles(corpus);
+    classNodes = new ArrayList<>();
+    for (byte[] classFile : corpusClassFiles) {
+      ClassNode classNode = new ClassNode();
+      new ClassReader(classFile).accept(classNode, 0);
+      classNodes.add(classNode);
+    }
+    classHierarchy = newClassHierarchy(corpusClassFiles);
+  }
+
+  @Benchmark
+  public void analyze_basicInterpreter(final Blackhole blackhole) throws AnalyzerException {
+    for (ClassNode classNode : classNodes) {
+      analyze(classNode, new BasicInterpreter(), blackhole);
+    }
+  }
+
+  @Benchmark
+  public void analyze_flatBasicInterpreter(final Blackhole blackhole) throws AnalyzerException {
+    FlatAnalyzer<BasicValue> flatAnalyzer = new FlatAnalyzer<>(new BasicInterpreter());
+    for (ClassNode classNode : classNodes) {
+      for (MethodNode methodNode : classNode.methods) {
+        flatAnalyzer.analyze(classNode.name, methodNode);
+      }
+    }
+    blackhole.consume(flatAnalyzer);
+  }
+
+  @Benchmark
+  public void analyze_simpleVerifier(final Blackhole blackhole) throws AnalyzerException {
+    for (ClassNode classNode : classNodes) {
+      List<Type> interfaces = new ArrayList<>();
+      for (String interfaceName : classNode.interfaces) {
+        interfaces.add(Type.getObjectType(interfaceName));
+      }
+      SimpleVerifier simpleVerifier =
+          new SimpleVerifier(
+              Type.getObjectType(classNode.name),
+              classNode.superName == null ? null : Type.getObjectType(classNode.superName),
+              interfaces,
+              (classNode.access & Opcodes.ACC_INTERFACE) != 0);
+      simpleVerifier.setClassHierarchy(classHierarchy);
+      analyze(classNode, simpleVerifier, blackhole);
+    }
+  }
+
+  @Benchmark
+  public void analyze_sourceInterpreter(final Blackhole blackhole) throws AnalyzerException {
+    for (ClassNode classNode : classNodes) {
+      analyze(classNode, new SourceInterpreter(), blackhole);
+    }
+  }
+
+  private static <V extends Value> void analyze(
+      final ClassNode classNode, final Interpreter<V> interpreter, final Blackhole blackhole)
+      throws AnalyzerException {
+    Analyzer<V> analyzer = new Analyzer<>(interpreter);
+    for (MethodNode methodNode : classNode.methods) {
+      blackhole.consume(analyzer.analyze(classNode.name, methodNode));
+    }
+  }
+}
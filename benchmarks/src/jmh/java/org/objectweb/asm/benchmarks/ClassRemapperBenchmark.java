@@ -0,0 +1,94 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.benchmarks;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.commons.ClassRemapper;
+import org.objectweb.asm.commons.Remapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * A benchmark to measure the performance of a {@link ClassRemapper} which relocates all the classes
+ * (except the java.lang ones) in a new package, as done by shading tools.
+ */
+@Fork(1)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class ClassRemapperBenchmark extends AbstractBenchmark {
+
+  @Param({"java8", "jdk"})
+  public String corpus;
+
+  private ArrayList<byte[]> corpusClassFiles;
+
+  private final Remapper remapper =
+      new Remapper() {
+        @Override
+        public String map(final String internalName) {
+          return internalName.startsWith("java/lang/") ? internalName : "shaded/" + internalName;
+        }
+      };
+
+  public ClassRemapperBenchmark() {
+    super("org.objectweb.asm.benchmarks.ClassRemapper");
+  }
+
+  /**
+   * Prepares the benchmark by loading the class files of the corpus.
+   *
+   * @throws Exception if an error occurs.
+   */
+  @Setup
+  public void prepare() throws Exception {
+    prepareClasses();
+    prepareJdkClasses();
+    corpusClassFiles = getClassFiles(corpus);
+  }
+
+  @Benchmark
+  public void remap(final Blackhole blackhole) {
+    for (byte[] classFile : corpusClassFiles) {
+      ClassReader classReader = new ClassReader(classFile);
+      ClassWriter classWriter = new ClassWriter(classReader, 0);
+      classReader.accept(new ClassRemapper(classWriter, remapper), 0);
+      blackhole.consume(classWriter.toByteArray());
+    }
+  }
+}
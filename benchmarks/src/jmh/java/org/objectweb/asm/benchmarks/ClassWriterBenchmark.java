@@ -0,0 +1,114 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.benchmarks;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.objectweb.asm.ClassHierarchy;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * A benchmark to measure the cost of the stack map frames and max stack computations of the current
+ * ASM version, when reading and writing Java 8+ classes with no intermediate transformation.
+ */
+@Fork(1)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class ClassWriterBenchmark extends AbstractBenchmark {
+
+  @Param({"java8", "jdk"})
+  public String corpus;
+
+  private ArrayList<byte[]> corpusClassFiles;
+  private ClassHierarchy classHierarchy;
+
+  public ClassWriterBenchmark() {
+    super("org.objectweb.asm.benchmarks.ClassWriter");
+  }
+
+  /**
+   * Prepares the benchmark by loading the class files of the corpus, and by creating a class
+   * hierarchy to compute the stack map frames of these classes without loading them.
+   *
+   * @throws Exception if an error occurs.
+   */
+  @Setup
+  public void prepare() throws Exception {
+    prepareClasses();
+    prepareJdkClasses();
+    corpusClassFiles = getClassFiles(corpus);
+    classHierarchy = newClassHierarchy(corpusClassFiles);
+  }
+
+  @Benchmark
+  public void readAndWrite(final Blackhole blackhole) {
+    for (byte[] classFile : corpusClassFiles) {
+      blackhole.consume(readAndWrite(classFile, 0, 0));
+    }
+  }
+
+  @Benchmark
+  public void readAndWrite_computeMaxs(final Blackhole blackhole) {
+    for (byte[] classFile : corpusClassFiles) {
+      blackhole.consume(readAndWrite(classFile, 0, ClassWriter.COMPUTE_MAXS));
+    }
+  }
+
+  @Benchmark
+  public void readAndWrite_computeFrames(final Blackhole blackhole) {
+    for (byte[] classFile : corpusClassFiles) {
+      blackhole.consume(readAndWrite(classFile, 0, ClassWriter.COMPUTE_FRAMES));
+    }
+  }
+
+  @Benchmark
+  public void readAndWrite_expandFrames(final Blackhole blackhole) {
+    for (byte[] classFile : corpusClassFiles) {
+      blackhole.consume(readAndWrite(classFile, ClassReader.EXPAND_FRAMES, 0));
+    }
+  }
+
+  private byte[] readAndWrite(final byte[] classFile, final int parsingOptions, final int flags) {
+    ClassReader classReader = new ClassReader(classFile);
+    // Don't pass the ClassReader to the ClassWriter, so that the methods are not copied as is.
+    ClassWriter classWriter = new ClassWriter(null, flags, classHierarchy);
+    classReader.accept(classWriter, parsingOptions);
+    return classWriter.toByteArray();
+  }
+}
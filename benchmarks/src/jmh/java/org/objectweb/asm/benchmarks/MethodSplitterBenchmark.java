@@ -0,0 +1,152 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntUnaryOperator;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.commons.MethodSplitter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A benchmark to measure the cost of the helper method calls introduced by a {@link
+ * MethodSplitter}. It executes a large generated method, either unsplit (maxCodeSize = 65535), or
+ * split into helper methods of at most maxCodeSize bytes. Note that the HotSpot JIT compiler does
+ * not compile methods larger than 8000 bytes, by default.
+ */
+@Fork(1)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class MethodSplitterBenchmark {
+
+  private static final String CLASS_NAME = "org/objectweb/asm/benchmarks/GeneratedOperator";
+
+  /** The number of blocks of code in the generated method (about 20 bytes per block). */
+  private static final int NUM_BLOCKS = 2000;
+
+  @Param({"65535", "8000", "1000"})
+  public int maxCodeSize;
+
+  private IntUnaryOperator operator;
+
+  private int argument;
+
+  /**
+   * Prepares the benchmark by generating and loading the class to execute.
+   *
+   * @throws Exception if an error occurs.
+   */
+  @Setup
+  public void prepare() throws Exception {
+    ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+    generateClass(new MethodSplitter(classWriter, maxCodeSize, null));
+    Class<?> operatorClass =
+        new ByteClassLoader().defineClass(CLASS_NAME.replace('/', '.'), classWriter.toByteArray());
+    operator = (IntUnaryOperator) operatorClass.getConstructor().newInstance();
+  }
+
+  @Benchmark
+  public int executeGeneratedMethod() {
+    return operator.applyAsInt(argument++);
+  }
+
+  /**
+   * Generates a class implementing {@link IntUnaryOperator}, whose applyAsInt method contains
+   * {@link #NUM_BLOCKS} blocks of code of the form "result = result * 31 + (x ^ i); if (result < 0)
+   * { result = -result; }".
+   */
+  private static void generateClass(final ClassVisitor classVisitor) {
+    classVisitor.visit(
+        Opcodes.V1_8,
+        Opcodes.ACC_PUBLIC,
+        CLASS_NAME,
+        null,
+        "java/lang/Object",
+        new String[] {"java/util/function/IntUnaryOperator"});
+    MethodVisitor methodVisitor =
+        classVisitor.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+    methodVisitor.visitCode();
+    methodVisitor.visitVarInsn(Opcodes.ALOAD, 0);
+    methodVisitor.visitMethodInsn(
+        Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+    methodVisitor.visitInsn(Opcodes.RETURN);
+    methodVisitor.visitMaxs(0, 0);
+    methodVisitor.visitEnd();
+
+    methodVisitor = classVisitor.visitMethod(Opcodes.ACC_PUBLIC, "applyAsInt", "(I)I", null, null);
+    methodVisitor.visitCode();
+    methodVisitor.visitVarInsn(Opcodes.ILOAD, 1);
+    methodVisitor.visitVarInsn(Opcodes.ISTORE, 2);
+    for (int i = 0; i < NUM_BLOCKS; ++i) {
+      Label label = new Label();
+      methodVisitor.visitVarInsn(Opcodes.ILOAD, 2);
+      methodVisitor.visitIntInsn(Opcodes.BIPUSH, 31);
+      methodVisitor.visitInsn(Opcodes.IMUL);
+      methodVisitor.visitVarInsn(Opcodes.ILOAD, 1);
+      methodVisitor.visitLdcInsn(i);
+      methodVisitor.visitInsn(Opcodes.IXOR);
+      methodVisitor.visitInsn(Opcodes.IADD);
+      methodVisitor.visitVarInsn(Opcodes.ISTORE, 2);
+      methodVisitor.visitVarInsn(Opcodes.ILOAD, 2);
+      methodVisitor.visitJumpInsn(Opcodes.IFGE, label);
+      methodVisitor.visitVarInsn(Opcodes.ILOAD, 2);
+      methodVisitor.visitInsn(Opcodes.INEG);
+      methodVisitor.visitVarInsn(Opcodes.ISTORE, 2);
+      methodVisitor.visitLabel(label);
+    }
+    methodVisitor.visitVarInsn(Opcodes.ILOAD, 2);
+    methodVisitor.visitInsn(Opcodes.IRETURN);
+    methodVisitor.visitMaxs(0, 0);
+    methodVisitor.visitEnd();
+    classVisitor.visitEnd();
+  }
+
+  /** A class loader to load the generated class. */
+  private static final class ByteClassLoader extends ClassLoader {
+
+    ByteClassLoader() {
+      super(MethodSplitterBenchmark.class.getClassLoader());
+    }
+
+    Class<?> defineClass(final String className, final byte[] classFile) {
+      return defineClass(className, classFile, 0, classFile.length);
+    }
+  }
+}
@@ -11,6 +11,7 @@ import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
+import org.objectweb.asm.TypeCache;
 import org.objectweb.asm.TypePath;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Fork;
@@ -29,6 +30,7 @@ public class TypeBenchmark extends AbstractBenchmark {
 
   private ArrayList<String> descriptors;
   private ArrayList<String> methodDescriptors;
+  private TypeCache typeCache;
 
   public TypeBenchmark() {
     super("org.objectweb.asm.benchmarks.Type");
@@ -42,6 +44,7 @@ public class TypeBenchmark extends AbstractBenchmark {
     for (byte[] classFile : classFiles) {
       new ClassReader(classFile).accept(new CollectTypesVisitor(), 0);
     }
+    typeCache = new TypeCache();
   }
 
   @Benchmark
@@ -70,6 +73,32 @@ public class TypeBenchmark extends AbstractBenchmark {
     }
   }
 
+  @Benchmark
+  public void getTypeFromDescriptorWithTypeCache(final Blackhole blackhole) {
+    for (String descriptor : descriptors) {
+      blackhole.consume(typeCache.getType(descriptor));
+    }
+    for (String methodDescriptor : methodDescriptors) {
+      blackhole.consume(typeCache.getType(methodDescriptor));
+    }
+  }
+
+  @Benchmark
+  public void getArgumentsAndReturnTypesFromDescriptorWithTypeCache(final Blackhole blackhole) {
+    for (String methodDescriptor : methodDescriptors) {
+      Type[] argumentTypes = typeCache.getArgumentTypes(methodDescriptor);
+      Type returnType = typeCache.getReturnType(methodDescriptor);
+      blackhole.consume(Type.getMethodType(returnType, argumentTypes));
+    }
+  }
+
+  @Benchmark
+  public void getArgumentsAndReturnSizeFromDescriptorWithTypeCache(final Blackhole blackhole) {
+    for (String methodDescriptor : methodDescriptors) {
+      blackhole.consume(typeCache.getArgumentsAndReturnSizes(methodDescriptor));
+    }
+  }
+
   class CollectTypesVisitor extends ClassVisitor {
 
     AnnotationVisitor annotationVisitor =